@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.benchmark.utils;
+
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Random;
+
+import org.apache.lucene.index.PointValues.IntersectVisitor;
+import org.apache.lucene.index.PointValues.Relation;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.NumericUtils;
+import org.apache.lucene.util.StringHelper;
+import org.apache.lucene.util.bkd.BKDReader;
+import org.apache.lucene.util.bkd.BKDWriter;
+
+/**
+ * Compares the latency of range queries on a BKD tree of random longs
+ * when its index is loaded on the heap and when it is read off-heap
+ * from a memory-mapped file.
+ * <p>
+ * Usage: <code>java BKDIndexBenchmark [numPoints] [maxPointsInLeafNode] [numQueries] [selectivity] [indexDir]</code>,
+ * for instance <code>java BKDIndexBenchmark 10000000 1024 10000 0.01 /tmp/bkd</code>.
+ */
+public class BKDIndexBenchmark {
+
+  public static void main(String[] args) throws Exception {
+    final int numPoints = args.length > 0 ? Integer.parseInt(args[0]) : 10000000;
+    final int maxPointsInLeafNode = args.length > 1 ? Integer.parseInt(args[1]) : BKDWriter.DEFAULT_MAX_POINTS_IN_LEAF_NODE;
+    final int numQueries = args.length > 2 ? Integer.parseInt(args[2]) : 10000;
+    final double selectivity = args.length > 3 ? Double.parseDouble(args[3]) : 0.01;
+    final Path path = args.length > 4 ? Paths.get(args[4]) : Files.createTempDirectory("bkdbench");
+
+    try (Directory dir = new MMapDirectory(path)) {
+      final long indexFP = createIndex(dir, numPoints, maxPointsInLeafNode);
+      try (IndexInput in = dir.openInput("bkd", IOContext.DEFAULT)) {
+        in.seek(indexFP);
+        final BKDReader onHeap = new BKDReader(in, false);
+        in.seek(indexFP);
+        final BKDReader offHeap = new BKDReader(in, true);
+        System.out.println("numPoints=" + numPoints + " maxPointsInLeafNode=" + maxPointsInLeafNode
+            + " numQueries=" + numQueries + " selectivity=" + selectivity);
+        System.out.println(String.format(Locale.ROOT, "%-9s %16s %20s", "index", "heap bytes", "avg query latency us"));
+        for (int iter = 0; iter < 3; ++iter) {
+          // the first iteration warms up the JVM and the file system cache
+          final double onHeapMicros = run(onHeap, numQueries, selectivity);
+          final double offHeapMicros = run(offHeap, numQueries, selectivity);
+          if (iter > 0) {
+            System.out.println(String.format(Locale.ROOT, "%-9s %16d %20.2f", "on-heap", onHeap.ramBytesUsed(), onHeapMicros));
+            System.out.println(String.format(Locale.ROOT, "%-9s %16d %20.2f", "off-heap", offHeap.ramBytesUsed(), offHeapMicros));
+          }
+        }
+      }
+      dir.deleteFile("bkd");
+    } finally {
+      if (args.length <= 4) {
+        IOUtils.rm(path);
+      }
+    }
+  }
+
+  private static long createIndex(Directory dir, int numPoints, int maxPointsInLeafNode) throws IOException {
+    final Random random = new Random(0);
+    final byte[] packedValue = new byte[Long.BYTES];
+    try (BKDWriter w = new BKDWriter(numPoints, dir, "tmp", 1, Long.BYTES, maxPointsInLeafNode,
+                                     BKDWriter.DEFAULT_MAX_MB_SORT_IN_HEAP, numPoints, true);
+         IndexOutput out = dir.createOutput("bkd", IOContext.DEFAULT)) {
+      for (int i = 0; i < numPoints; ++i) {
+        NumericUtils.longToSortableBytes(random.nextLong(), packedValue, 0);
+        w.add(packedValue, i);
+      }
+      return w.finish(out);
+    }
+  }
+
+  /** Return the average latency of a range query in microseconds. */
+  private static double run(BKDReader reader, int numQueries, double selectivity) throws IOException {
+    final Random random = new Random(1);
+    final byte[] lower = new byte[Long.BYTES];
+    final byte[] upper = new byte[Long.BYTES];
+    final long width = (long) (selectivity * Math.pow(2, 64));
+    long totalHits = 0;
+    final long start = System.nanoTime();
+    for (int i = 0; i < numQueries; ++i) {
+      final long min = random.nextLong();
+      final long max = min + width < min ? Long.MAX_VALUE : min + width;
+      NumericUtils.longToSortableBytes(min, lower, 0);
+      NumericUtils.longToSortableBytes(max, upper, 0);
+      final int[] count = new int[1];
+      reader.intersect(new IntersectVisitor() {
+        @Override
+        public void visit(int docID) {
+          count[0]++;
+        }
+
+        @Override
+        public void visit(int docID, byte[] packedValue) {
+          if (StringHelper.compare(Long.BYTES, packedValue, 0, lower, 0) >= 0
+              && StringHelper.compare(Long.BYTES, packedValue, 0, upper, 0) <= 0) {
+            count[0]++;
+          }
+        }
+
+        @Override
+        public Relation compare(byte[] minPackedValue, byte[] maxPackedValue) {
+          if (StringHelper.compare(Long.BYTES, maxPackedValue, 0, lower, 0) < 0
+              || StringHelper.compare(Long.BYTES, minPackedValue, 0, upper, 0) > 0) {
+            return Relation.CELL_OUTSIDE_QUERY;
+          }
+          if (StringHelper.compare(Long.BYTES, minPackedValue, 0, lower, 0) >= 0
+              && StringHelper.compare(Long.BYTES, maxPackedValue, 0, upper, 0) <= 0) {
+            return Relation.CELL_INSIDE_QUERY;
+          }
+          return Relation.CELL_CROSSES_QUERY;
+        }
+      });
+      totalHits += count[0];
+    }
+    final long elapsed = System.nanoTime() - start;
+    if (totalHits < 0) {
+      // prevent the JVM from optimizing the intersections away
+      throw new AssertionError();
+    }
+    return elapsed / 1000d / numQueries;
+  }
+}
@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.benchmark.utils;
+
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.ConcurrentQueryCache;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.LRUQueryCache;
+import org.apache.lucene.search.QueryCache;
+import org.apache.lucene.search.QueryCachingPolicy;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+
+/**
+ * Compares the throughput of cache lookups of {@link LRUQueryCache} and
+ * {@link ConcurrentQueryCache} with an increasing number of threads.
+ * <p>
+ * Every operation creates cached scorers for a random filter on all
+ * segments of an index whose filters all fit in the cache, so that the
+ * benchmark mostly measures contention on the cache.
+ * <p>
+ * Usage: <code>java QueryCacheBenchmark [numDocs] [numFilters] [secondsPerRun] [threadCounts]</code>,
+ * for instance <code>java QueryCacheBenchmark 1000000 64 10 1,8,32,64</code>.
+ */
+public class QueryCacheBenchmark {
+
+  public static void main(String[] args) throws Exception {
+    final int numDocs = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+    final int numFilters = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+    final int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+    final String threadCounts = args.length > 3 ? args[3] : "1,8,32,64";
+
+    try (Directory dir = new RAMDirectory()) {
+      createIndex(dir, numDocs, numFilters);
+      try (DirectoryReader reader = DirectoryReader.open(dir)) {
+        System.out.println("numDocs=" + numDocs + " numSegments=" + reader.leaves().size()
+            + " numFilters=" + numFilters + " seconds=" + seconds);
+        System.out.println(String.format(Locale.ROOT, "%-8s %22s %22s", "threads", "LRUQueryCache ops/s", "ConcurrentQueryCache ops/s"));
+        for (String threadCount : threadCounts.split(",")) {
+          final int numThreads = Integer.parseInt(threadCount.trim());
+          final long lru = run(reader, new LRUQueryCache(numFilters, Long.MAX_VALUE, context -> true), numFilters, numThreads, seconds);
+          final long concurrent = run(reader, new ConcurrentQueryCache(numFilters, Long.MAX_VALUE, context -> true), numFilters, numThreads, seconds);
+          System.out.println(String.format(Locale.ROOT, "%-8d %22d %22d", numThreads, lru, concurrent));
+        }
+      }
+    }
+  }
+
+  private static void createIndex(Directory dir, int numDocs, int numFilters) throws IOException {
+    final Random random = new Random(0);
+    try (IndexWriter w = new IndexWriter(dir, new IndexWriterConfig(null))) {
+      Document doc = new Document();
+      StringField field = new StringField("f", "", Store.NO);
+      doc.add(field);
+      for (int i = 0; i < numDocs; ++i) {
+        field.setStringValue(Integer.toString(random.nextInt(numFilters)));
+        w.addDocument(doc);
+      }
+      w.forceMerge(4);
+    }
+  }
+
+  /** Return the number of operations per second. */
+  private static long run(DirectoryReader reader, QueryCache queryCache, int numFilters, int numThreads, int seconds) throws Exception {
+    final IndexSearcher searcher = new IndexSearcher(reader);
+    searcher.setQueryCache(null);
+    final List<LeafReaderContext> leaves = reader.leaves();
+    final Weight[] weights = new Weight[numFilters];
+    for (int i = 0; i < numFilters; ++i) {
+      final Weight weight = searcher.createNormalizedWeight(new TermQuery(new Term("f", Integer.toString(i))), false);
+      weights[i] = queryCache.doCache(weight, QueryCachingPolicy.ALWAYS_CACHE);
+      // warm the cache
+      for (LeafReaderContext leaf : leaves) {
+        weights[i].scorer(leaf);
+      }
+    }
+
+    final AtomicBoolean stop = new AtomicBoolean();
+    final LongAdder ops = new LongAdder();
+    final CountDownLatch start = new CountDownLatch(1);
+    final Thread[] threads = new Thread[numThreads];
+    for (int t = 0; t < numThreads; ++t) {
+      final Random random = new Random(t);
+      threads[t] = new Thread() {
+        @Override
+        public void run() {
+          try {
+            start.await();
+            long localOps = 0;
+            while (stop.get() == false) {
+              final Weight weight = weights[random.nextInt(weights.length)];
+              for (LeafReaderContext leaf : leaves) {
+                weight.scorer(leaf);
+              }
+              localOps++;
+            }
+            ops.add(localOps);
+          } catch (Exception e) {
+            throw new RuntimeException(e);
+          }
+        }
+      };
+      threads[t].start();
+    }
+
+    start.countDown();
+    Thread.sleep(seconds * 1000L);
+    stop.set(true);
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    return ops.sum() / seconds;
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.codecs.bitset;
+
+
+import java.io.IOException;
+
+import org.apache.lucene.codecs.FieldsConsumer;
+import org.apache.lucene.codecs.FieldsProducer;
+import org.apache.lucene.codecs.PostingsFormat;
+import org.apache.lucene.codecs.PostingsReaderBase;
+import org.apache.lucene.codecs.PostingsWriterBase;
+import org.apache.lucene.codecs.blocktree.BlockTreeTermsReader;
+import org.apache.lucene.codecs.blocktree.BlockTreeTermsWriter;
+import org.apache.lucene.codecs.lucene50.Lucene50PostingsFormat;
+import org.apache.lucene.index.SegmentReadState;
+import org.apache.lucene.index.SegmentWriteState;
+import org.apache.lucene.util.IOUtils;
+
+/**
+ * A postings format that encodes the postings of dense terms as bit sets.
+ * <p>
+ * Terms of fields that only index documents
+ * ({@link org.apache.lucene.index.IndexOptions#DOCS}), such as
+ * <code>type:product</code> or <code>in_stock:true</code>, and that match at
+ * least a configurable ratio of the documents of the segment have their
+ * postings written as a bit set of the documents that they match, from the
+ * first to the last matching document. Iterating such postings, and
+ * advancing them, only requires a few bit operations on 64-bit words.
+ * Other terms and fields are written with {@link Lucene50PostingsFormat},
+ * and all terms are stored in a block tree terms dictionary.
+ * @lucene.experimental
+ */
+public final class BitSetPostingsFormat extends PostingsFormat {
+
+  /** Filename extension for the bit sets of dense terms. */
+  static final String BITS_EXTENSION = "bit";
+  static final String BITS_CODEC = "BitSetPostingsWriterBits";
+  static final String TERMS_CODEC = "BitSetPostingsWriterTerms";
+
+  static final int VERSION_START = 0;
+  static final int VERSION_CURRENT = VERSION_START;
+
+  /** Default minimum ratio of documents that a term must match to be encoded as a bit set. */
+  public static final float DEFAULT_MIN_DENSITY = 0.25f;
+
+  private final float minDensity;
+
+  /** Creates a {@link BitSetPostingsFormat} with the default minimum density. */
+  public BitSetPostingsFormat() {
+    this(DEFAULT_MIN_DENSITY);
+  }
+
+  /**
+   * Creates a {@link BitSetPostingsFormat} that encodes terms that match at
+   * least <code>minDensity</code> of the documents of a segment as bit sets.
+   */
+  public BitSetPostingsFormat(float minDensity) {
+    super("BitSet50");
+    if (minDensity < 0 || minDensity > 1 || Float.isNaN(minDensity)) {
+      throw new IllegalArgumentException("minDensity must be in [0, 1], got " + minDensity);
+    }
+    this.minDensity = minDensity;
+  }
+
+  @Override
+  public String toString() {
+    return getName() + "(minDensity=" + minDensity + ")";
+  }
+
+  @Override
+  public FieldsConsumer fieldsConsumer(SegmentWriteState state) throws IOException {
+    PostingsWriterBase postingsWriter = new BitSetPostingsWriter(state, minDensity);
+
+    boolean success = false;
+    try {
+      FieldsConsumer ret = new BlockTreeTermsWriter(state, postingsWriter,
+          BlockTreeTermsWriter.DEFAULT_MIN_BLOCK_SIZE, BlockTreeTermsWriter.DEFAULT_MAX_BLOCK_SIZE);
+      success = true;
+      return ret;
+    } finally {
+      if (!success) {
+        IOUtils.closeWhileHandlingException(postingsWriter);
+      }
+    }
+  }
+
+  @Override
+  public FieldsProducer fieldsProducer(SegmentReadState state) throws IOException {
+    PostingsReaderBase postingsReader = new BitSetPostingsReader(state);
+    boolean success = false;
+    try {
+      FieldsProducer ret = new BlockTreeTermsReader(postingsReader, state);
+      success = true;
+      return ret;
+    } finally {
+      if (!success) {
+        IOUtils.closeWhileHandlingException(postingsReader);
+      }
+    }
+  }
+}
@@ -0,0 +1,267 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.codecs.bitset;
+
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+
+import org.apache.lucene.codecs.BlockTermState;
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.codecs.PostingsReaderBase;
+import org.apache.lucene.codecs.lucene50.Lucene50PostingsReader;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.IndexFileNames;
+import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.SegmentReadState;
+import org.apache.lucene.store.DataInput;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.RandomAccessInput;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.Accountables;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.RamUsageEstimator;
+
+import static org.apache.lucene.codecs.bitset.BitSetPostingsFormat.BITS_CODEC;
+import static org.apache.lucene.codecs.bitset.BitSetPostingsFormat.BITS_EXTENSION;
+import static org.apache.lucene.codecs.bitset.BitSetPostingsFormat.TERMS_CODEC;
+import static org.apache.lucene.codecs.bitset.BitSetPostingsFormat.VERSION_CURRENT;
+import static org.apache.lucene.codecs.bitset.BitSetPostingsFormat.VERSION_START;
+
+/**
+ * Reads postings written by {@link BitSetPostingsWriter}.
+ */
+final class BitSetPostingsReader extends PostingsReaderBase {
+
+  private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(BitSetPostingsReader.class);
+
+  private final Lucene50PostingsReader delegate;
+  private final IndexInput bitsIn;
+  private final int version;
+  private int minDenseDocFreq;
+
+  BitSetPostingsReader(SegmentReadState state) throws IOException {
+    boolean success = false;
+    Lucene50PostingsReader delegate = null;
+    IndexInput bitsIn = null;
+    try {
+      delegate = new Lucene50PostingsReader(state);
+      final String bitsFileName = IndexFileNames.segmentFileName(state.segmentInfo.name, state.segmentSuffix, BITS_EXTENSION);
+      bitsIn = state.directory.openInput(bitsFileName, state.context);
+      version = CodecUtil.checkIndexHeader(bitsIn, BITS_CODEC, VERSION_START, VERSION_CURRENT, state.segmentInfo.getId(), state.segmentSuffix);
+      // NOTE: like for postings, the bits file is too costly to verify against
+      // all the bytes on open, but we at least verify the checksum footer
+      CodecUtil.retrieveChecksum(bitsIn);
+      this.delegate = delegate;
+      this.bitsIn = bitsIn;
+      success = true;
+    } finally {
+      if (success == false) {
+        IOUtils.closeWhileHandlingException(delegate, bitsIn);
+      }
+    }
+  }
+
+  @Override
+  public void init(IndexInput termsIn, SegmentReadState state) throws IOException {
+    delegate.init(termsIn, state);
+    CodecUtil.checkIndexHeader(termsIn, TERMS_CODEC, version, version, state.segmentInfo.getId(), state.segmentSuffix);
+    minDenseDocFreq = termsIn.readVInt();
+  }
+
+  @Override
+  public BlockTermState newTermState() throws IOException {
+    return new BitSetTermState(delegate.newTermState());
+  }
+
+  @Override
+  public void decodeTerm(long[] longs, DataInput in, FieldInfo fieldInfo, BlockTermState _termState, boolean absolute) throws IOException {
+    final BitSetTermState termState = (BitSetTermState) _termState;
+    final BlockTermState delegateState = termState.delegate;
+    if (fieldInfo.getIndexOptions() != IndexOptions.DOCS) {
+      termState.dense = false;
+      delegateState.docFreq = termState.docFreq;
+      delegateState.totalTermFreq = termState.totalTermFreq;
+      delegate.decodeTerm(longs, in, fieldInfo, delegateState, absolute);
+      return;
+    }
+
+    // Lucene50PostingsWriter only uses one long for fields that don't index positions
+    final int delegateLongsSize = 1;
+    termState.dense = termState.docFreq >= minDenseDocFreq;
+    if (termState.dense) {
+      termState.pendingAbsolute |= absolute;
+    } else {
+      delegateState.docFreq = termState.docFreq;
+      delegateState.totalTermFreq = termState.totalTermFreq;
+      delegate.decodeTerm(longs, in, fieldInfo, delegateState, absolute || termState.pendingAbsolute);
+      termState.pendingAbsolute = false;
+    }
+
+    if (absolute) {
+      termState.bitsStartFP = 0;
+    }
+    termState.bitsStartFP += longs[delegateLongsSize];
+    if (termState.dense) {
+      termState.firstWord = in.readVInt();
+      termState.numWords = in.readVInt();
+    }
+  }
+
+  @Override
+  public PostingsEnum postings(FieldInfo fieldInfo, BlockTermState _termState, PostingsEnum reuse, int flags) throws IOException {
+    final BitSetTermState termState = (BitSetTermState) _termState;
+    if (termState.dense == false) {
+      return delegate.postings(fieldInfo, termState.delegate, reuse, flags);
+    }
+
+    BitSetPostingsEnum postingsEnum;
+    if (reuse instanceof BitSetPostingsEnum && ((BitSetPostingsEnum) reuse).canReuse(bitsIn)) {
+      postingsEnum = (BitSetPostingsEnum) reuse;
+    } else {
+      postingsEnum = new BitSetPostingsEnum(bitsIn);
+    }
+    return postingsEnum.reset(termState);
+  }
+
+  @Override
+  public long ramBytesUsed() {
+    return BASE_RAM_BYTES_USED + delegate.ramBytesUsed();
+  }
+
+  @Override
+  public Collection<Accountable> getChildResources() {
+    return Collections.singleton(Accountables.namedAccountable("delegate", delegate));
+  }
+
+  @Override
+  public void checkIntegrity() throws IOException {
+    delegate.checkIntegrity();
+    CodecUtil.checksumEntireFile(bitsIn);
+  }
+
+  @Override
+  public void close() throws IOException {
+    IOUtils.close(delegate, bitsIn);
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "(delegate=" + delegate + ",minDenseDocFreq=" + minDenseDocFreq + ")";
+  }
+
+  /** Iterates over the bits of a dense term, one 64-bit word at a time. */
+  static final class BitSetPostingsEnum extends PostingsEnum {
+
+    private final IndexInput startBitsIn;
+    private RandomAccessInput bits;
+    private int firstWord, numWords, docFreq;
+
+    private int doc;
+    private int wordIndex; // relative to firstWord
+    private long word; // remaining bits of the current word
+
+    BitSetPostingsEnum(IndexInput bitsIn) {
+      this.startBitsIn = bitsIn;
+    }
+
+    boolean canReuse(IndexInput bitsIn) {
+      return bitsIn == startBitsIn;
+    }
+
+    BitSetPostingsEnum reset(BitSetTermState termState) throws IOException {
+      bits = startBitsIn.randomAccessSlice(termState.bitsStartFP, (long) termState.numWords << 3);
+      firstWord = termState.firstWord;
+      numWords = termState.numWords;
+      docFreq = termState.docFreq;
+      doc = -1;
+      wordIndex = -1;
+      word = 0;
+      return this;
+    }
+
+    @Override
+    public int docID() {
+      return doc;
+    }
+
+    @Override
+    public int nextDoc() throws IOException {
+      while (word == 0) {
+        if (++wordIndex >= numWords) {
+          return doc = NO_MORE_DOCS;
+        }
+        word = bits.readLong((long) wordIndex << 3);
+      }
+      final int bit = Long.numberOfTrailingZeros(word);
+      word &= word - 1; // clear the lowest bit
+      return doc = ((firstWord + wordIndex) << 6) | bit;
+    }
+
+    @Override
+    public int advance(int target) throws IOException {
+      final int targetWordIndex = (target >>> 6) - firstWord;
+      if (targetWordIndex >= numWords) {
+        wordIndex = numWords;
+        word = 0;
+        return doc = NO_MORE_DOCS;
+      }
+      if (targetWordIndex >= 0) {
+        if (targetWordIndex > wordIndex) {
+          wordIndex = targetWordIndex;
+          word = bits.readLong((long) wordIndex << 3);
+        }
+        // clear bits of documents that are before the target
+        word &= -1L << target;
+      }
+      return nextDoc();
+    }
+
+    @Override
+    public int freq() throws IOException {
+      return 1;
+    }
+
+    @Override
+    public int nextPosition() throws IOException {
+      return -1;
+    }
+
+    @Override
+    public int startOffset() throws IOException {
+      return -1;
+    }
+
+    @Override
+    public int endOffset() throws IOException {
+      return -1;
+    }
+
+    @Override
+    public BytesRef getPayload() throws IOException {
+      return null;
+    }
+
+    @Override
+    public long cost() {
+      return docFreq;
+    }
+  }
+}
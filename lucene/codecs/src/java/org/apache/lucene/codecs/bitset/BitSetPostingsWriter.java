@@ -0,0 +1,221 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.codecs.bitset;
+
+
+import java.io.IOException;
+
+import org.apache.lucene.codecs.BlockTermState;
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.codecs.PostingsWriterBase;
+import org.apache.lucene.codecs.lucene50.Lucene50PostingsWriter;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.IndexFileNames;
+import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.SegmentWriteState;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.store.DataOutput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.IOUtils;
+
+import static org.apache.lucene.codecs.bitset.BitSetPostingsFormat.BITS_CODEC;
+import static org.apache.lucene.codecs.bitset.BitSetPostingsFormat.BITS_EXTENSION;
+import static org.apache.lucene.codecs.bitset.BitSetPostingsFormat.TERMS_CODEC;
+import static org.apache.lucene.codecs.bitset.BitSetPostingsFormat.VERSION_CURRENT;
+
+/**
+ * Writes the postings of dense terms of fields that only index documents as
+ * bit sets and delegates to {@link Lucene50PostingsWriter} for everything
+ * else.
+ */
+final class BitSetPostingsWriter extends PostingsWriterBase {
+
+  private final Lucene50PostingsWriter delegate;
+  private final int minDenseDocFreq;
+  private IndexOutput bitsOut;
+
+  private boolean canBeDense;
+  private int delegateLongsSize;
+  private long lastBitsStartFP;
+  private boolean pendingAbsolute;
+
+  private PostingsEnum postingsEnum;
+  private int[] docBuffer = new int[16];
+
+  BitSetPostingsWriter(SegmentWriteState state, float minDensity) throws IOException {
+    // a single document is better encoded as a pulsed doc ID
+    minDenseDocFreq = Math.max(2, (int) Math.ceil(minDensity * state.segmentInfo.maxDoc()));
+    boolean success = false;
+    Lucene50PostingsWriter delegate = null;
+    try {
+      delegate = new Lucene50PostingsWriter(state);
+      final String bitsFileName = IndexFileNames.segmentFileName(state.segmentInfo.name, state.segmentSuffix, BITS_EXTENSION);
+      bitsOut = state.directory.createOutput(bitsFileName, state.context);
+      CodecUtil.writeIndexHeader(bitsOut, BITS_CODEC, VERSION_CURRENT, state.segmentInfo.getId(), state.segmentSuffix);
+      success = true;
+    } finally {
+      if (success == false) {
+        IOUtils.closeWhileHandlingException(delegate, bitsOut);
+      }
+    }
+    this.delegate = delegate;
+  }
+
+  @Override
+  public void init(IndexOutput termsOut, SegmentWriteState state) throws IOException {
+    delegate.init(termsOut, state);
+    CodecUtil.writeIndexHeader(termsOut, TERMS_CODEC, VERSION_CURRENT, state.segmentInfo.getId(), state.segmentSuffix);
+    termsOut.writeVInt(minDenseDocFreq);
+  }
+
+  @Override
+  public int setField(FieldInfo fieldInfo) {
+    canBeDense = fieldInfo.getIndexOptions() == IndexOptions.DOCS;
+    delegateLongsSize = delegate.setField(fieldInfo);
+    lastBitsStartFP = 0;
+    pendingAbsolute = false;
+    if (canBeDense) {
+      // one more long for the start pointer of bit sets
+      return delegateLongsSize + 1;
+    } else {
+      return delegateLongsSize;
+    }
+  }
+
+  @Override
+  public BlockTermState writeTerm(BytesRef term, TermsEnum termsEnum, FixedBitSet docsSeen) throws IOException {
+    if (canBeDense == false) {
+      final BlockTermState delegateState = delegate.writeTerm(term, termsEnum, docsSeen);
+      if (delegateState == null) {
+        return null;
+      }
+      final BitSetTermState state = new BitSetTermState(delegateState);
+      state.docFreq = delegateState.docFreq;
+      state.totalTermFreq = delegateState.totalTermFreq;
+      return state;
+    }
+
+    // buffer doc IDs in order to know whether the term is dense
+    postingsEnum = termsEnum.postings(postingsEnum, PostingsEnum.NONE);
+    int docFreq = 0;
+    for (int doc = postingsEnum.nextDoc(); doc != PostingsEnum.NO_MORE_DOCS; doc = postingsEnum.nextDoc()) {
+      if (docFreq == docBuffer.length) {
+        docBuffer = ArrayUtil.grow(docBuffer, docFreq + 1);
+      }
+      docBuffer[docFreq++] = doc;
+      docsSeen.set(doc);
+    }
+    if (docFreq == 0) {
+      return null;
+    }
+
+    final BitSetTermState state;
+    if (docFreq >= minDenseDocFreq) {
+      state = new BitSetTermState(delegate.newTermState());
+      state.dense = true;
+      writeBits(state, docFreq);
+    } else {
+      delegate.startTerm();
+      for (int i = 0; i < docFreq; ++i) {
+        delegate.startDoc(docBuffer[i], -1);
+        delegate.finishDoc();
+      }
+      final BlockTermState delegateState = delegate.newTermState();
+      delegateState.docFreq = docFreq;
+      delegateState.totalTermFreq = -1;
+      delegate.finishTerm(delegateState);
+      state = new BitSetTermState(delegateState);
+      // keep start pointers monotonic
+      state.bitsStartFP = bitsOut.getFilePointer();
+    }
+    state.docFreq = docFreq;
+    state.totalTermFreq = -1;
+    return state;
+  }
+
+  private void writeBits(BitSetTermState state, int docFreq) throws IOException {
+    state.bitsStartFP = bitsOut.getFilePointer();
+    state.firstWord = docBuffer[0] >>> 6;
+    state.numWords = (docBuffer[docFreq - 1] >>> 6) - state.firstWord + 1;
+    int wordIndex = state.firstWord;
+    long word = 0;
+    for (int i = 0; i < docFreq; ++i) {
+      final int doc = docBuffer[i];
+      final int docWordIndex = doc >>> 6;
+      while (wordIndex < docWordIndex) {
+        bitsOut.writeLong(word);
+        word = 0;
+        wordIndex++;
+      }
+      word |= 1L << doc;
+    }
+    bitsOut.writeLong(word);
+    assert bitsOut.getFilePointer() - state.bitsStartFP == (long) state.numWords << 3;
+  }
+
+  @Override
+  public void encodeTerm(long[] longs, DataOutput out, FieldInfo fieldInfo, BlockTermState _state, boolean absolute) throws IOException {
+    final BitSetTermState state = (BitSetTermState) _state;
+    if (canBeDense == false) {
+      delegate.encodeTerm(longs, out, fieldInfo, state.delegate, absolute);
+      return;
+    }
+
+    if (state.dense) {
+      // the delegate's metadata is left unchanged
+      for (int i = 0; i < delegateLongsSize; ++i) {
+        longs[i] = 0;
+      }
+      pendingAbsolute |= absolute;
+    } else {
+      delegate.encodeTerm(longs, out, fieldInfo, state.delegate, absolute || pendingAbsolute);
+      pendingAbsolute = false;
+    }
+
+    if (absolute) {
+      lastBitsStartFP = 0;
+    }
+    longs[delegateLongsSize] = state.bitsStartFP - lastBitsStartFP;
+    lastBitsStartFP = state.bitsStartFP;
+    if (state.dense) {
+      out.writeVInt(state.firstWord);
+      out.writeVInt(state.numWords);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    boolean success = false;
+    try {
+      if (bitsOut != null) {
+        CodecUtil.writeFooter(bitsOut);
+      }
+      success = true;
+    } finally {
+      if (success) {
+        IOUtils.close(delegate, bitsOut);
+      } else {
+        IOUtils.closeWhileHandlingException(delegate, bitsOut);
+      }
+      bitsOut = null;
+    }
+  }
+}
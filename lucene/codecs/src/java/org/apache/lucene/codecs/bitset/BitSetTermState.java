@@ -0,0 +1,79 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.codecs.bitset;
+
+
+import org.apache.lucene.codecs.BlockTermState;
+import org.apache.lucene.index.TermState;
+
+/**
+ * Term state of the {@link BitSetPostingsFormat}: either a pointer to the bit
+ * set of a dense term, or the term state of the delegate postings format.
+ */
+final class BitSetTermState extends BlockTermState {
+
+  /** Term state of the delegate postings format. */
+  final BlockTermState delegate;
+
+  /** Whether postings are stored as a bit set. */
+  boolean dense;
+
+  /** Start pointer of the bit set in the bits file. */
+  long bitsStartFP;
+
+  /** Index of the first 64-bit word of the bit set. */
+  int firstWord;
+
+  /** Number of 64-bit words of the bit set. */
+  int numWords;
+
+  /**
+   * The metadata of the delegate is not encoded for dense terms, so when a
+   * dense term is the first term of a block, the metadata of the next sparse
+   * term needs to be decoded as absolute.
+   */
+  boolean pendingAbsolute;
+
+  BitSetTermState(BlockTermState delegate) {
+    this.delegate = delegate;
+  }
+
+  @Override
+  public BitSetTermState clone() {
+    BitSetTermState other = new BitSetTermState((BlockTermState) delegate.clone());
+    other.copyFrom(this);
+    return other;
+  }
+
+  @Override
+  public void copyFrom(TermState _other) {
+    super.copyFrom(_other);
+    BitSetTermState other = (BitSetTermState) _other;
+    delegate.copyFrom(other.delegate);
+    dense = other.dense;
+    bitsStartFP = other.bitsStartFP;
+    firstWord = other.firstWord;
+    numWords = other.numWords;
+    pendingAbsolute = other.pendingAbsolute;
+  }
+
+  @Override
+  public String toString() {
+    return super.toString() + " dense=" + dense + " bitsStartFP=" + bitsStartFP + " firstWord=" + firstWord
+        + " numWords=" + numWords + " delegate=" + delegate;
+  }
+}
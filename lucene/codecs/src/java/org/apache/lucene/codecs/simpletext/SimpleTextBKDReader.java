@@ -39,7 +39,7 @@ class SimpleTextBKDReader extends BKDReader {
   }
 
   @Override
-  protected void visitDocIDs(IndexInput in, long blockFP, IntersectVisitor visitor) throws IOException {
+  protected void visitDocIDs(IndexInput in, long blockFP, int[] scratchDocIDs, IntersectVisitor visitor) throws IOException {
     BytesRefBuilder scratch = new BytesRefBuilder();
     in.seek(blockFP);
     readLine(in, scratch);
@@ -197,6 +197,15 @@ class SimpleTextPointsReader extends PointsReader {
     bkdReader.intersect(visitor);
   }
 
+  @Override
+  public long estimatePointCount(String fieldName, IntersectVisitor visitor) throws IOException {
+    BKDReader bkdReader = getBKDReader(fieldName);
+    if (bkdReader == null) {
+      return 0;
+    }
+    return bkdReader.estimatePointCount(visitor);
+  }
+
   @Override
   public void checkIntegrity() throws IOException {
     BytesRefBuilder scratch = new BytesRefBuilder();
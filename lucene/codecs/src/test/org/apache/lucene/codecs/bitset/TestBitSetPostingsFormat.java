@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.codecs.bitset;
+
+
+import java.io.IOException;
+
+import org.apache.lucene.codecs.Codec;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.BasePostingsFormatTestCase;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.TestUtil;
+
+/**
+ * Tests BitSetPostingsFormat
+ */
+public class TestBitSetPostingsFormat extends BasePostingsFormatTestCase {
+  // a low density so that many terms are encoded as bit sets
+  private final Codec codec = TestUtil.alwaysPostingsFormat(new BitSetPostingsFormat(random().nextFloat() / 10));
+
+  @Override
+  protected Codec getCodec() {
+    return codec;
+  }
+
+  public void testDenseTerms() throws IOException {
+    try (Directory dir = newDirectory()) {
+      final int numDocs = atLeast(1000);
+      final FixedBitSet expected = new FixedBitSet(numDocs);
+      try (IndexWriter w = new IndexWriter(dir, newIndexWriterConfig().setCodec(codec))) {
+        for (int i = 0; i < numDocs; ++i) {
+          Document doc = new Document();
+          // about half of the documents are in stock
+          if (random().nextBoolean()) {
+            doc.add(new StringField("in_stock", "true", Store.NO));
+            expected.set(i);
+          }
+          // few documents are on sale
+          if (random().nextInt(100) == 0) {
+            doc.add(new StringField("in_stock", "sale", Store.NO));
+          }
+          w.addDocument(doc);
+        }
+        w.forceMerge(1);
+      }
+
+      try (DirectoryReader reader = DirectoryReader.open(dir)) {
+        final LeafReader leafReader = getOnlyLeafReader(reader);
+        PostingsEnum postings = leafReader.postings(new Term("in_stock", "true"), PostingsEnum.NONE);
+        if (expected.cardinality() >= 2) {
+          assertTrue(postings instanceof BitSetPostingsReader.BitSetPostingsEnum);
+        }
+        for (int doc = postings.nextDoc(), expectedDoc = expected.nextSetBit(0); ; doc = postings.nextDoc()) {
+          assertEquals(expectedDoc, doc);
+          if (doc == PostingsEnum.NO_MORE_DOCS) {
+            break;
+          }
+          expectedDoc = doc + 1 >= numDocs ? PostingsEnum.NO_MORE_DOCS : expected.nextSetBit(doc + 1);
+        }
+
+        postings = leafReader.postings(new Term("in_stock", "true"), PostingsEnum.NONE);
+        for (int target = random().nextInt(64); ; target += 1 + random().nextInt(200)) {
+          final int expectedDoc = target >= numDocs ? PostingsEnum.NO_MORE_DOCS : expected.nextSetBit(target);
+          final int doc = postings.advance(target);
+          assertEquals(expectedDoc, doc);
+          if (doc == PostingsEnum.NO_MORE_DOCS) {
+            break;
+          }
+          target = doc;
+        }
+      }
+    }
+  }
+}
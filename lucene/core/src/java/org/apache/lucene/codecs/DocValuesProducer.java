@@ -21,11 +21,17 @@ import java.io.Closeable;
 import java.io.IOException;
 
 import org.apache.lucene.index.BinaryDocValues;
+import org.apache.lucene.index.BinaryDocValuesIterator;
+import org.apache.lucene.index.DocValues;
 import org.apache.lucene.index.FieldInfo;
 import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.NumericDocValuesIterator;
 import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.index.SortedDocValuesIterator;
 import org.apache.lucene.index.SortedNumericDocValues;
+import org.apache.lucene.index.SortedNumericDocValuesIterator;
 import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.index.SortedSetDocValuesIterator;
 import org.apache.lucene.util.Accountable;
 import org.apache.lucene.util.Bits;
 
@@ -71,6 +77,46 @@ public abstract class DocValuesProducer implements Closeable, Accountable {
    *  used by a single thread. */
   public abstract Bits getDocsWithField(FieldInfo field) throws IOException;
   
+  /** Returns a {@link NumericDocValuesIterator} for this field.
+   *  The default implementation visits documents that are set in
+   *  {@link #getDocsWithField(FieldInfo)} one by one, formats that encode
+   *  sparse fields should override it in order to skip over documents that
+   *  do not have a value efficiently.
+   *  The returned instance need not be thread-safe: it will only be
+   *  used by a single thread. */
+  public NumericDocValuesIterator getNumericIterator(FieldInfo field) throws IOException {
+    final Bits docsWithField = getDocsWithField(field);
+    return DocValues.numericIterator(getNumeric(field), docsWithField, docsWithField.length());
+  }
+
+  /** Returns a {@link BinaryDocValuesIterator} for this field.
+   *  @see #getNumericIterator(FieldInfo) */
+  public BinaryDocValuesIterator getBinaryIterator(FieldInfo field) throws IOException {
+    final Bits docsWithField = getDocsWithField(field);
+    return DocValues.binaryIterator(getBinary(field), docsWithField, docsWithField.length());
+  }
+
+  /** Returns a {@link SortedDocValuesIterator} for this field.
+   *  @see #getNumericIterator(FieldInfo) */
+  public SortedDocValuesIterator getSortedIterator(FieldInfo field) throws IOException {
+    final int maxDoc = getDocsWithField(field).length();
+    return DocValues.sortedIterator(getSorted(field), maxDoc);
+  }
+
+  /** Returns a {@link SortedNumericDocValuesIterator} for this field.
+   *  @see #getNumericIterator(FieldInfo) */
+  public SortedNumericDocValuesIterator getSortedNumericIterator(FieldInfo field) throws IOException {
+    final int maxDoc = getDocsWithField(field).length();
+    return DocValues.sortedNumericIterator(getSortedNumeric(field), maxDoc);
+  }
+
+  /** Returns a {@link SortedSetDocValuesIterator} for this field.
+   *  @see #getNumericIterator(FieldInfo) */
+  public SortedSetDocValuesIterator getSortedSetIterator(FieldInfo field) throws IOException {
+    final int maxDoc = getDocsWithField(field).length();
+    return DocValues.sortedSetIterator(getSortedSet(field), maxDoc);
+  }
+  
   /** 
    * Checks consistency of this producer
    * <p>
@@ -37,6 +37,7 @@ import org.apache.lucene.index.Terms;
 import org.apache.lucene.search.PrefixQuery;  // javadocs
 import org.apache.lucene.search.TermRangeQuery;  // javadocs
 import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.MMapDirectory;
 import org.apache.lucene.util.Accountable;
 import org.apache.lucene.util.Accountables;
 import org.apache.lucene.util.BytesRef;
@@ -59,6 +60,9 @@ import org.apache.lucene.util.fst.Outputs;
  *  min/maxItemsPerBlock during indexing to control how
  *  much memory the terms index uses.</p>
  *
+ *  <p>The terms index can either be loaded on the heap or
+ *  read directly from the index file, see {@link FSTLoadMode}.</p>
+ *
  *  <p>If auto-prefix terms were indexed (see
  *  {@link BlockTreeTermsWriter}), then the {@link Terms#intersect}
  *  implementation here will make use of these terms only if the
@@ -84,6 +88,23 @@ import org.apache.lucene.util.fst.Outputs;
 
 public final class BlockTreeTermsReader extends FieldsProducer {
 
+  /** How the FST of the terms index of each field should be loaded. */
+  public enum FSTLoadMode {
+    /** Load the terms index on the heap. Lookups in the terms index never
+     *  perform I/O, but each open segment holds its whole terms index in
+     *  memory. This is the default. */
+    ON_HEAP,
+    /** Read the terms index directly from the index file on demand, which
+     *  then remains open. The terms index then barely uses heap memory,
+     *  but lookups are only fast when the file is cached by the OS,
+     *  typically via {@link MMapDirectory}. */
+    OFF_HEAP,
+    /** Read the terms index off-heap when the index file is memory-mapped
+     *  by a {@link MMapDirectory}, including within compound files, and load
+     *  it on the heap otherwise. */
+    AUTO
+  }
+
   static final Outputs<BytesRef> FST_OUTPUTS = ByteSequenceOutputs.getSingleton();
   
   static final BytesRef NO_OUTPUT = FST_OUTPUTS.getNoOutput();
@@ -140,8 +161,17 @@ public final class BlockTreeTermsReader extends FieldsProducer {
 
   final boolean anyAutoPrefixTerms;
 
-  /** Sole constructor. */
+  // Open input to the terms index file (_X.tip), only kept open if the
+  // terms index is read off-heap
+  private final IndexInput indexIn;
+
+  /** Create a new instance that loads the terms index with {@link FSTLoadMode#ON_HEAP}. */
   public BlockTreeTermsReader(PostingsReaderBase postingsReader, SegmentReadState state) throws IOException {
+    this(postingsReader, state, FSTLoadMode.ON_HEAP);
+  }
+
+  /** Create a new instance that loads the terms index according to the given {@link FSTLoadMode}. */
+  public BlockTreeTermsReader(PostingsReaderBase postingsReader, SegmentReadState state, FSTLoadMode fstLoadMode) throws IOException {
     boolean success = false;
     IndexInput indexIn = null;
     
@@ -177,6 +207,22 @@ public final class BlockTreeTermsReader extends FieldsProducer {
       CodecUtil.checkIndexHeader(indexIn, TERMS_INDEX_CODEC_NAME, version, version, state.segmentInfo.getId(), state.segmentSuffix);
       CodecUtil.checksumEntireFile(indexIn);
 
+      final boolean offHeapIndex;
+      switch (fstLoadMode) {
+        case ON_HEAP:
+          offHeapIndex = false;
+          break;
+        case OFF_HEAP:
+          offHeapIndex = true;
+          break;
+        case AUTO:
+          // check the input rather than the directory, which may be a compound file
+          offHeapIndex = MMapDirectory.isMemoryMapped(indexIn);
+          break;
+        default:
+          throw new AssertionError();
+      }
+
       // Have PostingsReader init itself
       postingsReader.init(termsIn, state);
       
@@ -233,13 +279,18 @@ public final class BlockTreeTermsReader extends FieldsProducer {
         final long indexStartFP = indexIn.readVLong();
         FieldReader previous = fields.put(fieldInfo.name,       
                                           new FieldReader(this, fieldInfo, numTerms, rootCode, sumTotalTermFreq, sumDocFreq, docCount,
-                                                          indexStartFP, longsSize, indexIn, minTerm, maxTerm));
+                                                          indexStartFP, longsSize, indexIn, offHeapIndex, minTerm, maxTerm));
         if (previous != null) {
           throw new CorruptIndexException("duplicate field: " + fieldInfo.name, termsIn);
         }
       }
       
-      indexIn.close();
+      if (offHeapIndex) {
+        this.indexIn = indexIn;
+      } else {
+        indexIn.close();
+        this.indexIn = null;
+      }
       success = true;
     } finally {
       if (!success) {
@@ -273,7 +324,7 @@ public final class BlockTreeTermsReader extends FieldsProducer {
   @Override
   public void close() throws IOException {
     try {
-      IOUtils.close(termsIn, postingsReader);
+      IOUtils.close(indexIn, termsIn, postingsReader);
     } finally { 
       // Clear so refs to terms index is GCable even if
       // app hangs onto us:
@@ -76,6 +76,27 @@ import org.apache.lucene.util.packed.PackedInts;
  */
 public final class CompressingStoredFieldsReader extends StoredFieldsReader {
 
+  private static volatile StoredFieldsChunkCache DEFAULT_CHUNK_CACHE;
+
+  /**
+   * Expert: Get the default {@link StoredFieldsChunkCache} or {@code null} if
+   * decompressed chunks are not cached.
+   * @lucene.internal
+   */
+  public static StoredFieldsChunkCache getDefaultChunkCache() {
+    return DEFAULT_CHUNK_CACHE;
+  }
+
+  /**
+   * Expert: set the default {@link StoredFieldsChunkCache} instance, or
+   * {@code null} to disable caching, which is the default. This only affects
+   * readers that are opened after this method is called.
+   * @lucene.internal
+   */
+  public static void setDefaultChunkCache(StoredFieldsChunkCache defaultChunkCache) {
+    DEFAULT_CHUNK_CACHE = defaultChunkCache;
+  }
+
   private final int version;
   private final FieldInfos fieldInfos;
   private final CompressingStoredFieldsIndexReader indexReader;
@@ -90,6 +111,8 @@ public final class CompressingStoredFieldsReader extends StoredFieldsReader {
   private final BlockState state;
   private final long numChunks; // number of compressed blocks written
   private final long numDirtyChunks; // number of incomplete compressed blocks written
+  private final StoredFieldsChunkCache chunkCache;
+  private final Object chunkCacheKey; // the reader that clones have been created from
   private boolean closed;
 
   // used by clone
@@ -107,6 +130,9 @@ public final class CompressingStoredFieldsReader extends StoredFieldsReader {
     this.numChunks = reader.numChunks;
     this.numDirtyChunks = reader.numDirtyChunks;
     this.merging = merging;
+    // merges read every chunk once, caching them would only evict chunks that searches reuse
+    this.chunkCache = merging ? null : reader.chunkCache;
+    this.chunkCacheKey = reader.chunkCacheKey;
     this.state = new BlockState();
     this.closed = false;
   }
@@ -119,6 +145,8 @@ public final class CompressingStoredFieldsReader extends StoredFieldsReader {
     boolean success = false;
     fieldInfos = fn;
     numDocs = si.maxDoc();
+    chunkCache = DEFAULT_CHUNK_CACHE;
+    chunkCacheKey = this;
     
     int version = -1;
     long maxPointer = -1;
@@ -202,6 +230,9 @@ public final class CompressingStoredFieldsReader extends StoredFieldsReader {
   @Override
   public void close() throws IOException {
     if (!closed) {
+      if (chunkCache != null && chunkCacheKey == this) {
+        chunkCache.clearCoreKey(chunkCacheKey);
+      }
       IOUtils.close(fieldsStream);
       closed = true;
     }
@@ -555,6 +586,19 @@ public final class CompressingStoredFieldsReader extends StoredFieldsReader {
           }
 
         };
+      } else if (chunkCache != null && merging == false) {
+        // decompress the whole chunk so that it can be reused for other documents
+        byte[] chunk = chunkCache.get(chunkCacheKey, startPointer);
+        if (chunk == null) {
+          fieldsStream.seek(startPointer);
+          decompressor.decompress(fieldsStream, totalLength, 0, totalLength, bytes);
+          if (bytes.length != totalLength) {
+            throw new CorruptIndexException("Corrupted: expected chunk size = " + totalLength + ", got " + bytes.length, fieldsStream);
+          }
+          chunk = Arrays.copyOfRange(bytes.bytes, bytes.offset, bytes.offset + bytes.length);
+          chunkCache.put(chunkCacheKey, startPointer, chunk);
+        }
+        documentInput = new ByteArrayDataInput(chunk, offset, length);
       } else {
         fieldsStream.seek(startPointer);
         decompressor.decompress(fieldsStream, totalLength, offset, length, bytes);
@@ -113,6 +113,34 @@ public abstract class CompressionMode {
 
   };
 
+  /**
+   * This compression mode is similar to {@link #FAST} but it compresses data
+   * in small blocks that all use the beginning of the data as a preset
+   * dictionary. This makes it possible to decompress a small part of the data,
+   * like a single document of a chunk of stored fields, by only decompressing
+   * the dictionary and the blocks that contain it. This mode is best used with
+   * indices that load few documents at a time, e.g. to display a page of
+   * search results, and whose documents are small.
+   */
+  public static final CompressionMode FAST_PRESET_DICT = new CompressionMode() {
+
+    @Override
+    public Compressor newCompressor() {
+      return new LZ4WithPresetDictCompressor();
+    }
+
+    @Override
+    public Decompressor newDecompressor() {
+      return new LZ4WithPresetDictDecompressor();
+    }
+
+    @Override
+    public String toString() {
+      return "FAST_PRESET_DICT";
+    }
+
+  };
+
   /** Sole constructor. */
   protected CompressionMode() {}
 
@@ -182,6 +210,118 @@ public abstract class CompressionMode {
 
   }
 
+  // data is split into a dictionary of 1/(NUM_SUB_BLOCKS*DICT_SIZE_FACTOR) of
+  // its length followed by NUM_SUB_BLOCKS blocks
+  private static final int NUM_SUB_BLOCKS = 8;
+  private static final int DICT_SIZE_FACTOR = 4;
+
+  private static final class LZ4WithPresetDictCompressor extends Compressor {
+
+    private final LZ4.HashTable ht;
+    private final GrowableByteArrayDataOutput compressed;
+    private byte[] buffer;
+
+    LZ4WithPresetDictCompressor() {
+      ht = new LZ4.HashTable();
+      compressed = new GrowableByteArrayDataOutput(1024);
+      buffer = new byte[0];
+    }
+
+    @Override
+    public void compress(byte[] bytes, int off, int len, DataOutput out) throws IOException {
+      final int dictLength = len / (NUM_SUB_BLOCKS * DICT_SIZE_FACTOR);
+      final int blockLength = (len - dictLength + NUM_SUB_BLOCKS - 1) / NUM_SUB_BLOCKS;
+      out.writeVInt(dictLength);
+      out.writeVInt(blockLength);
+
+      // the dictionary is compressed on its own, it is always decompressed
+      LZ4.compress(bytes, off, dictLength, out, ht);
+
+      // then blocks are compressed against the dictionary, they are prefixed
+      // with their compressed length so that they can be skipped
+      buffer = ArrayUtil.grow(buffer, dictLength + blockLength);
+      System.arraycopy(bytes, off, buffer, 0, dictLength);
+      final int end = off + len;
+      for (int start = off + dictLength; start < end; start += blockLength) {
+        final int length = Math.min(blockLength, end - start);
+        System.arraycopy(bytes, start, buffer, dictLength, length);
+        compressed.length = 0;
+        LZ4.compressWithDictionary(buffer, 0, dictLength, length, compressed, ht);
+        out.writeVInt(compressed.length);
+        out.writeBytes(compressed.bytes, compressed.length);
+      }
+    }
+
+  }
+
+  private static final class LZ4WithPresetDictDecompressor extends Decompressor {
+
+    private byte[] buffer;
+
+    LZ4WithPresetDictDecompressor() {
+      buffer = new byte[0];
+    }
+
+    @Override
+    public void decompress(DataInput in, int originalLength, int offset, int length, BytesRef bytes) throws IOException {
+      assert offset + length <= originalLength;
+      if (length == 0) {
+        bytes.length = 0;
+        return;
+      }
+      final int dictLength = in.readVInt();
+      final int blockLength = in.readVInt();
+      if (dictLength >= originalLength || blockLength <= 0) {
+        throw new CorruptIndexException("Corrupted: dictLength=" + dictLength + ", blockLength=" + blockLength
+            + ", originalLength=" + originalLength, in);
+      }
+
+      // add 7 padding bytes, this is not necessary but can help decompression run faster
+      buffer = ArrayUtil.grow(buffer, dictLength + blockLength + 7);
+      bytes.bytes = ArrayUtil.grow(bytes.bytes, length);
+      bytes.offset = bytes.length = 0;
+
+      // the dictionary is the beginning of the data
+      if (LZ4.decompress(in, dictLength, buffer, 0) != dictLength) {
+        throw new CorruptIndexException("Corrupted: lengths mismatch for the dictionary", in);
+      }
+      if (offset < dictLength) {
+        final int toCopy = Math.min(dictLength, offset + length) - offset;
+        System.arraycopy(buffer, offset, bytes.bytes, 0, toCopy);
+        bytes.length = toCopy;
+      }
+
+      // skip blocks that are before the requested range
+      int blockStart = dictLength;
+      while (blockStart + blockLength <= offset) {
+        in.skipBytes(in.readVInt());
+        blockStart += blockLength;
+      }
+
+      // decompress blocks that intersect with the requested range
+      while (blockStart < offset + length) {
+        in.readVInt(); // compressed length, not needed
+        final int toDecompress = Math.min(blockLength, offset + length - blockStart);
+        final int decompressed = LZ4.decompress(in, dictLength + toDecompress, buffer, dictLength) - dictLength;
+        if (decompressed > blockLength || blockStart + decompressed > originalLength) {
+          throw new CorruptIndexException("Corrupted: lengths mismatch: " + (blockStart + decompressed) + " > " + originalLength, in);
+        }
+        final int startInBlock = Math.max(0, offset - blockStart);
+        final int toCopy = toDecompress - startInBlock;
+        System.arraycopy(buffer, dictLength + startInBlock, bytes.bytes, bytes.length, toCopy);
+        bytes.length += toCopy;
+        blockStart += blockLength;
+      }
+      assert bytes.length == length;
+    }
+
+    @Override
+    public Decompressor clone() {
+      return new LZ4WithPresetDictDecompressor();
+    }
+
+  }
+
   private static final class DeflateDecompressor extends Decompressor {
 
     final Inflater decompressor;
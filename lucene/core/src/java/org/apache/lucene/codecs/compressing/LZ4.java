@@ -204,20 +204,46 @@ final class LZ4 {
    * but can safely be reused.
    */
   public static void compress(byte[] bytes, int off, int len, DataOutput out, HashTable ht) throws IOException {
+    compressWithDictionary(bytes, off, 0, len, out, ht);
+  }
 
-    final int base = off;
-    final int end = off + len;
+  /**
+   * Compress <code>bytes[dictOff+dictLen:dictOff+dictLen+len]</code> into
+   * <code>out</code> using at most 16KB of memory.
+   * <code>bytes[dictOff:dictOff+dictLen]</code> is used as a preset dictionary:
+   * it is not part of the compressed stream but matches may refer to it, so it
+   * needs to be written right before the destination offset when
+   * {@link #decompress decompressing}. The dictionary plus the data should not
+   * be larger than 64KB for the dictionary to be fully usable.
+   * <code>ht</code> shouldn't be shared across threads but can safely be
+   * reused.
+   */
+  public static void compressWithDictionary(byte[] bytes, int dictOff, int dictLen, int len, DataOutput out, HashTable ht) throws IOException {
 
-    int anchor = off++;
+    final int base = dictOff;
+    final int start = dictOff + dictLen;
+    final int end = start + len;
+
+    int anchor = start;
+    int off = start;
+    if (dictLen == 0) {
+      // the first byte can't be a match
+      ++off;
+    }
 
     if (len > LAST_LITERALS + MIN_MATCH) {
 
       final int limit = end - LAST_LITERALS;
       final int matchLimit = limit - MIN_MATCH;
-      ht.reset(len);
+      ht.reset(dictLen + len);
       final int hashLog = ht.hashLog;
       final PackedInts.Mutable hashTable = ht.hashTable;
 
+      // index the dictionary
+      for (int i = base; i < start; ++i) {
+        hashTable.set(hash(readInt(bytes, i), hashLog), i - base);
+      }
+
       main:
       while (off <= limit) {
         // find a match
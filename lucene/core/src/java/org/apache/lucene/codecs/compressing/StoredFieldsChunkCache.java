@@ -0,0 +1,322 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.codecs.compressing;
+
+
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.RamUsageEstimator;
+
+/**
+ * A cache of decompressed chunks of stored fields, which is shared across
+ * all {@link CompressingStoredFieldsReader}s, see
+ * {@link CompressingStoredFieldsReader#setDefaultChunkCache}. Since readers
+ * are shared by all {@link org.apache.lucene.index.IndexReader}s that have
+ * the same segment, the cache survives reopens. Chunks are spread over
+ * shards that are locked independently, each shard evicts its chunks in
+ * least-recently-used order when it is full, and the chunks of a segment
+ * are evicted when its stored fields reader is closed.
+ * <p>
+ * Only chunks of documents that are smaller than the chunk size are cached,
+ * large documents that are split over several chunks are always
+ * decompressed.
+ * <p>
+ * This class is thread-safe.
+ * @lucene.experimental
+ */
+public final class StoredFieldsChunkCache implements Accountable {
+
+  /** Default number of shards, see {@link #StoredFieldsChunkCache(long, int)}. */
+  public static final int DEFAULT_NUM_SHARDS = 16;
+
+  private static final long KEY_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(Key.class);
+
+  private static final long LINKED_HASHTABLE_RAM_BYTES_PER_ENTRY =
+      2 * RamUsageEstimator.NUM_BYTES_OBJECT_REF // key + value
+      * 2 // hash tables need to be oversized to avoid collisions, assume 2x capacity
+      + 2 * RamUsageEstimator.NUM_BYTES_OBJECT_REF; // previous & next references
+
+  private static final long HASHSET_RAM_BYTES_PER_ENTRY =
+      2 * RamUsageEstimator.NUM_BYTES_OBJECT_REF // key + value of the backing map
+      * 2; // hash tables need to be oversized to avoid collisions, assume 2x capacity
+
+  private final long maxRamBytesUsed;
+  private final Shard[] shards;
+
+  /**
+   * Create a new instance that will cache at most <code>maxRamBytesUsed</code>
+   * bytes of decompressed chunks, split over {@link #DEFAULT_NUM_SHARDS}
+   * shards.
+   */
+  public StoredFieldsChunkCache(long maxRamBytesUsed) {
+    this(maxRamBytesUsed, DEFAULT_NUM_SHARDS);
+  }
+
+  /**
+   * Create a new instance that will cache at most <code>maxRamBytesUsed</code>
+   * bytes of decompressed chunks. Chunks are spread over
+   * <code>numShards</code> shards that are locked independently, so that
+   * concurrent reads rarely wait on each other. Each shard evicts its own
+   * chunks in least-recently-used order once it uses more than
+   * <code>maxRamBytesUsed / numShards</code> bytes, chunks that are larger
+   * than that are never cached.
+   */
+  public StoredFieldsChunkCache(long maxRamBytesUsed, int numShards) {
+    if (maxRamBytesUsed < 0) {
+      throw new IllegalArgumentException("maxRamBytesUsed must be >= 0, got " + maxRamBytesUsed);
+    }
+    if (numShards < 1) {
+      throw new IllegalArgumentException("numShards must be >= 1, got " + numShards);
+    }
+    this.maxRamBytesUsed = maxRamBytesUsed;
+    this.shards = new Shard[numShards];
+    for (int i = 0; i < numShards; ++i) {
+      shards[i] = new Shard(maxRamBytesUsed / numShards);
+    }
+  }
+
+  private static long chunkRamBytesUsed(byte[] chunk) {
+    return LINKED_HASHTABLE_RAM_BYTES_PER_ENTRY + HASHSET_RAM_BYTES_PER_ENTRY + KEY_RAM_BYTES_USED + RamUsageEstimator.sizeOf(chunk);
+  }
+
+  private Shard shard(Key key) {
+    // spread the bits of the hash so that all shards are used
+    final int hash = key.hashCode();
+    return shards[Math.floorMod(hash ^ (hash >>> 16), shards.length)];
+  }
+
+  /**
+   * Return the decompressed chunk of the segment identified by
+   * <code>coreKey</code> that starts at <code>startPointer</code>, or
+   * <code>null</code> if it is not cached.
+   */
+  byte[] get(Object coreKey, long startPointer) {
+    final Key key = new Key(coreKey, startPointer);
+    return shard(key).get(key);
+  }
+
+  /**
+   * Cache a decompressed chunk. The array must not be modified after it has
+   * been added to the cache.
+   */
+  void put(Object coreKey, long startPointer, byte[] chunk) {
+    final Key key = new Key(coreKey, startPointer);
+    shard(key).put(key, chunk);
+  }
+
+  /**
+   * Remove all chunks of the segment identified by <code>coreKey</code>. This
+   * only visits the chunks of this segment.
+   */
+  void clearCoreKey(Object coreKey) {
+    for (Shard shard : shards) {
+      shard.clearCoreKey(coreKey);
+    }
+  }
+
+  /** Remove all chunks from this cache. */
+  public void clear() {
+    for (Shard shard : shards) {
+      shard.clear();
+    }
+  }
+
+  /** Return the number of chunks that are currently cached. */
+  public int getCacheSize() {
+    int size = 0;
+    for (Shard shard : shards) {
+      size += shard.size();
+    }
+    return size;
+  }
+
+  /**
+   * Return the number of times that a chunk was found in the cache.
+   * @see #getMissCount()
+   */
+  public long getHitCount() {
+    long hitCount = 0;
+    for (Shard shard : shards) {
+      hitCount += shard.hitCount.sum();
+    }
+    return hitCount;
+  }
+
+  /**
+   * Return the number of times that a chunk was looked up and was not found
+   * in the cache.
+   * @see #getHitCount()
+   */
+  public long getMissCount() {
+    long missCount = 0;
+    for (Shard shard : shards) {
+      missCount += shard.missCount.sum();
+    }
+    return missCount;
+  }
+
+  /**
+   * Return the number of chunks that have been evicted because the cache was
+   * full.
+   */
+  public long getEvictionCount() {
+    long evictionCount = 0;
+    for (Shard shard : shards) {
+      evictionCount += shard.evictionCount();
+    }
+    return evictionCount;
+  }
+
+  @Override
+  public long ramBytesUsed() {
+    long ramBytesUsed = 0;
+    for (Shard shard : shards) {
+      ramBytesUsed += shard.ramBytesUsed();
+    }
+    return ramBytesUsed;
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "(maxRamBytesUsed=" + maxRamBytesUsed + ", numShards=" + shards.length + ")";
+  }
+
+  /**
+   * A least-recently-used cache of chunks, which also indexes its chunks by
+   * segment so that the chunks of a segment can be removed without visiting
+   * the chunks of other segments.
+   */
+  private static final class Shard {
+
+    final long maxRamBytesUsed;
+    final Map<Key, byte[]> cache = new LinkedHashMap<>(16, 0.75f, true);
+    final Map<Object, Set<Key>> keysByCoreKey = new IdentityHashMap<>();
+    // hits and misses are counted outside of the lock
+    final LongAdder hitCount = new LongAdder(), missCount = new LongAdder();
+    long ramBytesUsed;
+    long evictionCount;
+
+    Shard(long maxRamBytesUsed) {
+      this.maxRamBytesUsed = maxRamBytesUsed;
+    }
+
+    byte[] get(Key key) {
+      final byte[] chunk;
+      synchronized (this) {
+        chunk = cache.get(key);
+      }
+      if (chunk == null) {
+        missCount.increment();
+      } else {
+        hitCount.increment();
+      }
+      return chunk;
+    }
+
+    synchronized void put(Key key, byte[] chunk) {
+      final long chunkBytes = chunkRamBytesUsed(chunk);
+      if (chunkBytes > maxRamBytesUsed) {
+        return;
+      }
+      final byte[] previous = cache.put(key, chunk);
+      if (previous != null) {
+        // another thread decompressed the same chunk concurrently
+        ramBytesUsed -= chunkRamBytesUsed(previous);
+      } else {
+        keysByCoreKey.computeIfAbsent(key.coreKey, k -> new HashSet<>()).add(key);
+      }
+      ramBytesUsed += chunkBytes;
+      for (Iterator<Map.Entry<Key, byte[]>> iterator = cache.entrySet().iterator(); ramBytesUsed > maxRamBytesUsed; ) {
+        final Map.Entry<Key, byte[]> entry = iterator.next();
+        ramBytesUsed -= chunkRamBytesUsed(entry.getValue());
+        iterator.remove();
+        removeFromCoreKeyIndex(entry.getKey());
+        evictionCount++;
+      }
+    }
+
+    private void removeFromCoreKeyIndex(Key key) {
+      final Set<Key> keys = keysByCoreKey.get(key.coreKey);
+      keys.remove(key);
+      if (keys.isEmpty()) {
+        keysByCoreKey.remove(key.coreKey);
+      }
+    }
+
+    synchronized void clearCoreKey(Object coreKey) {
+      final Set<Key> keys = keysByCoreKey.remove(coreKey);
+      if (keys != null) {
+        for (Key key : keys) {
+          ramBytesUsed -= chunkRamBytesUsed(cache.remove(key));
+        }
+      }
+    }
+
+    synchronized void clear() {
+      cache.clear();
+      keysByCoreKey.clear();
+      ramBytesUsed = 0;
+    }
+
+    synchronized int size() {
+      return cache.size();
+    }
+
+    synchronized long evictionCount() {
+      return evictionCount;
+    }
+
+    synchronized long ramBytesUsed() {
+      return ramBytesUsed;
+    }
+
+  }
+
+  private static final class Key {
+
+    final Object coreKey;
+    final long startPointer;
+
+    Key(Object coreKey, long startPointer) {
+      this.coreKey = coreKey;
+      this.startPointer = startPointer;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (obj == null || obj.getClass() != getClass()) {
+        return false;
+      }
+      final Key that = (Key) obj;
+      return coreKey == that.coreKey && startPointer == that.startPointer;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * System.identityHashCode(coreKey) + Long.hashCode(startPointer);
+    }
+
+  }
+
+}
@@ -25,14 +25,17 @@ import org.apache.lucene.codecs.LiveDocsFormat;
 import org.apache.lucene.index.CorruptIndexException;
 import org.apache.lucene.index.IndexFileNames;
 import org.apache.lucene.index.SegmentCommitInfo;
+import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.store.ChecksumIndexInput;
 import org.apache.lucene.store.DataOutput;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.IOContext;
 import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.util.BitSetIterator;
 import org.apache.lucene.util.Bits;
 import org.apache.lucene.util.FixedBitSet;
 import org.apache.lucene.util.MutableBits;
+import org.apache.lucene.util.SparseFixedBitSet;
 
 /** 
  * Lucene 5.0 live docs format 
@@ -40,11 +43,21 @@ import org.apache.lucene.util.MutableBits;
  * deletions.
  * <p>Although per-segment, this file is maintained exterior to compound segment
  * files.
- * <p>Deletions (.liv) --&gt; IndexHeader,Generation,Bits
+ * <p>Deletions (.liv) --&gt; IndexHeader,Encoding,(Bits|DeletedDocs),Footer
  * <ul>
  *   <li>SegmentHeader --&gt; {@link CodecUtil#writeIndexHeader IndexHeader}</li>
+ *   <li>Encoding --&gt; {@link DataOutput#writeByte Byte}: 0 for Bits and 1 for DeletedDocs</li>
  *   <li>Bits --&gt; &lt;{@link DataOutput#writeLong Int64}&gt; <sup>LongCount</sup></li>
+ *   <li>DeletedDocs --&gt; DeletedCount,&lt;DocDelta&gt; <sup>DeletedCount</sup></li>
+ *   <li>DeletedCount,DocDelta --&gt; {@link DataOutput#writeVInt VInt}</li>
+ *   <li>Footer --&gt; {@link CodecUtil#writeFooter CodecFooter}</li>
  * </ul>
+ * <p>Segments with few deletions only record the deleted documents, as deltas
+ * between consecutive deleted doc IDs, and are also represented in memory with
+ * a structure whose size depends on the number of deleted documents rather
+ * than on the number of documents in the segment. Other segments record a
+ * bit per document, which is set if the document is live. Indices that were
+ * written before the Encoding byte was added always use Bits.
  */
 public final class Lucene50LiveDocsFormat extends LiveDocsFormat {
   
@@ -60,19 +73,49 @@ public final class Lucene50LiveDocsFormat extends LiveDocsFormat {
   
   /** supported version range */
   private static final int VERSION_START = 0;
-  private static final int VERSION_CURRENT = VERSION_START;
+  private static final int VERSION_SPARSE = 1;
+  private static final int VERSION_CURRENT = VERSION_SPARSE;
+
+  private static final byte DENSE = 0;
+  private static final byte SPARSE = 1;
+
+  /** Segments are considered to have few deletions if at most 1 document out
+   *  of 2^SPARSE_SHIFT is deleted. */
+  static final int SPARSE_SHIFT = 7;
+
+  /** Return whether the deleted documents of a segment that has
+   *  {@code maxDoc} documents and {@code delCount} deletions should be stored
+   *  in a sparse structure. */
+  static boolean isSparse(int maxDoc, int delCount) {
+    return delCount <= maxDoc >>> SPARSE_SHIFT;
+  }
 
   @Override
   public MutableBits newLiveDocs(int size) throws IOException {
-    FixedBitSet bits = new FixedBitSet(size);
-    bits.set(0, size);
-    return bits;
+    // segments start with no deletions
+    return new SparseLiveDocs(size);
   }
 
   @Override
   public MutableBits newLiveDocs(Bits existing) throws IOException {
-    FixedBitSet fbs = (FixedBitSet) existing;
-    return fbs.clone();
+    // the copy is also an opportunity to switch to the most appropriate
+    // representation for the current number of deletions
+    if (existing instanceof SparseLiveDocs) {
+      SparseLiveDocs sparse = (SparseLiveDocs) existing;
+      if (isSparse(sparse.length(), sparse.deletedCount)) {
+        return sparse.clone();
+      } else {
+        return sparse.toFixedBitSet();
+      }
+    } else {
+      FixedBitSet fbs = (FixedBitSet) existing;
+      final int delCount = fbs.length() - fbs.cardinality();
+      if (isSparse(fbs.length(), delCount)) {
+        return SparseLiveDocs.fromFixedBitSet(fbs, delCount);
+      } else {
+        return fbs.clone();
+      }
+    }
   }
 
   @Override
@@ -83,8 +126,14 @@ public final class Lucene50LiveDocsFormat extends LiveDocsFormat {
     try (ChecksumIndexInput input = dir.openChecksumInput(name, context)) {
       Throwable priorE = null;
       try {
-        CodecUtil.checkIndexHeader(input, CODEC_NAME, VERSION_START, VERSION_CURRENT, 
+        final int version = CodecUtil.checkIndexHeader(input, CODEC_NAME, VERSION_START, VERSION_CURRENT, 
                                      info.info.getId(), Long.toString(gen, Character.MAX_RADIX));
+        final byte encoding = version >= VERSION_SPARSE ? input.readByte() : DENSE;
+        if (encoding == SPARSE) {
+          return readSparse(input, length, info.getDelCount());
+        } else if (encoding != DENSE) {
+          throw new CorruptIndexException("invalid encoding: " + encoding, input);
+        }
         long data[] = new long[FixedBitSet.bits2words(length)];
         for (int i = 0; i < data.length; i++) {
           data[i] = input.readLong();
@@ -104,29 +153,188 @@ public final class Lucene50LiveDocsFormat extends LiveDocsFormat {
     throw new AssertionError();
   }
 
+  private static Bits readSparse(ChecksumIndexInput input, int length, int expectedDelCount) throws IOException {
+    final int delCount = input.readVInt();
+    if (delCount != expectedDelCount) {
+      throw new CorruptIndexException("bits.deleted=" + delCount + " info.delcount=" + expectedDelCount, input);
+    }
+    final SparseLiveDocs liveDocs = new SparseLiveDocs(length);
+    int doc = -1;
+    for (int i = 0; i < delCount; ++i) {
+      doc += input.readVInt();
+      if (doc < 0 || doc >= length || liveDocs.get(doc) == false) {
+        throw new CorruptIndexException("invalid deleted doc: " + doc + ", maxDoc=" + length, input);
+      }
+      liveDocs.clear(doc);
+    }
+    return liveDocs;
+  }
+
   @Override
   public void writeLiveDocs(MutableBits bits, Directory dir, SegmentCommitInfo info, int newDelCount, IOContext context) throws IOException {
     long gen = info.getNextDelGen();
     String name = IndexFileNames.fileNameFromGeneration(info.info.name, EXTENSION, gen);
-    FixedBitSet fbs = (FixedBitSet) bits;
-    if (fbs.length() - fbs.cardinality() != info.getDelCount() + newDelCount) {
-      throw new CorruptIndexException("bits.deleted=" + (fbs.length() - fbs.cardinality()) + 
+    final int delCount;
+    if (bits instanceof SparseLiveDocs) {
+      delCount = ((SparseLiveDocs) bits).deletedCount;
+    } else {
+      FixedBitSet fbs = (FixedBitSet) bits;
+      delCount = fbs.length() - fbs.cardinality();
+    }
+    if (delCount != info.getDelCount() + newDelCount) {
+      throw new CorruptIndexException("bits.deleted=" + delCount + 
                                       " info.delcount=" + info.getDelCount() + " newdelcount=" + newDelCount, name);
     }
-    long data[] = fbs.getBits();
     try (IndexOutput output = dir.createOutput(name, context)) {
       CodecUtil.writeIndexHeader(output, CODEC_NAME, VERSION_CURRENT, info.info.getId(), Long.toString(gen, Character.MAX_RADIX));
-      for (int i = 0; i < data.length; i++) {
-        output.writeLong(data[i]);
+      if (isSparse(bits.length(), delCount)) {
+        output.writeByte(SPARSE);
+        output.writeVInt(delCount);
+        final DocIdSetIterator deletedDocs = bits instanceof SparseLiveDocs
+            ? ((SparseLiveDocs) bits).deletedDocsIterator()
+            : deletedDocsIterator((FixedBitSet) bits);
+        int previousDoc = -1;
+        for (int doc = deletedDocs.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = deletedDocs.nextDoc()) {
+          output.writeVInt(doc - previousDoc);
+          previousDoc = doc;
+        }
+      } else {
+        output.writeByte(DENSE);
+        final long data[] = bits instanceof SparseLiveDocs
+            ? ((SparseLiveDocs) bits).toFixedBitSet().getBits()
+            : ((FixedBitSet) bits).getBits();
+        for (int i = 0; i < data.length; i++) {
+          output.writeLong(data[i]);
+        }
       }
       CodecUtil.writeFooter(output);
     }
   }
 
+  /** Return an iterator over the clear bits of the given {@link FixedBitSet}. */
+  private static DocIdSetIterator deletedDocsIterator(FixedBitSet liveDocs) {
+    final long[] bits = liveDocs.getBits();
+    final int length = liveDocs.length();
+    return new DocIdSetIterator() {
+      int doc = -1;
+
+      @Override
+      public int docID() {
+        return doc;
+      }
+
+      @Override
+      public int nextDoc() {
+        return advance(doc + 1);
+      }
+
+      @Override
+      public int advance(int target) {
+        if (target >= length) {
+          return doc = NO_MORE_DOCS;
+        }
+        int i = target >> 6;
+        long word = ~bits[i] >>> target; // shifts are mod 64
+        if (word != 0) {
+          return doc = checkLength(target + Long.numberOfTrailingZeros(word));
+        }
+        while (++i < bits.length) {
+          word = ~bits[i];
+          if (word != 0) {
+            return doc = checkLength((i << 6) + Long.numberOfTrailingZeros(word));
+          }
+        }
+        return doc = NO_MORE_DOCS;
+      }
+
+      // ghost bits after the last document are clear
+      private int checkLength(int doc) {
+        return doc < length ? doc : NO_MORE_DOCS;
+      }
+
+      @Override
+      public long cost() {
+        return length;
+      }
+    };
+  }
+
   @Override
   public void files(SegmentCommitInfo info, Collection<String> files) throws IOException {
     if (info.hasDeletions()) {
       files.add(IndexFileNames.fileNameFromGeneration(info.info.name, EXTENSION, info.getDelGen()));
     }
   }
+
+  /**
+   * Live docs of a segment that has few deletions: only the deleted
+   * documents are stored, in a {@link SparseFixedBitSet}, so that memory
+   * usage and the cost of copies depend on the number of deleted documents
+   * rather than on the number of documents in the segment.
+   */
+  static final class SparseLiveDocs implements MutableBits {
+
+    private final SparseFixedBitSet deletedDocs;
+    int deletedCount;
+
+    SparseLiveDocs(int maxDoc) {
+      deletedDocs = new SparseFixedBitSet(maxDoc);
+    }
+
+    static SparseLiveDocs fromFixedBitSet(FixedBitSet liveDocs, int delCount) throws IOException {
+      final SparseLiveDocs sparse = new SparseLiveDocs(liveDocs.length());
+      sparse.deletedDocs.or(Lucene50LiveDocsFormat.deletedDocsIterator(liveDocs));
+      sparse.deletedCount = delCount;
+      return sparse;
+    }
+
+    @Override
+    public boolean get(int index) {
+      return deletedDocs.get(index) == false;
+    }
+
+    @Override
+    public int length() {
+      return deletedDocs.length();
+    }
+
+    @Override
+    public void clear(int index) {
+      if (deletedDocs.get(index) == false) {
+        deletedDocs.set(index);
+        deletedCount++;
+      }
+    }
+
+    DocIdSetIterator deletedDocsIterator() {
+      return new BitSetIterator(deletedDocs, deletedCount);
+    }
+
+    FixedBitSet toFixedBitSet() throws IOException {
+      final FixedBitSet liveDocs = new FixedBitSet(length());
+      liveDocs.set(0, length());
+      final DocIdSetIterator it = deletedDocsIterator();
+      for (int doc = it.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = it.nextDoc()) {
+        liveDocs.clear(doc);
+      }
+      return liveDocs;
+    }
+
+    @Override
+    public SparseLiveDocs clone() {
+      final SparseLiveDocs clone = new SparseLiveDocs(length());
+      try {
+        clone.deletedDocs.or(deletedDocsIterator());
+      } catch (IOException e) {
+        throw new AssertionError(e); // cannot happen: the iterator is in memory
+      }
+      clone.deletedCount = deletedCount;
+      return clone;
+    }
+
+    @Override
+    public String toString() {
+      return "SparseLiveDocs(maxDoc=" + length() + ",deleted=" + deletedCount + ")";
+    }
+  }
 }
@@ -19,6 +19,7 @@ package org.apache.lucene.codecs.lucene50;
 
 
 import java.io.IOException;
+import java.util.Objects;
 
 import org.apache.lucene.codecs.BlockTermState;
 import org.apache.lucene.codecs.CodecUtil;
@@ -29,6 +30,7 @@ import org.apache.lucene.codecs.PostingsFormat;
 import org.apache.lucene.codecs.PostingsReaderBase;
 import org.apache.lucene.codecs.PostingsWriterBase;
 import org.apache.lucene.codecs.blocktree.BlockTreeTermsReader;
+import org.apache.lucene.codecs.blocktree.BlockTreeTermsReader.FSTLoadMode;
 import org.apache.lucene.codecs.blocktree.BlockTreeTermsWriter;
 import org.apache.lucene.index.IndexOptions;
 import org.apache.lucene.index.SegmentReadState;
@@ -195,10 +197,10 @@ import org.apache.lucene.util.packed.PackedInts;
  *   <li>SkipData --&gt; &lt;&lt;SkipLevelLength, SkipLevel&gt;
  *       <sup>NumSkipLevels-1</sup>, SkipLevel&gt;, SkipDatum?</li>
  *   <li>SkipLevel --&gt; &lt;SkipDatum&gt; <sup>TrimmedDocFreq/(PackedBlockSize^(Level + 1))</sup></li>
- *   <li>SkipDatum --&gt; DocSkip, DocFPSkip, &lt;PosFPSkip, PosBlockOffset, PayLength?, 
+ *   <li>SkipDatum --&gt; DocSkip, DocFPSkip, MaxFreq?, &lt;PosFPSkip, PosBlockOffset, PayLength?, 
  *                        PayFPSkip?&gt;?, SkipChildLevelPointer?</li>
  *   <li>PackedDocDeltaBlock, PackedFreqBlock --&gt; {@link PackedInts PackedInts}</li>
- *   <li>DocDelta, Freq, DocSkip, DocFPSkip, PosFPSkip, PosBlockOffset, PayByteUpto, PayFPSkip 
+ *   <li>DocDelta, Freq, DocSkip, DocFPSkip, MaxFreq, PosFPSkip, PosBlockOffset, PayByteUpto, PayFPSkip 
  *       --&gt; 
  *   {@link DataOutput#writeVInt VInt}</li>
  *   <li>SkipChildLevelPointer --&gt; {@link DataOutput#writeVLong VLong}</li>
@@ -251,6 +253,10 @@ import org.apache.lucene.util.packed.PackedInts;
  *       PackedBlockSize+1<sup>th</sup>, 2*PackedBlockSize+1<sup>th</sup> ... , in DocFile. 
  *       The file offsets are relative to the start of current term's TermFreqs. 
  *       On disk it is also stored as the difference from previous SkipDatum in the sequence.</li>
+ *   <li>MaxFreq records the maximum term frequency of the documents that are covered by
+ *       this skip entry, ie. the documents after the previous SkipDatum on the same level
+ *       up to DocSkip, included. It is only stored when frequencies are indexed, and allows
+ *       scorers to skip over blocks that cannot produce competitive scores.</li>
  *   <li>Since positions and payloads are also block encoded, the skip should skip to related block first,
  *       then fetch the values according to in-block offset. PosFPSkip and PayFPSkip record the file 
  *       offsets of related block in .pos and .pay, respectively. While PosBlockOffset indicates
@@ -384,10 +390,12 @@ public final class Lucene50PostingsFormat extends PostingsFormat {
 
   // Increment version to change it
   final static int VERSION_START = 0;
-  final static int VERSION_CURRENT = VERSION_START;
+  final static int VERSION_IMPACT_SKIP_DATA = 1;
+  final static int VERSION_CURRENT = VERSION_IMPACT_SKIP_DATA;
 
   private final int minTermBlockSize;
   private final int maxTermBlockSize;
+  private final FSTLoadMode fstLoadMode;
 
   /**
    * Fixed packed block size, number of integers encoded in 
@@ -397,20 +405,34 @@ public final class Lucene50PostingsFormat extends PostingsFormat {
   public final static int BLOCK_SIZE = 128;
 
   /** Creates {@code Lucene50PostingsFormat} with default
-   *  settings. */
+   *  settings. The terms index is loaded with {@link FSTLoadMode#ON_HEAP}. */
   public Lucene50PostingsFormat() {
     this(BlockTreeTermsWriter.DEFAULT_MIN_BLOCK_SIZE, BlockTreeTermsWriter.DEFAULT_MAX_BLOCK_SIZE);
   }
 
   /** Creates {@code Lucene50PostingsFormat} with custom
    *  values for {@code minBlockSize} and {@code
-   *  maxBlockSize} passed to block terms dictionary.
+   *  maxBlockSize} passed to block terms dictionary. The terms
+   *  index is loaded with {@link FSTLoadMode#ON_HEAP}.
    *  @see BlockTreeTermsWriter#BlockTreeTermsWriter(SegmentWriteState,PostingsWriterBase,int,int) */
   public Lucene50PostingsFormat(int minTermBlockSize, int maxTermBlockSize) {
+    this(minTermBlockSize, maxTermBlockSize, FSTLoadMode.ON_HEAP);
+  }
+
+  /** Creates {@code Lucene50PostingsFormat} with custom
+   *  values for {@code minBlockSize} and {@code
+   *  maxBlockSize} passed to block terms dictionary, and a
+   *  custom {@link FSTLoadMode} for the terms index.
+   *  <p><b>NOTE</b>: the load mode only applies to segments that are
+   *  read with this instance, while readers of existing indices
+   *  resolve postings formats by name with the default settings.
+   *  @see BlockTreeTermsReader#BlockTreeTermsReader(PostingsReaderBase,SegmentReadState,FSTLoadMode) */
+  public Lucene50PostingsFormat(int minTermBlockSize, int maxTermBlockSize, FSTLoadMode fstLoadMode) {
     super("Lucene50");
     BlockTreeTermsWriter.validateSettings(minTermBlockSize, maxTermBlockSize);
     this.minTermBlockSize = minTermBlockSize;
     this.maxTermBlockSize = maxTermBlockSize;
+    this.fstLoadMode = Objects.requireNonNull(fstLoadMode);
   }
 
   @Override
@@ -442,7 +464,7 @@ public final class Lucene50PostingsFormat extends PostingsFormat {
     PostingsReaderBase postingsReader = new Lucene50PostingsReader(state);
     boolean success = false;
     try {
-      FieldsProducer ret = new BlockTreeTermsReader(postingsReader, state);
+      FieldsProducer ret = new BlockTreeTermsReader(postingsReader, state, fstLoadMode);
       success = true;
       return ret;
     } finally {
@@ -25,6 +25,7 @@ import org.apache.lucene.codecs.CodecUtil;
 import org.apache.lucene.codecs.PostingsReaderBase;
 import org.apache.lucene.codecs.lucene50.Lucene50PostingsFormat.IntBlockTermState;
 import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.ImpactsEnum;
 import org.apache.lucene.index.IndexFileNames;
 import org.apache.lucene.index.IndexOptions;
 import org.apache.lucene.index.PostingsEnum;
@@ -45,6 +46,7 @@ import static org.apache.lucene.codecs.lucene50.Lucene50PostingsFormat.PAY_CODEC
 import static org.apache.lucene.codecs.lucene50.Lucene50PostingsFormat.POS_CODEC;
 import static org.apache.lucene.codecs.lucene50.Lucene50PostingsFormat.TERMS_CODEC;
 import static org.apache.lucene.codecs.lucene50.Lucene50PostingsFormat.VERSION_CURRENT;
+import static org.apache.lucene.codecs.lucene50.Lucene50PostingsFormat.VERSION_IMPACT_SKIP_DATA;
 import static org.apache.lucene.codecs.lucene50.Lucene50PostingsFormat.VERSION_START;
 
 /**
@@ -234,7 +236,7 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
     }
   }
 
-  final class BlockDocsEnum extends PostingsEnum {
+  final class BlockDocsEnum extends ImpactsEnum {
     private final byte[] encoded;
     
     private final int[] docDeltaBuffer = new int[MAX_DATA_SIZE];
@@ -245,6 +247,13 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
     private Lucene50SkipReader skipper;
     private boolean skipped;
 
+    // a separate skipper to move through the skip data without moving the
+    // doc iterator, see advanceShallow
+    private Lucene50SkipReader impactsSkipper;
+    private boolean impactsSkipped;
+    private int shallowTarget;
+    private int nextShallowSkipDoc;
+
     final IndexInput startDocIn;
 
     IndexInput docIn;
@@ -252,9 +261,11 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
     final boolean indexHasPos;
     final boolean indexHasOffsets;
     final boolean indexHasPayloads;
+    final boolean hasMaxFreqs;
 
     private int docFreq;                              // number of docs in this posting list
     private long totalTermFreq;                       // sum of freqs in this posting list (or docFreq when omitted)
+    private int maxFreq;                              // upper bound of the freq of all docs in this posting list
     private int docUpto;                              // how many docs we've read
     private int doc;                                  // doc we last read
     private int accum;                                // accumulator for doc deltas
@@ -282,6 +293,7 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
       indexHasPos = fieldInfo.getIndexOptions().compareTo(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS) >= 0;
       indexHasOffsets = fieldInfo.getIndexOptions().compareTo(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS_AND_OFFSETS) >= 0;
       indexHasPayloads = fieldInfo.hasPayloads();
+      hasMaxFreqs = indexHasFreq && version >= VERSION_IMPACT_SKIP_DATA;
       encoded = new byte[MAX_ENCODED_SIZE];    
     }
 
@@ -295,6 +307,8 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
     public PostingsEnum reset(IntBlockTermState termState, int flags) throws IOException {
       docFreq = termState.docFreq;
       totalTermFreq = indexHasFreq ? termState.totalTermFreq : docFreq;
+      // all docs have a freq of at least 1
+      maxFreq = (int) Math.min(Integer.MAX_VALUE, totalTermFreq - docFreq + 1);
       docTermStartFP = termState.docStartFP;
       skipOffset = termState.skipOffset;
       singletonDocID = termState.singletonDocID;
@@ -316,6 +330,9 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
       nextSkipDoc = BLOCK_SIZE - 1; // we won't skip if target is found in first block
       docBufferUpto = BLOCK_SIZE;
       skipped = false;
+      impactsSkipped = false;
+      shallowTarget = -1;
+      nextShallowSkipDoc = -1;
       return this;
     }
     
@@ -324,6 +341,51 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
       return freq;
     }
 
+    @Override
+    public int advanceShallow(int target) throws IOException {
+      assert target >= shallowTarget;
+      shallowTarget = target;
+      if (docFreq <= BLOCK_SIZE || hasMaxFreqs == false) {
+        // no skip data: a single block whose max freq is known from the term stats
+        return nextShallowSkipDoc = NO_MORE_DOCS;
+      }
+      if (target > nextShallowSkipDoc) {
+        if (impactsSkipper == null) {
+          impactsSkipper = new Lucene50SkipReader(docIn.clone(),
+                                                  MAX_SKIP_LEVELS,
+                                                  hasMaxFreqs,
+                                                  indexHasPos,
+                                                  indexHasOffsets,
+                                                  indexHasPayloads);
+        }
+        if (!impactsSkipped) {
+          assert skipOffset != -1;
+          impactsSkipper.init(docTermStartFP+skipOffset, docTermStartFP, 0, 0, docFreq);
+          impactsSkipped = true;
+        }
+        // skip docs are never less than 1 since they are the last doc of a
+        // full block, so this makes sure that the first entry gets loaded
+        impactsSkipper.skipTo(Math.max(target, 1));
+        nextShallowSkipDoc = impactsSkipper.getNextSkipDoc();
+        if (nextShallowSkipDoc == Integer.MAX_VALUE) {
+          // the tail of the postings list is not covered by skip data
+          nextShallowSkipDoc = NO_MORE_DOCS;
+        }
+      }
+      return nextShallowSkipDoc;
+    }
+
+    @Override
+    public int getMaxFreq(int upTo) throws IOException {
+      if (impactsSkipped && shallowTarget <= nextShallowSkipDoc) {
+        final int blockMaxFreq = impactsSkipper.getMaxFreq(Math.max(shallowTarget, 1), upTo);
+        if (blockMaxFreq != -1) {
+          return Math.min(blockMaxFreq, maxFreq);
+        }
+      }
+      return maxFreq;
+    }
+
     @Override
     public int nextPosition() throws IOException {
       return -1;
@@ -403,6 +465,7 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
           // Lazy init: first time this enum has ever been used for skipping
           skipper = new Lucene50SkipReader(docIn.clone(),
                                            MAX_SKIP_LEVELS,
+                                           hasMaxFreqs,
                                            indexHasPos,
                                            indexHasOffsets,
                                            indexHasPayloads);
@@ -668,6 +731,7 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
           // Lazy init: first time this enum has ever been used for skipping
           skipper = new Lucene50SkipReader(docIn.clone(),
                                            MAX_SKIP_LEVELS,
+                                           version >= VERSION_IMPACT_SKIP_DATA,
                                            true,
                                            indexHasOffsets,
                                            indexHasPayloads);
@@ -1084,6 +1148,7 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
           // Lazy init: first time this enum has ever been used for skipping
           skipper = new Lucene50SkipReader(docIn.clone(),
                                         MAX_SKIP_LEVELS,
+                                        version >= VERSION_IMPACT_SKIP_DATA,
                                         true,
                                         indexHasOffsets,
                                         indexHasPayloads);
@@ -54,6 +54,7 @@ import static org.apache.lucene.codecs.lucene50.Lucene50PostingsFormat.BLOCK_SIZ
  */
 final class Lucene50SkipReader extends MultiLevelSkipListReader {
   private long docPointer[];
+  private int maxFreq[];
   private long posPointer[];
   private long payPointer[];
   private int posBufferUpto[];
@@ -65,9 +66,14 @@ final class Lucene50SkipReader extends MultiLevelSkipListReader {
   private long lastDocPointer;
   private int lastPosBufferUpto;
 
-  public Lucene50SkipReader(IndexInput skipStream, int maxSkipLevels, boolean hasPos, boolean hasOffsets, boolean hasPayloads) {
+  public Lucene50SkipReader(IndexInput skipStream, int maxSkipLevels, boolean hasMaxFreqs, boolean hasPos, boolean hasOffsets, boolean hasPayloads) {
     super(skipStream, maxSkipLevels, BLOCK_SIZE, 8);
     docPointer = new long[maxSkipLevels];
+    if (hasMaxFreqs) {
+      maxFreq = new int[maxSkipLevels];
+    } else {
+      maxFreq = null;
+    }
     if (hasPos) {
       posPointer = new long[maxSkipLevels];
       posBufferUpto = new int[maxSkipLevels];
@@ -142,6 +148,31 @@ final class Lucene50SkipReader extends MultiLevelSkipListReader {
     return skipDoc[0];
   }
 
+  /**
+   * Return the maximum term frequency of the documents between {@code target}
+   * and {@code upTo}, both included, or {@code -1} if this information is
+   * not available. {@code target} must be the last target that was passed to
+   * {@link #skipTo(int)}.
+   */
+  public int getMaxFreq(int target, int upTo) {
+    if (maxFreq == null) {
+      return -1;
+    }
+    // the current entry of each level covers the documents between the
+    // previous entry of the same level (excluded) and skipDoc[level], so
+    // levels whose current entry is beyond target contain target
+    for (int level = 0; level < skipDoc.length; ++level) {
+      if (skipDoc[level] < target || skipDoc[level] == Integer.MAX_VALUE) {
+        // either not loaded or exhausted
+        break;
+      }
+      if (upTo <= skipDoc[level]) {
+        return maxFreq[level];
+      }
+    }
+    return -1;
+  }
+
   @Override
   protected void seekChild(int level) throws IOException {
     super.seekChild(level);
@@ -180,6 +211,10 @@ final class Lucene50SkipReader extends MultiLevelSkipListReader {
     int delta = skipStream.readVInt();
     docPointer[level] += skipStream.readVLong();
 
+    if (maxFreq != null) {
+      maxFreq[level] = skipStream.readVInt();
+    }
+
     if (posPointer != null) {
       posPointer[level] += skipStream.readVLong();
       posBufferUpto[level] = skipStream.readVInt();
@@ -41,6 +41,8 @@ import org.apache.lucene.codecs.MultiLevelSkipListWriter;
  * 2. its related file points(position, payload), 
  * 3. related numbers or uptos(position, payload).
  * 4. start offset.
+ * 5. the maximum term frequency of the blocks that this skip point covers,
+ *    if frequencies are indexed.
  *
  */
 final class Lucene50SkipWriter extends MultiLevelSkipListWriter {
@@ -49,6 +51,7 @@ final class Lucene50SkipWriter extends MultiLevelSkipListWriter {
   private long[] lastSkipPosPointer;
   private long[] lastSkipPayPointer;
   private int[] lastPayloadByteUpto;
+  private int[] maxFreq;
 
   private final IndexOutput docOut;
   private final IndexOutput posOut;
@@ -60,6 +63,7 @@ final class Lucene50SkipWriter extends MultiLevelSkipListWriter {
   private long curPayPointer;
   private int curPosBufferUpto;
   private int curPayloadByteUpto;
+  private boolean fieldHasFreqs;
   private boolean fieldHasPositions;
   private boolean fieldHasOffsets;
   private boolean fieldHasPayloads;
@@ -72,6 +76,7 @@ final class Lucene50SkipWriter extends MultiLevelSkipListWriter {
     
     lastSkipDoc = new int[maxSkipLevels];
     lastSkipDocPointer = new long[maxSkipLevels];
+    maxFreq = new int[maxSkipLevels];
     if (posOut != null) {
       lastSkipPosPointer = new long[maxSkipLevels];
       if (payOut != null) {
@@ -81,7 +86,8 @@ final class Lucene50SkipWriter extends MultiLevelSkipListWriter {
     }
   }
 
-  public void setField(boolean fieldHasPositions, boolean fieldHasOffsets, boolean fieldHasPayloads) {
+  public void setField(boolean fieldHasFreqs, boolean fieldHasPositions, boolean fieldHasOffsets, boolean fieldHasPayloads) {
+    this.fieldHasFreqs = fieldHasFreqs;
     this.fieldHasPositions = fieldHasPositions;
     this.fieldHasOffsets = fieldHasOffsets;
     this.fieldHasPayloads = fieldHasPayloads;
@@ -113,6 +119,7 @@ final class Lucene50SkipWriter extends MultiLevelSkipListWriter {
       super.resetSkip();
       Arrays.fill(lastSkipDoc, 0);
       Arrays.fill(lastSkipDocPointer, lastDocFP);
+      Arrays.fill(maxFreq, 0);
       if (fieldHasPositions) {
         Arrays.fill(lastSkipPosPointer, lastPosFP);
         if (fieldHasPayloads) {
@@ -127,10 +134,15 @@ final class Lucene50SkipWriter extends MultiLevelSkipListWriter {
   }
 
   /**
-   * Sets the values for the current skip data. 
+   * Sets the values for the current skip data. {@code blockMaxFreq} is the
+   * maximum term frequency of the block that ends on {@code doc}.
    */
-  public void bufferSkip(int doc, int numDocs, long posFP, long payFP, int posBufferUpto, int payloadByteUpto) throws IOException {
+  public void bufferSkip(int doc, int blockMaxFreq, int numDocs, long posFP, long payFP, int posBufferUpto, int payloadByteUpto) throws IOException {
     initSkip();
+    // every level covers the blocks since its previous skip point
+    for (int level = 0; level < maxFreq.length; ++level) {
+      maxFreq[level] = Math.max(maxFreq[level], blockMaxFreq);
+    }
     this.curDoc = doc;
     this.curDocPointer = docOut.getFilePointer();
     this.curPosPointer = posFP;
@@ -150,6 +162,11 @@ final class Lucene50SkipWriter extends MultiLevelSkipListWriter {
     skipBuffer.writeVLong(curDocPointer - lastSkipDocPointer[level]);
     lastSkipDocPointer[level] = curDocPointer;
 
+    if (fieldHasFreqs) {
+      skipBuffer.writeVInt(maxFreq[level]);
+    }
+    maxFreq[level] = 0;
+
     if (fieldHasPositions) {
 
       skipBuffer.writeVLong(curPosPointer - lastSkipPosPointer[level]);
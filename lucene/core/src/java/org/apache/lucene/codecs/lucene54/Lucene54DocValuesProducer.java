@@ -37,12 +37,16 @@ import org.apache.lucene.index.FieldInfo;
 import org.apache.lucene.index.FieldInfos;
 import org.apache.lucene.index.IndexFileNames;
 import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.NumericDocValuesIterator;
 import org.apache.lucene.index.RandomAccessOrds;
 import org.apache.lucene.index.SegmentReadState;
 import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.index.SortedDocValuesIterator;
 import org.apache.lucene.index.SortedNumericDocValues;
+import org.apache.lucene.index.SortedNumericDocValuesIterator;
 import org.apache.lucene.index.SortedSetDocValues;
 import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.store.ChecksumIndexInput;
 import org.apache.lucene.store.IndexInput;
 import org.apache.lucene.store.RandomAccessInput;
@@ -658,6 +662,63 @@ final class Lucene54DocValuesProducer extends DocValuesProducer implements Close
     }
   }
 
+  /** Iterates over the documents of a {@link SparseBits} instance in time that
+   *  is proportional to the number of documents that have a value, reusing
+   *  its galloping search in order to advance. */
+  static class SparseDocIdSetIterator extends DocIdSetIterator {
+
+    final SparseBits docsWithField;
+    int doc = -1;
+
+    SparseDocIdSetIterator(SparseBits docsWithField) {
+      this.docsWithField = docsWithField;
+    }
+
+    /** Index of the current document in the list of doc IDs that have a
+     *  value, only valid if the current document has a value. */
+    long index() {
+      return docsWithField.index;
+    }
+
+    boolean advanceExact(int target) {
+      doc = target;
+      return docsWithField.get((long) target);
+    }
+
+    @Override
+    public int docID() {
+      return doc;
+    }
+
+    @Override
+    public int nextDoc() {
+      return advance(doc + 1);
+    }
+
+    @Override
+    public int advance(int target) {
+      if (target >= docsWithField.maxDoc) {
+        return doc = NO_MORE_DOCS;
+      }
+      if (advanceExact(target)) {
+        return target;
+      }
+      // docsWithField is now positioned on the last doc ID that is less than target
+      final long next = docsWithField.nextDocId;
+      if (next >= docsWithField.maxDoc) {
+        return doc = NO_MORE_DOCS;
+      }
+      final boolean found = advanceExact((int) next);
+      assert found;
+      return doc;
+    }
+
+    @Override
+    public long cost() {
+      return docsWithField.docIDsLength;
+    }
+  }
+
   static class SparseLongValues extends LongValues {
 
     final SparseBits docsWithField;
@@ -1086,6 +1147,156 @@ final class Lucene54DocValuesProducer extends DocValuesProducer implements Close
     }
   }
 
+  @Override
+  public NumericDocValuesIterator getNumericIterator(FieldInfo field) throws IOException {
+    final NumericEntry entry = numerics.get(field.name);
+    if (entry.format != SPARSE_COMPRESSED) {
+      return super.getNumericIterator(field);
+    }
+    return getSparseNumericIterator(entry);
+  }
+
+  private NumericDocValuesIterator getSparseNumericIterator(NumericEntry entry) throws IOException {
+    assert entry.format == SPARSE_COMPRESSED;
+    final SparseDocIdSetIterator disi = new SparseDocIdSetIterator(getSparseLiveBits(entry));
+    final LongValues values = getNumeric(entry.nonMissingValues);
+    return new NumericDocValuesIterator() {
+
+      @Override
+      public boolean advanceExact(int target) {
+        return disi.advanceExact(target);
+      }
+
+      @Override
+      public int docID() {
+        return disi.docID();
+      }
+
+      @Override
+      public int nextDoc() {
+        return disi.nextDoc();
+      }
+
+      @Override
+      public int advance(int target) {
+        return disi.advance(target);
+      }
+
+      @Override
+      public long cost() {
+        return disi.cost();
+      }
+
+      @Override
+      public long longValue() {
+        return values.get(disi.index());
+      }
+    };
+  }
+
+  @Override
+  public SortedNumericDocValuesIterator getSortedNumericIterator(FieldInfo field) throws IOException {
+    final SortedSetEntry ss = sortedNumerics.get(field.name);
+    if (ss.format == SORTED_SINGLE_VALUED) {
+      final NumericEntry numericEntry = numerics.get(field.name);
+      if (numericEntry.format == SPARSE_COMPRESSED) {
+        final NumericDocValuesIterator values = getSparseNumericIterator(numericEntry);
+        return new SortedNumericDocValuesIterator() {
+
+          @Override
+          public boolean advanceExact(int target) throws IOException {
+            return values.advanceExact(target);
+          }
+
+          @Override
+          public int docID() {
+            return values.docID();
+          }
+
+          @Override
+          public int nextDoc() throws IOException {
+            return values.nextDoc();
+          }
+
+          @Override
+          public int advance(int target) throws IOException {
+            return values.advance(target);
+          }
+
+          @Override
+          public long cost() {
+            return values.cost();
+          }
+
+          @Override
+          public int docValueCount() {
+            return 1;
+          }
+
+          @Override
+          public long nextValue() throws IOException {
+            return values.longValue();
+          }
+        };
+      }
+    }
+    return super.getSortedNumericIterator(field);
+  }
+
+  @Override
+  public SortedDocValuesIterator getSortedIterator(FieldInfo field) throws IOException {
+    final NumericEntry entry = ords.get(field.name);
+    if (entry.format != SPARSE_COMPRESSED) {
+      return super.getSortedIterator(field);
+    }
+    final int valueCount = (int) binaries.get(field.name).count;
+    final BinaryDocValues binary = getBinary(field);
+    final SparseDocIdSetIterator disi = new SparseDocIdSetIterator(getSparseLiveBits(entry));
+    final LongValues ordinals = getNumeric(entry.nonMissingValues);
+    return new SortedDocValuesIterator() {
+
+      @Override
+      public boolean advanceExact(int target) {
+        return disi.advanceExact(target);
+      }
+
+      @Override
+      public int docID() {
+        return disi.docID();
+      }
+
+      @Override
+      public int nextDoc() {
+        return disi.nextDoc();
+      }
+
+      @Override
+      public int advance(int target) {
+        return disi.advance(target);
+      }
+
+      @Override
+      public long cost() {
+        return disi.cost();
+      }
+
+      @Override
+      public int ordValue() {
+        return (int) ordinals.get(disi.index());
+      }
+
+      @Override
+      public BytesRef lookupOrd(int ord) {
+        return binary.get(ord);
+      }
+
+      @Override
+      public int getValueCount() {
+        return valueCount;
+      }
+    };
+  }
+
   private SparseBits getSparseLiveBits(NumericEntry entry) throws IOException {
     final RandomAccessInput docIdsData = this.data.randomAccessSlice(entry.missingOffset, entry.offset - entry.missingOffset);
     final LongValues docIDs = DirectMonotonicReader.getInstance(entry.monotonicMeta, docIdsData);
@@ -33,6 +33,7 @@ import org.apache.lucene.index.IndexFileNames;
 import org.apache.lucene.index.SegmentReadState;
 import org.apache.lucene.store.ChecksumIndexInput;
 import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.MMapDirectory;
 import org.apache.lucene.util.Accountable;
 import org.apache.lucene.util.Accountables;
 import org.apache.lucene.util.IOUtils;
@@ -44,8 +45,16 @@ public class Lucene60PointsReader extends PointsReader implements Closeable {
   final SegmentReadState readState;
   final Map<Integer,BKDReader> readers = new HashMap<>();
 
-  /** Sole constructor */
+  /** Creates a reader that loads the index of each field on the heap. */
   public Lucene60PointsReader(SegmentReadState readState) throws IOException {
+    this(readState, false);
+  }
+
+  /** Creates a reader, which reads the index of each field off-heap
+   *  if {@code offHeapIndex} is true. This is only fast if the data file
+   *  is cached by the OS, typically via {@link MMapDirectory}.
+   *  @see BKDReader#BKDReader(IndexInput, boolean) */
+  public Lucene60PointsReader(SegmentReadState readState, boolean offHeapIndex) throws IOException {
     this.readState = readState;
 
 
@@ -102,7 +111,7 @@ public class Lucene60PointsReader extends PointsReader implements Closeable {
         int fieldNumber = ent.getKey();
         long fp = ent.getValue();
         dataIn.seek(fp);
-        BKDReader reader = new BKDReader(dataIn);
+        BKDReader reader = new BKDReader(dataIn, offHeapIndex);
         readers.put(fieldNumber, reader);
       }
 
@@ -142,6 +151,15 @@ public class Lucene60PointsReader extends PointsReader implements Closeable {
     bkdReader.intersect(visitor);
   }
 
+  @Override
+  public long estimatePointCount(String fieldName, IntersectVisitor visitor) throws IOException {
+    BKDReader bkdReader = getBKDReader(fieldName);
+    if (bkdReader == null) {
+      return 0;
+    }
+    return bkdReader.estimatePointCount(visitor);
+  }
+
   @Override
   public long ramBytesUsed() {
     long sizeInBytes = 0;
@@ -97,7 +97,8 @@ public class Lucene60PointsWriter extends PointsWriter implements Closeable {
                                           maxPointsInLeafNode,
                                           maxMBSortInHeap,
                                           values.size(fieldInfo.name),
-                                          singleValuePerDoc)) {
+                                          singleValuePerDoc,
+                                          writeState.executor)) {
 
       if (values instanceof MutablePointsReader) {
         final long fp = writer.writeField(dataOut, fieldInfo.name, (MutablePointsReader) values);
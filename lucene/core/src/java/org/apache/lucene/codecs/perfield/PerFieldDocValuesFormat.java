@@ -30,14 +30,19 @@ import org.apache.lucene.codecs.DocValuesFormat;
 import org.apache.lucene.codecs.DocValuesProducer;
 import org.apache.lucene.codecs.PostingsFormat;
 import org.apache.lucene.index.BinaryDocValues;
+import org.apache.lucene.index.BinaryDocValuesIterator;
 import org.apache.lucene.index.DocValuesType;
 import org.apache.lucene.index.FieldInfo;
 import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.NumericDocValuesIterator;
 import org.apache.lucene.index.SegmentReadState;
 import org.apache.lucene.index.SegmentWriteState;
 import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.index.SortedDocValuesIterator;
 import org.apache.lucene.index.SortedNumericDocValues;
+import org.apache.lucene.index.SortedNumericDocValuesIterator;
 import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.index.SortedSetDocValuesIterator;
 import org.apache.lucene.util.Accountable;
 import org.apache.lucene.util.Accountables;
 import org.apache.lucene.util.Bits;
@@ -313,6 +318,36 @@ public abstract class PerFieldDocValuesFormat extends DocValuesFormat {
       return producer == null ? null : producer.getDocsWithField(field);
     }
 
+    @Override
+    public NumericDocValuesIterator getNumericIterator(FieldInfo field) throws IOException {
+      DocValuesProducer producer = fields.get(field.name);
+      return producer == null ? null : producer.getNumericIterator(field);
+    }
+
+    @Override
+    public BinaryDocValuesIterator getBinaryIterator(FieldInfo field) throws IOException {
+      DocValuesProducer producer = fields.get(field.name);
+      return producer == null ? null : producer.getBinaryIterator(field);
+    }
+
+    @Override
+    public SortedDocValuesIterator getSortedIterator(FieldInfo field) throws IOException {
+      DocValuesProducer producer = fields.get(field.name);
+      return producer == null ? null : producer.getSortedIterator(field);
+    }
+
+    @Override
+    public SortedNumericDocValuesIterator getSortedNumericIterator(FieldInfo field) throws IOException {
+      DocValuesProducer producer = fields.get(field.name);
+      return producer == null ? null : producer.getSortedNumericIterator(field);
+    }
+
+    @Override
+    public SortedSetDocValuesIterator getSortedSetIterator(FieldInfo field) throws IOException {
+      DocValuesProducer producer = fields.get(field.name);
+      return producer == null ? null : producer.getSortedSetIterator(field);
+    }
+
     @Override
     public void close() throws IOException {
       IOUtils.close(formats.values());
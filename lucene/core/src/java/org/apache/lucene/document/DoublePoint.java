@@ -20,6 +20,7 @@ import java.util.Arrays;
 import java.util.Collection;
 
 import org.apache.lucene.index.PointValues;
+import org.apache.lucene.search.IndexOrDocValuesQuery;
 import org.apache.lucene.search.PointInSetQuery;
 import org.apache.lucene.search.PointRangeQuery;
 import org.apache.lucene.search.Query;
@@ -39,6 +40,8 @@ import org.apache.lucene.util.NumericUtils;
  *   <li>{@link #newExactQuery(String, double)} for matching an exact 1D point.
  *   <li>{@link #newSetQuery(String, double...)} for matching a set of 1D values.
  *   <li>{@link #newRangeQuery(String, double, double)} for matching a 1D range.
+ *   <li>{@link #newIndexOrDocValuesRangeQuery(String, double, double)} for matching a 1D range
+ *       on fields that also have doc values.
  *   <li>{@link #newRangeQuery(String, double[], double[])} for matching points/ranges in n-dimensional space.
  * </ul> 
  * @see PointValues
@@ -179,6 +182,33 @@ public final class DoublePoint extends Field {
     return newRangeQuery(field, new double[] { lowerValue }, new double[] { upperValue });
   }
 
+  /**
+   * Create a range query for double values that either runs on points or on
+   * doc values, depending on which one is more efficient on each segment.
+   * <p>
+   * Documents must have indexed both a {@link DoublePoint} and a
+   * {@link SortedNumericDocValuesField} (or {@link NumericDocValuesField})
+   * whose value is the result of {@link NumericUtils#doubleToSortableLong}
+   * on the same value. Note that this is not the encoding used by
+   * {@link DoubleDocValuesField}.
+   * <p>
+   * Points are used when the query needs to lead iteration, while doc values
+   * are used to verify matches when another, more selective, required clause
+   * leads iteration.
+   *
+   * @param field field name. must not be {@code null}.
+   * @param lowerValue lower portion of the range (inclusive).
+   * @param upperValue upper portion of the range (inclusive).
+   * @throws IllegalArgumentException if {@code field} is null.
+   * @return a query matching documents within this range.
+   * @see IndexOrDocValuesQuery
+   */
+  public static Query newIndexOrDocValuesRangeQuery(String field, double lowerValue, double upperValue) {
+    return new IndexOrDocValuesQuery(
+        newRangeQuery(field, lowerValue, upperValue),
+        SortedNumericDocValuesField.newRangeQuery(field, NumericUtils.doubleToSortableLong(lowerValue), NumericUtils.doubleToSortableLong(upperValue)));
+  }
+
   /** 
    * Create a range query for n-dimensional double values.
    * <p>
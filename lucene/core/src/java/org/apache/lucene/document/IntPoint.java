@@ -20,6 +20,7 @@ import java.util.Arrays;
 import java.util.Collection;
 
 import org.apache.lucene.index.PointValues;
+import org.apache.lucene.search.IndexOrDocValuesQuery;
 import org.apache.lucene.search.PointInSetQuery;
 import org.apache.lucene.search.PointRangeQuery;
 import org.apache.lucene.search.Query;
@@ -39,6 +40,8 @@ import org.apache.lucene.util.NumericUtils;
  *   <li>{@link #newExactQuery(String, int)} for matching an exact 1D point.
  *   <li>{@link #newSetQuery(String, int...)} for matching a set of 1D values.
  *   <li>{@link #newRangeQuery(String, int, int)} for matching a 1D range.
+ *   <li>{@link #newIndexOrDocValuesRangeQuery(String, int, int)} for matching a 1D range
+ *       on fields that also have doc values.
  *   <li>{@link #newRangeQuery(String, int[], int[])} for matching points/ranges in n-dimensional space.
  * </ul>
  * @see PointValues
@@ -178,6 +181,31 @@ public final class IntPoint extends Field {
     return newRangeQuery(field, new int[] { lowerValue }, new int[] { upperValue });
   }
 
+  /**
+   * Create a range query for int values that either runs on points or on
+   * doc values, depending on which one is more efficient on each segment.
+   * <p>
+   * Documents must have indexed both an {@link IntPoint} and a
+   * {@link SortedNumericDocValuesField} (or {@link NumericDocValuesField})
+   * with the same value.
+   * <p>
+   * Points are used when the query needs to lead iteration, while doc values
+   * are used to verify matches when another, more selective, required clause
+   * leads iteration.
+   *
+   * @param field field name. must not be {@code null}.
+   * @param lowerValue lower portion of the range (inclusive).
+   * @param upperValue upper portion of the range (inclusive).
+   * @throws IllegalArgumentException if {@code field} is null.
+   * @return a query matching documents within this range.
+   * @see IndexOrDocValuesQuery
+   */
+  public static Query newIndexOrDocValuesRangeQuery(String field, int lowerValue, int upperValue) {
+    return new IndexOrDocValuesQuery(
+        newRangeQuery(field, lowerValue, upperValue),
+        SortedNumericDocValuesField.newRangeQuery(field, lowerValue, upperValue));
+  }
+
   /** 
    * Create a range query for n-dimensional integer values.
    * <p>
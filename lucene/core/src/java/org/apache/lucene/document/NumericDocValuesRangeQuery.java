@@ -0,0 +1,174 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.document;
+
+
+import java.io.IOException;
+import java.util.Objects;
+
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValuesIterator;
+import org.apache.lucene.index.SortedNumericDocValuesIterator;
+import org.apache.lucene.search.ConstantScoreScorer;
+import org.apache.lucene.search.ConstantScoreWeight;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchNoDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.TwoPhaseIterator;
+import org.apache.lucene.search.Weight;
+
+/**
+ * A range query on numeric doc values, which works on fields that indexed
+ * either {@link NumericDocValuesField}s or {@link SortedNumericDocValuesField}s.
+ * Matches are verified one document at a time, so this query is slow at
+ * identifying all matching documents but cheap to create and efficient at
+ * checking whether a given document matches.
+ * @see NumericDocValuesField#newRangeQuery(String, long, long)
+ * @see SortedNumericDocValuesField#newRangeQuery(String, long, long)
+ */
+final class NumericDocValuesRangeQuery extends Query {
+
+  private final String field;
+  private final long lowerValue;
+  private final long upperValue;
+
+  NumericDocValuesRangeQuery(String field, long lowerValue, long upperValue) {
+    this.field = Objects.requireNonNull(field);
+    this.lowerValue = lowerValue;
+    this.upperValue = upperValue;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (sameClassAs(obj) == false) {
+      return false;
+    }
+    NumericDocValuesRangeQuery that = (NumericDocValuesRangeQuery) obj;
+    return field.equals(that.field)
+        && lowerValue == that.lowerValue
+        && upperValue == that.upperValue;
+  }
+
+  @Override
+  public int hashCode() {
+    int h = classHash();
+    h = 31 * h + field.hashCode();
+    h = 31 * h + Long.hashCode(lowerValue);
+    h = 31 * h + Long.hashCode(upperValue);
+    return h;
+  }
+
+  @Override
+  public String toString(String field) {
+    StringBuilder b = new StringBuilder();
+    if (this.field.equals(field) == false) {
+      b.append(this.field).append(":");
+    }
+    return b
+        .append("[")
+        .append(lowerValue)
+        .append(" TO ")
+        .append(upperValue)
+        .append("]")
+        .toString();
+  }
+
+  @Override
+  public Query rewrite(IndexReader reader) throws IOException {
+    if (lowerValue > upperValue) {
+      return new MatchNoDocsQuery("empty range");
+    }
+    return super.rewrite(reader);
+  }
+
+  @Override
+  public Weight createWeight(IndexSearcher searcher, boolean needsScores, float boost) throws IOException {
+    return new ConstantScoreWeight(this, boost) {
+
+      @Override
+      public Scorer scorer(LeafReaderContext context) throws IOException {
+        final LeafReader reader = context.reader();
+        final FieldInfo fieldInfo = reader.getFieldInfos().fieldInfo(field);
+        if (fieldInfo == null) {
+          // No docs in this segment indexed this field at all
+          return null;
+        }
+
+        final TwoPhaseIterator twoPhase;
+        switch (fieldInfo.getDocValuesType()) {
+          case NONE:
+            return null;
+          case NUMERIC: {
+            final NumericDocValuesIterator values = reader.getNumericDocValuesIterator(field);
+            if (values == null) {
+              return null;
+            }
+            twoPhase = new TwoPhaseIterator(values) {
+              @Override
+              public boolean matches() throws IOException {
+                final long value = values.longValue();
+                return value >= lowerValue && value <= upperValue;
+              }
+
+              @Override
+              public float matchCost() {
+                return 2; // 2 comparisons
+              }
+            };
+            break;
+          }
+          case SORTED_NUMERIC: {
+            final SortedNumericDocValuesIterator values = reader.getSortedNumericDocValuesIterator(field);
+            if (values == null) {
+              return null;
+            }
+            twoPhase = new TwoPhaseIterator(values) {
+              @Override
+              public boolean matches() throws IOException {
+                for (int i = 0, count = values.docValueCount(); i < count; ++i) {
+                  final long value = values.nextValue();
+                  if (value < lowerValue) {
+                    continue;
+                  }
+                  // Values are sorted, so the first value that is >= lowerValue is our best candidate
+                  return value <= upperValue;
+                }
+                return false; // all values were < lowerValue
+              }
+
+              @Override
+              public float matchCost() {
+                return 2; // 2 comparisons
+              }
+            };
+            break;
+          }
+          default:
+            throw new IllegalStateException("field=\"" + field + "\" was indexed with docValuesType="
+                + fieldInfo.getDocValuesType() + " but this query requires NUMERIC or SORTED_NUMERIC doc values");
+        }
+
+        return new ConstantScoreScorer(this, score(), twoPhase);
+      }
+    };
+  }
+
+}
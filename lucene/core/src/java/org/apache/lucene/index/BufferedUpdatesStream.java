@@ -373,9 +373,12 @@ class BufferedUpdatesStream implements Accountable {
     final SegmentReader reader;
     final int startDelCount;
 
+    Terms terms;
     TermsEnum termsEnum;
     PostingsEnum postingsEnum;
     BytesRef term;
+    // the largest term of the current field, computed lazily
+    BytesRef maxTerm;
     boolean any;
 
     public SegmentState(IndexWriter.ReaderPool pool, SegmentCommitInfo info) throws IOException {
@@ -483,6 +486,7 @@ class BufferedUpdatesStream implements Accountable {
 
     long delTermVisitedCount = 0;
     long segTermVisitedCount = 0;
+    long segSkippedCount = 0;
 
     FieldTermIterator iter = updates.termIterator();
 
@@ -502,11 +506,17 @@ class BufferedUpdatesStream implements Accountable {
         long segTermCount = 0;
         for(int i=0;i<numReaders;i++) {
           SegmentState state = segStates[i];
+          if (state.delGen >= updates.maxDelGen) {
+            // this segment was flushed after all these deletes: none of them can apply
+            continue;
+          }
           Terms terms = state.reader.fields().terms(field);
           if (terms != null) {
             segTermCount += terms.size();
+            state.terms = terms;
             state.termsEnum = terms.iterator();
             state.term = state.termsEnum.next();
+            state.maxTerm = null;
             if (state.term != null) {
               queue.add(state);
             }
@@ -535,6 +545,16 @@ class BufferedUpdatesStream implements Accountable {
         } else if (cmp == 0) {
           // fall through
         } else {
+          // since the deleted terms are sorted, there is no need to seek
+          // segments whose terms are all smaller than the current term
+          if (state.maxTerm == null) {
+            state.maxTerm = state.terms.getMax();
+          }
+          if (term.compareTo(state.maxTerm) > 0) {
+            segSkippedCount++;
+            queue.pop();
+            continue;
+          }
           TermsEnum.SeekStatus status = state.termsEnum.seekCeil(term);
           if (status == TermsEnum.SeekStatus.FOUND) {
             // fallthrough
@@ -594,11 +614,11 @@ class BufferedUpdatesStream implements Accountable {
 
     if (infoStream.isEnabled("BD")) {
       infoStream.message("BD",
-                         String.format(Locale.ROOT, "applyTermDeletes took %.1f msec for %d segments and %d packets; %d del terms visited; %d seg terms visited",
+                         String.format(Locale.ROOT, "applyTermDeletes took %.1f msec for %d segments and %d packets; %d del terms visited; %d seg terms visited; %d segs skipped by max term",
                                        (System.nanoTime()-startNS)/1000000.,
                                        numReaders,
                                        updates.terms.size(),
-                                       delTermVisitedCount, segTermVisitedCount));
+                                       delTermVisitedCount, segTermVisitedCount, segSkippedCount));
     }
 
     return delTermVisitedCount;
@@ -35,6 +35,9 @@ class CoalescedUpdates {
   final List<List<DocValuesUpdate>> numericDVUpdates = new ArrayList<>();
   final List<List<DocValuesUpdate>> binaryDVUpdates = new ArrayList<>();
   long totalTermCount;
+  // the most recent delGen of the coalesced packets: segments that were
+  // flushed after it are not affected by any of these updates
+  long maxDelGen = -1;
   
   @Override
   public String toString() {
@@ -48,6 +51,7 @@ class CoalescedUpdates {
   void update(FrozenBufferedUpdates in) {
     totalTermCount += in.terms.size();
     terms.add(in.terms);
+    maxDelGen = Math.max(maxDelGen, in.delGen());
 
     for (int queryIdx = 0; queryIdx < in.queries.length; queryIdx++) {
       final Query query = in.queries[queryIdx];
@@ -163,6 +163,56 @@ public abstract class CodecReader extends LeafReader implements Accountable {
     }
   }
 
+  @Override
+  public NumericDocValuesIterator getNumericDocValuesIterator(String field) throws IOException {
+    ensureOpen();
+    FieldInfo fi = getDVField(field, DocValuesType.NUMERIC);
+    if (fi == null) {
+      return null;
+    }
+    return getDocValuesReader().getNumericIterator(fi);
+  }
+
+  @Override
+  public BinaryDocValuesIterator getBinaryDocValuesIterator(String field) throws IOException {
+    ensureOpen();
+    FieldInfo fi = getDVField(field, DocValuesType.BINARY);
+    if (fi == null) {
+      return null;
+    }
+    return getDocValuesReader().getBinaryIterator(fi);
+  }
+
+  @Override
+  public SortedDocValuesIterator getSortedDocValuesIterator(String field) throws IOException {
+    ensureOpen();
+    FieldInfo fi = getDVField(field, DocValuesType.SORTED);
+    if (fi == null) {
+      return null;
+    }
+    return getDocValuesReader().getSortedIterator(fi);
+  }
+
+  @Override
+  public SortedNumericDocValuesIterator getSortedNumericDocValuesIterator(String field) throws IOException {
+    ensureOpen();
+    FieldInfo fi = getDVField(field, DocValuesType.SORTED_NUMERIC);
+    if (fi == null) {
+      return null;
+    }
+    return getDocValuesReader().getSortedNumericIterator(fi);
+  }
+
+  @Override
+  public SortedSetDocValuesIterator getSortedSetDocValuesIterator(String field) throws IOException {
+    ensureOpen();
+    FieldInfo fi = getDVField(field, DocValuesType.SORTED_SET);
+    if (fi == null) {
+      return null;
+    }
+    return getDocValuesReader().getSortedSetIterator(fi);
+  }
+
   @Override
   public final Bits getDocsWithField(String field) throws IOException {
     ensureOpen();
@@ -197,6 +197,280 @@ public final class DocValues {
     };
   }
   
+  /**
+   * Returns a {@link NumericDocValuesIterator} view over the provided random-access
+   * {@link NumericDocValues}, which visits documents that are set in {@code docsWithField}.
+   * Consider using {@link LeafReader#getNumericDocValuesIterator(String)} instead, which
+   * might be able to skip efficiently over documents that do not have a value.
+   */
+  public static NumericDocValuesIterator numericIterator(final NumericDocValues dv, final Bits docsWithField, final int maxDoc) {
+    return new NumericDocValuesIterator() {
+      int doc = -1;
+
+      @Override
+      public boolean advanceExact(int target) {
+        doc = target;
+        return docsWithField.get(target);
+      }
+
+      @Override
+      public int docID() {
+        return doc;
+      }
+
+      @Override
+      public int nextDoc() {
+        return advance(doc + 1);
+      }
+
+      @Override
+      public int advance(int target) {
+        for (int d = target; d < maxDoc; ++d) {
+          if (advanceExact(d)) {
+            return d;
+          }
+        }
+        return doc = NO_MORE_DOCS;
+      }
+
+      @Override
+      public long cost() {
+        return maxDoc;
+      }
+
+      @Override
+      public long longValue() {
+        return dv.get(doc);
+      }
+    };
+  }
+
+  /**
+   * Returns a {@link BinaryDocValuesIterator} view over the provided random-access
+   * {@link BinaryDocValues}, which visits documents that are set in {@code docsWithField}.
+   */
+  public static BinaryDocValuesIterator binaryIterator(final BinaryDocValues dv, final Bits docsWithField, final int maxDoc) {
+    return new BinaryDocValuesIterator() {
+      int doc = -1;
+
+      @Override
+      public boolean advanceExact(int target) {
+        doc = target;
+        return docsWithField.get(target);
+      }
+
+      @Override
+      public int docID() {
+        return doc;
+      }
+
+      @Override
+      public int nextDoc() {
+        return advance(doc + 1);
+      }
+
+      @Override
+      public int advance(int target) {
+        for (int d = target; d < maxDoc; ++d) {
+          if (advanceExact(d)) {
+            return d;
+          }
+        }
+        return doc = NO_MORE_DOCS;
+      }
+
+      @Override
+      public long cost() {
+        return maxDoc;
+      }
+
+      @Override
+      public BytesRef binaryValue() {
+        return dv.get(doc);
+      }
+    };
+  }
+
+  /**
+   * Returns a {@link SortedDocValuesIterator} view over the provided random-access
+   * {@link SortedDocValues}, which visits documents that have an ordinal.
+   */
+  public static SortedDocValuesIterator sortedIterator(final SortedDocValues dv, final int maxDoc) {
+    return new SortedDocValuesIterator() {
+      int doc = -1;
+      int ord = -1;
+
+      @Override
+      public boolean advanceExact(int target) {
+        doc = target;
+        ord = dv.getOrd(target);
+        return ord != -1;
+      }
+
+      @Override
+      public int docID() {
+        return doc;
+      }
+
+      @Override
+      public int nextDoc() {
+        return advance(doc + 1);
+      }
+
+      @Override
+      public int advance(int target) {
+        for (int d = target; d < maxDoc; ++d) {
+          if (advanceExact(d)) {
+            return d;
+          }
+        }
+        return doc = NO_MORE_DOCS;
+      }
+
+      @Override
+      public long cost() {
+        return maxDoc;
+      }
+
+      @Override
+      public int ordValue() {
+        return ord;
+      }
+
+      @Override
+      public BytesRef lookupOrd(int ord) {
+        return dv.lookupOrd(ord);
+      }
+
+      @Override
+      public int getValueCount() {
+        return dv.getValueCount();
+      }
+    };
+  }
+
+  /**
+   * Returns a {@link SortedNumericDocValuesIterator} view over the provided random-access
+   * {@link SortedNumericDocValues}, which visits documents that have at least one value.
+   */
+  public static SortedNumericDocValuesIterator sortedNumericIterator(final SortedNumericDocValues dv, final int maxDoc) {
+    return new SortedNumericDocValuesIterator() {
+      int doc = -1;
+      int count;
+      int upto;
+
+      @Override
+      public boolean advanceExact(int target) {
+        doc = target;
+        dv.setDocument(target);
+        count = dv.count();
+        upto = 0;
+        return count != 0;
+      }
+
+      @Override
+      public int docID() {
+        return doc;
+      }
+
+      @Override
+      public int nextDoc() {
+        return advance(doc + 1);
+      }
+
+      @Override
+      public int advance(int target) {
+        for (int d = target; d < maxDoc; ++d) {
+          if (advanceExact(d)) {
+            return d;
+          }
+        }
+        return doc = NO_MORE_DOCS;
+      }
+
+      @Override
+      public long cost() {
+        return maxDoc;
+      }
+
+      @Override
+      public int docValueCount() {
+        return count;
+      }
+
+      @Override
+      public long nextValue() {
+        return dv.valueAt(upto++);
+      }
+    };
+  }
+
+  /**
+   * Returns a {@link SortedSetDocValuesIterator} view over the provided random-access
+   * {@link SortedSetDocValues}, which visits documents that have at least one ordinal.
+   */
+  public static SortedSetDocValuesIterator sortedSetIterator(final SortedSetDocValues dv, final int maxDoc) {
+    return new SortedSetDocValuesIterator() {
+      int doc = -1;
+      // the first ordinal of the current document needs to be read in order
+      // to know whether the document has a value, so we buffer it
+      long firstOrd = NO_MORE_ORDS;
+
+      @Override
+      public boolean advanceExact(int target) {
+        doc = target;
+        dv.setDocument(target);
+        firstOrd = dv.nextOrd();
+        return firstOrd != NO_MORE_ORDS;
+      }
+
+      @Override
+      public int docID() {
+        return doc;
+      }
+
+      @Override
+      public int nextDoc() {
+        return advance(doc + 1);
+      }
+
+      @Override
+      public int advance(int target) {
+        for (int d = target; d < maxDoc; ++d) {
+          if (advanceExact(d)) {
+            return d;
+          }
+        }
+        return doc = NO_MORE_DOCS;
+      }
+
+      @Override
+      public long cost() {
+        return maxDoc;
+      }
+
+      @Override
+      public long nextOrd() {
+        if (firstOrd != NO_MORE_ORDS) {
+          final long ord = firstOrd;
+          firstOrd = NO_MORE_ORDS;
+          return ord;
+        }
+        return dv.nextOrd();
+      }
+
+      @Override
+      public BytesRef lookupOrd(long ord) {
+        return dv.lookupOrd(ord);
+      }
+
+      @Override
+      public long getValueCount() {
+        return dv.getValueCount();
+      }
+    };
+  }
+  
   // some helpers, for transition from fieldcache apis.
   // as opposed to the LeafReader apis (which must be strict for consistency), these are lenient
   
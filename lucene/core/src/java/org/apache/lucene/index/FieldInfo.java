@@ -305,7 +305,7 @@ public final class FieldInfo {
   /**
    * Get a codec attribute value, or null if it does not exist
    */
-  public String getAttribute(String key) {
+  public synchronized String getAttribute(String key) {
     return attributes.get(key);
   }
   
@@ -318,15 +318,18 @@ public final class FieldInfo {
    * <p>
    * If a value already exists for the field, it will be replaced with 
    * the new value.
+   * <p>
+   * This method may be called concurrently, eg. by the formats of a segment
+   * that is merged with {@link IndexWriterConfig#setMergeExecutor}.
    */
-  public String putAttribute(String key, String value) {
+  public synchronized String putAttribute(String key, String value) {
     return attributes.put(key, value);
   }
   
   /**
    * Returns internal codec attributes map.
    */
-  public Map<String,String> attributes() {
+  public synchronized Map<String,String> attributes() {
     return attributes;
   }
 }
@@ -0,0 +1,60 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.index;
+
+
+import java.io.IOException;
+
+/**
+ * Extension of {@link PostingsEnum} which also provides information about
+ * upcoming term frequencies, so that scorers can skip over blocks of documents
+ * that cannot produce competitive scores.
+ * <p>
+ * Codecs that record per-block statistics in their skip data may return
+ * instances of this class from {@link TermsEnum#postings(PostingsEnum, int)}
+ * when {@link PostingsEnum#FREQS} are requested but positions are not.
+ * @lucene.experimental
+ */
+public abstract class ImpactsEnum extends PostingsEnum {
+
+  /** Sole constructor. (For invocation by subclass 
+   *  constructors, typically implicit.) */
+  protected ImpactsEnum() {
+  }
+
+  /**
+   * Shallow-advance to {@code target}. This moves the skip data to the block
+   * that contains {@code target} in order to make the frequency statistics of
+   * this block available through {@link #getMaxFreq(int)}, but it does not
+   * modify the current {@link #docID()}. The returned value is greater than or
+   * equal to all documents of the block that contains {@code target} and less
+   * than the first document of the next block, or
+   * {@link #NO_MORE_DOCS} if no more statistics are available.
+   * <p>
+   * {@code target} must be greater than or equal to the targets that have
+   * been passed to this method so far.
+   */
+  public abstract int advanceShallow(int target) throws IOException;
+
+  /**
+   * Return an upper bound of the term frequency of all documents between
+   * the last target that was passed to {@link #advanceShallow(int)} and
+   * {@code upTo}, both included.
+   */
+  public abstract int getMaxFreq(int upTo) throws IOException;
+
+}
@@ -33,6 +33,7 @@ import java.util.Map.Entry;
 import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -2780,11 +2781,11 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
       SegmentInfo info = new SegmentInfo(directoryOrig, Version.LATEST, mergedName, -1,
                                          false, codec, Collections.emptyMap(), StringHelper.randomId(), new HashMap<>(), config.getIndexSort());
 
+      rateLimiters.set(new MergeRateLimiter(null));
+
       SegmentMerger merger = new SegmentMerger(Arrays.asList(readers), info, infoStream, trackingDir,
                                                globalFieldNumberMap, 
-                                               context);
-      
-      rateLimiters.set(new MergeRateLimiter(null));
+                                               context, getMergeExecutor());
 
       if (!merger.shouldMerge()) {
         return docWriter.deleteQueue.getNextSequenceNumber();
@@ -3040,6 +3041,10 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
         // dead code but javac disagrees:
         seqNo = -1;
       }
+
+      if (infoStream.isEnabled("IW")) {
+        infoStream.message("IW", String.format(Locale.ROOT, "prepareCommit: flush took %.1f msec", (System.nanoTime()-startCommitTime)/1000000.0));
+      }
      
       boolean success = false;
       try {
@@ -3213,13 +3218,15 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
               infoStream.message("IW", "commit: pendingCommit != null");
             }
 
+            long t0 = System.nanoTime();
             committedSegmentsFileName = pendingCommit.finishCommit(directory);
 
             // we committed, if anything goes wrong after this, we are screwed and it's a tragedy:
             commitCompleted = true;
 
             if (infoStream.isEnabled("IW")) {
-              infoStream.message("IW", "commit: done writing segments file \"" + committedSegmentsFileName + "\"");
+              infoStream.message("IW", String.format(Locale.ROOT, "commit: done writing segments file \"%s\" in %.1f msec",
+                                                     committedSegmentsFileName, (System.nanoTime()-t0)/1000000.0));
             }
 
             // NOTE: don't use this.checkpoint() here, because
@@ -4276,7 +4283,7 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
       final SegmentMerger merger = new SegmentMerger(mergeReaders,
                                                      merge.info.info, infoStream, dirWrapper,
                                                      globalFieldNumberMap, 
-                                                     context);
+                                                     context, getMergeExecutor());
 
       merge.rateLimiter.checkAbort();
 
@@ -4627,9 +4634,12 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
           // Exception here means nothing is prepared
           // (this method unwinds everything it did on
           // an exception)
+          long t0 = System.nanoTime();
           toSync.prepareCommit(directory);
           if (infoStream.isEnabled("IW")) {
-            infoStream.message("IW", "startCommit: wrote pending segments file \"" + IndexFileNames.fileNameFromGeneration(IndexFileNames.PENDING_SEGMENTS, "", toSync.getGeneration()) + "\"");
+            infoStream.message("IW", String.format(Locale.ROOT, "startCommit: wrote pending segments file \"%s\" in %.1f msec",
+                                                   IndexFileNames.fileNameFromGeneration(IndexFileNames.PENDING_SEGMENTS, "", toSync.getGeneration()),
+                                                   (System.nanoTime()-t0)/1000000.0));
           }
 
           //System.out.println("DONE prepareCommit");
@@ -4642,6 +4652,7 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
         // or more.  We do it without syncing on this:
         boolean success = false;
         final Collection<String> filesToSync;
+        final long syncStartNS = System.nanoTime();
         try {
           filesToSync = toSync.files(false);
           directory.sync(filesToSync);
@@ -4655,7 +4666,8 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
         }
 
         if (infoStream.isEnabled("IW")) {
-          infoStream.message("IW", "done all syncs: " + filesToSync);
+          infoStream.message("IW", String.format(Locale.ROOT, "done all syncs of %d files in %.1f msec: %s",
+                                                 filesToSync.size(), (System.nanoTime()-syncStartNS)/1000000.0, filesToSync));
         }
 
         testPoint("midStartCommitSuccess");
@@ -5044,6 +5056,28 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
     };
   }
 
+  /** Returns an {@link Executor} that runs tasks of the current merge with the
+   *  rate limiter of the calling merge thread, or null if the parts of merged
+   *  segments should be merged sequentially.
+   *  @see IndexWriterConfig#setMergeExecutor */
+  private Executor getMergeExecutor() {
+    final Executor executor = config.getMergeExecutor();
+    if (executor == null) {
+      return null;
+    }
+    final MergeRateLimiter rateLimiter = rateLimiters.get();
+    assert rateLimiter != null;
+    return task -> executor.execute(() -> {
+      final MergeRateLimiter previous = rateLimiters.get();
+      rateLimiters.set(rateLimiter);
+      try {
+        task.run();
+      } finally {
+        rateLimiters.set(previous);
+      }
+    });
+  }
+
   /** Returns the highest <a href="#sequence_number">sequence number</a> across
    *  all completed operations, or 0 if no operations have finished yet.  Still
    *  in-flight operations (in other threads) are not counted until they finish.
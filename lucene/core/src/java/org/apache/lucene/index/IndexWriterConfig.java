@@ -19,6 +19,7 @@ package org.apache.lucene.index;
 
 import java.io.PrintStream;
 import java.util.EnumSet;
+import java.util.concurrent.Executor;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
@@ -476,6 +477,27 @@ public final class IndexWriterConfig extends LiveIndexWriterConfig {
     return this;
   }
 
+  /**
+   * Expert: sets an {@link Executor} that is used to merge the parts of a
+   * segment concurrently: stored fields, postings, doc values, points, norms
+   * and term vectors are written to different files by different formats, so
+   * they can be merged independently of each other. This allows a single large
+   * merge to use several cores, while a {@link MergeScheduler} can only run
+   * different merges concurrently. The merge thread merges one of these parts
+   * itself and waits for the other ones to complete.
+   * <p>
+   * The executor may be shared by several merges and even several writers,
+   * and it is not shut down by {@link IndexWriter}. Only the number of its
+   * threads bounds the number of parts that are merged concurrently.
+   * <p>
+   * The default is {@code null}, which merges all parts sequentially on the
+   * merge thread.
+   */
+  public IndexWriterConfig setMergeExecutor(Executor mergeExecutor) {
+    this.mergeExecutor = mergeExecutor;
+    return this;
+  }
+
   @Override
   public String toString() {
     StringBuilder sb = new StringBuilder(super.toString());
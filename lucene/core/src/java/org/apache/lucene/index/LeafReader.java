@@ -276,6 +276,75 @@ public abstract class LeafReader extends IndexReader {
    *  returned instance should only be used by a single thread */
   public abstract Bits getDocsWithField(String field) throws IOException;
 
+  /** Returns a {@link NumericDocValuesIterator} for this field, or
+   *  null if no {@link NumericDocValues} were indexed for
+   *  this field. Unlike {@link #getNumericDocValues(String)}, the
+   *  returned iterator only visits documents that have a value, which
+   *  readers of sparse fields can implement efficiently.
+   *  The default implementation wraps {@link #getNumericDocValues(String)}
+   *  and {@link #getDocsWithField(String)}. The returned instance should
+   *  only be used by a single thread.
+   *  @lucene.experimental */
+  public NumericDocValuesIterator getNumericDocValuesIterator(String field) throws IOException {
+    final NumericDocValues values = getNumericDocValues(field);
+    if (values == null) {
+      return null;
+    }
+    return DocValues.numericIterator(values, getDocsWithField(field), maxDoc());
+  }
+
+  /** Returns a {@link BinaryDocValuesIterator} for this field, or
+   *  null if no {@link BinaryDocValues} were indexed for
+   *  this field.
+   *  @see #getNumericDocValuesIterator(String)
+   *  @lucene.experimental */
+  public BinaryDocValuesIterator getBinaryDocValuesIterator(String field) throws IOException {
+    final BinaryDocValues values = getBinaryDocValues(field);
+    if (values == null) {
+      return null;
+    }
+    return DocValues.binaryIterator(values, getDocsWithField(field), maxDoc());
+  }
+
+  /** Returns a {@link SortedDocValuesIterator} for this field, or
+   *  null if no {@link SortedDocValues} were indexed for
+   *  this field.
+   *  @see #getNumericDocValuesIterator(String)
+   *  @lucene.experimental */
+  public SortedDocValuesIterator getSortedDocValuesIterator(String field) throws IOException {
+    final SortedDocValues values = getSortedDocValues(field);
+    if (values == null) {
+      return null;
+    }
+    return DocValues.sortedIterator(values, maxDoc());
+  }
+
+  /** Returns a {@link SortedNumericDocValuesIterator} for this field, or
+   *  null if no {@link SortedNumericDocValues} were indexed for
+   *  this field.
+   *  @see #getNumericDocValuesIterator(String)
+   *  @lucene.experimental */
+  public SortedNumericDocValuesIterator getSortedNumericDocValuesIterator(String field) throws IOException {
+    final SortedNumericDocValues values = getSortedNumericDocValues(field);
+    if (values == null) {
+      return null;
+    }
+    return DocValues.sortedNumericIterator(values, maxDoc());
+  }
+
+  /** Returns a {@link SortedSetDocValuesIterator} for this field, or
+   *  null if no {@link SortedSetDocValues} were indexed for
+   *  this field.
+   *  @see #getNumericDocValuesIterator(String)
+   *  @lucene.experimental */
+  public SortedSetDocValuesIterator getSortedSetDocValuesIterator(String field) throws IOException {
+    final SortedSetDocValues values = getSortedSetDocValues(field);
+    if (values == null) {
+      return null;
+    }
+    return DocValues.sortedSetIterator(values, maxDoc());
+  }
+
   /** Returns {@link NumericDocValues} representing norms
    *  for this field, or null if no {@link NumericDocValues}
    *  were indexed. The returned instance should only be
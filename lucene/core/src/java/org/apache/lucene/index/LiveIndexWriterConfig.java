@@ -17,6 +17,8 @@
 package org.apache.lucene.index;
 
 
+import java.util.concurrent.Executor;
+
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.codecs.Codec;
 import org.apache.lucene.index.DocumentsWriterPerThread.IndexingChain;
@@ -98,6 +100,9 @@ public class LiveIndexWriterConfig {
   /** The sort order to use to write merged segments. */
   protected Sort indexSort = null;
 
+  /** {@link Executor} to merge the parts of a segment concurrently, or null. */
+  protected Executor mergeExecutor = null;
+
   // used by IndexWriterConfig
   LiveIndexWriterConfig(Analyzer analyzer) {
     this.analyzer = analyzer;
@@ -457,6 +462,15 @@ public class LiveIndexWriterConfig {
     return indexSort;
   }
 
+  /**
+   * Returns the {@link Executor} that is used to merge the parts of a segment
+   * concurrently, or {@code null} if they are merged sequentially.
+   * @see IndexWriterConfig#setMergeExecutor(Executor)
+   */
+  public Executor getMergeExecutor() {
+    return mergeExecutor;
+  }
+
   @Override
   public String toString() {
     StringBuilder sb = new StringBuilder();
@@ -480,6 +494,7 @@ public class LiveIndexWriterConfig {
     sb.append("useCompoundFile=").append(getUseCompoundFile()).append("\n");
     sb.append("commitOnClose=").append(getCommitOnClose()).append("\n");
     sb.append("indexSort=").append(getIndexSort()).append("\n");
+    sb.append("mergeExecutor=").append(getMergeExecutor()).append("\n");
     return sb.toString();
   }
 }
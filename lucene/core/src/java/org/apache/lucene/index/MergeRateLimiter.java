@@ -65,7 +65,7 @@ public class MergeRateLimiter extends RateLimiter {
     // NOTE: Double.POSITIVE_INFINITY casts to Long.MAX_VALUE
     minPauseCheckBytes = Math.min(1024*1024, (long) ((MIN_PAUSE_CHECK_MSEC / 1000.0) * mbPerSec * 1024 * 1024));
     assert minPauseCheckBytes >= 0;
-    notify();
+    notifyAll();
   }
 
   @Override
@@ -78,8 +78,11 @@ public class MergeRateLimiter extends RateLimiter {
     return totalBytesWritten;
   }
 
+  // synchronized since the parts of a segment may be merged by several threads
+  // (see IndexWriterConfig#setMergeExecutor), which share this rate limit;
+  // waiting in maybePause releases the lock
   @Override
-  public long pause(long bytes) throws MergePolicy.MergeAbortedException {
+  public synchronized long pause(long bytes) throws MergePolicy.MergeAbortedException {
 
     totalBytesWritten += bytes;
 
@@ -182,7 +185,7 @@ public class MergeRateLimiter extends RateLimiter {
   /** Mark this merge aborted. */
   public synchronized void setAbort() {
     abort = true;
-    notify();
+    notifyAll();
   }
 
   /** Returns true if this merge was aborted. */
@@ -26,6 +26,8 @@ import org.apache.lucene.document.Field;
 import org.apache.lucene.document.FloatPoint;
 import org.apache.lucene.document.IntPoint;
 import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.util.IntsRef;
 import org.apache.lucene.util.StringHelper;
 import org.apache.lucene.util.bkd.BKDWriter;
 
@@ -206,6 +208,26 @@ public abstract class PointValues {
      *  consumer should blindly accept the docID. */
     void visit(int docID) throws IOException;
 
+    /** Similar to {@link #visit(int)}, but called with all documents of a leaf cell
+     *  that's fully contained by the query at once, so that consumers can add them in
+     *  bulk.  The iterator is unpositioned and its {@link DocIdSetIterator#cost() cost}
+     *  is the exact number of documents. */
+    default void visit(DocIdSetIterator iterator) throws IOException {
+      int docID;
+      while ((docID = iterator.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
+        visit(docID);
+      }
+    }
+
+    /** Similar to {@link #visit(int)}, but called with all documents of a leaf cell
+     *  that's fully contained by the query at once, so that consumers can add them in
+     *  bulk.  Doc IDs are not necessarily sorted. */
+    default void visit(IntsRef ref) throws IOException {
+      for (int i = ref.offset, end = ref.offset + ref.length; i < end; ++i) {
+        visit(ref.ints[i]);
+      }
+    }
+
     /** Called for all documents in a leaf cell that crosses the query.  The consumer
      *  should scrutinize the packedValue to decide whether to accept it.  In the 1D case,
      *  values are visited in increasing order, and in the case of ties, in increasing
@@ -226,6 +248,14 @@ public abstract class PointValues {
    *  to test whether each document is deleted, if necessary. */
   public abstract void intersect(String fieldName, IntersectVisitor visitor) throws IOException;
 
+  /** Estimate the number of points that would be visited if {@link #intersect}
+   *  was called with the given {@link IntersectVisitor}. This should run many
+   *  times faster than {@link #intersect(String, IntersectVisitor)}. The default
+   *  implementation returns {@link #size(String)}, which is an upper bound. */
+  public long estimatePointCount(String fieldName, IntersectVisitor visitor) throws IOException {
+    return size(fieldName);
+  }
+
   /** Returns minimum value for each dimension, packed, or null if {@link #size} is <code>0</code> */
   public abstract byte[] getMinPackedValue(String fieldName) throws IOException;
 
@@ -18,6 +18,7 @@ package org.apache.lucene.index;
 
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
@@ -44,6 +45,16 @@ import org.apache.lucene.util.MutableBits;
 // searching or merging), plus pending deletes and updates,
 // for a given segment
 class ReadersAndUpdates {
+
+  /** Numeric updates are stacked on top of the previous values of the field
+   *  instead of rewriting them if they touch at most this ratio of the
+   *  documents of the segment. */
+  static final double MAX_STACKED_UPDATES_RATIO = 0.01;
+
+  /** Maximum number of generations that the values of a numeric field may be
+   *  spread across before they get rewritten. */
+  static final int MAX_STACKED_GENS = 4;
+
   // Not final because we replace (clone) when we need to
   // change it and it's been shared:
   public final SegmentCommitInfo info;
@@ -318,6 +329,12 @@ class ReadersAndUpdates {
       final IOContext updatesContext = new IOContext(new FlushInfo(info.info.maxDoc(), estUpdatesSize));
       final FieldInfo fieldInfo = infos.fieldInfo(field);
       assert fieldInfo != null;
+      // if only few documents were updated, only write their values and stack
+      // them on top of the previous generation(s) of the field
+      final FieldInfo previousInfo = reader.getFieldInfos().fieldInfo(field);
+      final long[] stackedGens = getStackedGens(previousInfo, fieldUpdates);
+      final boolean stacked = stackedGens.length > 0;
+      SegmentDocValuesProducer.setStackedGens(fieldInfo, stackedGens);
       fieldInfo.setDocValuesGen(nextDocValuesGen);
       final FieldInfos fieldInfos = new FieldInfos(new FieldInfo[] { fieldInfo });
       // separately also track which files were created for this gen
@@ -355,7 +372,10 @@ class ReadersAndUpdates {
                 } else {
                   // no update for this document
                   assert curDoc < updateDoc;
-                  if (currentValues != null && docsWithField.get(curDoc)) {
+                  if (stacked) {
+                    // the value is read from the previous generations
+                    return null;
+                  } else if (currentValues != null && docsWithField.get(curDoc)) {
                     // only read the current value if the document had a value before
                     return currentValues.get(curDoc);
                   } else {
@@ -374,8 +394,41 @@ class ReadersAndUpdates {
       }
       info.advanceDocValuesGen();
       assert !fieldFiles.containsKey(fieldInfo.number);
-      fieldFiles.put(fieldInfo.number, trackingDir.getCreatedFiles());
+      final Set<String> files = trackingDir.getCreatedFiles();
+      if (stacked) {
+        // the field still needs the files of the generations it is stacked on
+        final Set<String> previousFiles = info.getDocValuesUpdatesFiles().get(fieldInfo.number);
+        if (previousFiles != null) {
+          files.addAll(previousFiles);
+        }
+      }
+      fieldFiles.put(fieldInfo.number, files);
+    }
+  }
+
+  /**
+   * Returns the generations that new updates of the given field should be
+   * stacked on, oldest first, or an empty array if all values of the field
+   * should be rewritten. Updates are only stacked if they touch a small
+   * fraction of the documents of the segment, and the number of stacked
+   * generations is bounded so that reads stay fast: once the limit is
+   * reached, the next generation rewrites the field and compacts the stack.
+   */
+  private long[] getStackedGens(FieldInfo previousInfo, NumericDocValuesFieldUpdates fieldUpdates) {
+    if (previousInfo == null || previousInfo.getDocValuesType() != DocValuesType.NUMERIC) {
+      // new field, or a field that did not have numeric doc values yet
+      return new long[0];
+    }
+    if (fieldUpdates.size() > info.info.maxDoc() * MAX_STACKED_UPDATES_RATIO) {
+      return new long[0];
+    }
+    final long[] previousGens = SegmentDocValuesProducer.getStackedGens(previousInfo);
+    if (previousGens.length + 2 > MAX_STACKED_GENS) {
+      return new long[0];
     }
+    final long[] gens = Arrays.copyOf(previousGens, previousGens.length + 1);
+    gens[previousGens.length] = previousInfo.getDocValuesGen();
+    return gens;
   }
 
   @SuppressWarnings("synthetic-access")
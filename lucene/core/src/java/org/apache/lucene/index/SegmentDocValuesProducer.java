@@ -43,9 +43,19 @@ class SegmentDocValuesProducer extends DocValuesProducer {
   private static final long BASE_RAM_BYTES_USED =
       RamUsageEstimator.shallowSizeOfInstance(SegmentDocValuesProducer.class);
 
+  /**
+   * Attribute of numeric fields whose values are stacked across several
+   * generations: the comma-separated list of the generations below
+   * {@link FieldInfo#getDocValuesGen()}, oldest first. Each generation only has
+   * values for the documents that were updated in that generation, except
+   * the oldest one which has all values of the field at that time.
+   */
+  static final String STACKED_GENS_KEY = "SegmentDocValuesProducer.stackedGens";
+
   final Map<String,DocValuesProducer> dvProducersByField = new HashMap<>();
   final Set<DocValuesProducer> dvProducers = Collections.newSetFromMap(new IdentityHashMap<DocValuesProducer,Boolean>());
   final List<Long> dvGens = new ArrayList<>();
+  private DocValuesProducer baseProducer;
   
   /**
    * Creates a new producer that handles updated docvalues fields
@@ -58,27 +68,32 @@ class SegmentDocValuesProducer extends DocValuesProducer {
   SegmentDocValuesProducer(SegmentCommitInfo si, Directory dir, FieldInfos coreInfos, FieldInfos allInfos, SegmentDocValues segDocValues) throws IOException {
     boolean success = false;
     try {
-      DocValuesProducer baseProducer = null;
       for (FieldInfo fi : allInfos) {
         if (fi.getDocValuesType() == DocValuesType.NONE) {
           continue;
         }
         long docValuesGen = fi.getDocValuesGen();
         if (docValuesGen == -1) {
-          if (baseProducer == null) {
-            // the base producer gets the original fieldinfos it wrote
-            baseProducer = segDocValues.getDocValuesProducer(docValuesGen, si, dir, coreInfos);
-            dvGens.add(docValuesGen);
-            dvProducers.add(baseProducer);
-          }
-          dvProducersByField.put(fi.name, baseProducer);
+          dvProducersByField.put(fi.name, getBaseProducer(si, dir, coreInfos, segDocValues));
         } else {
-          assert !dvGens.contains(docValuesGen);
           // otherwise, producer sees only the one fieldinfo it wrote
-          final DocValuesProducer dvp = segDocValues.getDocValuesProducer(docValuesGen, si, dir, new FieldInfos(new FieldInfo[] { fi }));
-          dvGens.add(docValuesGen);
-          dvProducers.add(dvp);
-          dvProducersByField.put(fi.name, dvp);
+          final FieldInfos fieldInfos = new FieldInfos(new FieldInfo[] { fi });
+          final DocValuesProducer dvp = getGenProducer(docValuesGen, si, dir, fieldInfos, segDocValues);
+          final long[] stackedGens = getStackedGens(fi);
+          if (stackedGens.length == 0) {
+            dvProducersByField.put(fi.name, dvp);
+          } else {
+            final DocValuesProducer[] stack = new DocValuesProducer[stackedGens.length + 1];
+            for (int i = 0; i < stackedGens.length; ++i) {
+              if (stackedGens[i] == -1) {
+                stack[i] = getBaseProducer(si, dir, coreInfos, segDocValues);
+              } else {
+                stack[i] = getGenProducer(stackedGens[i], si, dir, fieldInfos, segDocValues);
+              }
+            }
+            stack[stackedGens.length] = dvp;
+            dvProducersByField.put(fi.name, new StackedNumericDocValuesProducer(stack));
+          }
         }
       }
       success = true;
@@ -93,6 +108,54 @@ class SegmentDocValuesProducer extends DocValuesProducer {
     }
   }
 
+  private DocValuesProducer getBaseProducer(SegmentCommitInfo si, Directory dir, FieldInfos coreInfos, SegmentDocValues segDocValues) throws IOException {
+    if (baseProducer == null) {
+      // the base producer gets the original fieldinfos it wrote
+      baseProducer = segDocValues.getDocValuesProducer(-1L, si, dir, coreInfos);
+      dvGens.add(-1L);
+      dvProducers.add(baseProducer);
+    }
+    return baseProducer;
+  }
+
+  private DocValuesProducer getGenProducer(long gen, SegmentCommitInfo si, Directory dir, FieldInfos fieldInfos, SegmentDocValues segDocValues) throws IOException {
+    assert !dvGens.contains(gen);
+    final DocValuesProducer dvp = segDocValues.getDocValuesProducer(gen, si, dir, fieldInfos);
+    dvGens.add(gen);
+    dvProducers.add(dvp);
+    return dvp;
+  }
+
+  /** Return the generations that the values of the given field are stacked on, oldest first. */
+  static long[] getStackedGens(FieldInfo fi) {
+    final String value = fi.getAttribute(STACKED_GENS_KEY);
+    if (value == null || value.isEmpty()) {
+      return new long[0];
+    }
+    final String[] gens = value.split(",");
+    final long[] result = new long[gens.length];
+    for (int i = 0; i < gens.length; ++i) {
+      result[i] = Long.parseLong(gens[i]);
+    }
+    return result;
+  }
+
+  /** Record the generations that the values of the given field are stacked on, oldest first. */
+  static void setStackedGens(FieldInfo fi, long[] gens) {
+    if (gens.length == 0) {
+      fi.attributes().remove(STACKED_GENS_KEY);
+    } else {
+      final StringBuilder value = new StringBuilder();
+      for (long gen : gens) {
+        if (value.length() > 0) {
+          value.append(',');
+        }
+        value.append(gen);
+      }
+      fi.putAttribute(STACKED_GENS_KEY, value.toString());
+    }
+  }
+
   @Override
   public NumericDocValues getNumeric(FieldInfo field) throws IOException {
     DocValuesProducer dvProducer = dvProducersByField.get(field.name);
@@ -135,6 +198,41 @@ class SegmentDocValuesProducer extends DocValuesProducer {
     return dvProducer.getDocsWithField(field);
   }
 
+  @Override
+  public NumericDocValuesIterator getNumericIterator(FieldInfo field) throws IOException {
+    DocValuesProducer dvProducer = dvProducersByField.get(field.name);
+    assert dvProducer != null;
+    return dvProducer.getNumericIterator(field);
+  }
+
+  @Override
+  public BinaryDocValuesIterator getBinaryIterator(FieldInfo field) throws IOException {
+    DocValuesProducer dvProducer = dvProducersByField.get(field.name);
+    assert dvProducer != null;
+    return dvProducer.getBinaryIterator(field);
+  }
+
+  @Override
+  public SortedDocValuesIterator getSortedIterator(FieldInfo field) throws IOException {
+    DocValuesProducer dvProducer = dvProducersByField.get(field.name);
+    assert dvProducer != null;
+    return dvProducer.getSortedIterator(field);
+  }
+
+  @Override
+  public SortedNumericDocValuesIterator getSortedNumericIterator(FieldInfo field) throws IOException {
+    DocValuesProducer dvProducer = dvProducersByField.get(field.name);
+    assert dvProducer != null;
+    return dvProducer.getSortedNumericIterator(field);
+  }
+
+  @Override
+  public SortedSetDocValuesIterator getSortedSetIterator(FieldInfo field) throws IOException {
+    DocValuesProducer dvProducer = dvProducersByField.get(field.name);
+    assert dvProducer != null;
+    return dvProducer.getSortedSetIterator(field);
+  }
+
   @Override
   public void checkIntegrity() throws IOException {
     for (DocValuesProducer producer : dvProducers) {
@@ -172,4 +270,109 @@ class SegmentDocValuesProducer extends DocValuesProducer {
   public String toString() {
     return getClass().getSimpleName() + "(producers=" + dvProducers.size() + ")";
   }
+
+  /**
+   * Overlays the values of a numeric field across several generations: the
+   * value of a document is read from the newest generation that has a value
+   * for it. The wrapped producers are owned and tracked by the enclosing
+   * {@link SegmentDocValuesProducer}.
+   */
+  private static class StackedNumericDocValuesProducer extends DocValuesProducer {
+
+    private final DocValuesProducer[] stack;
+
+    StackedNumericDocValuesProducer(DocValuesProducer[] stack) {
+      this.stack = stack;
+    }
+
+    @Override
+    public NumericDocValues getNumeric(FieldInfo field) throws IOException {
+      final NumericDocValues[] values = new NumericDocValues[stack.length];
+      // the oldest generation needs no docsWithField: it is the fallback
+      final Bits[] docsWithField = new Bits[stack.length];
+      for (int i = 0; i < stack.length; ++i) {
+        values[i] = stack[i].getNumeric(field);
+        if (i > 0) {
+          docsWithField[i] = stack[i].getDocsWithField(field);
+        }
+      }
+      return new NumericDocValues() {
+        @Override
+        public long get(int docID) {
+          for (int i = values.length - 1; i > 0; --i) {
+            if (docsWithField[i].get(docID)) {
+              return values[i].get(docID);
+            }
+          }
+          return values[0].get(docID);
+        }
+      };
+    }
+
+    @Override
+    public Bits getDocsWithField(FieldInfo field) throws IOException {
+      final Bits[] docsWithField = new Bits[stack.length];
+      for (int i = 0; i < stack.length; ++i) {
+        docsWithField[i] = stack[i].getDocsWithField(field);
+      }
+      return new Bits() {
+        @Override
+        public boolean get(int index) {
+          for (Bits bits : docsWithField) {
+            if (bits.get(index)) {
+              return true;
+            }
+          }
+          return false;
+        }
+
+        @Override
+        public int length() {
+          return docsWithField[0].length();
+        }
+      };
+    }
+
+    @Override
+    public BinaryDocValues getBinary(FieldInfo field) throws IOException {
+      // only numeric updates are stacked, so the base generation has all other values
+      return stack[0].getBinary(field);
+    }
+
+    @Override
+    public SortedDocValues getSorted(FieldInfo field) throws IOException {
+      return stack[0].getSorted(field);
+    }
+
+    @Override
+    public SortedNumericDocValues getSortedNumeric(FieldInfo field) throws IOException {
+      return stack[0].getSortedNumeric(field);
+    }
+
+    @Override
+    public SortedSetDocValues getSortedSet(FieldInfo field) throws IOException {
+      return stack[0].getSortedSet(field);
+    }
+
+    @Override
+    public void checkIntegrity() throws IOException {
+      // the stacked producers are checked by the enclosing producer
+    }
+
+    @Override
+    public void close() throws IOException {
+      throw new UnsupportedOperationException(); // there is separate ref tracking
+    }
+
+    @Override
+    public long ramBytesUsed() {
+      // the stacked producers are accounted for by the enclosing producer
+      return 0;
+    }
+
+    @Override
+    public String toString() {
+      return getClass().getSimpleName() + "(gens=" + stack.length + ")";
+    }
+  }
 }
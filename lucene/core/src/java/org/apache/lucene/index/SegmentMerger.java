@@ -18,7 +18,10 @@ package org.apache.lucene.index;
 
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
 
 import org.apache.lucene.codecs.Codec;
 import org.apache.lucene.codecs.DocValuesConsumer;
@@ -29,6 +32,8 @@ import org.apache.lucene.codecs.StoredFieldsWriter;
 import org.apache.lucene.codecs.TermVectorsWriter;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.IOContext;
+import org.apache.lucene.util.FutureUtil;
+import org.apache.lucene.util.IOUtils;
 import org.apache.lucene.util.InfoStream;
 
 /**
@@ -44,13 +49,15 @@ final class SegmentMerger {
   private final Codec codec;
   
   private final IOContext context;
+
+  private final Executor executor;
   
   final MergeState mergeState;
   private final FieldInfos.Builder fieldInfosBuilder;
 
   // note, just like in codec apis Directory 'dir' is NOT the same as segmentInfo.dir!!
   SegmentMerger(List<CodecReader> readers, SegmentInfo segmentInfo, InfoStream infoStream, Directory dir,
-                FieldInfos.FieldNumbers fieldNumbers, IOContext context) throws IOException {
+                FieldInfos.FieldNumbers fieldNumbers, IOContext context, Executor executor) throws IOException {
     if (context.context != IOContext.Context.MERGE) {
       throw new IllegalArgumentException("IOContext.context should be MERGE; got: " + context.context);
     }
@@ -58,6 +65,7 @@ final class SegmentMerger {
     directory = dir;
     this.codec = segmentInfo.getCodec();
     this.context = context;
+    this.executor = executor;
     this.fieldInfosBuilder = new FieldInfos.Builder(fieldNumbers);
     if (mergeState.infoStream.isEnabled("SM")) {
       if (segmentInfo.getIndexSort() != null) {
@@ -82,84 +90,110 @@ final class SegmentMerger {
       throw new IllegalStateException("Merge would result in 0 document segment");
     }
     mergeFieldInfos();
-    long t0 = 0;
-    if (mergeState.infoStream.isEnabled("SM")) {
-      t0 = System.nanoTime();
-    }
-    int numMerged = mergeFields();
-    if (mergeState.infoStream.isEnabled("SM")) {
-      long t1 = System.nanoTime();
-      mergeState.infoStream.message("SM", ((t1-t0)/1000000) + " msec to merge stored fields [" + numMerged + " docs]");
-    }
-    assert numMerged == mergeState.segmentInfo.maxDoc(): "numMerged=" + numMerged + " vs mergeState.segmentInfo.maxDoc()=" + mergeState.segmentInfo.maxDoc();
 
+    final int maxDoc = mergeState.segmentInfo.maxDoc();
     final SegmentWriteState segmentWriteState = new SegmentWriteState(mergeState.infoStream, directory, mergeState.segmentInfo,
-                                                                      mergeState.mergeFieldInfos, null, context);
-    if (mergeState.infoStream.isEnabled("SM")) {
-      t0 = System.nanoTime();
+                                                                      mergeState.mergeFieldInfos, null, context, "", executor);
+
+    // Each part of the segment is written to its own files by its own format,
+    // so they can be merged independently of each other
+    final List<MergeTask> tasks = new ArrayList<>();
+    tasks.add(new MergeTask("stored fields", () -> {
+      int numMerged = mergeFields();
+      assert numMerged == maxDoc: "numMerged=" + numMerged + " vs mergeState.segmentInfo.maxDoc()=" + maxDoc;
+    }));
+    tasks.add(new MergeTask("postings", () -> mergeTerms(segmentWriteState)));
+    tasks.add(new MergeTask("doc values", () -> {
+      if (mergeState.mergeFieldInfos.hasDocValues()) {
+        mergeDocValues(segmentWriteState);
+      }
+    }));
+    tasks.add(new MergeTask("points", () -> {
+      if (mergeState.mergeFieldInfos.hasPointValues()) {
+        mergePoints(segmentWriteState);
+      }
+    }));
+    if (mergeState.mergeFieldInfos.hasNorms()) {
+      tasks.add(new MergeTask("norms", () -> mergeNorms(segmentWriteState)));
     }
-    mergeTerms(segmentWriteState);
-    if (mergeState.infoStream.isEnabled("SM")) {
-      long t1 = System.nanoTime();
-      mergeState.infoStream.message("SM", ((t1-t0)/1000000) + " msec to merge postings [" + numMerged + " docs]");
+    if (mergeState.mergeFieldInfos.hasVectors()) {
+      tasks.add(new MergeTask("vectors", () -> {
+        int numMerged = mergeVectors();
+        assert numMerged == maxDoc;
+      }));
     }
+    runTasks(tasks);
 
+    // write the merged infos
+    long t0 = 0;
     if (mergeState.infoStream.isEnabled("SM")) {
       t0 = System.nanoTime();
     }
-    if (mergeState.mergeFieldInfos.hasDocValues()) {
-      mergeDocValues(segmentWriteState);
-    }
+    codec.fieldInfosFormat().write(directory, mergeState.segmentInfo, "", mergeState.mergeFieldInfos, context);
     if (mergeState.infoStream.isEnabled("SM")) {
       long t1 = System.nanoTime();
-      mergeState.infoStream.message("SM", ((t1-t0)/1000000) + " msec to merge doc values [" + numMerged + " docs]");
+      mergeState.infoStream.message("SM", ((t1-t0)/1000000) + " msec to write field infos [" + maxDoc + " docs]");
     }
 
-    if (mergeState.infoStream.isEnabled("SM")) {
-      t0 = System.nanoTime();
+    return mergeState;
+  }
+
+  /** Run the given tasks, concurrently if an {@link Executor} was provided.
+   *  The first task runs on the calling thread, and this method only returns
+   *  when all tasks are done, even if some of them failed. */
+  private void runTasks(List<MergeTask> tasks) throws IOException {
+    if (executor == null) {
+      for (MergeTask task : tasks) {
+        task.run();
+      }
+      return;
     }
-    if (mergeState.mergeFieldInfos.hasPointValues()) {
-      mergePoints(segmentWriteState);
+
+    final List<Future<Void>> futures = new ArrayList<>();
+    for (MergeTask task : tasks.subList(1, tasks.size())) {
+      futures.add(FutureUtil.execute(executor, () -> {
+        task.run();
+        return null;
+      }));
     }
-    if (mergeState.infoStream.isEnabled("SM")) {
-      long t1 = System.nanoTime();
-      mergeState.infoStream.message("SM", ((t1-t0)/1000000) + " msec to merge points [" + numMerged + " docs]");
+
+    Throwable th = null;
+    try {
+      tasks.get(0).run();
+    } catch (Throwable t) {
+      th = t;
     }
-    
-    if (mergeState.mergeFieldInfos.hasNorms()) {
-      if (mergeState.infoStream.isEnabled("SM")) {
-        t0 = System.nanoTime();
-      }
-      mergeNorms(segmentWriteState);
-      if (mergeState.infoStream.isEnabled("SM")) {
-        long t1 = System.nanoTime();
-        mergeState.infoStream.message("SM", ((t1-t0)/1000000) + " msec to merge norms [" + numMerged + " docs]");
-      }
+    // wait for all parts so that no task writes files after the merge returned
+    IOUtils.reThrow(FutureUtil.waitForAll(futures, th));
+  }
+
+  /** Merges one part of the segment, typically all files of a format. */
+  private class MergeTask {
+
+    private final String name;
+    private final IOTask task;
+
+    MergeTask(String name, IOTask task) {
+      this.name = name;
+      this.task = task;
     }
 
-    if (mergeState.mergeFieldInfos.hasVectors()) {
+    void run() throws IOException {
+      long t0 = 0;
       if (mergeState.infoStream.isEnabled("SM")) {
         t0 = System.nanoTime();
       }
-      numMerged = mergeVectors();
+      task.run();
       if (mergeState.infoStream.isEnabled("SM")) {
         long t1 = System.nanoTime();
-        mergeState.infoStream.message("SM", ((t1-t0)/1000000) + " msec to merge vectors [" + numMerged + " docs]");
+        mergeState.infoStream.message("SM", ((t1-t0)/1000000) + " msec to merge " + name + " [" + mergeState.segmentInfo.maxDoc() + " docs]");
       }
-      assert numMerged == mergeState.segmentInfo.maxDoc();
-    }
-    
-    // write the merged infos
-    if (mergeState.infoStream.isEnabled("SM")) {
-      t0 = System.nanoTime();
-    }
-    codec.fieldInfosFormat().write(directory, mergeState.segmentInfo, "", mergeState.mergeFieldInfos, context);
-    if (mergeState.infoStream.isEnabled("SM")) {
-      long t1 = System.nanoTime();
-      mergeState.infoStream.message("SM", ((t1-t0)/1000000) + " msec to write field infos [" + numMerged + " docs]");
     }
+  }
 
-    return mergeState;
+  @FunctionalInterface
+  private interface IOTask {
+    void run() throws IOException;
   }
 
   private void mergeDocValues(SegmentWriteState segmentWriteState) throws IOException {
@@ -17,10 +17,14 @@
 package org.apache.lucene.index;
 
 
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+
 import org.apache.lucene.codecs.PostingsFormat; // javadocs
 import org.apache.lucene.codecs.perfield.PerFieldPostingsFormat; // javadocs
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.IOContext;
+import org.apache.lucene.util.FutureUtil; // javadocs
 import org.apache.lucene.util.InfoStream;
 import org.apache.lucene.util.MutableBits;
 
@@ -74,6 +78,14 @@ public class SegmentWriteState {
    *  to {@link Directory#createOutput(String,IOContext)}. */
   public final IOContext context;
 
+  /** {@link Executor} that formats may use to write this
+   *  segment concurrently, or {@code null} if everything
+   *  should run on the current thread. Tasks that wait on
+   *  other tasks must not block a thread of this executor
+   *  while the task they wait for is queued, see
+   *  {@link FutureUtil#get(Future)}. */
+  public final Executor executor;
+
   /** Sole constructor. */
   public SegmentWriteState(InfoStream infoStream, Directory directory, SegmentInfo segmentInfo, FieldInfos fieldInfos,
       BufferedUpdates segUpdates, IOContext context) {
@@ -88,6 +100,17 @@ public class SegmentWriteState {
    */
   public SegmentWriteState(InfoStream infoStream, Directory directory, SegmentInfo segmentInfo, FieldInfos fieldInfos,
       BufferedUpdates segUpdates, IOContext context, String segmentSuffix) {
+    this(infoStream, directory, segmentInfo, fieldInfos, segUpdates, context, segmentSuffix, null);
+  }
+
+  /**
+   * Constructor which takes segment suffix and an {@link Executor}.
+   * 
+   * @see #SegmentWriteState(InfoStream, Directory, SegmentInfo, FieldInfos,
+   *      BufferedUpdates, IOContext, String)
+   */
+  public SegmentWriteState(InfoStream infoStream, Directory directory, SegmentInfo segmentInfo, FieldInfos fieldInfos,
+      BufferedUpdates segUpdates, IOContext context, String segmentSuffix, Executor executor) {
     this.infoStream = infoStream;
     this.segUpdates = segUpdates;
     this.directory = directory;
@@ -96,6 +119,7 @@ public class SegmentWriteState {
     assert assertSegmentSuffix(segmentSuffix);
     this.segmentSuffix = segmentSuffix;
     this.context = context;
+    this.executor = executor;
   }
   
   /** Create a shallow copy of {@link SegmentWriteState} with a new segment suffix. */
@@ -105,6 +129,7 @@ public class SegmentWriteState {
     segmentInfo = state.segmentInfo;
     fieldInfos = state.fieldInfos;
     context = state.context;
+    executor = state.executor;
     this.segmentSuffix = segmentSuffix;
     segUpdates = state.segUpdates;
     delCountOnFlush = state.delCountOnFlush;
@@ -150,6 +150,11 @@ public final class SlowCodecReaderWrapper {
         values.intersect(fieldName, visitor);
       }
 
+      @Override
+      public long estimatePointCount(String fieldName, IntersectVisitor visitor) throws IOException {
+        return values.estimatePointCount(fieldName, visitor);
+      }
+
       @Override
       public void checkIntegrity() throws IOException {
         // We already checkIntegrity the entire reader up front
@@ -0,0 +1,53 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.index;
+
+import java.io.IOException;
+
+import org.apache.lucene.util.BytesRef;
+
+/**
+ * Iterator over the per-document ordinals of a single-valued sorted field.
+ * @see SortedDocValues
+ * @lucene.experimental
+ */
+public abstract class SortedDocValuesIterator extends BinaryDocValuesIterator {
+
+  /** Sole constructor. (For invocation by subclass
+   *  constructors, typically implicit.) */
+  protected SortedDocValuesIterator() {}
+
+  /**
+   * Returns the ordinal for the current document ID, between {@code 0} and
+   * {@link #getValueCount()} - 1.
+   * It is illegal to call this method if the current document has no value.
+   */
+  public abstract int ordValue() throws IOException;
+
+  /** Retrieves the value for the specified ordinal.
+   *  @see SortedDocValues#lookupOrd(int) */
+  public abstract BytesRef lookupOrd(int ord) throws IOException;
+
+  /** Returns the number of unique values. */
+  public abstract int getValueCount();
+
+  @Override
+  public BytesRef binaryValue() throws IOException {
+    return lookupOrd(ordValue());
+  }
+
+}
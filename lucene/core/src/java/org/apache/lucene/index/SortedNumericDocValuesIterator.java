@@ -0,0 +1,42 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.index;
+
+import java.io.IOException;
+
+/**
+ * Iterator over the per-document sorted lists of numeric values of a field.
+ * @see SortedNumericDocValues
+ * @lucene.experimental
+ */
+public abstract class SortedNumericDocValuesIterator extends DocValuesIterator {
+
+  /** Sole constructor. (For invocation by subclass
+   *  constructors, typically implicit.) */
+  protected SortedNumericDocValuesIterator() {}
+
+  /** Retrieves the number of values for the current document. This is always
+   *  greater than zero.
+   *  It is illegal to call this method if the current document has no value. */
+  public abstract int docValueCount();
+
+  /** Iterates to the next value in the current document, in increasing
+   *  order. Do not call this more than {@link #docValueCount()} times
+   *  per document. */
+  public abstract long nextValue() throws IOException;
+
+}
@@ -0,0 +1,51 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.index;
+
+import java.io.IOException;
+
+import org.apache.lucene.util.BytesRef;
+
+/**
+ * Iterator over the per-document sets of ordinals of a multi-valued sorted
+ * field.
+ * @see SortedSetDocValues
+ * @lucene.experimental
+ */
+public abstract class SortedSetDocValuesIterator extends DocValuesIterator {
+
+  /** When returned by {@link #nextOrd()} it means there are no more
+   *  ordinals for the document. */
+  public static final long NO_MORE_ORDS = SortedSetDocValues.NO_MORE_ORDS;
+
+  /** Sole constructor. (For invocation by subclass
+   *  constructors, typically implicit.) */
+  protected SortedSetDocValuesIterator() {}
+
+  /** Returns the next ordinal for the current document, or
+   *  {@link #NO_MORE_ORDS} once all ordinals have been consumed.
+   *  It is illegal to call this method if the current document has no value. */
+  public abstract long nextOrd() throws IOException;
+
+  /** Retrieves the value for the specified ordinal.
+   *  @see SortedSetDocValues#lookupOrd(long) */
+  public abstract BytesRef lookupOrd(long ord) throws IOException;
+
+  /** Returns the number of unique values. */
+  public abstract long getValueCount();
+
+}
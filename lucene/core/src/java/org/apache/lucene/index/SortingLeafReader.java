@@ -258,6 +258,12 @@ class SortingLeafReader extends FilterLeafReader {
                    });
     }
 
+    @Override
+    public long estimatePointCount(String fieldName, IntersectVisitor visitor) throws IOException {
+      // doc IDs are not visited, so there is nothing to remap
+      return in.estimatePointCount(fieldName, visitor);
+    }
+
     @Override
     public byte[] getMinPackedValue(String fieldName) throws IOException {
       return in.getMinPackedValue(fieldName);
@@ -21,6 +21,7 @@ import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collection;
 
+import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.util.Bits;
 import org.apache.lucene.util.PriorityQueue;
 
@@ -28,6 +29,10 @@ import org.apache.lucene.util.PriorityQueue;
  * {@link BulkScorer} that is used for pure disjunctions and disjunctions
  * that have low values of {@link BooleanQuery.Builder#setMinimumNumberShouldMatch(int)}
  * and dense clauses. This scorer scores documents by batches of 2048 docs.
+ * When scores are needed and the collector sets a minimum competitive score
+ * through {@link Scorer#setMinCompetitiveScore(float)}, the remaining documents
+ * are scored with a {@link WANDScorer} instead, which can skip documents that
+ * cannot be competitive.
  */
 final class BooleanScorer extends BulkScorer {
 
@@ -123,6 +128,13 @@ final class BooleanScorer extends BulkScorer {
   final FakeScorer fakeScorer = new FakeScorer();
   final int minShouldMatch;
   final long cost;
+  final BooleanWeight weight;
+  final LeafReaderContext context;
+  final boolean needsScores;
+  // bulk scorer that is used instead of this scorer once a min competitive
+  // score has been set, or null
+  BulkScorer topScoresBulkScorer;
+  boolean topScoresBulkScorerUnavailable;
 
   final class OrCollector implements LeafCollector {
     Scorer scorer;
@@ -145,7 +157,7 @@ final class BooleanScorer extends BulkScorer {
 
   final OrCollector orCollector = new OrCollector();
 
-  BooleanScorer(BooleanWeight weight, Collection<BulkScorer> scorers, int minShouldMatch, boolean needsScores) {
+  BooleanScorer(BooleanWeight weight, LeafReaderContext context, Collection<BulkScorer> scorers, int minShouldMatch, boolean needsScores) {
     if (minShouldMatch < 1 || minShouldMatch > scorers.size()) {
       throw new IllegalArgumentException("minShouldMatch should be within 1..num_scorers. Got " + minShouldMatch);
     }
@@ -159,6 +171,9 @@ final class BooleanScorer extends BulkScorer {
     this.head = new HeadPriorityQueue(scorers.size() - minShouldMatch + 1);
     this.tail = new TailPriorityQueue(minShouldMatch - 1);
     this.minShouldMatch = minShouldMatch;
+    this.weight = weight;
+    this.context = context;
+    this.needsScores = needsScores;
     for (BulkScorer scorer : scorers) {
       if (needsScores == false) {
         // OrCollector calls score() all the time so we have to explicitly
@@ -307,13 +322,41 @@ final class BooleanScorer extends BulkScorer {
     }
   }
 
+  /** Return a bulk scorer that can skip non-competitive documents, or null
+   *  if it is not applicable. */
+  private BulkScorer topScoresBulkScorer() throws IOException {
+    if (topScoresBulkScorerUnavailable == false
+        && needsScores && minShouldMatch == 1
+        && fakeScorer.minCompetitiveScore > 0) {
+      final Scorer scorer = weight.topScoresScorer(context);
+      if (scorer == null) {
+        topScoresBulkScorerUnavailable = true;
+        return null;
+      }
+      scorer.setMinCompetitiveScore(fakeScorer.minCompetitiveScore);
+      return new Weight.DefaultBulkScorer(scorer);
+    }
+    return null;
+  }
+
   @Override
   public int score(LeafCollector collector, Bits acceptDocs, int min, int max) throws IOException {
+    if (topScoresBulkScorer != null) {
+      return topScoresBulkScorer.score(collector, acceptDocs, min, max);
+    }
+
     fakeScorer.doc = -1;
     collector.setScorer(fakeScorer);
 
     BulkScorerAndDoc top = advance(min);
     while (top.next < max) {
+      // all documents before top.next have been collected at this point, so
+      // we can switch to a scorer that skips non-competitive documents as
+      // soon as the collector tells us that it does not need all matches
+      topScoresBulkScorer = topScoresBulkScorer();
+      if (topScoresBulkScorer != null) {
+        return topScoresBulkScorer.score(collector, acceptDocs, top.next, max);
+      }
       top = scoreWindow(top, collector, acceptDocs, min, max);
     }
 
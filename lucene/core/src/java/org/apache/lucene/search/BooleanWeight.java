@@ -171,7 +171,33 @@ final class BooleanWeight extends Weight {
       return optional.get(0);
     }
 
-    return new BooleanScorer(this, optional, Math.max(1, query.getMinimumNumberShouldMatch()), needsScores);
+    return new BooleanScorer(this, context, optional, Math.max(1, query.getMinimumNumberShouldMatch()), needsScores);
+  }
+
+  /** Return a {@link WANDScorer} for the optional clauses only, which
+   *  {@link BooleanScorer} switches to when the collector sets a minimum
+   *  competitive score. Returns null if it is not applicable. */
+  Scorer topScoresScorer(LeafReaderContext context) throws IOException {
+    List<Scorer> optional = new ArrayList<>();
+    Iterator<BooleanClause> cIter = query.iterator();
+    for (Weight w  : weights) {
+      BooleanClause c =  cIter.next();
+      if (c.getOccur() != Occur.SHOULD) {
+        continue;
+      }
+      Scorer subScorer = w.scorer(context);
+      if (subScorer != null) {
+        optional.add(subScorer);
+      }
+    }
+
+    if (optional.isEmpty()) {
+      return null;
+    } else if (optional.size() == 1) {
+      return optional.get(0);
+    } else {
+      return new WANDScorer(this, optional);
+    }
   }
 
   // Return a BulkScorer for the required clauses only,
@@ -298,10 +324,43 @@ final class BooleanWeight extends Weight {
     List<Scorer> requiredScoring = new ArrayList<>();
     List<Scorer> prohibited = new ArrayList<>();
     List<Scorer> optional = new ArrayList<>();
+
+    // first get the suppliers of required clauses so that we can compare
+    // their costs before creating scorers: only the cheapest clause leads
+    // the iteration, the other ones are only used to verify matches
+    final ScorerSupplier[] requiredSuppliers = new ScorerSupplier[weights.size()];
+    int numRequiredClauses = 0;
     Iterator<BooleanClause> cIter = query.iterator();
-    for (Weight w  : weights) {
+    for (int i = 0; i < weights.size(); ++i) {
+      BooleanClause c = cIter.next();
+      if (c.isRequired()) {
+        ScorerSupplier supplier = weights.get(i).scorerSupplier(context);
+        if (supplier == null) {
+          return null;
+        }
+        requiredSuppliers[i] = supplier;
+        numRequiredClauses++;
+      }
+    }
+    long leadCost = Long.MAX_VALUE;
+    if (numRequiredClauses > 1) {
+      for (ScorerSupplier supplier : requiredSuppliers) {
+        if (supplier != null) {
+          leadCost = Math.min(leadCost, supplier.cost());
+        }
+      }
+    }
+
+    cIter = query.iterator();
+    for (int i = 0; i < weights.size(); ++i) {
       BooleanClause c =  cIter.next();
-      Scorer subScorer = w.scorer(context);
+      final ScorerSupplier supplier = requiredSuppliers[i];
+      Scorer subScorer;
+      if (supplier != null) {
+        subScorer = supplier.get(numRequiredClauses > 1 && supplier.cost() > leadCost);
+      } else {
+        subScorer = weights.get(i).scorer(context);
+      }
       if (subScorer == null) {
         if (c.isRequired()) {
           return null;
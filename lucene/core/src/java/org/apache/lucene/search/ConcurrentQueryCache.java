@@ -0,0 +1,656 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.search;
+
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+import org.apache.lucene.index.LeafReader.CoreClosedListener;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.ReaderUtil;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.Accountables;
+import org.apache.lucene.util.RamUsageEstimator;
+
+/**
+ * A {@link QueryCache} that is designed for highly concurrent search
+ * workloads. Like {@link LRUQueryCache}, it remains under a given maximum
+ * number of cached queries and number of bytes used, but it never takes a
+ * lock in order to look up the cache:
+ * <ul>
+ *   <li>Entries are stored in one concurrent map per segment core, so
+ *       segments do not contend with each other.</li>
+ *   <li>Recency is tracked approximately: a hit records the current value of
+ *       a logical clock that only moves forward when entries are added, so
+ *       lookups only perform a volatile write.</li>
+ *   <li>Additions and evictions of a given query are serialized with one of
+ *       a fixed number of striped locks, and evictions are performed by a
+ *       single thread at a time.</li>
+ *   <li>Evictions do not sort entries: each one evicts the least-recently
+ *       used query among a small sample of the cached queries, so their cost
+ *       does not depend on the size of the cache.</li>
+ * </ul>
+ *
+ * Because recency and evictions are approximate, the evicted queries might
+ * differ from those that {@link LRUQueryCache} would evict.
+ *
+ * This class is thread-safe.
+ *
+ * @see LRUQueryCache
+ * @see QueryCachingPolicy
+ * @lucene.experimental
+ */
+public class ConcurrentQueryCache implements QueryCache, Accountable {
+
+  static final long QUERY_ENTRY_RAM_BYTES_USED =
+      RamUsageEstimator.alignObjectSize(RamUsageEstimator.NUM_BYTES_OBJECT_HEADER
+          + RamUsageEstimator.NUM_BYTES_OBJECT_REF + Long.BYTES);
+
+  // concurrent hash maps have an additional node object per entry
+  static final long CONCURRENT_HASHTABLE_RAM_BYTES_PER_ENTRY =
+      LRUQueryCache.HASHTABLE_RAM_BYTES_PER_ENTRY
+      + RamUsageEstimator.alignObjectSize(RamUsageEstimator.NUM_BYTES_OBJECT_HEADER
+          + 3 * RamUsageEstimator.NUM_BYTES_OBJECT_REF + Integer.BYTES);
+
+  private static final int NUM_STRIPES = 64;
+  // number of entries that are compared in order to pick the entry to evict
+  static final int EVICTION_SAMPLE_SIZE = 16;
+
+  private final int maxSize;
+  private final long maxRamBytesUsed;
+  private final Predicate<LeafReaderContext> leavesToCache;
+  // maps queries that are contained in the cache to their singleton and last
+  // access time. Per-leaf caches may only store queries that are contained
+  // in this map, which is why additions and removals of a query are performed
+  // under the lock of its stripe
+  private final Map<Query, QueryEntry> uniqueQueries;
+  private final Map<Object, LeafCache> cache;
+  private final ReentrantLock[] stripes;
+  private final ReentrantLock evictionLock;
+  // position of the eviction sampling, guarded by evictionLock
+  private Iterator<QueryEntry> evictionCursor;
+  // logical clock used to track recency
+  private final AtomicLong clock;
+
+  private final AtomicLong ramBytesUsed;
+  private final LongAdder hitCount;
+  private final LongAdder missCount;
+  private final AtomicLong cacheCount;
+  private final AtomicLong cacheSize;
+
+  /**
+   * Expert: Create a new instance that will cache at most <code>maxSize</code>
+   * queries with at most <code>maxRamBytesUsed</code> bytes of memory, only on
+   * leaves that satisfy {@code leavesToCache};
+   */
+  public ConcurrentQueryCache(int maxSize, long maxRamBytesUsed,
+      Predicate<LeafReaderContext> leavesToCache) {
+    this.maxSize = maxSize;
+    this.maxRamBytesUsed = maxRamBytesUsed;
+    this.leavesToCache = leavesToCache;
+    uniqueQueries = new ConcurrentHashMap<>();
+    cache = new ConcurrentHashMap<>();
+    stripes = new ReentrantLock[NUM_STRIPES];
+    for (int i = 0; i < stripes.length; ++i) {
+      stripes[i] = new ReentrantLock();
+    }
+    evictionLock = new ReentrantLock();
+    clock = new AtomicLong();
+    ramBytesUsed = new AtomicLong();
+    hitCount = new LongAdder();
+    missCount = new LongAdder();
+    cacheCount = new AtomicLong();
+    cacheSize = new AtomicLong();
+  }
+
+  /**
+   * Create a new instance that will cache at most <code>maxSize</code> queries
+   * with at most <code>maxRamBytesUsed</code> bytes of memory. Queries will
+   * only be cached on leaves that have more than 10k documents and have more
+   * than 3% of the total number of documents in the index, like
+   * {@link LRUQueryCache#LRUQueryCache(int, long)}.
+   */
+  public ConcurrentQueryCache(int maxSize, long maxRamBytesUsed) {
+    this(maxSize, maxRamBytesUsed, new LRUQueryCache.MinSegmentSizePredicate(10000, .03f));
+  }
+
+  private ReentrantLock stripe(Query query) {
+    // spread bits like ConcurrentHashMap does since query hash codes are not
+    // always well distributed
+    final int h = query.hashCode();
+    return stripes[(h ^ (h >>> 16)) & (NUM_STRIPES - 1)];
+  }
+
+  DocIdSet get(Query key, LeafReaderContext context) {
+    assert key instanceof BoostQuery == false;
+    assert key instanceof ConstantScoreQuery == false;
+    final LeafCache leafCache = cache.get(context.reader().getCoreCacheKey());
+    final QueryEntry entry = leafCache == null ? null : uniqueQueries.get(key);
+    final DocIdSet cached = entry == null ? null : leafCache.cache.get(entry.query);
+    if (cached == null) {
+      missCount.increment();
+    } else {
+      // avoid writing to shared memory if another thread already recorded
+      // the same timestamp, this keeps the read path free of contention
+      final long now = clock.get();
+      if (entry.lastUsed != now) {
+        entry.lastUsed = now;
+      }
+      hitCount.increment();
+    }
+    return cached;
+  }
+
+  void putIfAbsent(Query query, LeafReaderContext context, DocIdSet set) {
+    assert query instanceof BoostQuery == false;
+    assert query instanceof ConstantScoreQuery == false;
+    final Object key = context.reader().getCoreCacheKey();
+    LeafCache leafCache = cache.get(key);
+    if (leafCache == null) {
+      final LeafCache newLeafCache = new LeafCache(key);
+      leafCache = cache.putIfAbsent(key, newLeafCache);
+      if (leafCache == null) {
+        leafCache = newLeafCache;
+        ramBytesUsed.addAndGet(CONCURRENT_HASHTABLE_RAM_BYTES_PER_ENTRY);
+        // we just created a new leaf cache, need to register a close listener
+        context.reader().addCoreClosedListener(new CoreClosedListener() {
+          @Override
+          public void onClose(Object ownerCoreCacheKey) {
+            clearCoreCacheKey(ownerCoreCacheKey);
+          }
+        });
+      }
+    }
+
+    final ReentrantLock stripe = stripe(query);
+    stripe.lock();
+    try {
+      QueryEntry entry = uniqueQueries.get(query);
+      if (entry == null) {
+        entry = new QueryEntry(query);
+        uniqueQueries.put(query, entry);
+        ramBytesUsed.addAndGet(CONCURRENT_HASHTABLE_RAM_BYTES_PER_ENTRY + QUERY_ENTRY_RAM_BYTES_USED + ramBytesUsed(query));
+      }
+      // hits record the current value of the clock, so they will be
+      // considered more recent than this addition
+      entry.lastUsed = clock.getAndIncrement();
+      leafCache.putIfAbsent(entry.query, set);
+    } finally {
+      stripe.unlock();
+    }
+
+    evictIfNecessary();
+  }
+
+  /** Whether evictions are required. */
+  boolean requiresEviction() {
+    final int size = uniqueQueries.size();
+    if (size == 0) {
+      return false;
+    } else {
+      return size > maxSize || ramBytesUsed() > maxRamBytesUsed;
+    }
+  }
+
+  void evictIfNecessary() {
+    if (requiresEviction() == false) {
+      return;
+    }
+    // a single thread evicts at a time, there is no point in having several
+    // threads competing for the same least-recently used entries
+    evictionLock.lock();
+    try {
+      if (requiresEviction() == false) {
+        return;
+      }
+      while (requiresEviction()) {
+        final QueryEntry leastRecentlyUsed = sampleLeastRecentlyUsed();
+        if (leastRecentlyUsed == null) {
+          break;
+        }
+        evict(leastRecentlyUsed.query);
+      }
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  /**
+   * Return the least-recently used entry among {@link #EVICTION_SAMPLE_SIZE}
+   * entries, or among all entries if there are not more than that. Samples are
+   * taken with a cursor that wraps around the map of queries, so that all
+   * entries are eventually considered. Must be called under the eviction lock.
+   */
+  private QueryEntry sampleLeastRecentlyUsed() {
+    QueryEntry leastRecentlyUsed = null;
+    if (uniqueQueries.size() <= EVICTION_SAMPLE_SIZE) {
+      for (QueryEntry entry : uniqueQueries.values()) {
+        if (leastRecentlyUsed == null || entry.lastUsed < leastRecentlyUsed.lastUsed) {
+          leastRecentlyUsed = entry;
+        }
+      }
+      return leastRecentlyUsed;
+    }
+    for (int i = 0; i < EVICTION_SAMPLE_SIZE; ++i) {
+      if (evictionCursor == null || evictionCursor.hasNext() == false) {
+        evictionCursor = uniqueQueries.values().iterator();
+        if (evictionCursor.hasNext() == false) {
+          break;
+        }
+      }
+      final QueryEntry entry = evictionCursor.next();
+      if (leastRecentlyUsed == null || entry.lastUsed < leastRecentlyUsed.lastUsed) {
+        leastRecentlyUsed = entry;
+      }
+    }
+    return leastRecentlyUsed;
+  }
+
+  private void evict(Query query) {
+    final ReentrantLock stripe = stripe(query);
+    stripe.lock();
+    try {
+      final QueryEntry entry = uniqueQueries.remove(query);
+      if (entry != null) {
+        ramBytesUsed.addAndGet(-(CONCURRENT_HASHTABLE_RAM_BYTES_PER_ENTRY + QUERY_ENTRY_RAM_BYTES_USED + ramBytesUsed(entry.query)));
+        for (LeafCache leafCache : cache.values()) {
+          leafCache.remove(entry.query);
+        }
+      }
+    } finally {
+      stripe.unlock();
+    }
+  }
+
+  /**
+   * Remove all cache entries for the given core cache key.
+   */
+  public void clearCoreCacheKey(Object coreKey) {
+    final LeafCache leafCache = cache.remove(coreKey);
+    if (leafCache != null) {
+      ramBytesUsed.addAndGet(-CONCURRENT_HASHTABLE_RAM_BYTES_PER_ENTRY);
+      leafCache.close();
+    }
+  }
+
+  /**
+   * Remove all cache entries for the given query.
+   */
+  public void clearQuery(Query query) {
+    evict(query);
+  }
+
+  /**
+   * Clear the content of this cache.
+   */
+  public void clear() {
+    for (Object coreKey : new ArrayList<>(cache.keySet())) {
+      clearCoreCacheKey(coreKey);
+    }
+    for (Query query : new ArrayList<>(uniqueQueries.keySet())) {
+      evict(query);
+    }
+  }
+
+  // pkg-private for testing
+  void assertConsistent() {
+    evictionLock.lock();
+    try {
+      for (ReentrantLock stripe : stripes) {
+        stripe.lock();
+      }
+      try {
+        if (requiresEviction()) {
+          throw new AssertionError("requires evictions: size=" + uniqueQueries.size()
+              + ", maxSize=" + maxSize + ", ramBytesUsed=" + ramBytesUsed() + ", maxRamBytesUsed=" + maxRamBytesUsed);
+        }
+        long recomputedRamBytesUsed =
+            CONCURRENT_HASHTABLE_RAM_BYTES_PER_ENTRY * (cache.size() + uniqueQueries.size())
+            + QUERY_ENTRY_RAM_BYTES_USED * uniqueQueries.size();
+        for (Query query : uniqueQueries.keySet()) {
+          recomputedRamBytesUsed += ramBytesUsed(query);
+        }
+        long recomputedCacheSize = 0;
+        for (LeafCache leafCache : cache.values()) {
+          synchronized (leafCache) {
+            for (Query query : leafCache.cache.keySet()) {
+              if (uniqueQueries.containsKey(query) == false) {
+                throw new AssertionError("One leaf cache contains a query that is not in the top-level cache: " + query);
+              }
+            }
+            recomputedCacheSize += leafCache.cache.size();
+            recomputedRamBytesUsed += CONCURRENT_HASHTABLE_RAM_BYTES_PER_ENTRY * leafCache.cache.size();
+            for (DocIdSet set : leafCache.cache.values()) {
+              recomputedRamBytesUsed += set.ramBytesUsed();
+            }
+          }
+        }
+        if (recomputedRamBytesUsed != ramBytesUsed()) {
+          throw new AssertionError("ramBytesUsed mismatch : " + ramBytesUsed() + " != " + recomputedRamBytesUsed);
+        }
+        if (recomputedCacheSize != getCacheSize()) {
+          throw new AssertionError("cacheSize mismatch : " + getCacheSize() + " != " + recomputedCacheSize);
+        }
+      } finally {
+        for (ReentrantLock stripe : stripes) {
+          stripe.unlock();
+        }
+      }
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  // pkg-private for testing
+  Set<Query> cachedQueries() {
+    return Collections.unmodifiableSet(uniqueQueries.keySet());
+  }
+
+  @Override
+  public Weight doCache(Weight weight, QueryCachingPolicy policy) {
+    while (weight instanceof CachingWrapperWeight) {
+      weight = ((CachingWrapperWeight) weight).in;
+    }
+
+    return new CachingWrapperWeight(weight, policy);
+  }
+
+  @Override
+  public long ramBytesUsed() {
+    return ramBytesUsed.get();
+  }
+
+  @Override
+  public Collection<Accountable> getChildResources() {
+    return Accountables.namedAccountables("segment", cache);
+  }
+
+  /**
+   * Return the number of bytes used by the given query. The default
+   * implementation returns {@link Accountable#ramBytesUsed()} if the query
+   * implements {@link Accountable} and <code>192</code> otherwise.
+   */
+  protected long ramBytesUsed(Query query) {
+    if (query instanceof Accountable) {
+      return ((Accountable) query).ramBytesUsed();
+    }
+    return LRUQueryCache.QUERY_DEFAULT_RAM_BYTES_USED;
+  }
+
+  /**
+   * Default cache implementation: uses {@link org.apache.lucene.util.RoaringDocIdSet}
+   * for sets that have a density &lt; 1% and a {@link org.apache.lucene.util.BitDocIdSet}
+   * over a {@link org.apache.lucene.util.FixedBitSet} otherwise.
+   */
+  protected DocIdSet cacheImpl(BulkScorer scorer, int maxDoc) throws IOException {
+    if (scorer.cost() * 100 >= maxDoc) {
+      return LRUQueryCache.cacheIntoBitSet(scorer, maxDoc);
+    } else {
+      return LRUQueryCache.cacheIntoRoaringDocIdSet(scorer, maxDoc);
+    }
+  }
+
+  /**
+   * Return the total number of times that a {@link Query} has been looked up
+   * in this {@link QueryCache}.
+   * @see LRUQueryCache#getTotalCount()
+   */
+  public final long getTotalCount() {
+    return getHitCount() + getMissCount();
+  }
+
+  /**
+   * Return how many times a cached {@link DocIdSet} has been found and
+   * returned.
+   * @see LRUQueryCache#getHitCount()
+   */
+  public final long getHitCount() {
+    return hitCount.sum();
+  }
+
+  /**
+   * Return how many times a query was not contained in the cache.
+   * @see LRUQueryCache#getMissCount()
+   */
+  public final long getMissCount() {
+    return missCount.sum();
+  }
+
+  /**
+   * Return the total number of {@link DocIdSet}s which are currently stored
+   * in the cache.
+   * @see LRUQueryCache#getCacheSize()
+   */
+  public final long getCacheSize() {
+    return cacheSize.get();
+  }
+
+  /**
+   * Return the total number of cache entries that have been generated and put
+   * in the cache.
+   * @see LRUQueryCache#getCacheCount()
+   */
+  public final long getCacheCount() {
+    return cacheCount.get();
+  }
+
+  /**
+   * Return the number of cache entries that have been removed from the cache.
+   * @see LRUQueryCache#getEvictionCount()
+   */
+  public final long getEvictionCount() {
+    return getCacheCount() - getCacheSize();
+  }
+
+  private static class QueryEntry {
+
+    final Query query;
+    // value of the clock when this query was last used
+    volatile long lastUsed;
+
+    QueryEntry(Query query) {
+      this.query = query;
+    }
+
+  }
+
+  // reads are lock-free, writes are performed under the lock of this instance
+  private class LeafCache implements Accountable {
+
+    private final Object key;
+    private final Map<Query, DocIdSet> cache;
+    private volatile long ramBytesUsed;
+    private boolean closed;
+
+    LeafCache(Object key) {
+      this.key = key;
+      cache = new ConcurrentHashMap<>();
+      ramBytesUsed = 0;
+    }
+
+    synchronized void putIfAbsent(Query query, DocIdSet set) {
+      if (closed) {
+        // the core has been closed concurrently
+        return;
+      }
+      if (cache.putIfAbsent(query, set) == null) {
+        // the set was actually put
+        final long bytes = CONCURRENT_HASHTABLE_RAM_BYTES_PER_ENTRY + set.ramBytesUsed();
+        ramBytesUsed += bytes;
+        ConcurrentQueryCache.this.ramBytesUsed.addAndGet(bytes);
+        cacheSize.incrementAndGet();
+        cacheCount.incrementAndGet();
+      }
+    }
+
+    synchronized void remove(Query query) {
+      DocIdSet removed = cache.remove(query);
+      if (removed != null) {
+        final long bytes = CONCURRENT_HASHTABLE_RAM_BYTES_PER_ENTRY + removed.ramBytesUsed();
+        ramBytesUsed -= bytes;
+        ConcurrentQueryCache.this.ramBytesUsed.addAndGet(-bytes);
+        cacheSize.decrementAndGet();
+      }
+    }
+
+    synchronized void close() {
+      closed = true;
+      ConcurrentQueryCache.this.ramBytesUsed.addAndGet(-ramBytesUsed);
+      cacheSize.addAndGet(-cache.size());
+      ramBytesUsed = 0;
+      cache.clear();
+    }
+
+    @Override
+    public long ramBytesUsed() {
+      return ramBytesUsed;
+    }
+
+    @Override
+    public String toString() {
+      return "LeafCache(" + key + ")";
+    }
+
+  }
+
+  private class CachingWrapperWeight extends ConstantScoreWeight {
+
+    private final Weight in;
+    private final QueryCachingPolicy policy;
+    // we use an AtomicBoolean because Weight.scorer may be called from multiple
+    // threads when IndexSearcher is created with threads
+    private final AtomicBoolean used;
+
+    CachingWrapperWeight(Weight in, QueryCachingPolicy policy) {
+      super(in.getQuery(), 1f);
+      this.in = in;
+      this.policy = policy;
+      used = new AtomicBoolean(false);
+    }
+
+    @Override
+    public void extractTerms(Set<Term> terms) {
+      in.extractTerms(terms);
+    }
+
+    private boolean cacheEntryHasReasonableWorstCaseSize(int maxDoc) {
+      // The worst-case (dense) is a bit set which needs one bit per document,
+      // see LRUQueryCache for the rationale of the factor 5
+      final long worstCaseRamUsage = maxDoc / 8;
+      return worstCaseRamUsage * 5 < maxRamBytesUsed;
+    }
+
+    /** Check whether this segment is eligible for caching, regardless of the query. */
+    private boolean shouldCache(LeafReaderContext context) throws IOException {
+      return cacheEntryHasReasonableWorstCaseSize(ReaderUtil.getTopLevelContext(context).reader().maxDoc())
+          && leavesToCache.test(context);
+    }
+
+    /** Return the cached {@link DocIdSet}, computing it if the policy allows
+     *  for it, or null if the query should not be cached. */
+    private DocIdSet getOrCache(LeafReaderContext context) throws IOException {
+      if (used.compareAndSet(false, true)) {
+        policy.onUse(getQuery());
+      }
+      if (shouldCache(context) == false) {
+        return null;
+      }
+
+      DocIdSet docIdSet = get(in.getQuery(), context);
+      if (docIdSet == null && policy.shouldCache(in.getQuery())) {
+        final BulkScorer scorer = in.bulkScorer(context);
+        if (scorer == null) {
+          docIdSet = DocIdSet.EMPTY;
+        } else {
+          docIdSet = cacheImpl(scorer, context.reader().maxDoc());
+        }
+        putIfAbsent(in.getQuery(), context, docIdSet);
+      }
+      return docIdSet;
+    }
+
+    @Override
+    public ScorerSupplier scorerSupplier(LeafReaderContext context) throws IOException {
+      final DocIdSet docIdSet = getOrCache(context);
+      if (docIdSet == null) {
+        // not cached: let the wrapped weight pick how to build its scorer
+        return in.scorerSupplier(context);
+      } else if (docIdSet == DocIdSet.EMPTY) {
+        return null;
+      }
+      final DocIdSetIterator disi = docIdSet.iterator();
+      if (disi == null) {
+        return null;
+      }
+      return new ScorerSupplier() {
+        @Override
+        public Scorer get(boolean randomAccess) throws IOException {
+          return new ConstantScoreScorer(CachingWrapperWeight.this, 0f, disi);
+        }
+
+        @Override
+        public long cost() {
+          return disi.cost();
+        }
+      };
+    }
+
+    @Override
+    public Scorer scorer(LeafReaderContext context) throws IOException {
+      ScorerSupplier scorerSupplier = scorerSupplier(context);
+      if (scorerSupplier == null) {
+        return null;
+      }
+      return scorerSupplier.get(false);
+    }
+
+    @Override
+    public int count(LeafReaderContext context) throws IOException {
+      // caching does not change matches, so the wrapped weight can count them
+      return in.count(context);
+    }
+
+    @Override
+    public BulkScorer bulkScorer(LeafReaderContext context) throws IOException {
+      final DocIdSet docIdSet = getOrCache(context);
+      if (docIdSet == null) {
+        return in.bulkScorer(context);
+      } else if (docIdSet == DocIdSet.EMPTY) {
+        return null;
+      }
+      final DocIdSetIterator disi = docIdSet.iterator();
+      if (disi == null) {
+        return null;
+      }
+      return new DefaultBulkScorer(new ConstantScoreScorer(this, 0f, disi));
+    }
+
+  }
+}
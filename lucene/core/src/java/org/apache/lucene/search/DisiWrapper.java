@@ -31,6 +31,9 @@ public class DisiWrapper {
   public int doc; // the current doc, used for comparison
   public DisiWrapper next; // reference to a next element, see #topList
 
+  // An upper bound of the score of the scorer, scaled to a long, see WANDScorer
+  long maxScore;
+
   // An approximation of the iterator, or the iterator itself if it does not
   // support two-phase iteration
   public final DocIdSetIterator approximation;
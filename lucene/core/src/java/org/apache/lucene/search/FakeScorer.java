@@ -25,6 +25,7 @@ final class FakeScorer extends Scorer {
   float score;
   int doc = -1;
   int freq = 1;
+  float minCompetitiveScore;
 
   public FakeScorer() {
     super(null);
@@ -45,6 +46,11 @@ final class FakeScorer extends Scorer {
     return score;
   }
 
+  @Override
+  public void setMinCompetitiveScore(float minScore) {
+    this.minCompetitiveScore = minScore;
+  }
+
   @Override
   public DocIdSetIterator iterator() {
     throw new UnsupportedOperationException();
@@ -20,13 +20,19 @@ package org.apache.lucene.search;
 import java.io.IOException;
 import java.util.Objects;
 
+import org.apache.lucene.index.DocValuesIterator;
+import org.apache.lucene.index.FieldInfo;
 import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.index.LeafReaderContext;
-import org.apache.lucene.util.Bits;
 
 /**
  * A {@link Query} that matches documents that have a value for a given field
  * as reported by {@link LeafReader#getDocsWithField(String)}.
+ * Matching documents are iterated using the doc values iterators, eg.
+ * {@link LeafReader#getNumericDocValuesIterator(String)}, so that sparse
+ * fields do not need to check every document of the segment. Iterators that
+ * cannot skip over documents that have no value report a cost of
+ * {@code maxDoc}, so that conjunctions let cheaper clauses lead iteration.
  */
 public final class FieldValueQuery extends Query {
 
@@ -60,11 +66,42 @@ public final class FieldValueQuery extends Query {
 
   @Override
   public Weight createWeight(IndexSearcher searcher, boolean needsScores, float boost) throws IOException {
-    return new RandomAccessWeight(this, boost) {
+    return new ConstantScoreWeight(this, boost) {
 
       @Override
-      protected Bits getMatchingDocs(LeafReaderContext context) throws IOException {
-        return context.reader().getDocsWithField(field);
+      public Scorer scorer(LeafReaderContext context) throws IOException {
+        final LeafReader reader = context.reader();
+        final FieldInfo fieldInfo = reader.getFieldInfos().fieldInfo(field);
+        if (fieldInfo == null) {
+          return null;
+        }
+        final DocValuesIterator iterator;
+        switch (fieldInfo.getDocValuesType()) {
+          case NONE:
+            return null;
+          case NUMERIC:
+            iterator = reader.getNumericDocValuesIterator(field);
+            break;
+          case BINARY:
+            iterator = reader.getBinaryDocValuesIterator(field);
+            break;
+          case SORTED:
+            iterator = reader.getSortedDocValuesIterator(field);
+            break;
+          case SORTED_NUMERIC:
+            iterator = reader.getSortedNumericDocValuesIterator(field);
+            break;
+          case SORTED_SET:
+            iterator = reader.getSortedSetDocValuesIterator(field);
+            break;
+          default:
+            throw new AssertionError();
+        }
+        if (iterator == null) {
+          return null;
+        }
+        // the iterator is exact: it only returns documents that have a value
+        return new ConstantScoreScorer(this, score(), iterator);
       }
 
     };
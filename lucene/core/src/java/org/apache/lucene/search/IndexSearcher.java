@@ -22,6 +22,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
@@ -100,6 +101,11 @@ public class IndexSearcher {
           return 0f;
         }
 
+        @Override
+        public float maxScore(float maxFreq) {
+          return 0f;
+        }
+
         @Override
         public float computeSlopFactor(int distance) {
           return 1f;
@@ -302,6 +308,40 @@ public class IndexSearcher {
     }
     return slices;
   }
+
+  /**
+   * Expert: Creates an array of leaf slices that hold at most
+   * <code>maxDocsPerSlice</code> documents each. Leaves that have more documents
+   * are split into several {@link LeafReaderContextPartition}s that cover
+   * consecutive ranges of doc IDs, so that a single large segment, for instance
+   * after a force-merge, can still be searched by several threads. Smaller
+   * leaves get one slice each, like {@link #slices(List)}.
+   * <p>This can be used by sub-classes that override {@link #slices(List)}.
+   * Note that each partition requires its own {@link Scorer}, so partitions
+   * should not be too small.
+   * @lucene.experimental
+   */
+  public static LeafSlice[] slices(List<LeafReaderContext> leaves, int maxDocsPerSlice) {
+    if (maxDocsPerSlice <= 0) {
+      throw new IllegalArgumentException("maxDocsPerSlice must be > 0, got " + maxDocsPerSlice);
+    }
+    List<LeafSlice> slices = new ArrayList<>();
+    for (LeafReaderContext ctx : leaves) {
+      final int maxDoc = ctx.reader().maxDoc();
+      if (maxDoc <= maxDocsPerSlice) {
+        slices.add(new LeafSlice(ctx));
+      } else {
+        final int numPartitions = (int) ((maxDoc + (long) maxDocsPerSlice - 1) / maxDocsPerSlice);
+        // spread documents evenly across partitions
+        final int docsPerPartition = (int) ((maxDoc + (long) numPartitions - 1) / numPartitions);
+        for (int minDocId = 0; minDocId < maxDoc; minDocId += docsPerPartition) {
+          final int maxDocId = (int) Math.min(maxDoc, (long) minDocId + docsPerPartition);
+          slices.add(new LeafSlice(LeafReaderContextPartition.createFromAndTo(ctx, minDocId, maxDocId)));
+        }
+      }
+    }
+    return slices.toArray(new LeafSlice[slices.size()]);
+  }
   
   /** Return the {@link IndexReader} this searches. */
   public IndexReader getIndexReader() {
@@ -351,37 +391,46 @@ public class IndexSearcher {
   }
 
   /**
-   * Count how many documents match the given query.
+   * Count how many documents match the given query. Leaves whose count can be
+   * computed without iterating over matches (see {@link Weight#count}) are not
+   * searched.
    */
   public int count(Query query) throws IOException {
     query = rewrite(query);
-    while (true) {
-      // remove wrappers that don't matter for counts
-      if (query instanceof ConstantScoreQuery) {
-        query = ((ConstantScoreQuery) query).getQuery();
-      } else {
-        break;
-      }
-    }
+    final Weight weight = createNormalizedWeight(query, false);
 
     // some counts can be computed in constant time
-    if (query instanceof MatchAllDocsQuery) {
-      return reader.numDocs();
-    } else if (query instanceof TermQuery && reader.hasDeletions() == false) {
-      Term term = ((TermQuery) query).getTerm();
-      int count = 0;
-      for (LeafReaderContext leaf : reader.leaves()) {
-        count += leaf.reader().docFreq(term);
+    int count = 0;
+    final boolean[] counted = new boolean[leafContexts.size()];
+    boolean allCounted = true;
+    for (LeafReaderContext leaf : leafContexts) {
+      final int leafCount = weight.count(leaf);
+      if (leafCount == -1) {
+        allCounted = false;
+      } else {
+        assert leafCount >= 0 && leafCount <= leaf.reader().numDocs() : leafCount;
+        count += leafCount;
+        counted[leaf.ord] = true;
       }
+    }
+    if (allCounted) {
       return count;
     }
 
-    // general case: create a collecor and count matches
+    // general case: create a collector and count matches on the other leaves
     final CollectorManager<TotalHitCountCollector, Integer> collectorManager = new CollectorManager<TotalHitCountCollector, Integer>() {
 
       @Override
       public TotalHitCountCollector newCollector() throws IOException {
-        return new TotalHitCountCollector();
+        return new TotalHitCountCollector() {
+          @Override
+          protected void doSetNextReader(LeafReaderContext context) throws IOException {
+            if (counted[context.ord]) {
+              // already counted
+              throw new CollectionTerminatedException();
+            }
+          }
+        };
       }
 
       @Override
@@ -394,7 +443,7 @@ public class IndexSearcher {
       }
 
     };
-    return search(query, collectorManager);
+    return count + search(weight, collectorManager);
   }
 
   /** Finds the top <code>n</code>
@@ -591,14 +640,36 @@ public class IndexSearcher {
       }
 
       final Weight weight = createNormalizedWeight(query, needsScores);
+      return search(weight, collectorManager, collectors);
+    }
+  }
+
+  /** Same as {@link #search(Query, CollectorManager)} but for an already
+   *  created {@link Weight}, whose scores must have been configured
+   *  consistently with the collectors that {@code collectorManager} creates. */
+  private <C extends Collector, T> T search(Weight weight, CollectorManager<C, T> collectorManager) throws IOException {
+    final int numCollectors = executor == null ? 1 : leafSlices.length;
+    final List<C> collectors = new ArrayList<>(numCollectors);
+    for (int i = 0; i < numCollectors; ++i) {
+      collectors.add(collectorManager.newCollector());
+    }
+    return search(weight, collectorManager, collectors);
+  }
+
+  private <C extends Collector, T> T search(Weight weight, CollectorManager<C, T> collectorManager, List<C> collectors) throws IOException {
+    if (executor == null) {
+      final C collector = collectors.get(0);
+      search(leafContexts, weight, collector);
+      return collectorManager.reduce(Collections.singletonList(collector));
+    } else {
       final List<Future<C>> topDocsFutures = new ArrayList<>(leafSlices.length);
       for (int i = 0; i < leafSlices.length; ++i) {
-        final LeafReaderContext[] leaves = leafSlices[i].leaves;
+        final LeafSlice slice = leafSlices[i];
         final C collector = collectors.get(i);
         topDocsFutures.add(executor.submit(new Callable<C>() {
           @Override
           public C call() throws Exception {
-            search(Arrays.asList(leaves), weight, collector);
+            search(slice, weight, collector);
             return collector;
           }
         }));
@@ -665,6 +736,56 @@ public class IndexSearcher {
     }
   }
 
+  /**
+   * Lower-level search API.
+   * <p>
+   * Searches the leaves, or ranges of doc IDs within leaves, that make up the
+   * given {@link LeafSlice}. Slices that only contain entire leaves are
+   * delegated to {@link #search(List, Weight, Collector)}. Partitions of a
+   * leaf are scored with {@link BulkScorer#score(LeafCollector, Bits, int, int)}
+   * so that only documents within the range of the partition are collected.
+   *
+   * @param slice
+   *          the slice to execute the search on
+   * @param weight
+   *          to match documents
+   * @param collector
+   *          to receive hits
+   * @lucene.experimental
+   */
+  protected void search(LeafSlice slice, Weight weight, Collector collector)
+      throws IOException {
+    boolean entireLeaves = true;
+    for (LeafReaderContextPartition partition : slice.partitions) {
+      entireLeaves &= partition.coversEntireLeaf();
+    }
+    if (entireLeaves) {
+      search(Arrays.asList(slice.leaves), weight, collector);
+      return;
+    }
+
+    for (LeafReaderContextPartition partition : slice.partitions) {
+      final LeafReaderContext ctx = partition.ctx;
+      final LeafCollector leafCollector;
+      try {
+        leafCollector = collector.getLeafCollector(ctx);
+      } catch (CollectionTerminatedException e) {
+        // there is no doc of interest in this reader context
+        // continue with the following partition
+        continue;
+      }
+      BulkScorer scorer = weight.bulkScorer(ctx);
+      if (scorer != null) {
+        try {
+          scorer.score(leafCollector, ctx.reader().getLiveDocs(), partition.minDocId, partition.maxDocId);
+        } catch (CollectionTerminatedException e) {
+          // collection was terminated prematurely
+          // continue with the following partition
+        }
+      }
+    }
+  }
+
   /** Expert: called to re-write queries into primitive queries.
    * @throws BooleanQuery.TooManyClauses If a query would exceed 
    *         {@link BooleanQuery#getMaxClauseCount()} clauses.
@@ -756,9 +877,80 @@ public class IndexSearcher {
    */
   public static class LeafSlice {
     final LeafReaderContext[] leaves;
+    final LeafReaderContextPartition[] partitions;
     
     public LeafSlice(LeafReaderContext... leaves) {
       this.leaves = leaves;
+      this.partitions = new LeafReaderContextPartition[leaves.length];
+      for (int i = 0; i < leaves.length; ++i) {
+        partitions[i] = LeafReaderContextPartition.createForEntireLeaf(leaves[i]);
+      }
+    }
+
+    /**
+     * Create a slice that holds the given partitions. A slice may not hold
+     * several partitions of the same leaf, since they would be collected
+     * by the same {@link Collector}.
+     */
+    public LeafSlice(LeafReaderContextPartition... partitions) {
+      this.partitions = partitions;
+      this.leaves = new LeafReaderContext[partitions.length];
+      Set<LeafReaderContext> seen = new HashSet<>();
+      for (int i = 0; i < partitions.length; ++i) {
+        leaves[i] = partitions[i].ctx;
+        if (seen.add(leaves[i]) == false) {
+          throw new IllegalArgumentException("A slice may not hold several partitions of the same leaf: " + leaves[i]);
+        }
+      }
+    }
+  }
+
+  /**
+   * A range of doc IDs of a {@link LeafReaderContext}, from
+   * <code>minDocId</code> inclusive to <code>maxDocId</code> exclusive. A leaf
+   * that is split into several partitions can be searched concurrently by
+   * several threads.
+   *
+   * @lucene.experimental
+   */
+  public static final class LeafReaderContextPartition {
+    /** The leaf. */
+    public final LeafReaderContext ctx;
+    /** The first doc ID of this partition, inclusive. */
+    public final int minDocId;
+    /** The last doc ID of this partition, exclusive. */
+    public final int maxDocId;
+
+    private LeafReaderContextPartition(LeafReaderContext ctx, int minDocId, int maxDocId) {
+      this.ctx = ctx;
+      this.minDocId = minDocId;
+      this.maxDocId = maxDocId;
+    }
+
+    /** Create a partition that covers all documents of the given leaf. */
+    public static LeafReaderContextPartition createForEntireLeaf(LeafReaderContext ctx) {
+      return new LeafReaderContextPartition(ctx, 0, DocIdSetIterator.NO_MORE_DOCS);
+    }
+
+    /** Create a partition that covers doc IDs from <code>minDocId</code>
+     *  inclusive to <code>maxDocId</code> exclusive of the given leaf. */
+    public static LeafReaderContextPartition createFromAndTo(LeafReaderContext ctx, int minDocId, int maxDocId) {
+      if (minDocId < 0 || minDocId >= maxDocId) {
+        throw new IllegalArgumentException("Invalid range of doc IDs: [" + minDocId + ", " + maxDocId + ")");
+      }
+      if (minDocId >= ctx.reader().maxDoc()) {
+        throw new IllegalArgumentException("minDocId=" + minDocId + " is not less than maxDoc=" + ctx.reader().maxDoc());
+      }
+      return new LeafReaderContextPartition(ctx, minDocId, maxDocId);
+    }
+
+    boolean coversEntireLeaf() {
+      return minDocId == 0 && (maxDocId == DocIdSetIterator.NO_MORE_DOCS || maxDocId >= ctx.reader().maxDoc());
+    }
+
+    @Override
+    public String toString() {
+      return "LeafReaderContextPartition(" + ctx + ", minDocId=" + minDocId + ", maxDocId=" + maxDocId + ")";
     }
   }
 
@@ -40,6 +40,10 @@ public final class MatchAllDocsQuery extends Query {
         return new ConstantScoreScorer(this, score(), DocIdSetIterator.all(context.reader().maxDoc()));
       }
       @Override
+      public int count(LeafReaderContext context) throws IOException {
+        return context.reader().numDocs();
+      }
+      @Override
       public BulkScorer bulkScorer(LeafReaderContext context) throws IOException {
         final float score = score();
         final int maxDoc = context.reader().maxDoc();
@@ -29,6 +29,12 @@ import org.apache.lucene.index.LeafReaderContext;
  * {@link Collector}s. It offers a static {@link #wrap} method which accepts a
  * list of collectors and wraps them with {@link MultiCollector}, while
  * filtering out the <code>null</code> null ones.
+ * <p>
+ * When a single wrapped collector needs scores, it gets the scorer as-is, so
+ * a minimum competitive score that it sets, for instance through
+ * {@link TopScoreDocCollector#create(int, ScoreDoc, boolean)}, also applies to
+ * the collectors that do not need scores. When several collectors need
+ * scores, minimum competitive scores are ignored.
  */
 public class MultiCollector implements Collector {
 
@@ -150,6 +156,8 @@ public class MultiCollector implements Collector {
     @Override
     public void setScorer(Scorer scorer) throws IOException {
       if (cacheScores) {
+        // the caching scorer does not forward setMinCompetitiveScore, so that a
+        // collector cannot make the scorer skip hits that another one needs
         scorer = new ScoreCachingWrappingScorer(scorer);
       }
       for (int i = 0; i < numCollectors; ++i) {
@@ -35,6 +35,7 @@ import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.BytesRefBuilder;
 import org.apache.lucene.util.BytesRefIterator;
 import org.apache.lucene.util.DocIdSetBuilder;
+import org.apache.lucene.util.IntsRef;
 import org.apache.lucene.util.StringHelper;
 
 /**
@@ -133,6 +134,15 @@ public abstract class PointInSetQuery extends Query {
           throw new IllegalArgumentException("field=\"" + field + "\" was indexed with bytesPerDim=" + fieldInfo.getPointNumBytes() + " but this query has bytesPerDim=" + bytesPerDim);
         }
 
+        if (values.getDocCount(field) == reader.maxDoc()) {
+          final byte[] minPackedValue = values.getMinPackedValue(field);
+          final byte[] maxPackedValue = values.getMaxPackedValue(field);
+          if (Arrays.equals(minPackedValue, maxPackedValue) && containsPoint(minPackedValue)) {
+            // all docs have a value and all points are equal to one of the queried points, so everything matches
+            return new ConstantScoreScorer(this, score(), DocIdSetIterator.all(reader.maxDoc()));
+          }
+        }
+
         DocIdSetBuilder result = new DocIdSetBuilder(reader.maxDoc(), values, field);
 
         if (numDims == 1) {
@@ -157,6 +167,22 @@ public abstract class PointInSetQuery extends Query {
     };
   }
 
+  /** Returns whether the given packed point is one of the queried points. */
+  private boolean containsPoint(byte[] packedPoint) {
+    final BytesRef point = new BytesRef(packedPoint);
+    TermIterator iterator = sortedPackedPoints.iterator();
+    for (BytesRef next = iterator.next(); next != null; next = iterator.next()) {
+      int cmp = next.compareTo(point);
+      if (cmp == 0) {
+        return true;
+      } else if (cmp > 0) {
+        // points are sorted
+        return false;
+      }
+    }
+    return false;
+  }
+
   /** Essentially does a merge sort, only collecting hits when the indexed point and query point are the same.  This is an optimization,
    *  used in the 1D case. */
   private class MergePointVisitor implements IntersectVisitor {
@@ -186,6 +212,16 @@ public abstract class PointInSetQuery extends Query {
       adder.add(docID);
     }
 
+    @Override
+    public void visit(DocIdSetIterator iterator) throws IOException {
+      adder.add(iterator);
+    }
+
+    @Override
+    public void visit(IntsRef ref) {
+      adder.add(ref);
+    }
+
     @Override
     public void visit(int docID, byte[] packedValue) {
       scratch.bytes = packedValue;
@@ -264,6 +300,16 @@ public abstract class PointInSetQuery extends Query {
       adder.add(docID);
     }
 
+    @Override
+    public void visit(DocIdSetIterator iterator) throws IOException {
+      adder.add(iterator);
+    }
+
+    @Override
+    public void visit(IntsRef ref) {
+      adder.add(ref);
+    }
+
     @Override
     public void visit(int docID, byte[] packedValue) {
       assert packedValue.length == pointBytes.length;
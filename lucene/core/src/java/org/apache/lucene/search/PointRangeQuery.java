@@ -17,6 +17,7 @@
 package org.apache.lucene.search;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Arrays;
 import java.util.Objects;
 
@@ -27,7 +28,10 @@ import org.apache.lucene.document.IntPoint;    // javadocs
 import org.apache.lucene.index.FieldInfo;
 import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.util.BitSetIterator;
 import org.apache.lucene.util.DocIdSetBuilder;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.IntsRef;
 import org.apache.lucene.util.StringHelper;
 
 /** 
@@ -105,71 +109,138 @@ public abstract class PointRangeQuery extends Query {
 
     return new ConstantScoreWeight(this, boost) {
 
-      private DocIdSet buildMatchingDocIdSet(LeafReader reader, PointValues values) throws IOException {
-        DocIdSetBuilder result = new DocIdSetBuilder(reader.maxDoc(), values, field);
+      private Relation relate(byte[] minPackedValue, byte[] maxPackedValue) {
 
-        values.intersect(field,
-            new IntersectVisitor() {
+        boolean crosses = false;
 
-              DocIdSetBuilder.BulkAdder adder;
+        for(int dim=0;dim<numDims;dim++) {
+          int offset = dim*bytesPerDim;
 
-              @Override
-              public void grow(int count) {
-                adder = result.grow(count);
-              }
+          if (StringHelper.compare(bytesPerDim, minPackedValue, offset, upperPoint, offset) > 0 ||
+              StringHelper.compare(bytesPerDim, maxPackedValue, offset, lowerPoint, offset) < 0) {
+            return Relation.CELL_OUTSIDE_QUERY;
+          }
 
-              @Override
-              public void visit(int docID) {
-                adder.add(docID);
-              }
+          crosses |= StringHelper.compare(bytesPerDim, minPackedValue, offset, lowerPoint, offset) < 0 ||
+            StringHelper.compare(bytesPerDim, maxPackedValue, offset, upperPoint, offset) > 0;
+        }
 
-              @Override
-              public void visit(int docID, byte[] packedValue) {
-                for(int dim=0;dim<numDims;dim++) {
-                  int offset = dim*bytesPerDim;
-                  if (StringHelper.compare(bytesPerDim, packedValue, offset, lowerPoint, offset) < 0) {
-                    // Doc's value is too low, in this dimension
-                    return;
-                  }
-                  if (StringHelper.compare(bytesPerDim, packedValue, offset, upperPoint, offset) > 0) {
-                    // Doc's value is too high, in this dimension
-                    return;
-                  }
-                }
-
-                // Doc is in-bounds
-                adder.add(docID);
-              }
+        if (crosses) {
+          return Relation.CELL_CROSSES_QUERY;
+        } else {
+          return Relation.CELL_INSIDE_QUERY;
+        }
+      }
+
+      private boolean matches(byte[] packedValue) {
+        for(int dim=0;dim<numDims;dim++) {
+          int offset = dim*bytesPerDim;
+          if (StringHelper.compare(bytesPerDim, packedValue, offset, lowerPoint, offset) < 0) {
+            // Doc's value is too low, in this dimension
+            return false;
+          }
+          if (StringHelper.compare(bytesPerDim, packedValue, offset, upperPoint, offset) > 0) {
+            // Doc's value is too high, in this dimension
+            return false;
+          }
+        }
+        return true;
+      }
 
-              @Override
-              public Relation compare(byte[] minPackedValue, byte[] maxPackedValue) {
+      private IntersectVisitor getIntersectVisitor(DocIdSetBuilder result) {
+        return new IntersectVisitor() {
 
-                boolean crosses = false;
+          DocIdSetBuilder.BulkAdder adder;
 
-                for(int dim=0;dim<numDims;dim++) {
-                  int offset = dim*bytesPerDim;
+          @Override
+          public void grow(int count) {
+            adder = result.grow(count);
+          }
 
-                  if (StringHelper.compare(bytesPerDim, minPackedValue, offset, upperPoint, offset) > 0 ||
-                      StringHelper.compare(bytesPerDim, maxPackedValue, offset, lowerPoint, offset) < 0) {
-                    return Relation.CELL_OUTSIDE_QUERY;
-                  }
+          @Override
+          public void visit(int docID) {
+            adder.add(docID);
+          }
 
-                  crosses |= StringHelper.compare(bytesPerDim, minPackedValue, offset, lowerPoint, offset) < 0 ||
-                    StringHelper.compare(bytesPerDim, maxPackedValue, offset, upperPoint, offset) > 0;
-                }
+          @Override
+          public void visit(DocIdSetIterator iterator) throws IOException {
+            adder.add(iterator);
+          }
 
-                if (crosses) {
-                  return Relation.CELL_CROSSES_QUERY;
-                } else {
-                  return Relation.CELL_INSIDE_QUERY;
-                }
-              }
-            });
-        return result.build();
+          @Override
+          public void visit(IntsRef ref) {
+            adder.add(ref);
+          }
+
+          @Override
+          public void visit(int docID, byte[] packedValue) {
+            if (matches(packedValue)) {
+              // Doc is in-bounds
+              adder.add(docID);
+            }
+          }
+
+          @Override
+          public Relation compare(byte[] minPackedValue, byte[] maxPackedValue) {
+            return relate(minPackedValue, maxPackedValue);
+          }
+        };
+      }
+
+      /**
+       * Create a visitor that clears documents that do NOT match the range.
+       */
+      private IntersectVisitor getInverseIntersectVisitor(FixedBitSet result, long[] cost) {
+        return new IntersectVisitor() {
+
+          @Override
+          public void visit(int docID) {
+            result.clear(docID);
+            cost[0]--;
+          }
+
+          @Override
+          public void visit(DocIdSetIterator iterator) throws IOException {
+            for (int doc = iterator.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = iterator.nextDoc()) {
+              result.clear(doc);
+            }
+            cost[0] -= iterator.cost();
+          }
+
+          @Override
+          public void visit(IntsRef ref) {
+            for (int i = ref.offset, end = ref.offset + ref.length; i < end; ++i) {
+              result.clear(ref.ints[i]);
+            }
+            cost[0] -= ref.length;
+          }
+
+          @Override
+          public void visit(int docID, byte[] packedValue) {
+            if (matches(packedValue) == false) {
+              visit(docID);
+            }
+          }
+
+          @Override
+          public Relation compare(byte[] minPackedValue, byte[] maxPackedValue) {
+            Relation relation = relate(minPackedValue, maxPackedValue);
+            switch (relation) {
+              case CELL_INSIDE_QUERY:
+                // all points match, skip this subtree
+                return Relation.CELL_OUTSIDE_QUERY;
+              case CELL_OUTSIDE_QUERY:
+                // none of the points match, clear all documents
+                return Relation.CELL_INSIDE_QUERY;
+              default:
+                return relation;
+            }
+          }
+        };
       }
 
       @Override
-      public Scorer scorer(LeafReaderContext context) throws IOException {
+      public ScorerSupplier scorerSupplier(LeafReaderContext context) throws IOException {
         LeafReader reader = context.reader();
         PointValues values = reader.getPointValues();
         if (values == null) {
@@ -205,15 +276,102 @@ public abstract class PointRangeQuery extends Query {
           allDocsMatch = false;
         }
 
-        DocIdSetIterator iterator;
+        final Weight weight = this;
         if (allDocsMatch) {
           // all docs have a value and all points are within bounds, so everything matches
-          iterator = DocIdSetIterator.all(reader.maxDoc());
-        } else {
-          iterator = buildMatchingDocIdSet(reader, values).iterator();
+          return new ScorerSupplier() {
+            @Override
+            public Scorer get(boolean randomAccess) {
+              return new ConstantScoreScorer(weight, score(), DocIdSetIterator.all(reader.maxDoc()));
+            }
+
+            @Override
+            public long cost() {
+              return reader.maxDoc();
+            }
+          };
         }
 
-        return new ConstantScoreScorer(this, score(), iterator);
+        final DocIdSetBuilder result = new DocIdSetBuilder(reader.maxDoc(), values, field);
+        final IntersectVisitor visitor = getIntersectVisitor(result);
+        return new ScorerSupplier() {
+
+          long cost = -1;
+
+          @Override
+          public Scorer get(boolean randomAccess) throws IOException {
+            final DocIdSetIterator iterator;
+            if (values.getDocCount(field) == reader.maxDoc()
+                && values.getDocCount(field) == values.size(field)
+                && cost() > reader.maxDoc() / 2) {
+              // all docs have exactly one value and most of them match, so it is cheaper
+              // to start from all docs and clear the ones whose value is out of bounds
+              final FixedBitSet inverse = new FixedBitSet(reader.maxDoc());
+              inverse.set(0, reader.maxDoc());
+              final long[] inverseCost = new long[] { reader.maxDoc() };
+              values.intersect(field, getInverseIntersectVisitor(inverse, inverseCost));
+              iterator = new BitSetIterator(inverse, inverseCost[0]);
+            } else {
+              values.intersect(field, visitor);
+              iterator = result.build().iterator();
+            }
+            return new ConstantScoreScorer(weight, score(), iterator);
+          }
+
+          @Override
+          public long cost() {
+            if (cost == -1) {
+              // Computing the cost may be expensive, so only do it if necessary
+              try {
+                cost = values.estimatePointCount(field, visitor);
+              } catch (IOException e) {
+                throw new UncheckedIOException(e);
+              }
+              assert cost >= 0;
+            }
+            return cost;
+          }
+        };
+      }
+
+      @Override
+      public int count(LeafReaderContext context) throws IOException {
+        LeafReader reader = context.reader();
+        PointValues values = reader.getPointValues();
+        if (values == null) {
+          // No docs in this segment indexed any points
+          return 0;
+        }
+        FieldInfo fieldInfo = reader.getFieldInfos().fieldInfo(field);
+        if (fieldInfo == null) {
+          // No docs in this segment indexed this field at all
+          return 0;
+        }
+        if (fieldInfo.getPointDimensionCount() != numDims || fieldInfo.getPointNumBytes() != bytesPerDim) {
+          // let the scorer report the misconfiguration
+          return super.count(context);
+        }
+
+        final Relation relation = relate(values.getMinPackedValue(field), values.getMaxPackedValue(field));
+        if (relation == Relation.CELL_OUTSIDE_QUERY) {
+          // no points are within bounds
+          return 0;
+        } else if (relation == Relation.CELL_INSIDE_QUERY
+            && reader.hasDeletions() == false
+            && values.getDocCount(field) == reader.maxDoc()) {
+          // all docs have a value and all points are within bounds
+          return reader.maxDoc();
+        }
+        return super.count(context);
+      }
+
+      @Override
+      public Scorer scorer(LeafReaderContext context) throws IOException {
+        ScorerSupplier scorerSupplier = scorerSupplier(context);
+        if (scorerSupplier == null) {
+          return null;
+        }
+        return scorerSupplier.get(false);
       }
     };
   }
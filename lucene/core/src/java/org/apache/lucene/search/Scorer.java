@@ -140,4 +140,45 @@ public abstract class Scorer {
   public TwoPhaseIterator twoPhaseIterator() {
     return null;
   }
+
+  /**
+   * Optional method: Tell the scorer that its iterator may safely ignore all
+   * documents whose score is less than the given {@code minScore}. This is a
+   * no-op by default.
+   *
+   * This method may only be called from collectors that use
+   * {@link TopScoreDocCollector} semantics and that do not need to know
+   * about all matches, see
+   * {@link TopScoreDocCollector#create(int, ScoreDoc, boolean)}.
+   * @lucene.experimental
+   */
+  public void setMinCompetitiveScore(float minScore) throws IOException {
+    // no-op by default
+  }
+
+  /**
+   * Advance to the block of documents that contains {@code target} in order to
+   * get scoring information about this block. This method does not modify the
+   * current {@link #docID()}. It returns a number that is greater than or
+   * equal to all documents contained in the current block, but less than any
+   * doc IDs of the next block. {@code target} must be greater than or equal
+   * to all targets that have been passed to this method so far.
+   * <p>The default implementation returns {@link DocIdSetIterator#NO_MORE_DOCS},
+   * which means that all documents are considered as one block.
+   * @lucene.experimental
+   */
+  public int advanceShallow(int target) throws IOException {
+    return DocIdSetIterator.NO_MORE_DOCS;
+  }
+
+  /**
+   * Return an upper bound of the score that may be returned by {@link #score()}
+   * for documents between the last {@code target} that was passed to
+   * {@link #advanceShallow(int)} and {@code upTo}, both included.
+   * <p>The default implementation returns {@link Float#POSITIVE_INFINITY}.
+   * @lucene.experimental
+   */
+  public float getMaxScore(int upTo) throws IOException {
+    return Float.POSITIVE_INFINITY;
+  }
 }
@@ -21,6 +21,8 @@ import java.io.IOException;
 import java.util.Objects;
 import java.util.Set;
 
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.IndexOptions;
 import org.apache.lucene.index.IndexReaderContext;
 import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.index.LeafReaderContext;
@@ -93,7 +95,37 @@ public class TermQuery extends Query {
       }
       PostingsEnum docs = termsEnum.postings(null, needsScores ? PostingsEnum.FREQS : PostingsEnum.NONE);
       assert docs != null;
-      return new TermScorer(this, docs, similarity.simScorer(stats, context));
+      return new TermScorer(this, docs, similarity.simScorer(stats, context), getMaxFreq(context, termsEnum));
+    }
+
+    @Override
+    public int count(LeafReaderContext context) throws IOException {
+      if (context.reader().hasDeletions()) {
+        // docFreq also counts deleted documents
+        return super.count(context);
+      }
+      final TermsEnum termsEnum = getTermsEnum(context);
+      if (termsEnum == null) {
+        return 0;
+      }
+      return termsEnum.docFreq();
+    }
+
+    /**
+     * Returns an upper bound of the frequency of the term in a single document,
+     * which is used to compute max scores.
+     */
+    private int getMaxFreq(LeafReaderContext context, TermsEnum termsEnum) throws IOException {
+      final FieldInfo fieldInfo = context.reader().getFieldInfos().fieldInfo(term.field());
+      if (fieldInfo == null || fieldInfo.getIndexOptions().compareTo(IndexOptions.DOCS_AND_FREQS) < 0) {
+        return 1;
+      }
+      final long totalTermFreq = termsEnum.totalTermFreq();
+      if (totalTermFreq == -1) {
+        return Integer.MAX_VALUE;
+      }
+      // every other document that contains the term has a freq of at least 1
+      return (int) Math.min(Integer.MAX_VALUE, totalTermFreq - termsEnum.docFreq() + 1);
     }
 
     /**
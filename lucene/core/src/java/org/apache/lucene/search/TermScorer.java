@@ -19,6 +19,7 @@ package org.apache.lucene.search;
 
 import java.io.IOException;
 
+import org.apache.lucene.index.ImpactsEnum;
 import org.apache.lucene.index.PostingsEnum;
 import org.apache.lucene.search.similarities.Similarity;
 
@@ -26,7 +27,9 @@ import org.apache.lucene.search.similarities.Similarity;
  */
 final class TermScorer extends Scorer {
   private final PostingsEnum postingsEnum;
+  private final ImpactsEnum impactsEnum;
   private final Similarity.SimScorer docScorer;
+  private final int maxFreq;
 
   /**
    * Construct a <code>TermScorer</code>.
@@ -40,9 +43,21 @@ final class TermScorer extends Scorer {
    *          to be used for score computations.
    */
   TermScorer(Weight weight, PostingsEnum td, Similarity.SimScorer docScorer) {
+    this(weight, td, docScorer, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Construct a <code>TermScorer</code> that knows about an upper bound of
+   * the frequency of the term in documents, which allows to compute max
+   * scores. If {@code td} is an {@link ImpactsEnum}, max scores are further
+   * refined per block of documents.
+   */
+  TermScorer(Weight weight, PostingsEnum td, Similarity.SimScorer docScorer, int maxFreq) {
     super(weight);
     this.docScorer = docScorer;
     this.postingsEnum = td;
+    this.impactsEnum = td instanceof ImpactsEnum ? (ImpactsEnum) td : null;
+    this.maxFreq = maxFreq;
   }
 
   @Override
@@ -66,6 +81,23 @@ final class TermScorer extends Scorer {
     return docScorer.score(postingsEnum.docID(), postingsEnum.freq());
   }
 
+  @Override
+  public int advanceShallow(int target) throws IOException {
+    if (impactsEnum == null) {
+      return DocIdSetIterator.NO_MORE_DOCS;
+    }
+    return impactsEnum.advanceShallow(target);
+  }
+
+  @Override
+  public float getMaxScore(int upTo) throws IOException {
+    int maxFreq = this.maxFreq;
+    if (impactsEnum != null) {
+      maxFreq = Math.min(maxFreq, impactsEnum.getMaxFreq(upTo));
+    }
+    return docScorer.maxScore(maxFreq);
+  }
+
   /** Returns a string representation of this <code>TermScorer</code>. */
   @Override
   public String toString() { return "scorer(" + weight + ")[" + super.toString() + "]"; }
@@ -49,8 +49,11 @@ public abstract class TopScoreDocCollector extends TopDocsCollector<ScoreDoc> {
 
   private static class SimpleTopScoreDocCollector extends TopScoreDocCollector {
 
-    SimpleTopScoreDocCollector(int numHits) {
+    private final boolean trackTotalHits;
+
+    SimpleTopScoreDocCollector(int numHits, boolean trackTotalHits) {
       super(numHits);
+      this.trackTotalHits = trackTotalHits;
     }
 
     @Override
@@ -59,6 +62,16 @@ public abstract class TopScoreDocCollector extends TopDocsCollector<ScoreDoc> {
       final int docBase = context.docBase;
       return new ScorerLeafCollector() {
 
+        @Override
+        public void setScorer(Scorer scorer) throws IOException {
+          super.setScorer(scorer);
+          if (trackTotalHits == false && pqTop.score != Float.NEGATIVE_INFINITY) {
+            // the queue is full, documents need to score better than the
+            // current bottom to be competitive
+            scorer.setMinCompetitiveScore(Math.nextUp(pqTop.score));
+          }
+        }
+
         @Override
         public void collect(int doc) throws IOException {
           float score = scorer.score();
@@ -77,6 +90,10 @@ public abstract class TopScoreDocCollector extends TopDocsCollector<ScoreDoc> {
           pqTop.doc = doc + docBase;
           pqTop.score = score;
           pqTop = pq.updateTop();
+          if (trackTotalHits == false && pqTop.score != Float.NEGATIVE_INFINITY) {
+            // since documents are collected in order, ties can't compete
+            scorer.setMinCompetitiveScore(Math.nextUp(pqTop.score));
+          }
         }
 
       };
@@ -165,13 +182,36 @@ public abstract class TopScoreDocCollector extends TopDocsCollector<ScoreDoc> {
    * objects.
    */
   public static TopScoreDocCollector create(int numHits, ScoreDoc after) {
+    return create(numHits, after, true);
+  }
+
+  /**
+   * Creates a new {@link TopScoreDocCollector} given the number of hits to
+   * collect, the bottom of the previous page, and whether the total hit count
+   * needs to be accurate.
+   *
+   * <p>When <code>trackTotalHits</code> is false and <code>after</code> is
+   * null, the collector tells scorers about the minimum score that a hit needs
+   * in order to be competitive through {@link Scorer#setMinCompetitiveScore(float)},
+   * which allows some scorers such as disjunctions of term queries to skip
+   * over non-competitive documents. The top hits are the same but
+   * {@link TopDocs#totalHits} is only a lower bound of the number of matches.
+   *
+   * <p><b>NOTE</b>: The instances returned by this method
+   * pre-allocate a full array of length
+   * <code>numHits</code>, and fill the array with sentinel
+   * objects.
+   *
+   * @lucene.experimental
+   */
+  public static TopScoreDocCollector create(int numHits, ScoreDoc after, boolean trackTotalHits) {
 
     if (numHits <= 0) {
       throw new IllegalArgumentException("numHits must be > 0; please use TotalHitCountCollector if you just need the total hit count");
     }
 
     if (after == null) {
-      return new SimpleTopScoreDocCollector(numHits);
+      return new SimpleTopScoreDocCollector(numHits, trackTotalHits);
     } else {
       return new PagingTopScoreDocCollector(numHits, after);
     }
@@ -0,0 +1,570 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.search;
+
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import static org.apache.lucene.search.DisiPriorityQueue.leftNode;
+import static org.apache.lucene.search.DisiPriorityQueue.parentNode;
+import static org.apache.lucene.search.DisiPriorityQueue.rightNode;
+
+/**
+ * This implements the block-max WAND (Weak AND) algorithm for pure
+ * disjunctions of scoring clauses, as described in <i>"Faster Top-k Document
+ * Retrieval Using Block-Max Indexes"</i> by Ding and Suel. It returns the same
+ * matches as {@link DisjunctionSumScorer} until a minimum competitive score is
+ * set through {@link #setMinCompetitiveScore(float)}, after which documents
+ * whose score cannot reach this value are skipped.
+ *
+ * This implementation keeps sub scorers in 3 different places:
+ *  - lead: a linked list of scorer that are positioned on the desired doc ID
+ *  - tail: a heap that contains scorers which are behind the desired doc ID
+ *    and whose sum of max scores is less than the minimum competitive score.
+ *    These scorers are ordered by max score so that we can advance the
+ *    scorers that contribute the most first.
+ *  - head: a heap that contains scorers which are beyond the desired doc ID,
+ *    ordered by doc ID in order to move quickly to the next candidate.
+ *
+ * Max scores are refined per block of documents through
+ * {@link Scorer#advanceShallow(int)} and {@link Scorer#getMaxScore(int)}:
+ * 'upTo' is the last doc ID of the current block, and max scores of the
+ * scorers in 'tail' and 'head' are valid up to this doc ID.
+ *
+ * In order to avoid accumulating rounding errors, max scores are scaled to
+ * longs so that the greatest max score has 24 significant bits, and rounded
+ * up, while the minimum competitive score is rounded down.
+ */
+final class WANDScorer extends Scorer {
+
+  static final int FLOAT_MANTISSA_BITS = 24;
+  private static final long MAX_SCALED_SCORE = (1L << 24) - 1;
+
+  /** Return a scaling factor for the given float so that
+   *  f x 2^scalingFactor would be in [2^23, 2^24[. Special cases:
+   *    scalingFactor(0) = scalingFactor(MIN_VALUE) + 1
+   *    scalingFactor(+Infty) = scalingFactor(MAX_VALUE) - 1
+   */
+  static int scalingFactor(float f) {
+    if (f < 0) {
+      throw new IllegalArgumentException("Scores must be positive or null");
+    } else if (f == 0) {
+      return scalingFactor(Float.MIN_VALUE) + 1;
+    } else if (Float.isInfinite(f)) {
+      return scalingFactor(Float.MAX_VALUE) - 1;
+    } else {
+      double d = f;
+      // Since doubles have more amplitude than floats for the
+      // exponent, the cast produces a normal value.
+      assert d == 0 || Math.getExponent(d) >= Double.MIN_EXPONENT; // normal double
+      return FLOAT_MANTISSA_BITS - 1 - Math.getExponent(d);
+    }
+  }
+
+  /**
+   * Scale max scores in a long that is less than 2^24 to avoid overflows
+   * when summing them up as well as floating-point arithmetic errors.
+   * Those are rounded up in order to make sure we do not miss any matches.
+   */
+  private static long scaleMaxScore(float maxScore, int scalingFactor) {
+    assert Float.isNaN(maxScore) == false;
+    assert maxScore >= 0;
+
+    // NOTE: because doubles have more amplitude than floats for the
+    // exponent, the scalb call produces an accurate value.
+    double scaled = Math.scalb((double) maxScore, scalingFactor);
+
+    if (scaled > MAX_SCALED_SCORE) {
+      // This happens if one scorer returns +Infty as a max score, or if the scorer
+      // returns greater max scores locally than globally - which shouldn't happen
+      // with well-behaving scorers
+      return MAX_SCALED_SCORE;
+    }
+
+    return (long) Math.ceil(scaled); // round up, cast is accurate since value is < 2^24
+  }
+
+  /**
+   * Scale min competitive scores the same way as max scores but this time
+   * by rounding down in order to make sure that we do not miss any matches.
+   */
+  private static long scaleMinScore(float minScore, int scalingFactor) {
+    assert Float.isNaN(minScore) == false;
+    assert minScore >= 0;
+
+    // like for scaleMaxScore, this scalb call is accurate
+    double scaled = Math.scalb((double) minScore, scalingFactor);
+    return (long) Math.floor(scaled); // round down, cast might lower the value again if scaled > Long.MAX_VALUE, which is fine
+  }
+
+  private final int scalingFactor;
+  // scaled min competitive score
+  private long minCompetitiveScore = 0;
+
+  // list of scorers which 'lead' the iteration and are currently
+  // positioned on 'doc'. This is sometimes called the 'pivot' in
+  // some descriptions of WAND (Weak AND).
+  DisiWrapper lead;
+  int doc;  // current doc ID of the leads
+  long leadMaxScore; // sum of the max scores of scorers in 'lead'
+
+  // priority queue of scorers that are too advanced compared to the current
+  // doc. Ordered by doc ID.
+  final DisiPriorityQueue head;
+
+  // priority queue of scorers which are behind the current doc.
+  // Ordered by maxScore.
+  final DisiWrapper[] tail;
+  long tailMaxScore; // sum of the max scores of scorers in 'tail'
+  int tailSize;
+
+  final Collection<ChildScorer> childScorers;
+  final long cost;
+
+  // last doc ID of the block for which max scores of scorers are valid
+  int upTo;
+
+  WANDScorer(Weight weight, Collection<Scorer> scorers) throws IOException {
+    super(weight);
+
+    this.doc = -1;
+    this.upTo = -1; // will be computed on the first call to nextDoc/advance
+
+    head = new DisiPriorityQueue(scorers.size());
+    // there can be at most num_scorers - 1 scorers beyond the current position
+    tail = new DisiWrapper[scorers.size()];
+
+    int scalingFactor = Integer.MAX_VALUE;
+    for (Scorer scorer : scorers) {
+      scorer.advanceShallow(0);
+      float maxScore = scorer.getMaxScore(DocIdSetIterator.NO_MORE_DOCS);
+      if (maxScore != 0 && Float.isFinite(maxScore)) {
+        // 0 and +Infty should not impact the scale
+        scalingFactor = Math.min(scalingFactor, scalingFactor(maxScore));
+      }
+    }
+    // Use a scaling factor of 0 if all max scores are either 0 or +Infty
+    this.scalingFactor = scalingFactor == Integer.MAX_VALUE ? 0 : scalingFactor;
+
+    long cost = 0;
+    for (Scorer scorer : scorers) {
+      final DisiWrapper w = new DisiWrapper(scorer);
+      w.maxScore = scaleMaxScore(scorer.getMaxScore(DocIdSetIterator.NO_MORE_DOCS), this.scalingFactor);
+      cost += w.cost;
+      addLead(w);
+    }
+
+    List<ChildScorer> children = new ArrayList<>();
+    for (Scorer scorer : scorers) {
+      children.add(new ChildScorer(scorer, "SHOULD"));
+    }
+    this.childScorers = Collections.unmodifiableCollection(children);
+    this.cost = cost;
+  }
+
+  @Override
+  public void setMinCompetitiveScore(float minScore) {
+    if (minScore <= 0) {
+      return;
+    }
+    // Let this disjunction know about the new min score so that it can skip
+    // over clauses that produce low scores.
+    long scaledMinScore = scaleMinScore(minScore, scalingFactor);
+    if (scaledMinScore > minCompetitiveScore) {
+      minCompetitiveScore = scaledMinScore;
+    }
+  }
+
+  @Override
+  public final Collection<ChildScorer> getChildren() {
+    return childScorers;
+  }
+
+  @Override
+  public DocIdSetIterator iterator() {
+    return TwoPhaseIterator.asDocIdSetIterator(twoPhaseIterator());
+  }
+
+  @Override
+  public TwoPhaseIterator twoPhaseIterator() {
+    DocIdSetIterator approximation = new DocIdSetIterator() {
+
+      @Override
+      public int docID() {
+        return doc;
+      }
+
+      @Override
+      public int nextDoc() throws IOException {
+        return advance(doc + 1);
+      }
+
+      @Override
+      public int advance(int target) throws IOException {
+        // Move 'lead' iterators back to the tail
+        pushBackLeads(target);
+
+        // Advance 'head' as well
+        advanceHead(target);
+
+        // Pop the new 'lead' from 'head'
+        moveToNextCandidate(target);
+
+        if (doc == DocIdSetIterator.NO_MORE_DOCS) {
+          return DocIdSetIterator.NO_MORE_DOCS;
+        }
+
+        // Advance to the next possible match
+        return doNextCompetitiveCandidate();
+      }
+
+      @Override
+      public long cost() {
+        return cost;
+      }
+    };
+    return new TwoPhaseIterator(approximation) {
+
+      @Override
+      public boolean matches() throws IOException {
+        while (leadMaxScore < minCompetitiveScore) {
+          if (leadMaxScore + tailMaxScore >= minCompetitiveScore) {
+            // a match on doc is still possible, try to
+            // advance scorers from the tail
+            advanceTail();
+          } else {
+            return false;
+          }
+        }
+        return true;
+      }
+
+      @Override
+      public float matchCost() {
+        // maximum number of scorer that matches() might advance
+        return tail.length;
+      }
+
+    };
+  }
+
+  private void addLead(DisiWrapper lead) {
+    lead.next = this.lead;
+    this.lead = lead;
+    leadMaxScore += lead.maxScore;
+  }
+
+  private void pushBackLeads(int target) throws IOException {
+    for (DisiWrapper s = lead; s != null; s = s.next) {
+      final DisiWrapper evicted = insertTailWithOverFlow(s);
+      if (evicted != null) {
+        evicted.doc = evicted.iterator.advance(target);
+        head.add(evicted);
+      }
+    }
+    lead = null;
+    leadMaxScore = 0;
+  }
+
+  private void advanceHead(int target) throws IOException {
+    DisiWrapper headTop = head.top();
+    while (headTop != null && headTop.doc < target) {
+      final DisiWrapper evicted = insertTailWithOverFlow(headTop);
+      if (evicted != null) {
+        evicted.doc = evicted.iterator.advance(target);
+        headTop = head.updateTop(evicted);
+      } else {
+        head.pop();
+        headTop = head.top();
+      }
+    }
+  }
+
+  private void advanceTail(DisiWrapper disi) throws IOException {
+    disi.doc = disi.iterator.advance(doc);
+    if (disi.doc == doc) {
+      addLead(disi);
+    } else {
+      head.add(disi);
+    }
+  }
+
+  private void advanceTail() throws IOException {
+    final DisiWrapper top = popTail();
+    tailMaxScore -= top.maxScore;
+    advanceTail(top);
+  }
+
+  /** Compute new values for max scores of scorers in 'head' and 'tail' so
+   *  that they are valid up to the end of the block that contains target. */
+  private void updateMaxScores(int target) throws IOException {
+    if (head.size() == 0) {
+      // If the head is empty we use the greatest score contributor as a lead
+      // like for conjunctions.
+      upTo = tail[0].scorer.advanceShallow(target);
+    } else {
+      // If we still have entries in 'head', we treat them all as leads and
+      // take the minimum of their next block boundaries as a next boundary.
+      // We don't take entries in 'tail' into account on purpose: 'tail' is
+      // supposed to contain the least score contributors, and taking them
+      // into account might not move the boundary fast enough, so we'll waste
+      // CPU re-computing the next boundary all the time.
+      int newUpTo = DocIdSetIterator.NO_MORE_DOCS;
+      for (DisiWrapper w : head) {
+        if (w.doc <= newUpTo) {
+          newUpTo = Math.min(w.scorer.advanceShallow(w.doc), newUpTo);
+          w.maxScore = scaleMaxScore(w.scorer.getMaxScore(newUpTo), scalingFactor);
+        }
+      }
+      upTo = newUpTo;
+    }
+
+    tailMaxScore = 0;
+    for (int i = 0; i < tailSize; ++i) {
+      DisiWrapper w = tail[i];
+      w.scorer.advanceShallow(target);
+      w.maxScore = scaleMaxScore(w.scorer.getMaxScore(upTo), scalingFactor);
+      upHeapMaxScore(tail, i); // the heap might need to be reordered
+      tailMaxScore += w.maxScore;
+    }
+
+    // We need to make sure that entries in 'tail' alone cannot match
+    // a competitive hit.
+    while (tailSize > 0 && tailMaxScore >= minCompetitiveScore) {
+      DisiWrapper w = popTail();
+      tailMaxScore -= w.maxScore;
+      w.doc = w.iterator.advance(target);
+      head.add(w);
+    }
+  }
+
+  /**
+   * Update {@code upTo} and maximum scores of sub scorers so that {@code upTo}
+   * is greater than or equal to the next candidate after {@code target}, i.e.
+   * the top of `head`.
+   */
+  private void updateMaxScoresIfNecessary(int target) throws IOException {
+    assert lead == null;
+
+    while (upTo < DocIdSetIterator.NO_MORE_DOCS) {
+      if (head.size() == 0) {
+        // All clauses could fit in the tail, which means that the sum of the
+        // maximum scores of sub clauses is less than the minimum competitive score.
+        // Move to the next block until this condition becomes false.
+        target = Math.max(target, upTo + 1);
+        updateMaxScores(target);
+      } else if (head.top().doc > upTo) {
+        // We have a next candidate but it's not in the current block. We need to
+        // move to the next block in order to not miss any potential hits between
+        // the current block and the next candidate.
+        assert head.top().doc >= target;
+        updateMaxScores(target);
+        break;
+      } else {
+        break;
+      }
+    }
+
+    assert head.size() > 0 || upTo == DocIdSetIterator.NO_MORE_DOCS;
+    assert upTo >= target;
+  }
+
+  /**
+   * Set 'doc' to the next potential match, and move all disis of 'head' that
+   * are on this doc into 'lead'.
+   */
+  private void moveToNextCandidate(int target) throws IOException {
+    // Update score bounds if necessary so
+    updateMaxScoresIfNecessary(target);
+
+    // updateMaxScores tries to move forward until a block with matches is found
+    // so if the head is empty it means there are no matches at all anymore
+    if (head.size() == 0) {
+      assert upTo == DocIdSetIterator.NO_MORE_DOCS;
+      doc = DocIdSetIterator.NO_MORE_DOCS;
+      return;
+    }
+
+    // The top of `head` defines the next potential match
+    // pop all documents which are on this doc
+    lead = head.pop();
+    lead.next = null;
+    leadMaxScore = lead.maxScore;
+    doc = lead.doc;
+    while (head.size() > 0 && head.top().doc == doc) {
+      addLead(head.pop());
+    }
+  }
+
+  /**
+   * Move iterators to the tail until there is a potential match.
+   */
+  private int doNextCompetitiveCandidate() throws IOException {
+    while (leadMaxScore + tailMaxScore < minCompetitiveScore) {
+      // no match on doc is possible, move to the next potential match
+      pushBackLeads(doc + 1);
+      moveToNextCandidate(doc + 1);
+      if (doc == DocIdSetIterator.NO_MORE_DOCS) {
+        break;
+      }
+    }
+
+    return doc;
+  }
+
+  /** Advance all entries from the tail to know about all matches on the
+   *  current doc. */
+  private void advanceAllTail() throws IOException {
+    // we return the next doc when the sum of the scores of the potential
+    // matching clauses is high enough but some of the clauses in 'tail' might
+    // match as well
+    // in general we want to advance least-costly clauses first in order to
+    // skip over non-matching documents as fast as possible. However here,
+    // we are advancing everything anyway so iterating over clauses in
+    // (roughly) cost-descending order might help avoid some permutations in
+    // the head heap
+    for (int i = tailSize - 1; i >= 0; --i) {
+      advanceTail(tail[i]);
+    }
+    tailSize = 0;
+    tailMaxScore = 0;
+  }
+
+  @Override
+  public float score() throws IOException {
+    // we need to know about all matches
+    advanceAllTail();
+    double score = 0;
+    for (DisiWrapper s = lead; s != null; s = s.next) {
+      score += s.scorer.score();
+    }
+    return (float) score;
+  }
+
+  @Override
+  public int freq() throws IOException {
+    // we need to know about all matches
+    advanceAllTail();
+    int freq = 0;
+    for (DisiWrapper s = lead; s != null; s = s.next) {
+      freq += 1;
+    }
+    return freq;
+  }
+
+  @Override
+  public int docID() {
+    return doc;
+  }
+
+  /** Insert an entry in 'tail' unless the sum of max scores of the tail would
+   *  become competitive, in which case the entry with the greatest max score
+   *  is evicted. */
+  private DisiWrapper insertTailWithOverFlow(DisiWrapper s) {
+    if (tailMaxScore + s.maxScore < minCompetitiveScore) {
+      // we have free room for this new entry
+      addTail(s);
+      tailMaxScore += s.maxScore;
+      return null;
+    } else if (tailSize == 0) {
+      return s;
+    } else {
+      final DisiWrapper top = tail[0];
+      if (greaterMaxScore(top, s) == false) {
+        return s;
+      }
+      // Swap top and s
+      tail[0] = s;
+      downHeapMaxScore(tail, tailSize);
+      tailMaxScore = tailMaxScore - top.maxScore + s.maxScore;
+      return top;
+    }
+  }
+
+  /** Add an entry to 'tail'. Fails if over capacity. */
+  private void addTail(DisiWrapper s) {
+    tail[tailSize] = s;
+    upHeapMaxScore(tail, tailSize);
+    tailSize += 1;
+  }
+
+  /** Pop the entry from the 'tail' that has the greatest score contribution. */
+  private DisiWrapper popTail() {
+    assert tailSize > 0;
+    final DisiWrapper result = tail[0];
+    tail[0] = tail[--tailSize];
+    downHeapMaxScore(tail, tailSize);
+    return result;
+  }
+
+  /** Heap helpers */
+
+  private static void upHeapMaxScore(DisiWrapper[] heap, int i) {
+    final DisiWrapper node = heap[i];
+    int j = parentNode(i);
+    while (j >= 0 && greaterMaxScore(node, heap[j])) {
+      heap[i] = heap[j];
+      i = j;
+      j = parentNode(j);
+    }
+    heap[i] = node;
+  }
+
+  private static void downHeapMaxScore(DisiWrapper[] heap, int size) {
+    int i = 0;
+    final DisiWrapper node = heap[0];
+    int j = leftNode(i);
+    if (j < size) {
+      int k = rightNode(j);
+      if (k < size && greaterMaxScore(heap[k], heap[j])) {
+        j = k;
+      }
+      if (greaterMaxScore(heap[j], node)) {
+        do {
+          heap[i] = heap[j];
+          i = j;
+          j = leftNode(i);
+          k = rightNode(j);
+          if (k < size && greaterMaxScore(heap[k], heap[j])) {
+            j = k;
+          }
+        } while (j < size && greaterMaxScore(heap[j], node));
+        heap[i] = node;
+      }
+    }
+  }
+
+  /**
+   * In the tail, we want to get first entries that produce the maximum scores
+   * and in case of ties (eg. constant-score queries), those that have the least
+   * cost so that they are likely to advance further.
+   */
+  private static boolean greaterMaxScore(DisiWrapper w1, DisiWrapper w2) {
+    if (w1.maxScore > w2.maxScore) {
+      return true;
+    } else if (w1.maxScore < w2.maxScore) {
+      return false;
+    } else {
+      return w1.cost < w2.cost;
+    }
+  }
+
+}
@@ -102,6 +102,46 @@ public abstract class Weight {
    */
   public abstract Scorer scorer(LeafReaderContext context) throws IOException;
 
+  /**
+   * Optional method.
+   * Get a {@link ScorerSupplier}, which allows to know the cost of the {@link Scorer}
+   * before building it. The default implementation calls {@link #scorer} and
+   * builds a {@link ScorerSupplier} wrapper around it.
+   * @see #scorer
+   * @lucene.experimental
+   */
+  public ScorerSupplier scorerSupplier(LeafReaderContext context) throws IOException {
+    final Scorer scorer = scorer(context);
+    if (scorer == null) {
+      return null;
+    }
+    return new ScorerSupplier() {
+      @Override
+      public Scorer get(boolean randomAccess) {
+        return scorer;
+      }
+
+      @Override
+      public long cost() {
+        return scorer.iterator().cost();
+      }
+    };
+  }
+
+  /**
+   * Counts the number of live documents that match this {@link Weight} in the
+   * given leaf. Returns {@code -1} if the count cannot be computed without
+   * iterating over matches, for instance because the leaf has deleted documents
+   * or because the query needs to verify matches one by one. Callers must then
+   * fall back to counting matches with a {@link Scorer}. The default
+   * implementation returns {@code -1}.
+   * @see IndexSearcher#count(Query)
+   * @lucene.experimental
+   */
+  public int count(LeafReaderContext context) throws IOException {
+    return -1;
+  }
+
   /**
    * Optional method, to return a {@link BulkScorer} to
    * score the query and send hits to a {@link Collector}.
@@ -243,6 +243,18 @@ public class BM25Similarity extends Similarity {
       float norm = norms == null ? k1 : cache[(byte)norms.get(doc) & 0xFF];
       return weightValue * freq / (freq + norm);
     }
+
+    @Override
+    public float maxScore(float maxFreq) {
+      if (weightValue <= 0) {
+        // scores are all less than or equal to 0
+        return 0f;
+      }
+      // the score increases with the freq and decreases with the norm
+      float norm = norms == null ? k1 : stats.minCacheValue;
+      // bump to the next float in order to be robust to rounding errors
+      return Math.nextUp(weightValue * maxFreq / (maxFreq + norm));
+    }
     
     @Override
     public Explanation explain(int doc, Explanation freq) {
@@ -274,6 +286,8 @@ public class BM25Similarity extends Similarity {
     private final String field;
     /** precomputed norm[256] with k1 * ((1 - b) + b * dl / avgdl) */
     private final float cache[];
+    /** minimum value of cache, which is used to compute max scores */
+    private final float minCacheValue;
 
     BM25Stats(String field, float boost, Explanation idf, float avgdl, float cache[]) {
       this.field = field;
@@ -281,6 +295,11 @@ public class BM25Similarity extends Similarity {
       this.idf = idf;
       this.avgdl = avgdl;
       this.cache = cache;
+      float minCacheValue = Float.POSITIVE_INFINITY;
+      for (float value : cache) {
+        minCacheValue = Math.min(minCacheValue, value);
+      }
+      this.minCacheValue = minCacheValue;
       this.weight = idf.getValue() * boost;
     }
 
@@ -163,6 +163,21 @@ public abstract class Similarity {
      */
     public abstract float score(int doc, float freq);
 
+    /**
+     * Return an upper bound of the score of documents whose frequency is
+     * less than or equal to {@code maxFreq}. Scores may never be greater
+     * than the returned value for any document of the segment, so
+     * implementations typically assume the most favorable normalization
+     * factor. This is used to skip over documents that cannot produce
+     * competitive scores.
+     * <p>The default implementation returns {@link Float#POSITIVE_INFINITY},
+     * which disables such optimizations.
+     * @lucene.experimental
+     */
+    public float maxScore(float maxFreq) {
+      return Float.POSITIVE_INFINITY;
+    }
+
     /** Computes the amount of a sloppy phrase match, based on an edit distance. */
     public abstract float computeSlopFactor(int distance);
     
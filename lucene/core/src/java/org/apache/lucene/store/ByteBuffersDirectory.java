@@ -0,0 +1,273 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.store;
+
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+
+import org.apache.lucene.index.IndexFileNames;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.Accountables;
+
+/**
+ * A memory-resident {@link Directory} implementation that stores files in
+ * {@link ByteBuffer} blocks. Locking implementation is by default the
+ * {@link SingleInstanceLockFactory}.
+ *
+ * <p>Unlike {@link RAMDirectory}, which stores files in {@code byte[1024]}
+ * arrays, blocks start small and grow (by powers of two) with the size of
+ * the file, so that large files only need few objects. Files are immutable
+ * once their {@link IndexOutput} has been closed, so they can be read
+ * concurrently without any locking, and their {@link IndexInput}s also
+ * implement {@link RandomAccessInput}. Blocks may be allocated on or off the
+ * Java heap depending on the {@link IntFunction allocator} that is passed to
+ * the constructor, and {@link #ramBytesUsed()} reports the total size of the
+ * allocated blocks, including files that are still being written.
+ *
+ * <p>Files that are still being written cannot be opened for reading.
+ *
+ * @lucene.experimental
+ */
+public final class ByteBuffersDirectory extends BaseDirectory implements Accountable {
+
+  /** Allocates blocks on the Java heap. */
+  public static final IntFunction<ByteBuffer> HEAP_ALLOCATOR = ByteBuffer::allocate;
+
+  /** Allocates blocks outside of the Java heap. Memory is only released when
+   *  blocks are garbage collected. */
+  public static final IntFunction<ByteBuffer> DIRECT_ALLOCATOR = ByteBuffer::allocateDirect;
+
+  private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+  private final ConcurrentHashMap<String,FileEntry> files = new ConcurrentHashMap<>();
+  private final IntFunction<ByteBuffer> blockAllocator;
+
+  /** Used to generate temp file names in {@link #createTempOutput}. */
+  private final AtomicLong nextTempFileCounter = new AtomicLong();
+
+  /** Constructs an empty {@link Directory} that stores files on the Java heap. */
+  public ByteBuffersDirectory() {
+    this(new SingleInstanceLockFactory());
+  }
+
+  /** Constructs an empty {@link Directory} that stores files on the Java heap
+   *  with the given {@link LockFactory}. */
+  public ByteBuffersDirectory(LockFactory lockFactory) {
+    this(lockFactory, HEAP_ALLOCATOR);
+  }
+
+  /** Constructs an empty {@link Directory} with the given {@link LockFactory}
+   *  and the given function to allocate blocks of a given size in bytes.
+   *  @see #HEAP_ALLOCATOR
+   *  @see #DIRECT_ALLOCATOR */
+  public ByteBuffersDirectory(LockFactory lockFactory, IntFunction<ByteBuffer> blockAllocator) {
+    super(lockFactory);
+    this.blockAllocator = Objects.requireNonNull(blockAllocator);
+  }
+
+  @Override
+  public String[] listAll() {
+    ensureOpen();
+    // weakly consistent view, like RAMDirectory
+    final String[] names = files.keySet().toArray(new String[0]);
+    Arrays.sort(names);
+    return names;
+  }
+
+  /** Returns true if a file with the given name exists, including files that are still being written. */
+  public boolean fileNameExists(String name) {
+    ensureOpen();
+    return files.containsKey(name);
+  }
+
+  @Override
+  public long fileLength(String name) throws IOException {
+    ensureOpen();
+    return getEntry(name).length();
+  }
+
+  @Override
+  public void deleteFile(String name) throws IOException {
+    ensureOpen();
+    if (files.remove(name) == null) {
+      throw new FileNotFoundException(name);
+    }
+  }
+
+  @Override
+  public IndexOutput createOutput(String name, IOContext context) throws IOException {
+    ensureOpen();
+    FileEntry entry = new FileEntry(name);
+    if (files.putIfAbsent(name, entry) != null) {
+      throw new FileAlreadyExistsException(name);
+    }
+    return entry.output;
+  }
+
+  @Override
+  public IndexOutput createTempOutput(String prefix, String suffix, IOContext context) throws IOException {
+    ensureOpen();
+    while (true) {
+      String name = IndexFileNames.segmentFileName(prefix, suffix + "_" + Long.toString(nextTempFileCounter.getAndIncrement(), Character.MAX_RADIX), "tmp");
+      FileEntry entry = new FileEntry(name);
+      if (files.putIfAbsent(name, entry) == null) {
+        return entry.output;
+      }
+    }
+  }
+
+  @Override
+  public void sync(Collection<String> names) throws IOException {
+    ensureOpen();
+  }
+
+  @Override
+  public void rename(String source, String dest) throws IOException {
+    ensureOpen();
+    FileEntry entry = getEntry(source);
+    if (files.putIfAbsent(dest, entry) != null) {
+      throw new FileAlreadyExistsException(dest);
+    }
+    if (files.remove(source, entry) == false) {
+      throw new IllegalStateException("file was unexpectedly replaced: " + source);
+    }
+  }
+
+  @Override
+  public void syncMetaData() throws IOException {
+    ensureOpen();
+    // we are by definition not durable!
+  }
+
+  @Override
+  public IndexInput openInput(String name, IOContext context) throws IOException {
+    ensureOpen();
+    return getEntry(name).openInput("ByteBuffersIndexInput(name=\"" + name + "\")", name);
+  }
+
+  /** Closes the store to future operations, releasing associated memory. */
+  @Override
+  public void close() {
+    isOpen = false;
+    files.clear();
+  }
+
+  /**
+   * Return the total size in bytes of the blocks that are used by all files
+   * in this directory, including files that are still being written.
+   */
+  @Override
+  public long ramBytesUsed() {
+    ensureOpen();
+    long ramBytesUsed = 0;
+    for (FileEntry entry : files.values()) {
+      ramBytesUsed += entry.ramBytesUsed();
+    }
+    return ramBytesUsed;
+  }
+
+  @Override
+  public Collection<Accountable> getChildResources() {
+    return Accountables.namedAccountables("file", files);
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "@" + Integer.toHexString(hashCode()) + " lockFactory=" + lockFactory;
+  }
+
+  private FileEntry getEntry(String name) throws FileNotFoundException {
+    FileEntry entry = files.get(name);
+    if (entry == null) {
+      throw new FileNotFoundException(name);
+    }
+    return entry;
+  }
+
+  /** A file, which is either being written or immutable. */
+  private final class FileEntry implements Accountable {
+
+    final ByteBuffersIndexOutput output;
+
+    // set once, when the output is closed
+    private volatile Content content;
+
+    FileEntry(String name) {
+      // allocates no memory until bytes are written
+      output = new ByteBuffersIndexOutput("ByteBuffersIndexOutput(name=\"" + name + "\")", name, blockAllocator,
+          out -> content = new Content(out.getReadOnlyBlocks(), out.getBlockBits(), out.getFilePointer(), out.ramBytesUsed()));
+    }
+
+    long length() {
+      final Content content = this.content;
+      if (content != null) {
+        return content.length;
+      }
+      // not thread-safe, but only meant as an estimate while the file is being written
+      return output.getFilePointer();
+    }
+
+    IndexInput openInput(String resourceDescription, String name) throws IOException {
+      final Content content = this.content;
+      if (content == null) {
+        throw new AccessDeniedException("Can't open a file that is still open for writing: " + name);
+      }
+      // ByteBufferIndexInput expects one more buffer than the number of full
+      // blocks, and modifies the position of its buffers
+      final ByteBuffer[] buffers = new ByteBuffer[(int) (content.length >>> content.blockBits) + 1];
+      for (int i = 0; i < buffers.length; ++i) {
+        buffers[i] = i < content.blocks.length ? content.blocks[i].duplicate() : EMPTY;
+      }
+      return ByteBufferIndexInput.newInstance(resourceDescription, buffers, content.length, content.blockBits,
+          new ByteBufferGuard(resourceDescription, null));
+    }
+
+    @Override
+    public long ramBytesUsed() {
+      final Content content = this.content;
+      if (content != null) {
+        return content.ramBytesUsed;
+      }
+      return output.ramBytesUsed();
+    }
+  }
+
+  /** The immutable content of a file. */
+  private static final class Content {
+    final ByteBuffer[] blocks;
+    final int blockBits;
+    final long length;
+    final long ramBytesUsed;
+
+    Content(ByteBuffer[] blocks, int blockBits, long length, long ramBytesUsed) {
+      this.blocks = blocks;
+      this.blockBits = blockBits;
+      this.length = length;
+      this.ramBytesUsed = ramBytesUsed;
+    }
+  }
+}
@@ -0,0 +1,173 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.store;
+
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.zip.CRC32;
+
+/**
+ * An {@link IndexOutput} that writes into {@link ByteBuffer} blocks whose size
+ * is a power of two. Blocks start small so that small files do not waste
+ * memory, and whenever there are too many blocks, they are merged into blocks
+ * that are twice as large so that large files only need few blocks.
+ * @see ByteBuffersDirectory
+ */
+final class ByteBuffersIndexOutput extends IndexOutput {
+
+  /** Blocks start at 1 KB. */
+  static final int MIN_BITS_PER_BLOCK = 10;
+  /** Blocks are never larger than 64 MB. */
+  static final int MAX_BITS_PER_BLOCK = 26;
+  /** Number of blocks that triggers the use of blocks that are twice as large. */
+  static final int MAX_BLOCKS_BEFORE_EXPANSION = 100;
+
+  private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+  private final IntFunction<ByteBuffer> blockAllocator;
+  private final Consumer<ByteBuffersIndexOutput> onClose;
+  private final BufferedChecksum crc = new BufferedChecksum(new CRC32());
+
+  // all blocks but the last one are full
+  private final List<ByteBuffer> blocks = new ArrayList<>();
+  private int blockBits = MIN_BITS_PER_BLOCK;
+  private ByteBuffer currentBlock = EMPTY;
+  // read concurrently by ByteBuffersDirectory.ramBytesUsed
+  private volatile long ramBytesUsed;
+  private boolean closed;
+
+  /**
+   * Sole constructor.
+   * @param blockAllocator allocates blocks given their size in bytes
+   * @param onClose called once when this output is closed
+   */
+  ByteBuffersIndexOutput(String resourceDescription, String name, IntFunction<ByteBuffer> blockAllocator, Consumer<ByteBuffersIndexOutput> onClose) {
+    super(resourceDescription, name);
+    this.blockAllocator = blockAllocator;
+    this.onClose = onClose;
+  }
+
+  @Override
+  public void writeByte(byte b) throws IOException {
+    if (currentBlock.hasRemaining() == false) {
+      appendBlock();
+    }
+    currentBlock.put(b);
+    crc.update(b);
+  }
+
+  @Override
+  public void writeBytes(byte[] b, int offset, int length) throws IOException {
+    crc.update(b, offset, length);
+    while (length > 0) {
+      if (currentBlock.hasRemaining() == false) {
+        appendBlock();
+      }
+      final int chunk = Math.min(currentBlock.remaining(), length);
+      currentBlock.put(b, offset, chunk);
+      offset += chunk;
+      length -= chunk;
+    }
+  }
+
+  @Override
+  public long getFilePointer() {
+    if (blocks.isEmpty()) {
+      return 0;
+    }
+    return ((long) (blocks.size() - 1) << blockBits) + currentBlock.position();
+  }
+
+  @Override
+  public long getChecksum() throws IOException {
+    return crc.getValue();
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (closed == false) {
+      closed = true;
+      onClose.accept(this);
+    }
+  }
+
+  /** Return the amount of memory that is used by the blocks of this output. */
+  long ramBytesUsed() {
+    return ramBytesUsed;
+  }
+
+  /** Return the log in base 2 of the size of the blocks. */
+  int getBlockBits() {
+    return blockBits;
+  }
+
+  /** Return the blocks that have been written, ready to be read: their limit
+   *  is the number of bytes that have been written to them. */
+  ByteBuffer[] getReadOnlyBlocks() {
+    final ByteBuffer[] result = new ByteBuffer[blocks.size()];
+    for (int i = 0; i < result.length; ++i) {
+      final ByteBuffer block = blocks.get(i).asReadOnlyBuffer();
+      block.flip();
+      result[i] = block;
+    }
+    return result;
+  }
+
+  private void appendBlock() {
+    if (blocks.size() >= MAX_BLOCKS_BEFORE_EXPANSION && blockBits < MAX_BITS_PER_BLOCK) {
+      rewriteToBlockSize(blockBits + 1);
+      if (currentBlock.hasRemaining()) {
+        return;
+      }
+    }
+    currentBlock = blockAllocator.apply(1 << blockBits);
+    assert currentBlock.capacity() == 1 << blockBits && currentBlock.position() == 0;
+    blocks.add(currentBlock);
+    ramBytesUsed += currentBlock.capacity();
+  }
+
+  /** Copy the content of the current blocks into blocks of {@code 1 << targetBlockBits} bytes. */
+  private void rewriteToBlockSize(int targetBlockBits) {
+    final List<ByteBuffer> newBlocks = new ArrayList<>();
+    long newRamBytesUsed = 0;
+    ByteBuffer target = EMPTY;
+    for (ByteBuffer block : blocks) {
+      block.flip();
+      while (block.hasRemaining()) {
+        if (target.hasRemaining() == false) {
+          target = blockAllocator.apply(1 << targetBlockBits);
+          newBlocks.add(target);
+          newRamBytesUsed += target.capacity();
+        }
+        final ByteBuffer chunk = block.duplicate();
+        chunk.limit(chunk.position() + Math.min(target.remaining(), chunk.remaining()));
+        target.put(chunk);
+        block.position(chunk.position());
+      }
+    }
+    blocks.clear();
+    blocks.addAll(newBlocks);
+    blockBits = targetBlockBits;
+    currentBlock = target;
+    ramBytesUsed = newRamBytesUsed;
+  }
+}
@@ -37,12 +37,14 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.lucene.index.IndexFileNames;
 import org.apache.lucene.util.Constants;
+import org.apache.lucene.util.FutureUtil;
 import org.apache.lucene.util.IOUtils;
 
 /**
@@ -137,6 +139,14 @@ public abstract class FSDirectory extends BaseDirectory {
   /** Used to generate temp file names in {@link #createTempOutput}. */
   private final AtomicLong nextTempFileCounter = new AtomicLong();
 
+  /** Files that we already fsync'd and that were not deleted since, so that
+   *  {@link #sync} does not need to fsync them again.  Index files are
+   *  write-once so their content cannot change in the meantime. */
+  private final Set<String> syncedFiles = Collections.newSetFromMap(new ConcurrentHashMap<String,Boolean>());
+
+  /** Used to fsync files concurrently in {@link #sync}, or null to fsync them on the calling thread. */
+  private volatile Executor syncExecutor;
+
   /** Create a new FSDirectory for the named location (ctor for subclasses).
    * The directory is created at the named location if it does not yet exist.
    * 
@@ -249,6 +259,7 @@ public abstract class FSDirectory extends BaseDirectory {
 
     // If this file was pending delete, we are now bringing it back to life:
     pendingDeletes.remove(name);
+    syncedFiles.remove(name);
     maybeDeletePendingFiles();
     return new FSIndexOutput(name);
   }
@@ -277,16 +288,64 @@ public abstract class FSDirectory extends BaseDirectory {
     }
   }
 
+  /**
+   * Sets the {@link Executor} that {@link #sync} uses to fsync files
+   * concurrently, or {@code null} (the default) to fsync them one after the
+   * other on the calling thread. This helps on storage where each fsync has
+   * a high latency but several of them can be served in parallel, such as
+   * network-attached disks. The number of concurrent fsyncs is bounded by
+   * the number of threads of the executor.
+   */
+  public void setSyncExecutor(Executor syncExecutor) {
+    this.syncExecutor = syncExecutor;
+  }
+
+  /** Returns the {@link Executor} used to fsync files concurrently, or {@code null} if files are fsync'd on the calling thread.
+   *  @see #setSyncExecutor */
+  public Executor getSyncExecutor() {
+    return syncExecutor;
+  }
+
   @Override
   public void sync(Collection<String> names) throws IOException {
     ensureOpen();
 
+    // Skip files that we already fsync'd, eg. files of segments that
+    // were part of a previous commit:
+    List<String> toSync = new ArrayList<>();
     for (String name : names) {
-      fsync(name);
+      if (syncedFiles.contains(name) == false) {
+        toSync.add(name);
+      }
+    }
+
+    final Executor executor = syncExecutor;
+    if (executor == null || toSync.size() <= 1) {
+      for (String name : toSync) {
+        fsync(name);
+        syncedFiles.add(name);
+      }
+    } else {
+      syncConcurrently(executor, toSync);
     }
     maybeDeletePendingFiles();
   }
 
+  /** Fsync the given files on the given executor, and wait for all of them
+   *  to be done, even if some of them failed. */
+  private void syncConcurrently(Executor executor, List<String> names) throws IOException {
+    final List<Future<Void>> futures = new ArrayList<>();
+    for (String name : names) {
+      futures.add(FutureUtil.execute(executor, () -> {
+        fsync(name);
+        syncedFiles.add(name);
+        return null;
+      }));
+    }
+    // the caller must not assume files are durable until all fsyncs returned
+    IOUtils.reThrow(FutureUtil.waitForAll(futures, null));
+  }
+
   @Override
   public void rename(String source, String dest) throws IOException {
     ensureOpen();
@@ -294,7 +353,12 @@ public abstract class FSDirectory extends BaseDirectory {
       throw new NoSuchFileException("file \"" + source + "\" is pending delete and cannot be moved");
     }
     pendingDeletes.remove(dest);
+    syncedFiles.remove(dest);
     Files.move(directory.resolve(source), directory.resolve(dest), StandardCopyOption.ATOMIC_MOVE);
+    // The content of the file is still durable under its new name:
+    if (syncedFiles.remove(source)) {
+      syncedFiles.add(dest);
+    }
     maybeDeletePendingFiles();
   }
 
@@ -369,6 +433,7 @@ public abstract class FSDirectory extends BaseDirectory {
   }
 
   private void privateDeleteFile(String name, boolean isPendingDelete) throws IOException {
+    syncedFiles.remove(name);
     try {
       Files.delete(directory.resolve(name));
       pendingDeletes.remove(name);
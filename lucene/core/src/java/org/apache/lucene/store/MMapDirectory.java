@@ -244,6 +244,16 @@ public class MMapDirectory extends FSDirectory {
     }
   }
 
+  /**
+   * Returns {@code true} if the given input reads from a memory-mapped file, as
+   * opened by {@link MMapDirectory#openInput}. This is also the case for clones
+   * and slices of such inputs, such as the files of a compound file that was
+   * opened from a {@link MMapDirectory}.
+   */
+  public static boolean isMemoryMapped(IndexInput in) {
+    return in instanceof ByteBufferIndexInput;
+  }
+
   /** Maps a file into a set of buffers */
   final ByteBuffer[] map(String resourceDescription, FileChannel fc, long offset, long length) throws IOException {
     if ((length >>> chunkSizePower) >= Integer.MAX_VALUE)
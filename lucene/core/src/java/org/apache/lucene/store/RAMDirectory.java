@@ -49,6 +49,9 @@ import org.apache.lucene.util.Accountables;
  * {@link MMapDirectory}, which is a high-performance directory
  * implementation working directly on the file system cache of the
  * operating system, so copying data to Java heap space is not useful.
+ *
+ * <p>For in-memory indexes that are large or accessed concurrently,
+ * {@link ByteBuffersDirectory} should perform better.
  */
 public class RAMDirectory extends BaseDirectory implements Accountable {
   protected final Map<String,RAMFile> fileMap = new ConcurrentHashMap<>();
@@ -43,6 +43,21 @@ public final class DocIdSetBuilder {
    *  @see DocIdSetBuilder#grow */
   public static abstract class BulkAdder {
     public abstract void add(int doc);
+
+    /** Add all documents of the given unpositioned iterator. */
+    public void add(DocIdSetIterator iterator) throws IOException {
+      int doc;
+      while ((doc = iterator.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
+        add(doc);
+      }
+    }
+
+    /** Add all documents of the given block of doc IDs. */
+    public void add(IntsRef docs) {
+      for (int i = docs.offset, end = docs.offset + docs.length; i < end; ++i) {
+        add(docs.ints[i]);
+      }
+    }
   }
 
   private static class FixedBitSetAdder extends BulkAdder {
@@ -56,6 +71,11 @@ public final class DocIdSetBuilder {
     public void add(int doc) {
       bitSet.set(doc);
     }
+
+    @Override
+    public void add(DocIdSetIterator iterator) throws IOException {
+      bitSet.or(iterator);
+    }
   }
 
   private static class Buffer {
@@ -84,6 +104,12 @@ public final class DocIdSetBuilder {
     public void add(int doc) {
       buffer.array[buffer.length++] = doc;
     }
+
+    @Override
+    public void add(IntsRef docs) {
+      System.arraycopy(docs.ints, docs.offset, buffer.array, buffer.length, docs.length);
+      buffer.length += docs.length;
+    }
   }
 
   private final int maxDoc;
@@ -267,6 +267,10 @@ public final class FixedBitSet extends BitSet implements MutableBits, Accountabl
       assertUnpositioned(iter);
       final FixedBitSet bits = BitSetIterator.getFixedBitSetOrNull(iter); 
       or(bits);
+    } else if (iter instanceof DocBaseBitSetIterator) {
+      assertUnpositioned(iter);
+      DocBaseBitSetIterator baseIter = (DocBaseBitSetIterator) iter;
+      or(baseIter.getDocBase() >> 6, baseIter.getBitSet());
     } else {
       super.or(iter);
     }
@@ -274,15 +278,19 @@ public final class FixedBitSet extends BitSet implements MutableBits, Accountabl
 
   /** this = this OR other */
   public void or(FixedBitSet other) {
-    or(other.bits, other.numWords);
+    or(0, other.bits, other.numWords);
   }
-  
-  private void or(final long[] otherArr, final int otherNumWords) {
-    assert otherNumWords <= numWords : "numWords=" + numWords + ", otherNumWords=" + otherNumWords;
+
+  private void or(final int otherOffsetWords, FixedBitSet other) {
+    or(otherOffsetWords, other.bits, other.numWords);
+  }
+
+  private void or(final int otherOffsetWords, final long[] otherArr, final int otherNumWords) {
+    assert otherNumWords + otherOffsetWords <= numWords : "numWords=" + numWords + ", otherNumWords=" + otherNumWords;
     final long[] thisArr = this.bits;
-    int pos = Math.min(numWords, otherNumWords);
+    int pos = Math.min(numWords - otherOffsetWords, otherNumWords);
     while (--pos >= 0) {
-      thisArr[pos] |= otherArr[pos];
+      thisArr[pos + otherOffsetWords] |= otherArr[pos];
     }
   }
   
@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.util;
+
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Helpers to run tasks on an optional {@link Executor} and wait for them.
+ *
+ * @lucene.internal
+ */
+public final class FutureUtil {
+
+  private FutureUtil() {} // no instance
+
+  /**
+   * Runs the given task on the executor, or on the current thread if the
+   * executor is {@code null} or rejects the task, eg. because it was shut down.
+   */
+  public static <T> Future<T> execute(Executor executor, Callable<T> task) {
+    final FutureTask<T> future = new FutureTask<>(task);
+    if (executor == null) {
+      future.run();
+    } else {
+      try {
+        executor.execute(future);
+      } catch (RejectedExecutionException e) {
+        future.run();
+      }
+    }
+    return future;
+  }
+
+  /**
+   * Waits for the given future and returns its result. If the future was
+   * returned by {@link #execute} and its task has not started yet, the task
+   * runs on the current thread instead, so that waiting for tasks on an
+   * executor whose threads are all busy, possibly waiting themselves, cannot
+   * deadlock.
+   */
+  public static <T> T get(Future<T> future) throws InterruptedException, ExecutionException {
+    if (future instanceof FutureTask) {
+      // no-op if the task already started
+      ((FutureTask<?>) future).run();
+    }
+    return future.get();
+  }
+
+  /**
+   * Waits until all given futures are done, even if some of them failed or
+   * the current thread is interrupted, so that no task is still running when
+   * this method returns. Tasks that have not started yet run on the current
+   * thread, see {@link #get(Future)}. Returns {@code prior}, or the first failure if
+   * {@code prior} is {@code null}, with the other failures added as
+   * suppressed exceptions. Interrupts are reported as
+   * {@link ThreadInterruptedException}s. Pass the result to
+   * {@link IOUtils#reThrow(Throwable)} to rethrow it.
+   */
+  public static Throwable waitForAll(Iterable<? extends Future<?>> futures, Throwable prior) {
+    Throwable th = prior;
+    for (Future<?> future : futures) {
+      boolean done = false;
+      while (done == false) {
+        try {
+          get(future);
+          done = true;
+        } catch (InterruptedException e) {
+          th = useOrSuppress(th, new ThreadInterruptedException(e));
+        } catch (ExecutionException e) {
+          th = useOrSuppress(th, e.getCause());
+          done = true;
+        }
+      }
+    }
+    return th;
+  }
+
+  /**
+   * Returns {@code t} if {@code first} is {@code null}, or {@code first} with
+   * {@code t} added as a suppressed exception otherwise.
+   */
+  public static Throwable useOrSuppress(Throwable first, Throwable t) {
+    if (first == null) {
+      return t;
+    }
+    first.addSuppressed(t);
+    return first;
+  }
+}
@@ -20,10 +20,17 @@ package org.apache.lucene.util;
 import java.io.Closeable;
 import java.io.EOFException;
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.Deque;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 
 import org.apache.lucene.codecs.CodecUtil;
 import org.apache.lucene.store.ChecksumIndexInput;
@@ -169,11 +176,15 @@ public class OfflineSorter {
 
   private final BufferSize ramBufferSize;
   
-  private final Counter bufferBytesUsed = Counter.newCounter();
-  private final SortableBytesRefArray buffer;
   SortInfo sortInfo;
   private int maxTempFiles;
   private final Comparator<BytesRef> comparator;
+  private final Executor exec;
+  private final int maxPartitionsInRAM;
+  // Only used without an executor: the buffer that all partitions are read into and that
+  // sortPartition(TrackingDirectoryWrapper) sorts, and the bytes it uses
+  private SortableBytesRefArray buffer;
+  private final Counter bufferBytesUsed = Counter.newCounter();
   
   /** Default comparator: sorts in binary (codepoint) order */
   public static final Comparator<BytesRef> DEFAULT_COMPARATOR = Comparator.naturalOrder();
@@ -201,6 +212,19 @@ public class OfflineSorter {
    * all values have the specified length.
    */
   public OfflineSorter(Directory dir, String tempFileNamePrefix, Comparator<BytesRef> comparator, BufferSize ramBufferSize, int maxTempfiles, int valueLength) {
+    this(dir, tempFileNamePrefix, comparator, ramBufferSize, maxTempfiles, valueLength, null, 1);
+  }
+
+  /**
+   * All-details constructor, with concurrency.  If {@code exec} is not null, each partition is sorted and written
+   * to disk, and intermediate partitions are merged, on the provided {@link Executor} while the next partition is
+   * being read.  The RAM buffer is split evenly across the {@code maxPartitionsInRAM} partitions that may be held
+   * in RAM at once, so that the soft RAM limit stays the same.  The executor should run tasks in the order they
+   * were submitted (eg. a {@link java.util.concurrent.ThreadPoolExecutor}) since merge tasks wait for the partitions
+   * they merge, and the comparator must be thread-safe.
+   */
+  public OfflineSorter(Directory dir, String tempFileNamePrefix, Comparator<BytesRef> comparator, BufferSize ramBufferSize, int maxTempfiles, int valueLength,
+                       Executor exec, int maxPartitionsInRAM) {
     if (ramBufferSize.bytes < ABSOLUTE_MIN_SORT_BUFFER_SIZE) {
       throw new IllegalArgumentException(MIN_BUFFER_SIZE_MSG + ": " + ramBufferSize.bytes);
     }
@@ -208,13 +232,14 @@ public class OfflineSorter {
     if (maxTempfiles < 2) {
       throw new IllegalArgumentException("maxTempFiles must be >= 2");
     }
-    if (valueLength == -1) {
-      buffer = new BytesRefArray(bufferBytesUsed);
-    } else {
-      if (valueLength == 0 || valueLength > Short.MAX_VALUE) {
-        throw new IllegalArgumentException("valueLength must be 1 .. " + Short.MAX_VALUE + "; got: " + valueLength);
-      }
-      buffer = new FixedLengthBytesRefArray(valueLength);
+    if (valueLength != -1 && (valueLength == 0 || valueLength > Short.MAX_VALUE)) {
+      throw new IllegalArgumentException("valueLength must be 1 .. " + Short.MAX_VALUE + "; got: " + valueLength);
+    }
+    if (maxPartitionsInRAM < 1) {
+      throw new IllegalArgumentException("maxPartitionsInRAM must be >= 1; got: " + maxPartitionsInRAM);
+    }
+    if (exec == null && maxPartitionsInRAM != 1) {
+      throw new IllegalArgumentException("maxPartitionsInRAM must be 1 when no executor is provided; got: " + maxPartitionsInRAM);
     }
     this.valueLength = valueLength;
     this.ramBufferSize = ramBufferSize;
@@ -222,6 +247,8 @@ public class OfflineSorter {
     this.comparator = comparator;
     this.dir = dir;
     this.tempFileNamePrefix = tempFileNamePrefix;
+    this.exec = exec;
+    this.maxPartitionsInRAM = maxPartitionsInRAM;
   }
 
   /** Returns the {@link Directory} we use to create temp files. */
@@ -242,19 +269,51 @@ public class OfflineSorter {
     sortInfo = new SortInfo();
     sortInfo.totalTime = System.currentTimeMillis();
 
-    List<String> segments = new ArrayList<>();
+    // Names of the sorted partitions, which may still be in the process of being sorted or merged:
+    List<Future<String>> segments = new ArrayList<>();
     int[] levelCounts = new int[1];
 
     // So we can remove any partially written temp files on exception:
     TrackingDirectoryWrapper trackingDir = new TrackingDirectoryWrapper(dir);
 
+    // Bounds how many partitions are held in RAM while they are being sorted:
+    Semaphore partitionsInRAM = new Semaphore(maxPartitionsInRAM);
+    // Sorts that may not have released their slot in partitionsInRAM yet:
+    Deque<Future<String>> pendingSorts = new ArrayDeque<>();
+
     boolean success = false;
     try (ByteSequencesReader is = getReader(dir.openChecksumInput(inputFileName, IOContext.READONCE), inputFileName)) {
-      int lineCount;
-      while ((lineCount = readPartition(is)) > 0) {
-        segments.add(sortPartition(trackingDir));
+      while (true) {
+        // Rather than blocking until a sort releases its slot, wait for the oldest pending sort, which runs
+        // on this thread if it has not started yet, so that a busy executor cannot stall the sort:
+        while (partitionsInRAM.tryAcquire() == false) {
+          getPartition(pendingSorts.removeFirst());
+        }
+        SortableBytesRefArray partition = readPartition(is);
+        if (partition.size() == 0) {
+          partitionsInRAM.release();
+          break;
+        }
+        sortInfo.lineCount += partition.size();
+        Future<String> sort = submit(() -> {
+          try {
+            if (exec == null) {
+              assert partition == buffer;
+              return sortPartition(trackingDir);
+            } else {
+              return sortPartition(trackingDir, partition);
+            }
+          } finally {
+            // The buffer can be reclaimed, let the next partition be read.
+            partition.clear();
+            partitionsInRAM.release();
+          }
+        });
+        segments.add(sort);
+        if (sort.isDone() == false) {
+          pendingSorts.addLast(sort);
+        }
         sortInfo.tempMergeFiles++;
-        sortInfo.lineCount += lineCount;
         levelCounts[0]++;
 
         // Handle intermediate merges; we need a while loop to "cascade" the merge when necessary:
@@ -268,6 +327,13 @@ public class OfflineSorter {
           levelCounts[mergeLevel] = 0;
           mergeLevel++;
         }
+
+        // Fail early if a background sort or merge already failed:
+        for (Future<String> segment : segments) {
+          if (segment.isDone()) {
+            getPartition(segment);
+          }
+        }
       }
       
       // TODO: we shouldn't have to do this?  Can't we return a merged reader to
@@ -286,7 +352,7 @@ public class OfflineSorter {
           result = out.getName();
         }
       } else {
-        result = segments.get(0);
+        result = getPartition(segments.get(0));
       }
 
       // We should be explicitly removing all intermediate files ourselves unless there is an exception:
@@ -302,13 +368,40 @@ public class OfflineSorter {
 
     } finally {
       if (success == false) {
+        // Wait for pending sorts and merges so that they do not create files after we removed them,
+        // their failures are secondary to the exception that is being thrown:
+        FutureUtil.waitForAll(segments, null);
         IOUtils.deleteFilesIgnoringExceptions(trackingDir, trackingDir.getCreatedFiles());
       }
     }
   }
 
-  /** Sort a single partition in-memory. */
+  /** Runs the given task on the executor if there is one, or on the current thread otherwise. */
+  private Future<String> submit(Callable<String> task) {
+    return FutureUtil.execute(exec, task);
+  }
+
+  /** Returns the name of the partition once it has been written, rethrowing any exception that occurred while
+   *  sorting or merging it. */
+  private static String getPartition(Future<String> segment) throws IOException {
+    try {
+      return FutureUtil.get(segment);
+    } catch (InterruptedException e) {
+      throw new ThreadInterruptedException(e);
+    } catch (ExecutionException e) {
+      IOUtils.reThrow(e.getCause());
+      throw new AssertionError(); // unreachable: the cause is never null
+    }
+  }
+
+  /** Sort a single partition in-memory. This is only called if no {@link Executor} was provided, otherwise
+   *  partitions are sorted on the executor without going through this method. */
   protected String sortPartition(TrackingDirectoryWrapper trackingDir) throws IOException {
+    return sortPartition(trackingDir, buffer);
+  }
+
+  /** Sort the given partition in-memory and write it to disk, returning the name of the written file. */
+  String sortPartition(TrackingDirectoryWrapper trackingDir, SortableBytesRefArray buffer) throws IOException {
 
     try (IndexOutput tempFile = trackingDir.createTempOutput(tempFileNamePrefix, "sort", IOContext.DEFAULT);
          ByteSequencesWriter out = getWriter(tempFile);) {
@@ -317,16 +410,16 @@ public class OfflineSorter {
 
       long start = System.currentTimeMillis();
       BytesRefIterator iter = buffer.iterator(comparator);
-      sortInfo.sortTime += System.currentTimeMillis() - start;
+      long sortTime = System.currentTimeMillis() - start;
+      synchronized (sortInfo) {
+        sortInfo.sortTime += sortTime;
+      }
 
       while ((spare = iter.next()) != null) {
         assert spare.length <= Short.MAX_VALUE;
         out.write(spare);
       }
       
-      // Clean up the buffer for the next partition.
-      buffer.clear();
-
       CodecUtil.writeFooter(out.out);
 
       return tempFile.getName();
@@ -341,17 +434,35 @@ public class OfflineSorter {
     }
   }
 
-  /** Merge the most recent {@code maxTempFile} partitions into a new partition. */
-  void mergePartitions(Directory trackingDir, List<String> segments) throws IOException {
-    long start = System.currentTimeMillis();
-
-    List<String> segmentsToMerge;
+  /** Merge the most recent {@code maxTempFile} partitions into a new partition. The merge runs on the executor
+   *  if there is one, once all partitions to merge have been written. */
+  void mergePartitions(Directory trackingDir, List<Future<String>> segments) throws IOException {
+    List<Future<String>> segmentsToMerge;
     if (segments.size() > maxTempFiles) {
       segmentsToMerge = segments.subList(segments.size() - maxTempFiles, segments.size());
     } else {
       segmentsToMerge = segments;
     }
 
+    List<Future<String>> inputs = new ArrayList<>(segmentsToMerge);
+    segmentsToMerge.clear();
+    segments.add(submit(() -> merge(trackingDir, inputs)));
+
+    sortInfo.tempMergeFiles++;
+    sortInfo.mergeRounds++;
+  }
+
+  /** Wait for the given partitions to be written and merge them into a new partition, returning its name. */
+  private String merge(Directory trackingDir, List<Future<String>> inputs) throws IOException {
+    // Wait for all inputs even if one failed, so that no input creates files after the sort returned
+    IOUtils.reThrow(FutureUtil.waitForAll(inputs, null));
+    List<String> segmentsToMerge = new ArrayList<>();
+    for (Future<String> input : inputs) {
+      segmentsToMerge.add(getPartition(input));
+    }
+
+    long start = System.currentTimeMillis();
+
     PriorityQueue<FileAndTop> queue = new PriorityQueue<FileAndTop>(segmentsToMerge.size()) {
       @Override
       protected boolean lessThan(FileAndTop a, FileAndTop b) {
@@ -406,25 +517,39 @@ public class OfflineSorter {
         CodecUtil.checkFooter(reader.in);
       }
   
-      sortInfo.mergeTime += System.currentTimeMillis() - start;
-      sortInfo.mergeRounds++;
+      long mergeTime = System.currentTimeMillis() - start;
+      synchronized (sortInfo) {
+        sortInfo.mergeTime += mergeTime;
+      }
     } finally {
       IOUtils.close(streams);
     }
 
     IOUtils.deleteFiles(trackingDir, segmentsToMerge);
 
-    segmentsToMerge.clear();
-    segments.add(newSegmentName);
-
-    sortInfo.tempMergeFiles++;
+    return newSegmentName;
   }
 
-  /** Read in a single partition of data */
-  int readPartition(ByteSequencesReader reader) throws IOException {
+  /** Read in a single partition of data. The returned buffer is empty if there is no more data to read. */
+  SortableBytesRefArray readPartition(ByteSequencesReader reader) throws IOException {
     long start = System.currentTimeMillis();
+    // Each partition that may be held in RAM gets an equal share of the buffer
+    final int partitionBytes = ramBufferSize.bytes / maxPartitionsInRAM;
+    final SortableBytesRefArray buffer;
+    final Counter bufferBytesUsed;
+    if (exec == null) {
+      // Partitions are sorted one at a time on the current thread, so they can all use the same buffer
+      if (this.buffer == null) {
+        this.buffer = newBuffer(this.bufferBytesUsed);
+      }
+      buffer = this.buffer;
+      bufferBytesUsed = this.bufferBytesUsed;
+    } else {
+      bufferBytesUsed = Counter.newCounter();
+      buffer = newBuffer(bufferBytesUsed);
+    }
     if (valueLength != -1) {
-      int limit = ramBufferSize.bytes / valueLength;
+      int limit = partitionBytes / valueLength;
       for(int i=0;i<limit;i++) {
         BytesRef item = null;
         try {
@@ -451,13 +576,21 @@ public class OfflineSorter {
         buffer.append(item);
         // Account for the created objects.
         // (buffer slots do not account to buffer size.) 
-        if (bufferBytesUsed.get() > ramBufferSize.bytes) {
+        if (bufferBytesUsed.get() > partitionBytes) {
           break;
         }
       }
     }
     sortInfo.readTime += System.currentTimeMillis() - start;
-    return buffer.size();
+    return buffer;
+  }
+
+  private SortableBytesRefArray newBuffer(Counter bufferBytesUsed) {
+    if (valueLength != -1) {
+      return new FixedLengthBytesRefArray(valueLength);
+    } else {
+      return new BytesRefArray(bufferBytesUsed);
+    }
   }
 
   static class FileAndTop {
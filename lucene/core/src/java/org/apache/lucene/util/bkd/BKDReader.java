@@ -17,6 +17,7 @@
 package org.apache.lucene.util.bkd;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Arrays;
 
 import org.apache.lucene.codecs.CodecUtil;
@@ -26,17 +27,29 @@ import org.apache.lucene.index.PointValues.Relation;
 import org.apache.lucene.store.IndexInput;
 import org.apache.lucene.util.Accountable;
 import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.IntsRef;
 import org.apache.lucene.util.StringHelper;
+import org.apache.lucene.util.packed.PackedInts;
+import org.apache.lucene.util.packed.PackedLongValues;
 
 /** Handles intersection of an multi-dimensional shape in byte[] space with a block KD-tree previously written with {@link BKDWriter}.
  *
  * @lucene.experimental */
 
 public class BKDReader implements Accountable {
-  // Packed array of byte[] holding all split values in the full binary tree:
+  // Packed array of byte[] holding all split values in the full binary tree,
+  // or null if the index is read off-heap:
   final private byte[] splitPackedValues; 
+  // Start of the split values in the index file, only used off-heap:
+  final private long splitPackedValuesFP;
+  // File pointers to the start of each leaf block, or null if the index is read off-heap:
   final long[] leafBlockFPs;
-  final private int leafNodeOffset;
+  // Compressed file pointers to the start of each leaf block, in the order that
+  // they are written on disk, only used off-heap:
+  final private PackedLongValues packedLeafBlockFPs;
+  // How much the packed leaf block FPs must be rotated in order to match leaf IDs:
+  final private int leafBlockFPsRotation;
+  final int leafNodeOffset;
   final int numDims;
   final int bytesPerDim;
   final IndexInput in;
@@ -50,6 +63,14 @@ public class BKDReader implements Accountable {
 
   /** Caller must pre-seek the provided {@link IndexInput} to the index location that {@link BKDWriter#finish} returned */
   public BKDReader(IndexInput in) throws IOException {
+    this(in, false);
+  }
+
+  /** Caller must pre-seek the provided {@link IndexInput} to the index location that {@link BKDWriter#finish} returned.
+   *  If {@code offHeapIndex} is true, then the split values of the inner nodes are not loaded on the heap
+   *  but read from {@code in} while walking the tree, and the file pointers of leaf blocks are kept compressed.
+   *  This is best used on top of memory-mapped files. */
+  public BKDReader(IndexInput in, boolean offHeapIndex) throws IOException {
     version = CodecUtil.checkHeader(in, BKDWriter.CODEC_NAME, BKDWriter.VERSION_START, BKDWriter.VERSION_CURRENT);
     numDims = in.readVInt();
     maxPointsInLeafNode = in.readVInt();
@@ -70,19 +91,32 @@ public class BKDReader implements Accountable {
     pointCount = in.readVLong();
     docCount = in.readVInt();
 
-    splitPackedValues = new byte[(1+bytesPerDim)*numLeaves];
-
-    // TODO: don't write split packed values[0]!
-    in.readBytes(splitPackedValues, 0, splitPackedValues.length);
+    final int splitPackedValuesLength = (1+bytesPerDim)*numLeaves;
+    if (offHeapIndex) {
+      splitPackedValues = null;
+      splitPackedValuesFP = in.getFilePointer();
+      in.seek(splitPackedValuesFP + splitPackedValuesLength);
+    } else {
+      splitPackedValues = new byte[splitPackedValuesLength];
+      splitPackedValuesFP = -1;
+      // TODO: don't write split packed values[0]!
+      in.readBytes(splitPackedValues, 0, splitPackedValues.length);
+    }
 
     // Read the file pointers to the start of each leaf block:
-    long[] leafBlockFPs = new long[numLeaves];
+    long[] leafBlockFPs = offHeapIndex ? null : new long[numLeaves];
+    PackedLongValues.Builder packedLeafBlockFPs = offHeapIndex ? PackedLongValues.monotonicBuilder(PackedInts.COMPACT) : null;
     long lastFP = 0;
     for(int i=0;i<numLeaves;i++) {
       long delta = in.readVLong();
-      leafBlockFPs[i] = lastFP + delta;
+      if (offHeapIndex) {
+        packedLeafBlockFPs.add(lastFP + delta);
+      } else {
+        leafBlockFPs[i] = lastFP + delta;
+      }
       lastFP += delta;
     }
+    int leafBlockFPsRotation = 0;
 
     // Possibly rotate the leaf block FPs, if the index not fully balanced binary tree (only happens
     // if it was created by BKDWriter.merge).  In this case the leaf nodes may straddle the two bottom
@@ -102,7 +136,10 @@ public class BKDReader implements Accountable {
             System.out.println("  " + i + " " + leafBlockFPs[i]);
           }
           */
-          if (lastLevel != 0) {
+          if (lastLevel != 0 && offHeapIndex) {
+            // Packed FPs need to remain monotonic, so we only record the rotation and apply it at lookup time
+            leafBlockFPsRotation = lastLevel;
+          } else if (lastLevel != 0) {
             // Last level is partially filled, so we must rotate the leaf FPs to match.  We do this here, after loading
             // at read-time, so that we can still delta code them on disk at write:
             //System.out.println("BKDR: now rotate index");
@@ -125,6 +162,8 @@ public class BKDReader implements Accountable {
     }
 
     this.leafBlockFPs = leafBlockFPs;
+    this.packedLeafBlockFPs = offHeapIndex ? packedLeafBlockFPs.build() : null;
+    this.leafBlockFPsRotation = leafBlockFPsRotation;
     this.in = in;
   }
 
@@ -139,6 +178,9 @@ public class BKDReader implements Accountable {
     this.leafNodeOffset = leafBlockFPs.length;
     this.leafBlockFPs = leafBlockFPs;
     this.splitPackedValues = splitPackedValues;
+    this.splitPackedValuesFP = -1;
+    this.packedLeafBlockFPs = null;
+    this.leafBlockFPsRotation = 0;
     this.minPackedValue = minPackedValue;
     this.maxPackedValue = maxPackedValue;
     this.pointCount = pointCount;
@@ -217,7 +259,7 @@ public class BKDReader implements Accountable {
       int leafID = nodeID - leafNodeOffset;
 
       // In the unbalanced case it's possible the left most node only has one child:
-      if (leafID < leafBlockFPs.length) {
+      if (leafID < leafNodeOffset) {
         //System.out.println("CHECK nodeID=" + nodeID + " leaf=" + (nodeID-leafNodeOffset) + " offset=" + leafNodeOffset + " fp=" + leafBlockFPs[leafID]);
         //System.out.println("BKDR.verify leafID=" + leafID + " nodeID=" + nodeID + " fp=" + leafBlockFPs[leafID] + " min=" + new BytesRef(cellMinPacked) + " max=" + new BytesRef(cellMaxPacked));
 
@@ -226,7 +268,7 @@ public class BKDReader implements Accountable {
         visitor.cellMinPacked = cellMinPacked;
         visitor.cellMaxPacked = cellMaxPacked;
 
-        int count = readDocIDs(state.in, leafBlockFPs[leafID], state.scratchDocIDs);
+        int count = readDocIDs(state.in, getLeafBlockFP(leafID), state.scratchDocIDs);
         visitDocValues(state.commonPrefixLengths, state.scratchPackedValue, state.in, state.scratchDocIDs, count, state.visitor);
       } else {
         //System.out.println("BKDR.verify skip leafID=" + leafID);
@@ -234,22 +276,17 @@ public class BKDReader implements Accountable {
     } else {
       // Non-leaf node:
 
-      int address = nodeID * (bytesPerDim+1);
-      int splitDim = splitPackedValues[address] & 0xff;
-      assert splitDim < numDims;
-
       byte[] splitPackedValue = new byte[packedBytesLength];
 
       // Recurse on left sub-tree:
       System.arraycopy(cellMaxPacked, 0, splitPackedValue, 0, packedBytesLength);
-      System.arraycopy(splitPackedValues, address+1, splitPackedValue, splitDim*bytesPerDim, bytesPerDim);
+      int splitDim = readSplitValue(state.indexIn, nodeID, splitPackedValue);
       verify(state,
              2*nodeID,
              cellMinPacked, splitPackedValue);
 
       // Recurse on right sub-tree:
-      System.arraycopy(cellMinPacked, 0, splitPackedValue, 0, packedBytesLength);
-      System.arraycopy(splitPackedValues, address+1, splitPackedValue, splitDim*bytesPerDim, bytesPerDim);
+      copyAllButDim(cellMinPacked, splitPackedValue, splitDim);
       verify(state,
              2*nodeID+1,
              splitPackedValue, cellMaxPacked);
@@ -259,6 +296,8 @@ public class BKDReader implements Accountable {
   /** Used to track all state for a single call to {@link #intersect}. */
   public static final class IntersectState {
     final IndexInput in;
+    // only used when the index is read off-heap
+    final IndexInput indexIn;
     final int[] scratchDocIDs;
     final byte[] scratchPackedValue;
     final int[] commonPrefixLengths;
@@ -269,7 +308,15 @@ public class BKDReader implements Accountable {
                           int packedBytesLength,
                           int maxPointsInLeafNode,
                           IntersectVisitor visitor) {
+      this(in, null, numDims, packedBytesLength, maxPointsInLeafNode, visitor);
+    }
+
+    IntersectState(IndexInput in, IndexInput indexIn, int numDims,
+                   int packedBytesLength,
+                   int maxPointsInLeafNode,
+                   IntersectVisitor visitor) {
       this.in = in;
+      this.indexIn = indexIn;
       this.visitor = visitor;
       this.commonPrefixLengths = new int[numDims];
       this.scratchDocIDs = new int[maxPointsInLeafNode];
@@ -281,13 +328,61 @@ public class BKDReader implements Accountable {
     intersect(getIntersectState(visitor), 1, minPackedValue, maxPackedValue);
   }
 
+  /** Estimate the number of points that would be visited by {@link #intersect}
+   *  with the given {@link IntersectVisitor}. This only calls
+   *  {@link IntersectVisitor#compare} and should run many times faster than
+   *  {@link #intersect(IntersectVisitor)}. */
+  public long estimatePointCount(IntersectVisitor visitor) throws IOException {
+    return estimatePointCount(getIntersectState(visitor), 1, minPackedValue, maxPackedValue);
+  }
+
+  private long estimatePointCount(IntersectState state, int nodeID, byte[] cellMinPacked, byte[] cellMaxPacked) throws IOException {
+    Relation r = state.visitor.compare(cellMinPacked, cellMaxPacked);
+
+    if (r == Relation.CELL_OUTSIDE_QUERY) {
+      // This cell is fully outside of the query shape: stop recursing
+      return 0L;
+    } else if (nodeID >= leafNodeOffset) {
+      if (nodeID - leafNodeOffset >= leafNodeOffset) {
+        // In the unbalanced case it's possible the left most node only has one child
+        return 0L;
+      }
+      // Assume half the points of a crossing leaf match
+      return r == Relation.CELL_INSIDE_QUERY ? maxPointsInLeafNode : (maxPointsInLeafNode + 1) / 2;
+    } else if (r == Relation.CELL_INSIDE_QUERY) {
+      return (long) maxPointsInLeafNode * getNumLeaves(nodeID);
+    } else {
+      byte[] splitPackedValue = new byte[packedBytesLength];
+
+      System.arraycopy(cellMaxPacked, 0, splitPackedValue, 0, packedBytesLength);
+      int splitDim = readSplitValue(state.indexIn, nodeID, splitPackedValue);
+      final long leftCost = estimatePointCount(state, 2*nodeID, cellMinPacked, splitPackedValue);
+
+      copyAllButDim(cellMinPacked, splitPackedValue, splitDim);
+      final long rightCost = estimatePointCount(state, 2*nodeID+1, splitPackedValue, cellMaxPacked);
+      return leftCost + rightCost;
+    }
+  }
+
+  /** Returns the number of leaves under the given inner node, which may be
+   *  an overestimate in the unbalanced case. */
+  private int getNumLeaves(int nodeID) {
+    long leftMost = nodeID;
+    long rightMost = nodeID;
+    while (leftMost < leafNodeOffset) {
+      leftMost = 2 * leftMost;
+      rightMost = 2 * rightMost + 1;
+    }
+    return (int) Math.min(leafNodeOffset, rightMost - leftMost + 1);
+  }
+
   /** Fast path: this is called when the query box fully encompasses all cells under this node. */
   private void addAll(IntersectState state, int nodeID) throws IOException {
     //System.out.println("R: addAll nodeID=" + nodeID);
 
     if (nodeID >= leafNodeOffset) {
       //System.out.println("ADDALL");
-      visitDocIDs(state.in, leafBlockFPs[nodeID-leafNodeOffset], state.visitor);
+      visitDocIDs(state.in, getLeafBlockFP(nodeID-leafNodeOffset), state.scratchDocIDs, state.visitor);
       // TODO: we can assert that the first value here in fact matches what the index claimed?
     } else {
       addAll(state, 2*nodeID);
@@ -297,7 +392,7 @@ public class BKDReader implements Accountable {
 
   /** Create a new {@link IntersectState} */
   public IntersectState getIntersectState(IntersectVisitor visitor) {
-    return new IntersectState(in.clone(), numDims,
+    return new IntersectState(in.clone(), splitPackedValues == null ? in.clone() : null, numDims,
                               packedBytesLength,
                               maxPointsInLeafNode,
                               visitor);
@@ -308,13 +403,65 @@ public class BKDReader implements Accountable {
     int leafID = nodeID - leafNodeOffset;
 
     // Leaf node; scan and filter all points in this block:
-    int count = readDocIDs(state.in, leafBlockFPs[leafID], state.scratchDocIDs);
+    int count = readDocIDs(state.in, getLeafBlockFP(leafID), state.scratchDocIDs);
 
     // Again, this time reading values and checking with the visitor
     visitDocValues(state.commonPrefixLengths, state.scratchPackedValue, state.in, state.scratchDocIDs, count, state.visitor);
   }
 
-  protected void visitDocIDs(IndexInput in, long blockFP, IntersectVisitor visitor) throws IOException {
+  /** Returns the file pointer of the start of the given leaf block. */
+  private long getLeafBlockFP(int leafID) {
+    if (leafBlockFPs != null) {
+      return leafBlockFPs[leafID];
+    } else {
+      return packedLeafBlockFPs.get((leafID + leafBlockFPsRotation) % leafNodeOffset);
+    }
+  }
+
+  /** Returns the lowest file pointer of all leaf blocks, ie. the start of the first leaf block on disk. */
+  long getMinLeafBlockFP() {
+    if (leafBlockFPs != null) {
+      long minFP = Long.MAX_VALUE;
+      for(long fp : leafBlockFPs) {
+        minFP = Math.min(minFP, fp);
+      }
+      return minFP;
+    } else {
+      // packed FPs are in on-disk order
+      return packedLeafBlockFPs.get(0);
+    }
+  }
+
+  /** Reads the split dimension of the given inner node and copies its split value into
+   *  {@code splitPackedValue}, at the offset of the split dimension. {@code indexIn} is
+   *  only used if the index is read off-heap. */
+  private int readSplitValue(IndexInput indexIn, int nodeID, byte[] splitPackedValue) throws IOException {
+    final int address = nodeID * (bytesPerDim+1);
+    final int splitDim;
+    if (splitPackedValues != null) {
+      splitDim = splitPackedValues[address] & 0xff;
+      assert splitDim < numDims;
+      System.arraycopy(splitPackedValues, address+1, splitPackedValue, splitDim*bytesPerDim, bytesPerDim);
+    } else {
+      indexIn.seek(splitPackedValuesFP + address);
+      splitDim = indexIn.readByte() & 0xff;
+      if (splitDim >= numDims) {
+        throw new CorruptIndexException("Got splitDim=" + splitDim + " for nodeID=" + nodeID, indexIn);
+      }
+      indexIn.readBytes(splitPackedValue, splitDim*bytesPerDim, bytesPerDim);
+    }
+    return splitDim;
+  }
+
+  /** Copies all dimensions of {@code from} into {@code to}, except {@code dim}. */
+  private void copyAllButDim(byte[] from, byte[] to, int dim) {
+    System.arraycopy(from, 0, to, 0, dim*bytesPerDim);
+    System.arraycopy(from, (dim+1)*bytesPerDim, to, (dim+1)*bytesPerDim, packedBytesLength - (dim+1)*bytesPerDim);
+  }
+
+  /** Visits all doc IDs of the given leaf block at once, using {@code scratchDocIDs}
+   *  as a buffer if necessary. */
+  protected void visitDocIDs(IndexInput in, long blockFP, int[] scratchDocIDs, IntersectVisitor visitor) throws IOException {
     // Leaf node
     in.seek(blockFP);
 
@@ -323,9 +470,10 @@ public class BKDReader implements Accountable {
     visitor.grow(count);
 
     if (version < BKDWriter.VERSION_COMPRESSED_DOC_IDS) {
-      DocIdsWriter.readInts32(in, count, visitor);
+      DocIdsWriter.readInts32(in, count, scratchDocIDs);
+      visitor.visit(new IntsRef(scratchDocIDs, 0, count));
     } else {
-      DocIdsWriter.readInts(in, count, visitor);
+      DocIdsWriter.readInts(in, count, scratchDocIDs, visitor);
     }
   }
 
@@ -444,9 +592,9 @@ public class BKDReader implements Accountable {
       int leafID = nodeID - leafNodeOffset;
       
       // In the unbalanced case it's possible the left most node only has one child:
-      if (leafID < leafBlockFPs.length) {
+      if (leafID < leafNodeOffset) {
         // Leaf node; scan and filter all points in this block:
-        int count = readDocIDs(state.in, leafBlockFPs[leafID], state.scratchDocIDs);
+        int count = readDocIDs(state.in, getLeafBlockFP(leafID), state.scratchDocIDs);
 
         // Again, this time reading values and checking with the visitor
         visitDocValues(state.commonPrefixLengths, state.scratchPackedValue, state.in, state.scratchDocIDs, count, state.visitor);
@@ -457,41 +605,40 @@ public class BKDReader implements Accountable {
       // Non-leaf node: recurse on the split left and right nodes
 
       // TODO: save the unused 1 byte prefix (it's always 0) in the 1d case here:
-      int address = nodeID * (bytesPerDim+1);
-      int splitDim = splitPackedValues[address] & 0xff;
-      assert splitDim < numDims;
-
-      // TODO: can we alloc & reuse this up front?
 
       // TODO: can we alloc & reuse this up front?
       byte[] splitPackedValue = new byte[packedBytesLength];
 
       // Recurse on left sub-tree:
       System.arraycopy(cellMaxPacked, 0, splitPackedValue, 0, packedBytesLength);
-      System.arraycopy(splitPackedValues, address+1, splitPackedValue, splitDim*bytesPerDim, bytesPerDim);
+      int splitDim = readSplitValue(state.indexIn, nodeID, splitPackedValue);
       intersect(state,
                 2*nodeID,
                 cellMinPacked, splitPackedValue);
 
-      // Recurse on right sub-tree:
-      System.arraycopy(cellMinPacked, 0, splitPackedValue, 0, packedBytesLength);
-      System.arraycopy(splitPackedValues, address+1, splitPackedValue, splitDim*bytesPerDim, bytesPerDim);
+      // Recurse on right sub-tree, the split value is still in place:
+      copyAllButDim(cellMinPacked, splitPackedValue, splitDim);
       intersect(state,
                 2*nodeID+1,
                 splitPackedValue, cellMaxPacked);
     }
   }
 
-  /** Copies the split value for this node into the provided byte array */
+  /** Copies the split value for this node into the provided byte array. If the index is
+   *  read off-heap, an {@link UncheckedIOException} is thrown if reading the split value fails. */
   public void copySplitValue(int nodeID, byte[] splitPackedValue) {
-    int address = nodeID * (bytesPerDim+1);
-    int splitDim = splitPackedValues[address] & 0xff;
-    assert splitDim < numDims;
-    System.arraycopy(splitPackedValues, address+1, splitPackedValue, splitDim*bytesPerDim, bytesPerDim);
+    try {
+      readSplitValue(splitPackedValues == null ? in.clone() : null, nodeID, splitPackedValue);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
   }
 
   @Override
   public long ramBytesUsed() {
+    if (splitPackedValues == null) {
+      return packedLeafBlockFPs.ramBytesUsed();
+    }
     return splitPackedValues.length +
       leafBlockFPs.length * Long.BYTES;
   }
@@ -18,26 +18,57 @@ package org.apache.lucene.util.bkd;
 
 import java.io.IOException;
 
+import org.apache.lucene.index.CorruptIndexException;
 import org.apache.lucene.index.PointValues.IntersectVisitor;
+import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.store.IndexInput;
 import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.util.DocBaseBitSetIterator;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.IntsRef;
 
 class DocIdsWriter {
 
+  // doc IDs are a run of consecutive doc IDs, only the first one is written
+  private static final byte CONTINUOUS_IDS = (byte) -2;
+  // doc IDs are dense and strictly increasing, they are written as a bit set
+  private static final byte BITSET_IDS = (byte) -1;
+  private static final byte DELTA_VINTS = (byte) 0;
+
   private DocIdsWriter() {}
 
   static void writeDocIds(int[] docIds, int start, int count, IndexOutput out) throws IOException {
     // docs can be sorted either when all docs in a block have the same value
     // or when a segment is sorted
     boolean sorted = true;
+    boolean strictlySorted = true;
     for (int i = 1; i < count; ++i) {
-      if (docIds[start + i - 1] > docIds[start + i]) {
-        sorted = false;
-        break;
+      int last = docIds[start + i - 1];
+      int current = docIds[start + i];
+      if (last >= current) {
+        strictlySorted = false;
+        if (last > current) {
+          sorted = false;
+          break;
+        }
+      }
+    }
+    if (strictlySorted && count > 0) {
+      final int min = docIds[start];
+      final int max = docIds[start + count - 1];
+      final long min2max = (long) max - min + 1;
+      if (min2max == count) {
+        out.writeByte(CONTINUOUS_IDS);
+        out.writeVInt(min);
+        return;
+      } else if (min2max <= (count << 3)) {
+        // a bit set takes at most one byte per doc, which is no more than delta-coded vints
+        writeIdsAsBitSet(docIds, start, count, out);
+        return;
       }
     }
     if (sorted) {
-      out.writeByte((byte) 0);
+      out.writeByte(DELTA_VINTS);
       int previous = 0;
       for (int i = 0; i < count; ++i) {
         int doc = docIds[start + i];
@@ -64,11 +95,44 @@ class DocIdsWriter {
     }
   }
 
+  private static void writeIdsAsBitSet(int[] docIds, int start, int count, IndexOutput out) throws IOException {
+    final int offsetWords = docIds[start] >> 6;
+    final int offsetBits = offsetWords << 6;
+    final int totalWordCount = FixedBitSet.bits2words(docIds[start + count - 1] - offsetBits + 1);
+    out.writeByte(BITSET_IDS);
+    out.writeVInt(offsetWords);
+    out.writeVInt(totalWordCount);
+    long currentWord = 0;
+    int currentWordIndex = 0;
+    for (int i = 0; i < count; ++i) {
+      final int index = docIds[start + i] - offsetBits;
+      final int nextWordIndex = index >> 6;
+      if (nextWordIndex != currentWordIndex) {
+        out.writeLong(currentWord);
+        currentWord = 0;
+        currentWordIndex++;
+        while (currentWordIndex < nextWordIndex) {
+          out.writeLong(0L);
+          currentWordIndex++;
+        }
+      }
+      currentWord |= 1L << index;
+    }
+    out.writeLong(currentWord);
+    assert currentWordIndex + 1 == totalWordCount;
+  }
+
   /** Read {@code count} integers into {@code docIDs}. */
   static void readInts(IndexInput in, int count, int[] docIDs) throws IOException {
     final int bpv = in.readByte();
     switch (bpv) {
-      case 0:
+      case CONTINUOUS_IDS:
+        readContinuousIds(in, count, docIDs);
+        break;
+      case BITSET_IDS:
+        readBitSet(in, count, docIDs);
+        break;
+      case DELTA_VINTS:
         readDeltaVInts(in, count, docIDs);
         break;
       case 32:
@@ -82,6 +146,40 @@ class DocIdsWriter {
     }
   }
 
+  private static void readContinuousIds(IndexInput in, int count, int[] docIDs) throws IOException {
+    final int start = in.readVInt();
+    for (int i = 0; i < count; i++) {
+      docIDs[i] = start + i;
+    }
+  }
+
+  private static FixedBitSet readBitSet(IndexInput in) throws IOException {
+    final int numWords = in.readVInt();
+    final long[] bits = new long[numWords];
+    for (int i = 0; i < numWords; ++i) {
+      bits[i] = in.readLong();
+    }
+    return new FixedBitSet(bits, numWords << 6);
+  }
+
+  private static void readBitSet(IndexInput in, int count, int[] docIDs) throws IOException {
+    final int offsetBits = in.readVInt() << 6;
+    final int numWords = in.readVInt();
+    int pos = 0;
+    for (int i = 0; i < numWords; ++i) {
+      long word = in.readLong();
+      final int base = offsetBits + (i << 6);
+      while (word != 0) {
+        final int ntz = Long.numberOfTrailingZeros(word);
+        docIDs[pos++] = base + ntz;
+        word ^= 1L << ntz;
+      }
+    }
+    if (pos != count) {
+      throw new CorruptIndexException("Expected " + count + " doc IDs in bit set, got " + pos, in);
+    }
+  }
+
   private static void readDeltaVInts(IndexInput in, int count, int[] docIDs) throws IOException {
     int doc = 0;
     for (int i = 0; i < count; i++) {
@@ -90,7 +188,7 @@ class DocIdsWriter {
     }
   }
 
-  static <T> void readInts32(IndexInput in, int count, int[] docIDs) throws IOException {
+  static void readInts32(IndexInput in, int count, int[] docIDs) throws IOException {
     for (int i = 0; i < count; i++) {
       docIDs[i] = in.readInt();
     }
@@ -116,55 +214,35 @@ class DocIdsWriter {
     }
   }
 
-  /** Read {@code count} integers and feed the result directly to {@link IntersectVisitor#visit(int)}. */
-  static void readInts(IndexInput in, int count, IntersectVisitor visitor) throws IOException {
+  /** Read {@code count} integers and feed them to the visitor at once, either
+   *  through {@link IntersectVisitor#visit(DocIdSetIterator)} for runs and bit
+   *  sets, or through {@link IntersectVisitor#visit(IntsRef)} after decoding
+   *  them into {@code scratch}. */
+  static void readInts(IndexInput in, int count, int[] scratch, IntersectVisitor visitor) throws IOException {
     final int bpv = in.readByte();
     switch (bpv) {
-      case 0:
-        readDeltaVInts(in, count, visitor);
+      case CONTINUOUS_IDS:
+        final int start = in.readVInt();
+        visitor.visit(DocIdSetIterator.range(start, start + count));
+        break;
+      case BITSET_IDS:
+        final int offsetBits = in.readVInt() << 6;
+        visitor.visit(new DocBaseBitSetIterator(readBitSet(in), count, offsetBits));
+        break;
+      case DELTA_VINTS:
+        readDeltaVInts(in, count, scratch);
+        visitor.visit(new IntsRef(scratch, 0, count));
         break;
       case 32:
-        readInts32(in, count, visitor);
+        readInts32(in, count, scratch);
+        visitor.visit(new IntsRef(scratch, 0, count));
         break;
       case 24:
-        readInts24(in, count, visitor);
+        readInts24(in, count, scratch);
+        visitor.visit(new IntsRef(scratch, 0, count));
         break;
       default:
         throw new IOException("Unsupported number of bits per value: " + bpv);
     }
   }
-
-  private static void readDeltaVInts(IndexInput in, int count, IntersectVisitor visitor) throws IOException {
-    int doc = 0;
-    for (int i = 0; i < count; i++) {
-      doc += in.readVInt();
-      visitor.visit(doc);
-    }
-  }
-
-  static void readInts32(IndexInput in, int count, IntersectVisitor visitor) throws IOException {
-    for (int i = 0; i < count; i++) {
-      visitor.visit(in.readInt());
-    }
-  }
-
-  private static void readInts24(IndexInput in, int count, IntersectVisitor visitor) throws IOException {
-    int i;
-    for (i = 0; i < count - 7; i += 8) {
-      long l1 = in.readLong();
-      long l2 = in.readLong();
-      long l3 = in.readLong();
-      visitor.visit((int) (l1 >>> 40));
-      visitor.visit((int) (l1 >>> 16) & 0xffffff);
-      visitor.visit((int) (((l1 & 0xffff) << 8) | (l2 >>> 56)));
-      visitor.visit((int) (l2 >>> 32) & 0xffffff);
-      visitor.visit((int) (l2 >>> 8) & 0xffffff);
-      visitor.visit((int) (((l2 & 0xff) << 16) | (l3 >>> 48)));
-      visitor.visit((int) (l3 >>> 24) & 0xffffff);
-      visitor.visit((int) l3 & 0xffffff);
-    }
-    for (; i < count; ++i) {
-      visitor.visit((Short.toUnsignedInt(in.readShort()) << 8) | Byte.toUnsignedInt(in.readByte()));
-    }
-  }
 }
@@ -22,6 +22,7 @@ import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
@@ -34,6 +35,7 @@ import org.apache.lucene.codecs.CodecUtil;
 import org.apache.lucene.store.ByteArrayDataOutput;
 import org.apache.lucene.store.DataInput;
 import org.apache.lucene.store.DataOutput;
+import org.apache.lucene.store.IndexInput;
 import org.apache.lucene.store.InputStreamDataInput;
 import org.apache.lucene.store.OutputStreamDataOutput;
 import org.apache.lucene.store.RAMOutputStream;
@@ -164,6 +166,10 @@ public final class FST<T> implements Accountable {
   /** Used at read time when the FST fits into a single byte[]. */
   final byte[] bytesArray;
 
+  /** Used at read time when the FST is read off-heap: bytes are read
+   *  directly from this slice of the index file. */
+  final IndexInput bytesInput;
+
   private long startNode = -1;
 
   public final Outputs<T> outputs;
@@ -289,6 +295,7 @@ public final class FST<T> implements Accountable {
     this.outputs = outputs;
     version = VERSION_CURRENT;
     bytesArray = null;
+    bytesInput = null;
     bytes = new BytesStore(bytesPageBits);
     // pad: ensure no node gets address 0 which is reserved to mean
     // the stop state w/ no arcs
@@ -316,6 +323,20 @@ public final class FST<T> implements Accountable {
   /** Load a previously saved FST; maxBlockBits allows you to
    *  control the size of the byte[] pages used to hold the FST bytes. */
   public FST(DataInput in, Outputs<T> outputs, int maxBlockBits) throws IOException {
+    this(in, outputs, maxBlockBits, false);
+  }
+
+  /** Load a previously saved FST. If {@code offHeap} is true, then the
+   *  bytes of the FST are not loaded into memory: they are read from the
+   *  provided {@link IndexInput} on demand, which must then remain open
+   *  for as long as this FST is used. This is best used on top of
+   *  memory-mapped files, whose pages the OS can cache or evict as
+   *  needed. */
+  public FST(IndexInput in, Outputs<T> outputs, boolean offHeap) throws IOException {
+    this(in, outputs, DEFAULT_MAX_BLOCK_BITS, offHeap);
+  }
+
+  private FST(DataInput in, Outputs<T> outputs, int maxBlockBits, boolean offHeap) throws IOException {
     this.outputs = outputs;
 
     if (maxBlockBits < 1 || maxBlockBits > 30) {
@@ -377,15 +398,25 @@ public final class FST<T> implements Accountable {
     }
 
     long numBytes = in.readVLong();
-    if (numBytes > 1 << maxBlockBits) {
+    if (offHeap) {
+      // leave the bytes on disk and only remember where they are
+      final IndexInput indexIn = (IndexInput) in;
+      final long startFP = indexIn.getFilePointer();
+      bytesInput = indexIn.slice("fst", startFP, numBytes);
+      indexIn.seek(startFP + numBytes);
+      bytes = null;
+      bytesArray = null;
+    } else if (numBytes > 1 << maxBlockBits) {
       // FST is big: we need multiple pages
       bytes = new BytesStore(in, numBytes, 1<<maxBlockBits);
       bytesArray = null;
+      bytesInput = null;
     } else {
       // FST fits into a single block: use ByteArrayBytesStoreReader for less overhead
       bytes = null;
       bytesArray = new byte[(int) numBytes];
       in.readBytes(bytesArray, 0, bytesArray.length);
+      bytesInput = null;
     }
     
     cacheRootArcs();
@@ -421,7 +452,7 @@ public final class FST<T> implements Accountable {
     long size = BASE_RAM_BYTES_USED;
     if (bytesArray != null) {
       size += bytesArray.length;
-    } else {
+    } else if (bytes != null) {
       size += bytes.ramBytesUsed();
     }
     if (packed) {
@@ -503,8 +534,10 @@ public final class FST<T> implements Accountable {
 
       int cacheRAM = (int) ramBytesUsed(arcs);
 
-      // Don't cache if there are only a few arcs or if the cache would use > 20% RAM of the FST itself:
-      if (count >= FIXED_ARRAY_NUM_ARCS_SHALLOW && cacheRAM < ramBytesUsed()/5) {
+      // Don't cache if there are only a few arcs or if the cache would use > 20% RAM of the FST itself
+      // (or of its size on disk if it is read off-heap):
+      final long fstSize = bytesInput != null ? bytesInput.length() : ramBytesUsed();
+      if (count >= FIXED_ARRAY_NUM_ARCS_SHALLOW && cacheRAM < fstSize/5) {
         cachedRootArcs = arcs;
         cachedArcsBytesUsed = cacheRAM;
       }
@@ -585,6 +618,11 @@ public final class FST<T> implements Accountable {
       long numBytes = bytes.getPosition();
       out.writeVLong(numBytes);
       bytes.writeTo(out);
+    } else if (bytesInput != null) {
+      out.writeVLong(bytesInput.length());
+      final IndexInput clone = bytesInput.clone();
+      clone.seek(0);
+      out.copyBytes(clone, clone.length());
     } else {
       assert bytesArray != null;
       out.writeVLong(bytesArray.length);
@@ -1340,6 +1378,14 @@ public final class FST<T> implements Accountable {
   /** Returns a {@link BytesReader} for this FST, positioned at
    *  position 0. */
   public BytesReader getBytesReader() {
+    if (bytesInput != null) {
+      // absolute reads, so that following arcs does not seek on every byte
+      try {
+        return new OffHeapBytesReader(bytesInput.randomAccessSlice(0, bytesInput.length()), packed == false);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
     if (packed) {
       if (bytesArray != null) {
         return new ForwardBytesReader(bytesArray);
@@ -1482,6 +1528,7 @@ public final class FST<T> implements Accountable {
     packed = true;
     this.inputType = inputType;
     bytesArray = null;
+    bytesInput = null;
     bytes = new BytesStore(bytesPageBits);
     this.outputs = outputs;
   }
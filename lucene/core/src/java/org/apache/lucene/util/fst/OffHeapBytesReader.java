@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.util.fst;
+
+
+import java.io.IOException;
+
+import org.apache.lucene.store.RandomAccessInput;
+
+/** Reads the bytes of an FST directly from a {@link RandomAccessInput}, either
+ *  forward or in reverse, without loading them into memory. */
+final class OffHeapBytesReader extends FST.BytesReader {
+  private final RandomAccessInput in;
+  private final boolean reversed;
+  private long pos;
+
+  /** The provided {@link RandomAccessInput} must not be shared with other readers. */
+  public OffHeapBytesReader(RandomAccessInput in, boolean reversed) {
+    this.in = in;
+    this.reversed = reversed;
+  }
+
+  @Override
+  public byte readByte() throws IOException {
+    if (reversed) {
+      return in.readByte(pos--);
+    } else {
+      return in.readByte(pos++);
+    }
+  }
+
+  @Override
+  public void readBytes(byte[] b, int offset, int len) throws IOException {
+    for (int i = offset, end = offset + len; i < end; ++i) {
+      b[i] = readByte();
+    }
+  }
+
+  @Override
+  public void skipBytes(long count) {
+    if (reversed) {
+      pos -= count;
+    } else {
+      pos += count;
+    }
+  }
+
+  @Override
+  public long getPosition() {
+    return pos;
+  }
+
+  @Override
+  public void setPosition(long pos) {
+    this.pos = pos;
+  }
+
+  @Override
+  public boolean reversed() {
+    return reversed;
+  }
+}
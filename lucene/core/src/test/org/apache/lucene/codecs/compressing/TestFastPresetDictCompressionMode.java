@@ -0,0 +1,48 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.codecs.compressing;
+
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.lucene.store.ByteArrayDataInput;
+import org.apache.lucene.util.BytesRef;
+
+public class TestFastPresetDictCompressionMode extends AbstractTestCompressionMode {
+
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    mode = CompressionMode.FAST_PRESET_DICT;
+  }
+
+  public void testPartialDecompressOnlyReadsRequiredBlocks() throws IOException {
+    final byte[] decompressed = randomArray(1 << 14, random().nextInt(256));
+    final byte[] compressed = compress(decompressed, 0, decompressed.length);
+    // a range at the beginning of the data only needs the dictionary and the first blocks
+    final int offset = random().nextInt(1 << 10);
+    final int length = random().nextInt(1 << 10);
+    final ByteArrayDataInput in = new ByteArrayDataInput(compressed);
+    final BytesRef bytes = new BytesRef();
+    mode.newDecompressor().decompress(in, decompressed.length, offset, length, bytes);
+    assertArrayEquals(Arrays.copyOfRange(decompressed, offset, offset + length),
+        Arrays.copyOfRange(bytes.bytes, bytes.offset, bytes.offset + bytes.length));
+    assertTrue(in.getPosition() < compressed.length / 2);
+  }
+
+}
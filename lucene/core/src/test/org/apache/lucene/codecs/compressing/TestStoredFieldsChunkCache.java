@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.codecs.compressing;
+
+
+import java.io.IOException;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.TestUtil;
+
+public class TestStoredFieldsChunkCache extends LuceneTestCase {
+
+  public void testEviction() {
+    final Object coreKey1 = new Object();
+    final Object coreKey2 = new Object();
+    final byte[] chunk = new byte[1000];
+    // a single shard so that all chunks compete for the same space
+    final StoredFieldsChunkCache cache = new StoredFieldsChunkCache(2500, 1);
+
+    assertNull(cache.get(coreKey1, 0));
+    cache.put(coreKey1, 0, chunk);
+    cache.put(coreKey2, 0, chunk);
+    assertEquals(2, cache.getCacheSize());
+    assertSame(chunk, cache.get(coreKey1, 0));
+    assertNull(cache.get(coreKey1, 42));
+    assertEquals(1, cache.getHitCount());
+    assertEquals(2, cache.getMissCount());
+
+    // coreKey2 is the least recently used entry
+    cache.put(coreKey1, 42, chunk);
+    assertEquals(2, cache.getCacheSize());
+    assertEquals(1, cache.getEvictionCount());
+    assertNull(cache.get(coreKey2, 0));
+    assertTrue(cache.ramBytesUsed() <= 2500);
+
+    cache.clearCoreKey(coreKey1);
+    assertEquals(0, cache.getCacheSize());
+    assertEquals(0, cache.ramBytesUsed());
+
+    // chunks that are larger than the cache are not cached
+    cache.put(coreKey1, 0, new byte[3000]);
+    assertEquals(0, cache.getCacheSize());
+  }
+
+  public void testClearCoreKey() {
+    final int numShards = TestUtil.nextInt(random(), 1, 32);
+    final StoredFieldsChunkCache cache = new StoredFieldsChunkCache(1 << 20, numShards);
+    final Object[] coreKeys = new Object[TestUtil.nextInt(random(), 2, 10)];
+    final int numChunks = atLeast(100);
+    final byte[] chunk = new byte[10];
+    for (int i = 0; i < coreKeys.length; ++i) {
+      coreKeys[i] = new Object();
+      for (int j = 0; j < numChunks; ++j) {
+        cache.put(coreKeys[i], j * 100, chunk);
+      }
+    }
+    assertEquals(coreKeys.length * numChunks, cache.getCacheSize());
+    assertEquals(0, cache.getEvictionCount());
+
+    // only the chunks of the closed segment are removed
+    cache.clearCoreKey(coreKeys[0]);
+    assertEquals((coreKeys.length - 1) * numChunks, cache.getCacheSize());
+    for (int j = 0; j < numChunks; ++j) {
+      assertNull(cache.get(coreKeys[0], j * 100));
+      assertSame(chunk, cache.get(coreKeys[1], j * 100));
+    }
+    assertEquals(numChunks, cache.getHitCount());
+    assertEquals(numChunks, cache.getMissCount());
+
+    for (Object coreKey : coreKeys) {
+      cache.clearCoreKey(coreKey);
+    }
+    assertEquals(0, cache.getCacheSize());
+    assertEquals(0, cache.ramBytesUsed());
+  }
+
+  public void testSharedAcrossReaders() throws IOException {
+    final StoredFieldsChunkCache previous = CompressingStoredFieldsReader.getDefaultChunkCache();
+    final StoredFieldsChunkCache cache = new StoredFieldsChunkCache(1 << 20);
+    CompressingStoredFieldsReader.setDefaultChunkCache(cache);
+    try (Directory dir = newDirectory()) {
+      // the default codec compresses stored fields with CompressingStoredFieldsFormat
+      final IndexWriterConfig iwc = newIndexWriterConfig().setCodec(TestUtil.getDefaultCodec());
+      try (IndexWriter w = new IndexWriter(dir, iwc)) {
+        final int numDocs = atLeast(100);
+        for (int i = 0; i < numDocs; ++i) {
+          Document doc = new Document();
+          doc.add(new StringField("id", Integer.toString(i), Store.YES));
+          doc.add(new StoredField("body", TestUtil.randomSimpleString(random(), 100)));
+          w.addDocument(doc);
+        }
+        w.forceMerge(1);
+
+        DirectoryReader reader = DirectoryReader.open(w);
+        assertEquals("0", reader.document(0).get("id"));
+        assertEquals(1, cache.getMissCount());
+        assertEquals(0, cache.getHitCount());
+        assertEquals(1, cache.getCacheSize());
+
+        // the same chunk is reused for other documents and by the reopened reader
+        w.addDocument(new Document());
+        DirectoryReader newReader = DirectoryReader.openIfChanged(reader, w);
+        assertNotNull(newReader);
+        reader.close();
+        reader = newReader;
+        assertEquals("1", reader.document(1).get("id"));
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+
+        for (int i = 0; i < numDocs; ++i) {
+          assertEquals(Integer.toString(i), reader.document(i).get("id"));
+        }
+        assertTrue(cache.ramBytesUsed() > 0);
+
+        // closing the segment evicts its chunks
+        w.deleteAll();
+        w.commit();
+        reader.close();
+        assertEquals(0, cache.getCacheSize());
+        assertEquals(0, cache.ramBytesUsed());
+      }
+    } finally {
+      CompressingStoredFieldsReader.setDefaultChunkCache(previous);
+    }
+  }
+
+}
@@ -19,15 +19,28 @@ package org.apache.lucene.codecs.lucene50;
 
 import org.apache.lucene.analysis.MockAnalyzer;
 import org.apache.lucene.codecs.Codec;
+import org.apache.lucene.codecs.FieldsProducer;
+import org.apache.lucene.codecs.blocktree.BlockTreeTermsReader;
+import org.apache.lucene.codecs.blocktree.BlockTreeTermsReader.FSTLoadMode;
 import org.apache.lucene.codecs.blocktree.FieldReader;
 import org.apache.lucene.codecs.blocktree.Stats;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.index.BasePostingsFormatTestCase;
 import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.ImpactsEnum;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.SegmentInfo;
+import org.apache.lucene.index.SegmentReadState;
+import org.apache.lucene.index.SegmentReader;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.TestUtil;
 
 /**
@@ -65,6 +78,135 @@ public class TestBlockPostingsFormat extends BasePostingsFormatTestCase {
     d.close();
   }
 
+  /** Make sure the per-block max frequencies that are recorded in skip data
+   *  are upper bounds of the frequencies of the documents in the block. */
+  public void testMaxFreqs() throws Exception {
+    Directory d = newDirectory();
+    IndexWriterConfig iwc = new IndexWriterConfig(new MockAnalyzer(random()));
+    iwc.setCodec(getCodec());
+    IndexWriter w = new IndexWriter(d, iwc);
+    final int numDocs = atLeast(1000);
+    int[] freqs = new int[numDocs];
+    for (int i = 0; i < numDocs; i++) {
+      Document doc = new Document();
+      // make sure blocks have different max freqs
+      freqs[i] = random().nextInt(10) == 0 ? 0 : 1 + random().nextInt(1 + (i / 200) % 10);
+      StringBuilder text = new StringBuilder();
+      for (int j = 0; j < freqs[i]; j++) {
+        text.append("a ");
+      }
+      doc.add(newTextField("field", text.toString(), Field.Store.NO));
+      w.addDocument(doc);
+    }
+    w.forceMerge(1);
+
+    DirectoryReader r = DirectoryReader.open(w);
+    TermsEnum termsEnum = r.leaves().get(0).reader().terms("field").iterator();
+    assertTrue(termsEnum.seekExact(new BytesRef("a")));
+    PostingsEnum postings = termsEnum.postings(null, PostingsEnum.FREQS);
+    assertTrue(postings instanceof ImpactsEnum);
+    ImpactsEnum impacts = (ImpactsEnum) termsEnum.postings(null, PostingsEnum.FREQS);
+
+    int upTo = -1;
+    int maxFreq = -1;
+    for (int doc = postings.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = postings.nextDoc()) {
+      assertEquals(freqs[doc], postings.freq());
+      if (doc > upTo) {
+        upTo = impacts.advanceShallow(doc);
+        assertTrue(upTo >= doc);
+        maxFreq = impacts.getMaxFreq(upTo);
+      }
+      assertTrue(maxFreq >= postings.freq());
+    }
+    assertEquals(DocIdSetIterator.NO_MORE_DOCS, impacts.advanceShallow(numDocs));
+
+    r.close();
+    w.close();
+    d.close();
+  }
+
+  /** Make sure that reading the terms index off-heap returns the same terms
+   *  as loading it on the heap. */
+  public void testOffHeapTermsIndex() throws Exception {
+    Directory d = newDirectory();
+    IndexWriterConfig iwc = new IndexWriterConfig(new MockAnalyzer(random()));
+    iwc.setCodec(getCodec());
+    IndexWriter w = new IndexWriter(d, iwc);
+    final int numDocs = atLeast(1000);
+    for (int i = 0; i < numDocs; i++) {
+      Document doc = new Document();
+      doc.add(newStringField("field", TestUtil.randomSimpleString(random(), 1, 10), Field.Store.NO));
+      w.addDocument(doc);
+    }
+    w.forceMerge(1);
+    w.close();
+
+    DirectoryReader r = DirectoryReader.open(d);
+    SegmentReader segmentReader = (SegmentReader) r.leaves().get(0).reader();
+    // postings are written by the per-field postings format
+    SegmentReadState state = new SegmentReadState(d, segmentReader.getSegmentInfo().info,
+        segmentReader.getFieldInfos(), IOContext.READ, "Lucene50_0");
+    try (FieldsProducer onHeap = new BlockTreeTermsReader(new Lucene50PostingsReader(state), state, FSTLoadMode.ON_HEAP);
+        FieldsProducer offHeap = new BlockTreeTermsReader(new Lucene50PostingsReader(state), state, FSTLoadMode.OFF_HEAP)) {
+      assertTrue(offHeap.ramBytesUsed() < onHeap.ramBytesUsed());
+
+      TermsEnum expected = onHeap.terms("field").iterator();
+      TermsEnum actual = offHeap.terms("field").iterator();
+      for (BytesRef term = expected.next(); term != null; term = expected.next()) {
+        assertEquals(term, actual.next());
+        assertEquals(expected.docFreq(), actual.docFreq());
+      }
+      assertNull(actual.next());
+
+      for (int i = 0; i < 100; ++i) {
+        BytesRef target = new BytesRef(TestUtil.randomSimpleString(random(), 1, 10));
+        TermsEnum.SeekStatus status = expected.seekCeil(target);
+        assertEquals(status, actual.seekCeil(target));
+        if (status != TermsEnum.SeekStatus.END) {
+          assertEquals(expected.term(), actual.term());
+        }
+        assertEquals(expected.seekExact(target), actual.seekExact(target));
+      }
+    }
+
+    r.close();
+    d.close();
+  }
+
+  /** Make sure that {@link FSTLoadMode#AUTO} reads the terms index off-heap
+   *  from a compound file that was opened from a {@link MMapDirectory}. */
+  public void testAutoTermsIndexInCompoundFile() throws Exception {
+    Directory d = new MMapDirectory(createTempDir("testAutoTermsIndexInCompoundFile"));
+    IndexWriterConfig iwc = new IndexWriterConfig(new MockAnalyzer(random()));
+    iwc.setCodec(getCodec());
+    iwc.setUseCompoundFile(true);
+    iwc.setMergePolicy(newLogMergePolicy(true));
+    IndexWriter w = new IndexWriter(d, iwc);
+    final int numDocs = atLeast(1000);
+    for (int i = 0; i < numDocs; i++) {
+      Document doc = new Document();
+      doc.add(newStringField("field", TestUtil.randomSimpleString(random(), 1, 10), Field.Store.NO));
+      w.addDocument(doc);
+    }
+    w.forceMerge(1);
+    w.close();
+
+    DirectoryReader r = DirectoryReader.open(d);
+    SegmentInfo si = ((SegmentReader) r.leaves().get(0).reader()).getSegmentInfo().info;
+    assertTrue(si.getUseCompoundFile());
+    try (Directory cfsDir = si.getCodec().compoundFormat().getCompoundReader(d, si, IOContext.READ)) {
+      SegmentReadState state = new SegmentReadState(cfsDir, si,
+          r.leaves().get(0).reader().getFieldInfos(), IOContext.READ, "Lucene50_0");
+      try (FieldsProducer onHeap = new BlockTreeTermsReader(new Lucene50PostingsReader(state), state, FSTLoadMode.ON_HEAP);
+          FieldsProducer auto = new BlockTreeTermsReader(new Lucene50PostingsReader(state), state, FSTLoadMode.AUTO)) {
+        assertTrue(auto.ramBytesUsed() < onHeap.ramBytesUsed());
+      }
+    }
+
+    r.close();
+    d.close();
+  }
+
   private void shouldFail(int minItemsInBlock, int maxItemsInBlock) {
     expectThrows(IllegalArgumentException.class, () -> {
       new Lucene50PostingsFormat(minItemsInBlock, maxItemsInBlock);
@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.codecs.lucene50;
+
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+
+import org.apache.lucene.codecs.Codec;
+import org.apache.lucene.index.SegmentCommitInfo;
+import org.apache.lucene.index.SegmentInfo;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.MutableBits;
+import org.apache.lucene.util.StringHelper;
+import org.apache.lucene.util.TestUtil;
+import org.apache.lucene.util.Version;
+
+public class TestLucene50LiveDocsFormat extends LuceneTestCase {
+
+  public void testNewLiveDocs() throws IOException {
+    final Lucene50LiveDocsFormat format = new Lucene50LiveDocsFormat();
+    final int maxDoc = TestUtil.nextInt(random(), 1 << Lucene50LiveDocsFormat.SPARSE_SHIFT, 100000);
+    final MutableBits bits = format.newLiveDocs(maxDoc);
+    assertTrue(bits instanceof Lucene50LiveDocsFormat.SparseLiveDocs);
+    assertEquals(maxDoc, bits.length());
+    for (int i = 0; i < maxDoc; ++i) {
+      assertTrue(bits.get(i));
+    }
+
+    // few deletions: stays sparse
+    final int doc = random().nextInt(maxDoc);
+    bits.clear(doc);
+    bits.clear(doc);
+    assertEquals(1, ((Lucene50LiveDocsFormat.SparseLiveDocs) bits).deletedCount);
+    MutableBits copy = format.newLiveDocs(bits);
+    assertTrue(copy instanceof Lucene50LiveDocsFormat.SparseLiveDocs);
+    assertBitsEquals(bits, copy);
+    copy.clear((doc + 1) % maxDoc);
+    assertTrue(bits.get((doc + 1) % maxDoc));
+
+    // many deletions: switches to a dense bit set on copy
+    for (int i = 0; i < maxDoc; i += 2) {
+      copy.clear(i);
+    }
+    MutableBits dense = format.newLiveDocs(copy);
+    assertTrue(dense instanceof FixedBitSet);
+    assertBitsEquals(copy, dense);
+
+    // and back to a sparse set once there are few deletions
+    final FixedBitSet fewDeletions = new FixedBitSet(maxDoc);
+    fewDeletions.set(0, maxDoc);
+    fewDeletions.clear(doc);
+    MutableBits sparse = format.newLiveDocs(fewDeletions);
+    assertTrue(sparse instanceof Lucene50LiveDocsFormat.SparseLiveDocs);
+    assertBitsEquals(fewDeletions, sparse);
+  }
+
+  public void testReadWrite() throws IOException {
+    final Lucene50LiveDocsFormat format = new Lucene50LiveDocsFormat();
+    for (int iter = 0; iter < 10; ++iter) {
+      final int maxDoc = TestUtil.nextInt(random(), 1, 100000);
+      final boolean sparse = random().nextBoolean();
+      final int delCount = sparse
+          ? random().nextInt(1 + (maxDoc >>> Lucene50LiveDocsFormat.SPARSE_SHIFT))
+          : random().nextInt(maxDoc + 1);
+      // start from either representation
+      final MutableBits bits;
+      if (random().nextBoolean()) {
+        bits = format.newLiveDocs(maxDoc);
+      } else {
+        FixedBitSet fbs = new FixedBitSet(maxDoc);
+        fbs.set(0, maxDoc);
+        bits = fbs;
+      }
+      int deleted = 0;
+      while (deleted < delCount) {
+        final int doc = random().nextInt(maxDoc);
+        if (bits.get(doc)) {
+          bits.clear(doc);
+          deleted++;
+        }
+      }
+
+      try (Directory dir = newDirectory()) {
+        final SegmentInfo si = new SegmentInfo(dir, Version.LATEST, "_0", maxDoc, false, Codec.getDefault(),
+            Collections.emptyMap(), StringHelper.randomId(), new HashMap<>(), null);
+        format.writeLiveDocs(bits, dir, new SegmentCommitInfo(si, 0, -1, -1, -1), delCount, newIOContext(random()));
+        final Bits read = format.readLiveDocs(dir, new SegmentCommitInfo(si, delCount, 1, -1, -1), newIOContext(random()));
+        assertEquals(Lucene50LiveDocsFormat.isSparse(maxDoc, delCount), read instanceof Lucene50LiveDocsFormat.SparseLiveDocs);
+        assertBitsEquals(bits, read);
+      }
+    }
+  }
+
+  private static void assertBitsEquals(Bits expected, Bits actual) {
+    assertEquals(expected.length(), actual.length());
+    for (int i = 0; i < expected.length(); ++i) {
+      assertEquals(expected.get(i), actual.get(i));
+    }
+  }
+}
@@ -32,6 +32,7 @@ import org.apache.lucene.codecs.DocValuesFormat;
 import org.apache.lucene.codecs.PostingsFormat;
 import org.apache.lucene.codecs.asserting.AssertingCodec;
 import org.apache.lucene.codecs.lucene54.Lucene54DocValuesProducer.SparseBits;
+import org.apache.lucene.codecs.lucene54.Lucene54DocValuesProducer.SparseDocIdSetIterator;
 import org.apache.lucene.codecs.lucene54.Lucene54DocValuesProducer.SparseLongValues;
 import org.apache.lucene.document.BinaryDocValuesField;
 import org.apache.lucene.document.Document;
@@ -62,6 +63,7 @@ import org.apache.lucene.index.Term;
 import org.apache.lucene.index.Terms;
 import org.apache.lucene.index.TermsEnum.SeekStatus;
 import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.RAMFile;
 import org.apache.lucene.store.RAMInputStream;
@@ -509,6 +511,63 @@ public class TestLucene54DocValuesFormat extends BaseCompressingDocValuesFormatT
     }
   }
 
+  public void testSparseDocIdSetIterator() throws IOException {
+    final int iters = atLeast(5);
+    for (int iter = 0; iter < iters; ++iter) {
+      final int numDocs = TestUtil.nextInt(random(), 0, 100);
+      final long[] docIds = new long[numDocs];
+      final long maxDoc;
+      if (numDocs == 0) {
+        maxDoc = 1 + random().nextInt(10);
+      } else {
+        docIds[0] = random().nextInt(10);
+        for (int i = 1; i < docIds.length; ++i) {
+          docIds[i] = docIds[i - 1] + 1 + random().nextInt(100);
+        }
+        maxDoc = docIds[numDocs - 1] + 1 + random().nextInt(10);
+      }
+      final LongValues docIdsValues = new LongValues() {
+        @Override
+        public long get(long index) {
+          return docIds[Math.toIntExact(index)];
+        }
+      };
+
+      // nextDoc
+      SparseDocIdSetIterator disi = new SparseDocIdSetIterator(new SparseBits(maxDoc, numDocs, docIdsValues));
+      assertEquals(numDocs, disi.cost());
+      for (int i = 0; i < numDocs; ++i) {
+        assertEquals(docIds[i], disi.nextDoc());
+        assertEquals(i, disi.index());
+      }
+      assertEquals(DocIdSetIterator.NO_MORE_DOCS, disi.nextDoc());
+
+      // advance and advanceExact
+      disi = new SparseDocIdSetIterator(new SparseBits(maxDoc, numDocs, docIdsValues));
+      for (int target = random().nextInt(5); target < maxDoc; target += 1 + random().nextInt(50)) {
+        int idx = Arrays.binarySearch(docIds, target);
+        if (random().nextBoolean()) {
+          assertEquals(idx >= 0, disi.advanceExact(target));
+          assertEquals(target, disi.docID());
+          if (idx >= 0) {
+            assertEquals(idx, disi.index());
+          }
+        } else {
+          if (idx < 0) {
+            idx = -1 - idx;
+          }
+          if (idx == numDocs) {
+            assertEquals(DocIdSetIterator.NO_MORE_DOCS, disi.advance(target));
+            break;
+          }
+          assertEquals(docIds[idx], disi.advance(target));
+          assertEquals(idx, disi.index());
+          target = disi.docID();
+        }
+      }
+    }
+  }
+
   @Slow
   public void testSortedSetAroundBlockSize() throws IOException {
     final int frontier = 1 << Lucene54DocValuesFormat.DIRECT_MONOTONIC_BLOCK_SHIFT;
@@ -24,9 +24,20 @@ import org.apache.lucene.codecs.FilterCodec;
 import org.apache.lucene.codecs.PointsFormat;
 import org.apache.lucene.codecs.PointsReader;
 import org.apache.lucene.codecs.PointsWriter;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.LongPoint;
 import org.apache.lucene.index.BasePointsFormatTestCase;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.SegmentInfo;
 import org.apache.lucene.index.SegmentReadState;
+import org.apache.lucene.index.SegmentReader;
 import org.apache.lucene.index.SegmentWriteState;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.MMapDirectory;
 import org.apache.lucene.util.TestUtil;
 
 /**
@@ -74,6 +85,41 @@ public class TestLucene60PointsFormat extends BasePointsFormatTestCase {
     return codec;
   }
 
+  /** Make sure that the index can be read off-heap from a compound file
+   *  that was opened from a {@link MMapDirectory}. */
+  public void testOffHeapIndexInCompoundFile() throws Exception {
+    Directory dir = new MMapDirectory(createTempDir("testOffHeapIndexInCompoundFile"));
+    IndexWriterConfig iwc = new IndexWriterConfig(null);
+    iwc.setCodec(TestUtil.getDefaultCodec());
+    iwc.setUseCompoundFile(true);
+    iwc.setMergePolicy(newLogMergePolicy(true));
+    IndexWriter w = new IndexWriter(dir, iwc);
+    final int numDocs = atLeast(50000);
+    for (int i = 0; i < numDocs; i++) {
+      Document doc = new Document();
+      doc.add(new LongPoint("field", random().nextLong()));
+      w.addDocument(doc);
+    }
+    w.forceMerge(1);
+    w.close();
+
+    DirectoryReader r = DirectoryReader.open(dir);
+    LeafReader leafReader = r.leaves().get(0).reader();
+    SegmentInfo si = ((SegmentReader) leafReader).getSegmentInfo().info;
+    assertTrue(si.getUseCompoundFile());
+    try (Directory cfsDir = si.getCodec().compoundFormat().getCompoundReader(dir, si, IOContext.READ)) {
+      SegmentReadState state = new SegmentReadState(cfsDir, si, leafReader.getFieldInfos(), IOContext.READ);
+      try (Lucene60PointsReader onHeap = new Lucene60PointsReader(state);
+          Lucene60PointsReader offHeap = new Lucene60PointsReader(state, true)) {
+        assertTrue(offHeap.ramBytesUsed() < onHeap.ramBytesUsed());
+        assertEquals(onHeap.getDocCount("field"), offHeap.getDocCount("field"));
+      }
+    }
+
+    r.close();
+    dir.close();
+  }
+
   @Override
   public void testMergeStability() throws Exception {
     assumeFalse("TODO: mess with the parameters and test gets angry!", codec instanceof FilterCodec);
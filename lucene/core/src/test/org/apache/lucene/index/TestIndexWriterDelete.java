@@ -23,6 +23,7 @@ import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
 import java.util.Random;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
@@ -1120,6 +1121,57 @@ public class TestIndexWriterDelete extends LuceneTestCase {
     dir.close();
   }
 
+  // segments only cover a range of the deleted terms, or none of them
+  public void testDeleteTermsOutsideOfSegmentRanges() throws Exception {
+    Directory dir = newDirectory();
+    IndexWriter w = new IndexWriter(dir, newIndexWriterConfig(new MockAnalyzer(random()))
+                                           .setMergePolicy(NoMergePolicy.INSTANCE)
+                                           .setMaxBufferedDocs(IndexWriterConfig.DISABLE_AUTO_FLUSH)
+                                           .setRAMBufferSizeMB(16));
+    final int numSegments = TestUtil.nextInt(random(), 2, 5);
+    final int docsPerSegment = atLeast(20);
+    final int numIds = numSegments * docsPerSegment;
+    for (int i = 0; i < numIds; i++) {
+      Document doc = new Document();
+      doc.add(newStringField("id", String.format(Locale.ROOT, "%05d", i), Field.Store.NO));
+      w.addDocument(doc);
+      if ((i + 1) % docsPerSegment == 0) {
+        // each segment has a disjoint range of ids
+        w.getReader().close();
+      }
+    }
+
+    final boolean[] deleted = new boolean[numIds];
+    final int numDeletes = atLeast(10);
+    for (int i = 0; i < numDeletes; i++) {
+      // also delete ids that are larger than all existing ones
+      final int id = random().nextInt(numIds + 10);
+      w.deleteDocuments(new Term("id", String.format(Locale.ROOT, "%05d", id)));
+      if (id < numIds) {
+        deleted[id] = true;
+      }
+    }
+    // a document that is added after the delete must survive
+    Document doc = new Document();
+    doc.add(newStringField("id", String.format(Locale.ROOT, "%05d", numIds - 1), Field.Store.NO));
+    w.addDocument(doc);
+
+    IndexReader r = w.getReader();
+    IndexSearcher s = newSearcher(r);
+    int expectedNumDocs = 1;
+    for (int i = 0; i < numIds; i++) {
+      final int expectedCount = (deleted[i] ? 0 : 1) + (i == numIds - 1 ? 1 : 0);
+      assertEquals("id=" + i, expectedCount, s.count(new TermQuery(new Term("id", String.format(Locale.ROOT, "%05d", i)))));
+      if (deleted[i] == false) {
+        expectedNumDocs++;
+      }
+    }
+    assertEquals(expectedNumDocs, r.numDocs());
+    r.close();
+    w.close();
+    dir.close();
+  }
+
   // Make sure buffered (pushed) deletes don't use up so
   // much RAM that it forces long tail of tiny segments:
   @Nightly
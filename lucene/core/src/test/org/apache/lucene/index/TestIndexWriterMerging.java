@@ -18,17 +18,39 @@ package org.apache.lucene.index;
 
 import java.io.IOException;
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.lucene.analysis.MockAnalyzer;
+import org.apache.lucene.codecs.DocValuesFormat;
+import org.apache.lucene.codecs.FilterCodec;
+import org.apache.lucene.codecs.PointsFormat;
+import org.apache.lucene.codecs.PointsReader;
+import org.apache.lucene.codecs.PointsWriter;
+import org.apache.lucene.codecs.PostingsFormat;
+import org.apache.lucene.codecs.asserting.AssertingCodec;
+import org.apache.lucene.codecs.lucene60.Lucene60PointsReader;
+import org.apache.lucene.codecs.lucene60.Lucene60PointsWriter;
+import org.apache.lucene.codecs.perfield.PerFieldDocValuesFormat;
+import org.apache.lucene.codecs.perfield.PerFieldPostingsFormat;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.Field.Store;
 import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.IntPoint;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StringField;
 import org.apache.lucene.document.TextField;
 import org.apache.lucene.index.IndexWriterConfig.OpenMode;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.store.AlreadyClosedException;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.NamedThreadFactory;
+import org.apache.lucene.util.TestUtil;
 
 public class TestIndexWriterMerging extends LuceneTestCase {
 
@@ -457,4 +479,163 @@ public class TestIndexWriterMerging extends LuceneTestCase {
 
     directory.close();
   }
+
+  public void testMergeExecutor() throws Exception {
+    final ExecutorService executor = Executors.newFixedThreadPool(TestUtil.nextInt(random(), 1, 4),
+        new NamedThreadFactory("TestIndexWriterMerging"));
+    try {
+      Directory dir = newDirectory();
+      IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()))
+          .setMaxBufferedDocs(TestUtil.nextInt(random(), 10, 50))
+          .setMergeExecutor(executor);
+      IndexWriter w = new IndexWriter(dir, iwc);
+      FieldType vectorsType = new FieldType(TextField.TYPE_NOT_STORED);
+      vectorsType.setStoreTermVectors(true);
+      final int numDocs = atLeast(500);
+      for (int i = 0; i < numDocs; ++i) {
+        Document doc = new Document();
+        doc.add(new StringField("id", Integer.toString(i), Store.YES));
+        doc.add(new TextField("body", "value" + (i % 7) + " common", Store.NO));
+        doc.add(new Field("vectors", "value" + (i % 3), vectorsType));
+        doc.add(new NumericDocValuesField("dv", i));
+        doc.add(new IntPoint("point", i));
+        w.addDocument(doc);
+        if (random().nextInt(50) == 0) {
+          w.deleteDocuments(new Term("id", Integer.toString(random().nextInt(i + 1))));
+        }
+      }
+      w.forceMerge(1);
+      w.close();
+
+      DirectoryReader reader = DirectoryReader.open(dir);
+      assertEquals(1, reader.leaves().size());
+      LeafReader leaf = reader.leaves().get(0).reader();
+      assertFalse(leaf.hasDeletions());
+      NumericDocValues dv = leaf.getNumericDocValues("dv");
+      for (int doc = 0; doc < leaf.maxDoc(); ++doc) {
+        final int id = Integer.parseInt(leaf.document(doc).get("id"));
+        assertEquals(id, dv.get(doc));
+        assertNotNull(leaf.getTermVector(doc, "vectors"));
+      }
+      IndexSearcher searcher = newSearcher(reader);
+      assertEquals(leaf.numDocs(), searcher.count(new TermQuery(new Term("body", "common"))));
+      assertEquals(leaf.numDocs(), searcher.count(IntPoint.newRangeQuery("point", 0, numDocs)));
+      reader.close();
+      dir.close();
+    } finally {
+      executor.shutdown();
+      assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+    }
+  }
+
+  // multi-dimensional points are sorted offline on the merge executor, whose
+  // only thread is busy merging the points when the sort is submitted
+  public void testMergeExecutorOfflineSortPoints() throws Exception {
+    final ExecutorService executor = Executors.newSingleThreadExecutor(new NamedThreadFactory("TestIndexWriterMerging"));
+    try {
+      Directory dir = newDirectory();
+      IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()))
+          .setMaxBufferedDocs(TestUtil.nextInt(random(), 100, 500))
+          .setMergeExecutor(executor)
+          .setCodec(new FilterCodec("Lucene62", TestUtil.getDefaultCodec()) {
+            @Override
+            public PointsFormat pointsFormat() {
+              return new PointsFormat() {
+                @Override
+                public PointsWriter fieldsWriter(SegmentWriteState writeState) throws IOException {
+                  // small enough for merged segments to be sorted offline
+                  return new Lucene60PointsWriter(writeState, 16, 0.05);
+                }
+
+                @Override
+                public PointsReader fieldsReader(SegmentReadState readState) throws IOException {
+                  return new Lucene60PointsReader(readState);
+                }
+              };
+            }
+          });
+      IndexWriter w = new IndexWriter(dir, iwc);
+      final int numDocs = atLeast(2000);
+      for (int i = 0; i < numDocs; ++i) {
+        Document doc = new Document();
+        doc.add(new IntPoint("point", i, numDocs - i));
+        w.addDocument(doc);
+      }
+      w.forceMerge(1);
+      w.close();
+
+      DirectoryReader reader = DirectoryReader.open(dir);
+      assertEquals(1, reader.leaves().size());
+      IndexSearcher searcher = newSearcher(reader);
+      assertEquals(numDocs, searcher.count(IntPoint.newRangeQuery("point", new int[] {0, 0}, new int[] {numDocs, numDocs})));
+      assertEquals(10, searcher.count(IntPoint.newRangeQuery("point", new int[] {5, numDocs - 14}, new int[] {14, numDocs - 5})));
+      reader.close();
+      dir.close();
+    } finally {
+      executor.shutdown();
+      assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+    }
+  }
+
+  // postings and doc values of the same fields are merged concurrently, and
+  // both per-field formats record their format in the FieldInfo attributes
+  public void testMergeExecutorPerFieldFormats() throws Exception {
+    final ExecutorService executor = Executors.newFixedThreadPool(TestUtil.nextInt(random(), 1, 4),
+        new NamedThreadFactory("TestIndexWriterMerging"));
+    try {
+      final PostingsFormat defaultPostings = TestUtil.getDefaultPostingsFormat();
+      final PostingsFormat memoryPostings = PostingsFormat.forName("Memory");
+      final DocValuesFormat defaultDocValues = TestUtil.getDefaultDocValuesFormat();
+      final DocValuesFormat memoryDocValues = DocValuesFormat.forName("Memory");
+      Directory dir = newDirectory();
+      IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()))
+          .setMaxBufferedDocs(TestUtil.nextInt(random(), 10, 50))
+          .setMergeExecutor(executor)
+          .setCodec(new AssertingCodec() {
+            @Override
+            public PostingsFormat getPostingsFormatForField(String field) {
+              return (field.hashCode() & 1) == 0 ? defaultPostings : memoryPostings;
+            }
+
+            @Override
+            public DocValuesFormat getDocValuesFormatForField(String field) {
+              return (field.hashCode() & 2) == 0 ? defaultDocValues : memoryDocValues;
+            }
+          });
+      IndexWriter w = new IndexWriter(dir, iwc);
+      final int numFields = TestUtil.nextInt(random(), 10, 30);
+      final int numDocs = atLeast(200);
+      for (int i = 0; i < numDocs; ++i) {
+        Document doc = new Document();
+        for (int j = 0; j < numFields; ++j) {
+          doc.add(new StringField("field" + j, Integer.toString(i % (j + 1)), Store.NO));
+          doc.add(new NumericDocValuesField("field" + j, i));
+        }
+        w.addDocument(doc);
+      }
+      w.forceMerge(1);
+      w.close();
+
+      DirectoryReader reader = DirectoryReader.open(dir);
+      assertEquals(1, reader.leaves().size());
+      LeafReader leaf = reader.leaves().get(0).reader();
+      NumericDocValues expected = leaf.getNumericDocValues("field0");
+      for (int j = 0; j < numFields; ++j) {
+        final String field = "field" + j;
+        FieldInfo fieldInfo = leaf.getFieldInfos().fieldInfo(field);
+        assertNotNull(fieldInfo.getAttribute(PerFieldPostingsFormat.PER_FIELD_FORMAT_KEY));
+        assertNotNull(fieldInfo.getAttribute(PerFieldDocValuesFormat.PER_FIELD_FORMAT_KEY));
+        assertEquals((numDocs + j) / (j + 1), leaf.docFreq(new Term(field, "0")));
+        NumericDocValues dv = leaf.getNumericDocValues(field);
+        for (int doc = 0; doc < leaf.maxDoc(); ++doc) {
+          assertEquals(expected.get(doc), dv.get(doc));
+        }
+      }
+      reader.close();
+      dir.close();
+    } finally {
+      executor.shutdown();
+      assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+    }
+  }
 }
@@ -1167,6 +1167,84 @@ public class TestNumericDocValuesUpdates extends LuceneTestCase {
   }
 
   @Test
+  public void testStackedUpdates() throws Exception {
+    Directory dir = newDirectory();
+    IndexWriterConfig conf = newIndexWriterConfig(new MockAnalyzer(random()));
+    conf.setMergePolicy(newLogMergePolicy()); // preserve doc order
+    IndexWriter writer = new IndexWriter(dir, conf);
+    // large enough for a single update to be stacked
+    final int numDocs = atLeast(500);
+    final long[] expected = new long[numDocs];
+    for (int i = 0; i < numDocs; i++) {
+      expected[i] = i + 1;
+      writer.addDocument(doc(i));
+    }
+    writer.forceMerge(1);
+    writer.commit();
+
+    int expectedStackedGens = 0;
+    int numGens = atLeast(10);
+    for (int i = 0; i < numGens; i++) {
+      int doc = random().nextInt(numDocs);
+      expected[doc] = random().nextLong();
+      writer.updateNumericDocValue(new Term("id", "doc-" + doc), "val", expected[doc]);
+      // once the maximum number of generations is reached, the field is rewritten
+      expectedStackedGens = (expectedStackedGens + 1) % ReadersAndUpdates.MAX_STACKED_GENS;
+
+      DirectoryReader reader = DirectoryReader.open(writer);
+      assertEquals(1, reader.leaves().size());
+      LeafReader r = reader.leaves().get(0).reader();
+      FieldInfo fi = r.getFieldInfos().fieldInfo("val");
+      assertEquals(expectedStackedGens, SegmentDocValuesProducer.getStackedGens(fi).length);
+      NumericDocValues ndv = r.getNumericDocValues("val");
+      Bits docsWithField = r.getDocsWithField("val");
+      for (int j = 0; j < numDocs; j++) {
+        assertTrue(docsWithField.get(j));
+        assertEquals(expected[j], ndv.get(j));
+      }
+      reader.close();
+
+      if (random().nextBoolean()) {
+        writer.commit();
+      }
+    }
+    writer.close();
+
+    DirectoryReader reader = DirectoryReader.open(dir);
+    NumericDocValues ndv = reader.leaves().get(0).reader().getNumericDocValues("val");
+    for (int j = 0; j < numDocs; j++) {
+      assertEquals(expected[j], ndv.get(j));
+    }
+    reader.close();
+    dir.close();
+  }
+
+  public void testManyUpdatesAreNotStacked() throws Exception {
+    Directory dir = newDirectory();
+    IndexWriterConfig conf = newIndexWriterConfig(new MockAnalyzer(random()));
+    conf.setMergePolicy(newLogMergePolicy()); // preserve doc order
+    IndexWriter writer = new IndexWriter(dir, conf);
+    final int numDocs = atLeast(100);
+    for (int i = 0; i < numDocs; i++) {
+      writer.addDocument(doc(i));
+    }
+    writer.forceMerge(1);
+    // more than 1% of the documents are updated
+    for (int i = 0; i < 2 + numDocs / 50; i++) {
+      writer.updateNumericDocValue(new Term("id", "doc-" + i), "val", -i);
+    }
+    DirectoryReader reader = DirectoryReader.open(writer);
+    LeafReader r = reader.leaves().get(0).reader();
+    assertEquals(0, SegmentDocValuesProducer.getStackedGens(r.getFieldInfos().fieldInfo("val")).length);
+    NumericDocValues ndv = r.getNumericDocValues("val");
+    for (int j = 0; j < numDocs; j++) {
+      assertEquals(j < 2 + numDocs / 50 ? -j : j + 1, ndv.get(j));
+    }
+    reader.close();
+    writer.close();
+    dir.close();
+  }
+
   public void testChangeCodec() throws Exception {
     Directory dir = newDirectory();
     IndexWriterConfig conf = newIndexWriterConfig(new MockAnalyzer(random()));
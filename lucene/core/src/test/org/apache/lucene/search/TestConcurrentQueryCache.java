@@ -0,0 +1,309 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.search;
+
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.carrotsearch.randomizedtesting.generators.RandomPicks;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.RandomIndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.TestUtil;
+
+public class TestConcurrentQueryCache extends LuceneTestCase {
+
+  private static final QueryCachingPolicy NEVER_CACHE = new QueryCachingPolicy() {
+
+    @Override
+    public void onUse(Query query) {}
+
+    @Override
+    public boolean shouldCache(Query query) throws IOException {
+      return false;
+    }
+
+  };
+
+  public void testConcurrency() throws Throwable {
+    final ConcurrentQueryCache queryCache = new ConcurrentQueryCache(1 + random().nextInt(20), 1 + random().nextInt(10000), context -> random().nextBoolean());
+    Directory dir = newDirectory();
+    final RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+    final SearcherFactory searcherFactory = new SearcherFactory() {
+      @Override
+      public IndexSearcher newSearcher(IndexReader reader, IndexReader previous) throws IOException {
+        IndexSearcher searcher = new IndexSearcher(reader);
+        searcher.setQueryCachingPolicy(QueryCachingPolicy.ALWAYS_CACHE);
+        searcher.setQueryCache(queryCache);
+        return searcher;
+      }
+    };
+    final boolean applyDeletes = random().nextBoolean();
+    final SearcherManager mgr = new SearcherManager(w.w, applyDeletes, false, searcherFactory);
+    final AtomicBoolean indexing = new AtomicBoolean(true);
+    final AtomicReference<Throwable> error = new AtomicReference<>();
+    final int numDocs = atLeast(10000);
+    final String[] colors = new String[] {"blue", "red", "yellow", "green", "purple", "orange"};
+    Thread[] threads = new Thread[TestUtil.nextInt(random(), 3, 6)];
+    threads[0] = new Thread() {
+      public void run() {
+        Document doc = new Document();
+        StringField f = new StringField("color", "", Store.NO);
+        doc.add(f);
+        for (int i = 0; indexing.get() && i < numDocs; ++i) {
+          f.setStringValue(RandomPicks.randomFrom(random(), colors));
+          try {
+            w.addDocument(doc);
+            if ((i & 63) == 0) {
+              mgr.maybeRefresh();
+              if (rarely()) {
+                queryCache.clear();
+              }
+              if (rarely()) {
+                final String color = RandomPicks.randomFrom(random(), colors);
+                w.deleteDocuments(new Term("color", color));
+              }
+            }
+          } catch (Throwable t) {
+            error.compareAndSet(null, t);
+            break;
+          }
+        }
+        indexing.set(false);
+      }
+    };
+    for (int i = 1; i < threads.length; ++i) {
+      threads[i] = new Thread() {
+        @Override
+        public void run() {
+          while (indexing.get()) {
+            try {
+              final IndexSearcher searcher = mgr.acquire();
+              try {
+                final String value = RandomPicks.randomFrom(random(), colors);
+                final Query q = new TermQuery(new Term("color", value));
+                TotalHitCountCollector collector = new TotalHitCountCollector();
+                searcher.search(q, collector); // will use the cache
+                final int totalHits1 = collector.getTotalHits();
+                final int totalHits2 = searcher.search(q, 1).totalHits; // will not use the cache because of scores
+                assertEquals(totalHits2, totalHits1);
+              } finally {
+                mgr.release(searcher);
+              }
+            } catch (Throwable t) {
+              error.compareAndSet(null, t);
+            }
+          }
+        }
+      };
+    }
+
+    for (Thread thread : threads) {
+      thread.start();
+    }
+
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    if (error.get() != null) {
+      throw error.get();
+    }
+    queryCache.assertConsistent();
+    mgr.close();
+    w.close();
+    dir.close();
+    queryCache.assertConsistent();
+  }
+
+  public void testEviction() throws Exception {
+    Directory dir = newDirectory();
+    final RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+
+    Document doc = new Document();
+    StringField f = new StringField("color", "blue", Store.NO);
+    doc.add(f);
+    w.addDocument(doc);
+    f.setStringValue("red");
+    w.addDocument(doc);
+    f.setStringValue("green");
+    w.addDocument(doc);
+    final DirectoryReader reader = w.getReader();
+    final IndexSearcher searcher = newSearcher(reader);
+    final ConcurrentQueryCache queryCache = new ConcurrentQueryCache(2, 100000, context -> true);
+
+    final Query blue = new TermQuery(new Term("color", "blue"));
+    final Query red = new TermQuery(new Term("color", "red"));
+    final Query green = new TermQuery(new Term("color", "green"));
+
+    assertEquals(Collections.emptySet(), queryCache.cachedQueries());
+
+    searcher.setQueryCache(queryCache);
+    // the filter is not cached on any segment: no changes
+    searcher.setQueryCachingPolicy(NEVER_CACHE);
+    searcher.search(new ConstantScoreQuery(green), 1);
+    assertEquals(Collections.emptySet(), queryCache.cachedQueries());
+
+    searcher.setQueryCachingPolicy(QueryCachingPolicy.ALWAYS_CACHE);
+    searcher.search(new ConstantScoreQuery(red), 1);
+    assertEquals(Collections.singleton(red), queryCache.cachedQueries());
+
+    searcher.search(new ConstantScoreQuery(green), 1);
+    assertEquals(new HashSet<>(Arrays.asList(red, green)), queryCache.cachedQueries());
+
+    // red is used again, so green is the least-recently used query
+    searcher.search(new ConstantScoreQuery(red), 1);
+    searcher.search(new ConstantScoreQuery(blue), 1);
+    assertEquals(new HashSet<>(Arrays.asList(red, blue)), queryCache.cachedQueries());
+
+    searcher.search(new ConstantScoreQuery(blue), 1);
+    searcher.search(new ConstantScoreQuery(green), 1);
+    assertEquals(new HashSet<>(Arrays.asList(blue, green)), queryCache.cachedQueries());
+
+    searcher.setQueryCachingPolicy(NEVER_CACHE);
+    searcher.search(new ConstantScoreQuery(red), 1);
+    assertEquals(new HashSet<>(Arrays.asList(blue, green)), queryCache.cachedQueries());
+
+    queryCache.assertConsistent();
+    reader.close();
+    w.close();
+    dir.close();
+  }
+
+  private static int count(IndexSearcher searcher, Query query) throws IOException {
+    // IndexSearcher.count might not use the cache for term queries
+    return searcher.search(new ConstantScoreQuery(query), 1).totalHits;
+  }
+
+  public void testClear() throws IOException {
+    Directory dir = newDirectory();
+    final RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+
+    Document doc = new Document();
+    StringField f = new StringField("color", "", Store.NO);
+    doc.add(f);
+    final int numDocs = atLeast(10);
+    for (int i = 0; i < numDocs; ++i) {
+      f.setStringValue(random().nextBoolean() ? "red" : "blue");
+      w.addDocument(doc);
+    }
+    final DirectoryReader reader = w.getReader();
+    final IndexSearcher searcher = newSearcher(reader);
+    final ConcurrentQueryCache queryCache = new ConcurrentQueryCache(Integer.MAX_VALUE, Long.MAX_VALUE, context -> true);
+    searcher.setQueryCache(queryCache);
+    searcher.setQueryCachingPolicy(QueryCachingPolicy.ALWAYS_CACHE);
+
+    final Query red = new TermQuery(new Term("color", "red"));
+    final Query blue = new TermQuery(new Term("color", "blue"));
+    final int redCount = count(searcher, red);
+    final int blueCount = count(searcher, blue);
+    assertEquals(numDocs, redCount + blueCount);
+    assertEquals(new HashSet<>(Arrays.asList(red, blue)), queryCache.cachedQueries());
+    assertTrue(queryCache.ramBytesUsed() > 0);
+
+    queryCache.clearQuery(new TermQuery(new Term("color", "red")));
+    assertEquals(Collections.singleton(blue), queryCache.cachedQueries());
+    queryCache.assertConsistent();
+
+    // cached entries return the same counts
+    final long hitCount = queryCache.getHitCount();
+    assertEquals(blueCount, count(searcher, blue));
+    assertTrue(queryCache.getHitCount() > hitCount);
+    assertEquals(redCount, count(searcher, red));
+
+    queryCache.clear();
+    assertEquals(Collections.emptySet(), queryCache.cachedQueries());
+    assertEquals(0, queryCache.getCacheSize());
+    assertEquals(0, queryCache.ramBytesUsed());
+    queryCache.assertConsistent();
+
+    reader.close();
+    w.close();
+    dir.close();
+  }
+
+  private static Query buildRandomQuery(int level) {
+    if (level == 5 || random().nextInt(3) == 0) {
+      return new TermQuery(new Term("foo", RandomPicks.randomFrom(random(), Arrays.asList("foo", "bar", "baz"))));
+    }
+    BooleanQuery.Builder builder = new BooleanQuery.Builder();
+    final int numClauses = TestUtil.nextInt(random(), 1, 3);
+    for (int i = 0; i < numClauses; ++i) {
+      builder.add(buildRandomQuery(level + 1), RandomPicks.randomFrom(random(), Occur.values()));
+    }
+    return builder.build();
+  }
+
+  public void testRandom() throws IOException {
+    Directory dir = newDirectory();
+    final RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+    Document doc = new Document();
+    TextField f = new TextField("foo", "foo", Store.NO);
+    doc.add(f);
+    w.addDocument(doc);
+    IndexReader reader = w.getReader();
+
+    final int maxSize = TestUtil.nextInt(random(), 1, 1000);
+    final long maxRamBytesUsed = TestUtil.nextLong(random(), 1, 500000);
+    final int iters = atLeast(2000);
+
+    final ConcurrentQueryCache queryCache = new ConcurrentQueryCache(maxSize, maxRamBytesUsed, context -> random().nextBoolean());
+    IndexSearcher uncachedSearcher = null;
+    IndexSearcher cachedSearcher = null;
+
+    for (int i = 0; i < iters; ++i) {
+      if (i == 0 || random().nextInt(100) == 1) {
+        reader.close();
+        f.setStringValue(RandomPicks.randomFrom(random(), Arrays.asList("foo", "bar", "bar baz")));
+        w.addDocument(doc);
+        if (random().nextBoolean()) {
+          w.deleteDocuments(buildRandomQuery(0));
+        }
+        reader = w.getReader();
+        uncachedSearcher = newSearcher(reader);
+        uncachedSearcher.setQueryCache(null);
+        cachedSearcher = newSearcher(reader);
+        cachedSearcher.setQueryCache(queryCache);
+        cachedSearcher.setQueryCachingPolicy(QueryCachingPolicy.ALWAYS_CACHE);
+      }
+      final Query q = buildRandomQuery(0);
+      assertEquals(uncachedSearcher.count(q), cachedSearcher.count(q));
+      if (rarely()) {
+        queryCache.assertConsistent();
+      }
+    }
+    queryCache.assertConsistent();
+    w.close();
+    reader.close();
+    dir.close();
+    queryCache.assertConsistent();
+  }
+}
@@ -0,0 +1,186 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.search;
+
+
+import java.io.IOException;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.DoublePoint;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.IntPoint;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.SortedNumericDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.RandomIndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.NumericUtils;
+import org.apache.lucene.util.TestUtil;
+
+public class TestIndexOrDocValuesQuery extends LuceneTestCase {
+
+  public void testUseIndexForSelectiveQueries() throws IOException {
+    Directory dir = newDirectory();
+    IndexWriter w = new IndexWriter(dir, newIndexWriterConfig()
+        // relies on costs and PointValues.estimatePointCount so we need the default codec
+        .setCodec(TestUtil.getDefaultCodec()));
+    for (int i = 0; i < 2000; ++i) {
+      Document doc = new Document();
+      if (i == 42) {
+        doc.add(new StringField("f1", "bar", Store.NO));
+        doc.add(new LongPoint("f2", 42L));
+        doc.add(new SortedNumericDocValuesField("f2", 42L));
+      } else if (i == 100) {
+        doc.add(new StringField("f1", "foo", Store.NO));
+        doc.add(new LongPoint("f2", 2L));
+        doc.add(new SortedNumericDocValuesField("f2", 2L));
+      } else {
+        doc.add(new StringField("f1", "bar", Store.NO));
+        doc.add(new LongPoint("f2", 2L));
+        doc.add(new SortedNumericDocValuesField("f2", 2L));
+      }
+      w.addDocument(doc);
+    }
+    w.forceMerge(1);
+    IndexReader reader = DirectoryReader.open(w);
+    IndexSearcher searcher = newSearcher(reader);
+    // keep the query cache, which must let IndexOrDocValuesQuery pick its
+    // scorer when it does not cache it
+    searcher.setQueryCachingPolicy(new QueryCachingPolicy() {
+      @Override
+      public void onUse(Query query) {}
+
+      @Override
+      public boolean shouldCache(Query query) throws IOException {
+        return false;
+      }
+    });
+
+    // The term query is more selective, so the IndexOrDocValuesQuery should use doc values
+    final Query q1 = new BooleanQuery.Builder()
+        .add(new TermQuery(new Term("f1", "foo")), Occur.MUST)
+        .add(new IndexOrDocValuesQuery(LongPoint.newExactQuery("f2", 2), SortedNumericDocValuesField.newRangeQuery("f2", 2L, 2L)), Occur.MUST)
+        .build();
+
+    final Weight w1 = searcher.createNormalizedWeight(q1, random().nextBoolean());
+    final Scorer s1 = w1.scorer(searcher.getIndexReader().leaves().get(0));
+    assertNotNull(s1.twoPhaseIterator()); // means we use doc values
+
+    // The term query is less selective, so the IndexOrDocValuesQuery should use points
+    final Query q2 = new BooleanQuery.Builder()
+        .add(new TermQuery(new Term("f1", "bar")), Occur.MUST)
+        .add(new IndexOrDocValuesQuery(LongPoint.newExactQuery("f2", 42), SortedNumericDocValuesField.newRangeQuery("f2", 42L, 42L)), Occur.MUST)
+        .build();
+
+    final Weight w2 = searcher.createNormalizedWeight(q2, random().nextBoolean());
+    final Scorer s2 = w2.scorer(searcher.getIndexReader().leaves().get(0));
+    assertNull(s2.twoPhaseIterator()); // means we use points
+
+    reader.close();
+    w.close();
+    dir.close();
+  }
+
+  public void testRandom() throws IOException {
+    Directory dir = newDirectory();
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+    final int numDocs = atLeast(1000);
+    final int maxValue = TestUtil.nextInt(random(), 1, 1000);
+    for (int i = 0; i < numDocs; ++i) {
+      Document doc = new Document();
+      if (random().nextInt(10) != 0) {
+        final int value = TestUtil.nextInt(random(), -maxValue, maxValue);
+        doc.add(new LongPoint("long", value));
+        doc.add(new SortedNumericDocValuesField("long", value));
+        doc.add(new IntPoint("int", value));
+        doc.add(new NumericDocValuesField("int", value));
+        doc.add(new DoublePoint("double", value));
+        doc.add(new SortedNumericDocValuesField("double", NumericUtils.doubleToSortableLong(value)));
+        if (random().nextBoolean()) {
+          // second value for the multi-valued fields
+          final int value2 = TestUtil.nextInt(random(), -maxValue, maxValue);
+          doc.add(new LongPoint("long", value2));
+          doc.add(new SortedNumericDocValuesField("long", value2));
+        }
+      }
+      doc.add(new StringField("f", random().nextInt(5) == 0 ? "a" : "b", Store.NO));
+      w.addDocument(doc);
+    }
+    final IndexReader reader = w.getReader();
+    final IndexSearcher searcher = newSearcher(reader);
+    w.close();
+
+    final int iters = atLeast(20);
+    for (int iter = 0; iter < iters; ++iter) {
+      final int lower = TestUtil.nextInt(random(), -maxValue - 1, maxValue + 1);
+      final int upper = TestUtil.nextInt(random(), -maxValue - 1, maxValue + 1);
+
+      assertSameMatches(searcher, LongPoint.newRangeQuery("long", lower, upper),
+          LongPoint.newIndexOrDocValuesRangeQuery("long", lower, upper));
+      assertSameMatches(searcher, LongPoint.newRangeQuery("long", lower, upper),
+          SortedNumericDocValuesField.newRangeQuery("long", lower, upper));
+      assertSameMatches(searcher, IntPoint.newRangeQuery("int", lower, upper),
+          IntPoint.newIndexOrDocValuesRangeQuery("int", lower, upper));
+      assertSameMatches(searcher, IntPoint.newRangeQuery("int", lower, upper),
+          NumericDocValuesField.newRangeQuery("int", lower, upper));
+      assertSameMatches(searcher, DoublePoint.newRangeQuery("double", lower, upper),
+          DoublePoint.newIndexOrDocValuesRangeQuery("double", lower, upper));
+    }
+
+    reader.close();
+    dir.close();
+  }
+
+  private static void assertSameMatches(IndexSearcher searcher, Query pointQuery, Query query) throws IOException {
+    assertEquals(searcher.count(pointQuery), searcher.count(query));
+    // also check conjunctions, where the range query may only be used to verify matches
+    final Query filter = new TermQuery(new Term("f", "a"));
+    final Query expected = new BooleanQuery.Builder()
+        .add(filter, Occur.MUST)
+        .add(pointQuery, Occur.FILTER)
+        .build();
+    final Query actual = new BooleanQuery.Builder()
+        .add(filter, Occur.MUST)
+        .add(query, Occur.FILTER)
+        .build();
+    final TopDocs expectedHits = searcher.search(expected, searcher.getIndexReader().maxDoc());
+    final TopDocs actualHits = searcher.search(actual, searcher.getIndexReader().maxDoc());
+    assertEquals(expectedHits.totalHits, actualHits.totalHits);
+    for (int i = 0; i < expectedHits.scoreDocs.length; ++i) {
+      assertEquals(expectedHits.scoreDocs[i].doc, actualHits.scoreDocs[i].doc);
+      assertEquals(expectedHits.scoreDocs[i].score, actualHits.scoreDocs[i].score, 0f);
+    }
+  }
+
+  public void testEqualsAndHashCode() {
+    Query q1 = LongPoint.newIndexOrDocValuesRangeQuery("f", 1, 10);
+    Query q2 = LongPoint.newIndexOrDocValuesRangeQuery("f", 1, 10);
+    QueryUtils.checkEqual(q1, q2);
+    QueryUtils.checkUnequal(q1, LongPoint.newIndexOrDocValuesRangeQuery("f", 1, 11));
+    QueryUtils.checkUnequal(q1, LongPoint.newIndexOrDocValuesRangeQuery("g", 1, 10));
+    QueryUtils.checkUnequal(SortedNumericDocValuesField.newRangeQuery("f", 1, 10),
+        SortedNumericDocValuesField.newRangeQuery("f", 2, 10));
+  }
+
+}
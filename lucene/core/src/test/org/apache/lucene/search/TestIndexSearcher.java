@@ -19,6 +19,7 @@ package org.apache.lucene.search;
 
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -27,9 +28,11 @@ import java.util.concurrent.TimeUnit;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.LongPoint;
 import org.apache.lucene.document.SortedDocValuesField;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.MultiReader;
 import org.apache.lucene.index.RandomIndexWriter;
 import org.apache.lucene.index.Term;
@@ -147,6 +150,9 @@ public class TestIndexSearcher extends LuceneTestCase {
       if (random().nextBoolean()) {
         doc.add(new StringField("foo", "baz", Store.NO));
       }
+      if (random().nextInt(5) != 0) {
+        doc.add(new LongPoint("point", random().nextInt(10)));
+      }
       if (rarely()) {
         doc.add(new StringField("delete", "yes", Store.NO));
       }
@@ -167,7 +173,11 @@ public class TestIndexSearcher extends LuceneTestCase {
           new BooleanQuery.Builder()
             .add(new TermQuery(new Term("foo", "bar")), Occur.SHOULD)
             .add(new TermQuery(new Term("foo", "baz")), Occur.SHOULD)
-            .build()
+            .build(),
+          LongPoint.newRangeQuery("point", Long.MIN_VALUE, Long.MAX_VALUE),
+          LongPoint.newRangeQuery("point", 3, 6),
+          LongPoint.newRangeQuery("point", 20, 30),
+          LongPoint.newRangeQuery("missing", 3, 6)
           )) {
         assertEquals(searcher.count(query), searcher.search(query, 1).totalHits);
       }
@@ -177,6 +187,59 @@ public class TestIndexSearcher extends LuceneTestCase {
     dir.close();
   }
 
+  public void testCountOnlySearchesUncountedLeaves() throws IOException {
+    Directory dir = newDirectory();
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+    final int numDocs = atLeast(100);
+    for (int i = 0; i < numDocs; ++i) {
+      Document doc = new Document();
+      doc.add(new StringField("foo", random().nextBoolean() ? "bar" : "baz", Store.NO));
+      w.addDocument(doc);
+    }
+    final IndexReader reader = w.getReader();
+    w.close();
+    final IndexSearcher searcher = new IndexSearcher(reader);
+    searcher.setQueryCache(null);
+    final Query query = new TermQuery(new Term("foo", "bar"));
+    final int expected = searcher.search(query, 1).totalHits;
+    // a query that can count matches on every leaf but fails when matches are iterated
+    final Query countOnly = new Query() {
+      @Override
+      public Weight createWeight(IndexSearcher searcher, boolean needsScores, float boost) throws IOException {
+        final Weight in = query.createWeight(searcher, needsScores, boost);
+        return new FilterWeight(in) {
+          @Override
+          public Scorer scorer(LeafReaderContext context) throws IOException {
+            throw new AssertionError("count should not iterate over matches");
+          }
+
+          @Override
+          public int count(LeafReaderContext context) throws IOException {
+            return in.count(context);
+          }
+        };
+      }
+
+      @Override
+      public String toString(String field) {
+        return "CountOnly(" + query.toString(field) + ")";
+      }
+
+      @Override
+      public boolean equals(Object other) {
+        return sameClassAs(other);
+      }
+
+      @Override
+      public int hashCode() {
+        return classHash();
+      }
+    };
+    assertEquals(expected, searcher.count(countOnly));
+    reader.close();
+    dir.close();
+  }
+
   public void testGetQueryCache() throws IOException {
     IndexSearcher searcher = new IndexSearcher(new MultiReader());
     assertEquals(IndexSearcher.getDefaultQueryCache(), searcher.getQueryCache());
@@ -219,4 +282,80 @@ public class TestIndexSearcher extends LuceneTestCase {
     searcher = new IndexSearcher(new MultiReader());
     assertEquals(dummyPolicy, searcher.getQueryCachingPolicy());
   }
+
+  public void testSlicesWithMaxDocs() throws IOException {
+    final int maxDocsPerSlice = TestUtil.nextInt(random(), 1, 30);
+    IndexSearcher.LeafSlice[] slices = IndexSearcher.slices(reader.leaves(), maxDocsPerSlice);
+    int expectedDoc = 0;
+    for (IndexSearcher.LeafSlice slice : slices) {
+      assertEquals(1, slice.partitions.length);
+      IndexSearcher.LeafReaderContextPartition partition = slice.partitions[0];
+      final int maxDoc = partition.ctx.reader().maxDoc();
+      final int minDocId = partition.minDocId;
+      final int maxDocId = Math.min(maxDoc, partition.maxDocId);
+      assertEquals(expectedDoc, partition.ctx.docBase + minDocId);
+      assertTrue(maxDocId - minDocId <= maxDocsPerSlice);
+      expectedDoc = partition.ctx.docBase + maxDocId;
+    }
+    assertEquals(reader.maxDoc(), expectedDoc);
+
+    expectThrows(IllegalArgumentException.class, () -> {
+      IndexSearcher.slices(reader.leaves(), 0);
+    });
+  }
+
+  public void testSliceWithSeveralPartitionsOfTheSameLeaf() {
+    LeafReaderContext ctx = reader.leaves().get(0);
+    expectThrows(IllegalArgumentException.class, () -> {
+      new IndexSearcher.LeafSlice(
+          IndexSearcher.LeafReaderContextPartition.createFromAndTo(ctx, 0, 1),
+          IndexSearcher.LeafReaderContextPartition.createForEntireLeaf(ctx));
+    });
+    expectThrows(IllegalArgumentException.class, () -> {
+      IndexSearcher.LeafReaderContextPartition.createFromAndTo(ctx, 1, 1);
+    });
+    expectThrows(IllegalArgumentException.class, () -> {
+      IndexSearcher.LeafReaderContextPartition.createFromAndTo(ctx, ctx.reader().maxDoc(), ctx.reader().maxDoc() + 1);
+    });
+  }
+
+  public void testIntraSegmentConcurrency() throws Exception {
+    ExecutorService service = new ThreadPoolExecutor(4, 4, 0L, TimeUnit.MILLISECONDS,
+                                   new LinkedBlockingQueue<Runnable>(),
+                                   new NamedThreadFactory("TestIndexSearcher"));
+
+    final int maxDocsPerSlice = TestUtil.nextInt(random(), 1, 30);
+    IndexSearcher searcher = new IndexSearcher(reader);
+    IndexSearcher partitionedSearcher = new IndexSearcher(reader, service) {
+      @Override
+      protected LeafSlice[] slices(List<LeafReaderContext> leaves) {
+        return slices(leaves, maxDocsPerSlice);
+      }
+    };
+    assertTrue(partitionedSearcher.leafSlices.length >= reader.leaves().size());
+
+    Query queries[] = new Query[] {
+        new MatchAllDocsQuery(),
+        new TermQuery(new Term("field", "1")),
+        new TermQuery(new Term("field2", "true")),
+        new BooleanQuery.Builder()
+          .add(new TermQuery(new Term("field", "1")), Occur.SHOULD)
+          .add(new TermQuery(new Term("field", "42")), Occur.SHOULD)
+          .add(new TermQuery(new Term("field2", "false")), Occur.SHOULD)
+          .build()
+    };
+    Sort sort = new Sort(new SortField("field2", SortField.Type.STRING));
+
+    for (Query query : queries) {
+      final int numHits = TestUtil.nextInt(random(), 1, 120);
+      CheckHits.checkEqual(query, searcher.search(query, numHits).scoreDocs,
+          partitionedSearcher.search(query, numHits).scoreDocs);
+      CheckHits.checkEqual(query, searcher.search(query, numHits, sort).scoreDocs,
+          partitionedSearcher.search(query, numHits, sort).scoreDocs);
+      assertEquals(searcher.search(query, numHits).totalHits,
+          partitionedSearcher.search(query, numHits).totalHits);
+    }
+
+    TestUtil.shutdownExecutorService(service);
+  }
 }
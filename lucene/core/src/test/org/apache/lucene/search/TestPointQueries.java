@@ -63,6 +63,7 @@ import org.apache.lucene.index.SegmentReadState;
 import org.apache.lucene.index.SegmentWriteState;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.BitSetIterator;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.IOUtils;
 import org.apache.lucene.util.LuceneTestCase;
@@ -1916,6 +1917,89 @@ public class TestPointQueries extends LuceneTestCase {
     dir.close();
   }
 
+  public void testRangeOptimizesIfMostPointsMatch() throws IOException {
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = newIndexWriterConfig();
+    // the default codec estimates point counts
+    iwc.setCodec(TestUtil.getDefaultCodec());
+    // preserve doc ID order
+    iwc.setMergePolicy(newLogMergePolicy());
+    IndexWriter w = new IndexWriter(dir, iwc);
+    final int numDocs = atLeast(10000);
+    final long[] values = new long[numDocs];
+    for (int i = 0; i < numDocs; ++i) {
+      values[i] = random().nextInt(1000);
+      Document doc = new Document();
+      doc.add(new LongPoint("point", values[i]));
+      w.addDocument(doc);
+    }
+    w.forceMerge(1);
+    IndexReader reader = DirectoryReader.open(w);
+    w.close();
+    IndexSearcher searcher = new IndexSearcher(reader);
+    searcher.setQueryCache(null);
+
+    final long lowerValue = random().nextInt(50);
+    final long upperValue = 999 - random().nextInt(50);
+    int expectedCount = 0;
+    for (long value : values) {
+      if (value >= lowerValue && value <= upperValue) {
+        expectedCount++;
+      }
+    }
+    Query query = LongPoint.newRangeQuery("point", lowerValue, upperValue);
+    Weight weight = searcher.createNormalizedWeight(query, false);
+    Scorer scorer = weight.scorer(reader.leaves().get(0));
+    // most docs match, so the query should have cleared non-matching docs from a full bit set
+    assertTrue(scorer.iterator() instanceof BitSetIterator);
+    assertEquals(expectedCount, scorer.iterator().cost());
+    int count = 0;
+    for (int doc = scorer.iterator().nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = scorer.iterator().nextDoc()) {
+      assertTrue(values[doc] >= lowerValue && values[doc] <= upperValue);
+      count++;
+    }
+    assertEquals(expectedCount, count);
+
+    // narrow ranges still collect matching docs
+    query = LongPoint.newRangeQuery("point", 10, 20);
+    expectedCount = 0;
+    for (long value : values) {
+      if (value >= 10 && value <= 20) {
+        expectedCount++;
+      }
+    }
+    assertEquals(expectedCount, searcher.count(query));
+
+    reader.close();
+    dir.close();
+  }
+
+  public void testPointInSetOptimizesIfAllPointsMatch() throws IOException {
+    Directory dir = newDirectory();
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+    final int value = random().nextInt(100);
+    final int numDocs = TestUtil.nextInt(random(), 1, 100);
+    for (int i = 0; i < numDocs; ++i) {
+      Document doc = new Document();
+      doc.add(new IntPoint("point", value));
+      w.addDocument(doc);
+    }
+    w.forceMerge(1);
+    IndexReader reader = w.getReader();
+    IndexSearcher searcher = new IndexSearcher(reader);
+    searcher.setQueryCache(null);
+    Query query = IntPoint.newSetQuery("point", value - 1, value, value + 1);
+    Weight weight = searcher.createNormalizedWeight(query, false);
+    Scorer scorer = weight.scorer(reader.leaves().get(0));
+    assertEquals(DocIdSetIterator.all(1).getClass(), scorer.iterator().getClass());
+    assertEquals(numDocs, searcher.count(query));
+    assertEquals(0, searcher.count(IntPoint.newSetQuery("point", value - 1, value + 1)));
+
+    reader.close();
+    w.close();
+    dir.close();
+  }
+
   public void testPointRangeEquals() {
     Query q1, q2;
 
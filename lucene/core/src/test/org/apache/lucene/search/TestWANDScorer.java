@@ -0,0 +1,174 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.search;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.lucene.analysis.MockAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.similarities.BM25Similarity;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.TestUtil;
+
+public class TestWANDScorer extends LuceneTestCase {
+
+  private static final String[] TERMS = new String[] { "a", "b", "c", "d", "e", "f" };
+
+  private static Directory newIndex() throws IOException {
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+    // make sure skip data records impacts
+    iwc.setCodec(TestUtil.getDefaultCodec());
+    IndexWriter w = new IndexWriter(dir, iwc);
+    final int numDocs = atLeast(3000);
+    for (int i = 0; i < numDocs; ++i) {
+      Document doc = new Document();
+      StringBuilder text = new StringBuilder();
+      for (int j = 0; j < TERMS.length; ++j) {
+        // make terms have different densities
+        if (random().nextInt(j + 2) == 0) {
+          final int freq = 1 + random().nextInt(random().nextInt(50) == 0 ? 20 : 3);
+          for (int k = 0; k < freq; ++k) {
+            text.append(TERMS[j]).append(' ');
+          }
+        }
+      }
+      final int numFillers = random().nextInt(10);
+      for (int k = 0; k < numFillers; ++k) {
+        text.append("z ");
+      }
+      doc.add(newTextField("f", text.toString(), Store.NO));
+      w.addDocument(doc);
+    }
+    if (random().nextBoolean()) {
+      w.forceMerge(1);
+    }
+    w.close();
+    return dir;
+  }
+
+  private static Query randomDisjunction() {
+    BooleanQuery.Builder builder = new BooleanQuery.Builder();
+    final int numClauses = 2 + random().nextInt(TERMS.length - 1);
+    for (int i = 0; i < numClauses; ++i) {
+      Query q = new TermQuery(new Term("f", TERMS[random().nextInt(TERMS.length)]));
+      if (random().nextInt(4) == 0) {
+        q = new BoostQuery(q, 1 + random().nextInt(3));
+      }
+      builder.add(q, Occur.SHOULD);
+    }
+    return builder.build();
+  }
+
+  public void testSameTopHits() throws IOException {
+    Directory dir = newIndex();
+    DirectoryReader reader = DirectoryReader.open(dir);
+    IndexSearcher searcher = new IndexSearcher(reader);
+    searcher.setSimilarity(new BM25Similarity());
+
+    final int iters = atLeast(10);
+    for (int iter = 0; iter < iters; ++iter) {
+      Query query = randomDisjunction();
+      final int numHits = 1 + random().nextInt(20);
+
+      TopScoreDocCollector expectedCollector = TopScoreDocCollector.create(numHits, null, true);
+      searcher.search(query, expectedCollector);
+      TopDocs expected = expectedCollector.topDocs();
+
+      TopScoreDocCollector actualCollector = TopScoreDocCollector.create(numHits, null, false);
+      searcher.search(query, actualCollector);
+      TopDocs actual = actualCollector.topDocs();
+
+      assertTrue(actual.totalHits <= expected.totalHits);
+      assertEquals(expected.scoreDocs.length, actual.scoreDocs.length);
+      for (int i = 0; i < expected.scoreDocs.length; ++i) {
+        assertEquals(expected.scoreDocs[i].score, actual.scoreDocs[i].score, 1e-5f);
+      }
+    }
+
+    reader.close();
+    dir.close();
+  }
+
+  public void testMinCompetitiveScore() throws IOException {
+    Directory dir = newIndex();
+    DirectoryReader reader = DirectoryReader.open(dir);
+    IndexSearcher searcher = new IndexSearcher(reader);
+    searcher.setSimilarity(new BM25Similarity());
+
+    final int iters = atLeast(10);
+    for (int iter = 0; iter < iters; ++iter) {
+      Query query = searcher.rewrite(randomDisjunction());
+      if (query instanceof BooleanQuery == false) {
+        // duplicate clauses might have been merged
+        continue;
+      }
+      BooleanWeight weight = (BooleanWeight) searcher.createNormalizedWeight(query, true);
+
+      for (LeafReaderContext context : reader.leaves()) {
+        // scores of all matches, computed exhaustively
+        Map<Integer, Float> expected = new HashMap<>();
+        float maxScore = 0;
+        Scorer scorer = weight.scorer(context);
+        if (scorer == null) {
+          continue;
+        }
+        for (int doc = scorer.iterator().nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = scorer.iterator().nextDoc()) {
+          expected.put(doc, scorer.score());
+          maxScore = Math.max(maxScore, scorer.score());
+        }
+
+        final float minScore = random().nextFloat() * maxScore;
+        Scorer wand = weight.topScoresScorer(context);
+        wand.setMinCompetitiveScore(minScore);
+        TwoPhaseIterator twoPhase = wand.twoPhaseIterator();
+        DocIdSetIterator it = twoPhase == null ? wand.iterator() : twoPhase.approximation();
+        Set<Integer> actual = new HashSet<>();
+        for (int doc = it.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = it.nextDoc()) {
+          if (twoPhase != null && twoPhase.matches() == false) {
+            continue;
+          }
+          assertTrue(expected.containsKey(doc));
+          assertEquals(expected.get(doc), wand.score(), 1e-5f);
+          actual.add(doc);
+        }
+
+        // all competitive documents must have been returned
+        for (Map.Entry<Integer, Float> entry : expected.entrySet()) {
+          if (entry.getValue() >= minScore) {
+            assertTrue(actual.contains(entry.getKey()));
+          }
+        }
+      }
+    }
+
+    reader.close();
+    dir.close();
+  }
+}
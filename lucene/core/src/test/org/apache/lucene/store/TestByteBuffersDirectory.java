@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.store;
+
+
+import java.io.IOException;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Path;
+
+import org.apache.lucene.util.TestUtil;
+
+public class TestByteBuffersDirectory extends BaseDirectoryTestCase {
+
+  @Override
+  protected Directory getDirectory(Path path) {
+    return new ByteBuffersDirectory(new SingleInstanceLockFactory(),
+        random().nextBoolean() ? ByteBuffersDirectory.HEAP_ALLOCATOR : ByteBuffersDirectory.DIRECT_ALLOCATOR);
+  }
+
+  public void testLargeFile() throws IOException {
+    // large enough for blocks to be merged into larger blocks several times
+    final int length = TestUtil.nextInt(random(), 1 << 20, 1 << 22);
+    final byte[] bytes = new byte[length];
+    random().nextBytes(bytes);
+    try (ByteBuffersDirectory dir = new ByteBuffersDirectory()) {
+      try (IndexOutput out = dir.createOutput("foo", newIOContext(random()))) {
+        int upto = 0;
+        while (upto < length) {
+          if (random().nextInt(10) == 0) {
+            out.writeByte(bytes[upto++]);
+          } else {
+            final int chunk = Math.min(length - upto, random().nextInt(10000));
+            out.writeBytes(bytes, upto, chunk);
+            upto += chunk;
+          }
+        }
+        assertEquals(length, out.getFilePointer());
+        // blocks are powers of two and at most twice as large as needed
+        assertTrue(dir.ramBytesUsed() >= length);
+        assertTrue(dir.ramBytesUsed() < 2L * length + (1 << ByteBuffersIndexOutput.MIN_BITS_PER_BLOCK));
+      }
+      assertEquals(length, dir.fileLength("foo"));
+
+      try (IndexInput in = dir.openInput("foo", newIOContext(random()))) {
+        final byte[] read = new byte[length];
+        in.readBytes(read, 0, length);
+        assertArrayEquals(bytes, read);
+
+        final int offset = random().nextInt(length);
+        in.seek(offset);
+        assertEquals(bytes[offset], in.readByte());
+
+        final RandomAccessInput slice = in.randomAccessSlice(0, length);
+        for (int i = 0; i < 100; ++i) {
+          final int index = random().nextInt(length);
+          assertEquals(bytes[index], slice.readByte(index));
+        }
+      }
+    }
+  }
+
+  public void testOpenInputWhileWriting() throws IOException {
+    try (ByteBuffersDirectory dir = new ByteBuffersDirectory()) {
+      IndexOutput out = dir.createOutput("foo", newIOContext(random()));
+      out.writeInt(42);
+      assertTrue(dir.fileNameExists("foo"));
+      expectThrows(AccessDeniedException.class, () -> {
+        dir.openInput("foo", newIOContext(random()));
+      });
+      out.close();
+      try (IndexInput in = dir.openInput("foo", newIOContext(random()))) {
+        assertEquals(42, in.readInt());
+      }
+    }
+  }
+
+  public void testRamBytesUsed() throws IOException {
+    try (ByteBuffersDirectory dir = new ByteBuffersDirectory()) {
+      assertEquals(0, dir.ramBytesUsed());
+      try (IndexOutput out = dir.createOutput("foo", newIOContext(random()))) {
+        assertEquals(0, dir.ramBytesUsed());
+        out.writeByte((byte) 1);
+        assertEquals(1 << ByteBuffersIndexOutput.MIN_BITS_PER_BLOCK, dir.ramBytesUsed());
+      }
+      assertEquals(1 << ByteBuffersIndexOutput.MIN_BITS_PER_BLOCK, dir.ramBytesUsed());
+      dir.deleteFile("foo");
+      assertEquals(0, dir.ramBytesUsed());
+    }
+  }
+}
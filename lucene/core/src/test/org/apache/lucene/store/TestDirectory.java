@@ -20,10 +20,17 @@ package org.apache.lucene.store;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.NamedThreadFactory;
+import org.apache.lucene.util.TestUtil;
 
 public class TestDirectory extends LuceneTestCase {
 
@@ -134,5 +141,71 @@ public class TestDirectory extends LuceneTestCase {
       fsDir.close();
     }
   }
-}
 
+  public void testSyncSkipsSyncedFiles() throws Exception {
+    Path path = createTempDir("testSyncSkipsSyncedFiles");
+    List<String> synced = Collections.synchronizedList(new ArrayList<>());
+    ExecutorService exec = Executors.newFixedThreadPool(TestUtil.nextInt(random(), 1, 4), new NamedThreadFactory("TestDirectory"));
+    try (FSDirectory dir = new NIOFSDirectory(path) {
+      @Override
+      protected void fsync(String name) throws IOException {
+        synced.add(name);
+        super.fsync(name);
+      }
+    }) {
+      if (random().nextBoolean()) {
+        dir.setSyncExecutor(exec);
+      }
+      for (String name : new String[] { "a", "b", "c" }) {
+        try (IndexOutput out = dir.createOutput(name, newIOContext(random()))) {
+          out.writeByte((byte) 42);
+        }
+      }
+      dir.sync(Arrays.asList("a", "b"));
+      Collections.sort(synced);
+      assertEquals(Arrays.asList("a", "b"), synced);
+
+      // only c needs to be fsync'd
+      synced.clear();
+      dir.sync(Arrays.asList("a", "b", "c"));
+      assertEquals(Arrays.asList("c"), synced);
+
+      // a file that is deleted and written again must be fsync'd again
+      synced.clear();
+      dir.deleteFile("a");
+      try (IndexOutput out = dir.createOutput("a", newIOContext(random()))) {
+        out.writeByte((byte) 43);
+      }
+      dir.sync(Arrays.asList("a", "b", "c"));
+      assertEquals(Arrays.asList("a"), synced);
+
+      // renaming a file that was fsync'd does not require to fsync it again
+      synced.clear();
+      dir.rename("b", "d");
+      dir.sync(Arrays.asList("a", "c", "d"));
+      assertEquals(Collections.emptyList(), synced);
+    } finally {
+      exec.shutdown();
+      assertTrue(exec.awaitTermination(1, TimeUnit.MINUTES));
+    }
+  }
+
+  public void testConcurrentSyncFailure() throws Exception {
+    Path path = createTempDir("testConcurrentSyncFailure");
+    ExecutorService exec = Executors.newFixedThreadPool(2, new NamedThreadFactory("TestDirectory"));
+    try (FSDirectory dir = new NIOFSDirectory(path)) {
+      dir.setSyncExecutor(exec);
+      assertSame(exec, dir.getSyncExecutor());
+      try (IndexOutput out = dir.createOutput("a", newIOContext(random()))) {
+        out.writeByte((byte) 42);
+      }
+      // fsync of a missing file fails, even if other files could be fsync'd
+      expectThrows(IOException.class, () -> {
+        dir.sync(Arrays.asList("a", "missing"));
+      });
+    } finally {
+      exec.shutdown();
+      assertTrue(exec.awaitTermination(1, TimeUnit.MINUTES));
+    }
+  }
+}
@@ -43,6 +43,26 @@ public class TestMmapDirectory extends BaseDirectoryTestCase {
         MMapDirectory.UNMAP_SUPPORTED);
   }
   
+  public void testIsMemoryMapped() throws Exception {
+    Path path = createTempDir("testIsMemoryMapped");
+    try (Directory mmapDir = getDirectory(path);
+        Directory niofsDir = new NIOFSDirectory(path)) {
+      try (IndexOutput out = mmapDir.createOutput("test", IOContext.DEFAULT)) {
+        for (int i = 0; i < 100; i++) {
+          out.writeInt(i);
+        }
+      }
+      try (IndexInput in = mmapDir.openInput("test", IOContext.DEFAULT)) {
+        assertTrue(MMapDirectory.isMemoryMapped(in));
+        assertTrue(MMapDirectory.isMemoryMapped(in.clone()));
+        assertTrue(MMapDirectory.isMemoryMapped(in.slice("slice", 8, 16)));
+      }
+      try (IndexInput in = niofsDir.openInput("test", IOContext.DEFAULT)) {
+        assertFalse(MMapDirectory.isMemoryMapped(in));
+      }
+    }
+  }
+
   @Ignore("This test is for JVM testing purposes. There are no guarantees that it may not fail with SIGSEGV!")
   public void testAceWithThreads() throws Exception {
     for (int iter = 0; iter < 10; iter++) {
@@ -142,6 +142,48 @@ public class TestDocIdSetBuilder extends LuceneTestCase {
     }
   }
 
+  public void testBulkAdd() throws IOException {
+    final int maxDoc = TestUtil.nextInt(random(), 1000, 1000000);
+    DocIdSetBuilder builder = new DocIdSetBuilder(maxDoc);
+    FixedBitSet expected = new FixedBitSet(maxDoc);
+    final int numBlocks = TestUtil.nextInt(random(), 1, 100);
+    for (int i = 0; i < numBlocks; ++i) {
+      final int min = random().nextInt(maxDoc - 128);
+      final int max = TestUtil.nextInt(random(), min + 1, Math.min(maxDoc, min + 1024));
+      switch (random().nextInt(3)) {
+        case 0: {
+          // a block of doc IDs
+          int[] docs = new int[max - min];
+          int numDocs = 0;
+          for (int doc = min; doc < max; doc += 1 + random().nextInt(5)) {
+            docs[numDocs++] = doc;
+            expected.set(doc);
+          }
+          builder.grow(numDocs).add(new IntsRef(docs, 0, numDocs));
+          break;
+        }
+        case 1: {
+          // a range
+          expected.set(min, max);
+          builder.grow(max - min).add(DocIdSetIterator.range(min, max));
+          break;
+        }
+        default: {
+          // a bit set with a doc base
+          final int docBase = min & ~63;
+          FixedBitSet bits = new FixedBitSet(max - docBase);
+          for (int doc = min; doc < max; doc += 1 + random().nextInt(5)) {
+            bits.set(doc - docBase);
+            expected.set(doc);
+          }
+          builder.grow(bits.cardinality()).add(new DocBaseBitSetIterator(bits, bits.cardinality(), docBase));
+          break;
+        }
+      }
+    }
+    assertEquals(new BitDocIdSet(expected), builder.build());
+  }
+
   public void testMisleadingDISICost() throws IOException {
     final int maxDoc = TestUtil.nextInt(random(), 1000, 10000);
     DocIdSetBuilder builder = new DocIdSetBuilder(maxDoc);
@@ -24,6 +24,9 @@ import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.lucene.codecs.CodecUtil;
@@ -90,6 +93,36 @@ public class TestOfflineSorter extends LuceneTestCase {
     }
   }
 
+  public void testConcurrent() throws Exception {
+    // Sort 20 mb worth of data with 1mb buffer, sorting and merging partitions on other threads.
+    ExecutorService exec = Executors.newFixedThreadPool(TestUtil.nextInt(random(), 1, 4), new NamedThreadFactory("TestOfflineSorter"));
+    try (Directory dir = newDirectory()) {
+      int maxPartitionsInRAM = TestUtil.nextInt(random(), 1, 2);
+      int maxTempFiles = TestUtil.nextInt(random(), 2, OfflineSorter.MAX_TEMPFILES);
+      SortInfo sortInfo = checkSort(dir, new OfflineSorter(dir, "foo", OfflineSorter.DEFAULT_COMPARATOR, BufferSize.megabytes(1), maxTempFiles, -1, exec, maxPartitionsInRAM),
+                                    generateRandom((int)OfflineSorter.MB * 20));
+      assertTrue(sortInfo.mergeRounds > 0);
+    } finally {
+      exec.shutdown();
+      assertTrue(exec.awaitTermination(1, TimeUnit.MINUTES));
+    }
+  }
+
+  public void testConcurrentFixedLength() throws Exception {
+    ExecutorService exec = Executors.newFixedThreadPool(2, new NamedThreadFactory("TestOfflineSorter"));
+    try (Directory dir = newDirectory()) {
+      byte[][] data = new byte[atLeast(100000)][];
+      for (int i = 0; i < data.length; i++) {
+        data[i] = new byte[Long.BYTES];
+        random().nextBytes(data[i]);
+      }
+      checkSort(dir, new OfflineSorter(dir, "foo", OfflineSorter.DEFAULT_COMPARATOR, BufferSize.megabytes(1), 2, Long.BYTES, exec, 2), data);
+    } finally {
+      exec.shutdown();
+      assertTrue(exec.awaitTermination(1, TimeUnit.MINUTES));
+    }
+  }
+
   @Nightly
   public void testLargerRandom() throws Exception {
     // Sort 100MB worth of data with 15mb buffer.
@@ -470,4 +503,20 @@ public class TestOfflineSorter extends LuceneTestCase {
                      });
     assertEquals("valueLength must be 1 .. 32767; got: 2147483647", e.getMessage());
   }
+
+  public void testInvalidMaxPartitionsInRAM() throws Exception {
+    IllegalArgumentException e;
+    e = expectThrows(IllegalArgumentException.class,
+                     () -> {
+                       new OfflineSorter(null, "foo", OfflineSorter.DEFAULT_COMPARATOR,
+                                         BufferSize.megabytes(1), OfflineSorter.MAX_TEMPFILES, -1, Runnable::run, 0);
+                     });
+    assertEquals("maxPartitionsInRAM must be >= 1; got: 0", e.getMessage());
+    e = expectThrows(IllegalArgumentException.class,
+                     () -> {
+                       new OfflineSorter(null, "foo", OfflineSorter.DEFAULT_COMPARATOR,
+                                         BufferSize.megabytes(1), OfflineSorter.MAX_TEMPFILES, -1, null, 2);
+                     });
+    assertEquals("maxPartitionsInRAM must be 1 when no executor is provided; got: 2", e.getMessage());
+  }
 }
@@ -23,6 +23,9 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.BitSet;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.lucene.index.CorruptIndexException;
 import org.apache.lucene.index.MergeState;
@@ -38,6 +41,7 @@ import org.apache.lucene.store.MockDirectoryWrapper;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.IOUtils;
 import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.NamedThreadFactory;
 import org.apache.lucene.util.NumericUtils;
 import org.apache.lucene.util.StringHelper;
 import org.apache.lucene.util.TestUtil;
@@ -672,7 +676,7 @@ public class TestBKD extends LuceneTestCase {
         List<BKDReader> readers = new ArrayList<>();
         for(long fp : toMerge) {
           in.seek(fp);
-          readers.add(new BKDReader(in));
+          readers.add(new BKDReader(in, random().nextBoolean()));
         }
         out = dir.createOutput("bkd2", IOContext.DEFAULT);
         indexFP = w.merge(out, docMaps, readers);
@@ -686,7 +690,7 @@ public class TestBKD extends LuceneTestCase {
       }
 
       in.seek(indexFP);
-      BKDReader r = new BKDReader(in);
+      BKDReader r = new BKDReader(in, random().nextBoolean());
 
       int iters = atLeast(100);
       for(int iter=0;iter<iters;iter++) {
@@ -795,6 +799,190 @@ public class TestBKD extends LuceneTestCase {
     }
   }
 
+  public void testOffHeapIndex() throws Exception {
+    int numDims = TestUtil.nextInt(random(), 1, 3);
+    int numBytesPerDim = TestUtil.nextInt(random(), 2, 8);
+    int numDocs = atLeast(10000);
+    byte[] scratch = new byte[numDims * numBytesPerDim];
+    try (Directory dir = getDirectory(numDocs)) {
+      BKDWriter w = new BKDWriter(numDocs, dir, "tmp", numDims, numBytesPerDim, TestUtil.nextInt(random(), 10, 100), 4.0, numDocs, true);
+      for(int docID=0;docID<numDocs;docID++) {
+        random().nextBytes(scratch);
+        w.add(scratch, docID);
+      }
+      long indexFP;
+      try (IndexOutput out = dir.createOutput("bkd", IOContext.DEFAULT)) {
+        indexFP = w.finish(out);
+      }
+      w.close();
+
+      try (IndexInput in = dir.openInput("bkd", IOContext.DEFAULT)) {
+        in.seek(indexFP);
+        BKDReader onHeap = new BKDReader(in);
+        in.seek(indexFP);
+        BKDReader offHeap = new BKDReader(in, true);
+        assertTrue(offHeap.ramBytesUsed() < onHeap.ramBytesUsed());
+        assertArrayEquals(onHeap.getMinPackedValue(), offHeap.getMinPackedValue());
+        assertArrayEquals(onHeap.getMaxPackedValue(), offHeap.getMaxPackedValue());
+
+        // split values must be the same
+        for(int nodeID=1;nodeID<onHeap.leafNodeOffset;nodeID++) {
+          byte[] expected = new byte[numDims * numBytesPerDim];
+          byte[] actual = new byte[numDims * numBytesPerDim];
+          onHeap.copySplitValue(nodeID, expected);
+          offHeap.copySplitValue(nodeID, actual);
+          assertArrayEquals(expected, actual);
+        }
+
+        // and so must be the order in which documents are visited
+        int iters = atLeast(10);
+        for(int iter=0;iter<iters;iter++) {
+          byte[] queryMin = new byte[numDims * numBytesPerDim];
+          byte[] queryMax = new byte[numDims * numBytesPerDim];
+          byte[] bounds = new byte[2 * numBytesPerDim];
+          for(int dim=0;dim<numDims;dim++) {
+            random().nextBytes(bounds);
+            int offset = dim * numBytesPerDim;
+            if (StringHelper.compare(numBytesPerDim, bounds, 0, bounds, numBytesPerDim) <= 0) {
+              System.arraycopy(bounds, 0, queryMin, offset, numBytesPerDim);
+              System.arraycopy(bounds, numBytesPerDim, queryMax, offset, numBytesPerDim);
+            } else {
+              System.arraycopy(bounds, numBytesPerDim, queryMin, offset, numBytesPerDim);
+              System.arraycopy(bounds, 0, queryMax, offset, numBytesPerDim);
+            }
+          }
+          assertEquals(collectDocs(onHeap, queryMin, queryMax), collectDocs(offHeap, queryMin, queryMax));
+        }
+      }
+      dir.deleteFile("bkd");
+    }
+  }
+
+  public void testEstimatePointCount() throws Exception {
+    final int numDocs = atLeast(10000);
+    final int maxPointsInLeafNode = TestUtil.nextInt(random(), 10, 100);
+    byte[] scratch = new byte[Integer.BYTES];
+    try (Directory dir = getDirectory(numDocs)) {
+      BKDWriter w = new BKDWriter(numDocs, dir, "tmp", 1, Integer.BYTES, maxPointsInLeafNode, 4.0, numDocs, true);
+      for(int docID=0;docID<numDocs;docID++) {
+        NumericUtils.intToSortableBytes(docID, scratch, 0);
+        w.add(scratch, docID);
+      }
+      long indexFP;
+      try (IndexOutput out = dir.createOutput("bkd", IOContext.DEFAULT)) {
+        indexFP = w.finish(out);
+      }
+      w.close();
+
+      try (IndexInput in = dir.openInput("bkd", IOContext.DEFAULT)) {
+        in.seek(indexFP);
+        BKDReader r = new BKDReader(in, random().nextBoolean());
+
+        // match all
+        long estimate = r.estimatePointCount(relationVisitor(Relation.CELL_INSIDE_QUERY));
+        assertTrue(estimate >= numDocs);
+        assertTrue(estimate <= 2L * numDocs + maxPointsInLeafNode);
+
+        // match none
+        assertEquals(0, r.estimatePointCount(relationVisitor(Relation.CELL_OUTSIDE_QUERY)));
+
+        // only crossing leaves
+        estimate = r.estimatePointCount(relationVisitor(Relation.CELL_CROSSES_QUERY));
+        assertTrue(estimate > 0);
+        assertTrue(estimate <= numDocs + maxPointsInLeafNode);
+
+        // half of the values
+        final byte[] half = new byte[Integer.BYTES];
+        NumericUtils.intToSortableBytes(numDocs / 2, half, 0);
+        estimate = r.estimatePointCount(new IntersectVisitor() {
+          @Override
+          public void visit(int docID) {
+            throw new AssertionError();
+          }
+
+          @Override
+          public void visit(int docID, byte[] packedValue) {
+            throw new AssertionError();
+          }
+
+          @Override
+          public Relation compare(byte[] minPackedValue, byte[] maxPackedValue) {
+            if (StringHelper.compare(Integer.BYTES, minPackedValue, 0, half, 0) >= 0) {
+              return Relation.CELL_OUTSIDE_QUERY;
+            } else if (StringHelper.compare(Integer.BYTES, maxPackedValue, 0, half, 0) < 0) {
+              return Relation.CELL_INSIDE_QUERY;
+            } else {
+              return Relation.CELL_CROSSES_QUERY;
+            }
+          }
+        });
+        assertTrue("" + estimate, estimate >= numDocs / 2 - maxPointsInLeafNode);
+        assertTrue("" + estimate, estimate <= numDocs + maxPointsInLeafNode);
+      }
+      dir.deleteFile("bkd");
+    }
+  }
+
+  private static IntersectVisitor relationVisitor(Relation relation) {
+    return new IntersectVisitor() {
+      @Override
+      public void visit(int docID) {
+        throw new AssertionError();
+      }
+
+      @Override
+      public void visit(int docID, byte[] packedValue) {
+        throw new AssertionError();
+      }
+
+      @Override
+      public Relation compare(byte[] minPackedValue, byte[] maxPackedValue) {
+        return relation;
+      }
+    };
+  }
+
+  private static List<Integer> collectDocs(BKDReader r, byte[] queryMin, byte[] queryMax) throws IOException {
+    final int numDims = r.numDims;
+    final int bytesPerDim = r.bytesPerDim;
+    final List<Integer> docs = new ArrayList<>();
+    r.intersect(new IntersectVisitor() {
+        @Override
+        public void visit(int docID) {
+          docs.add(docID);
+        }
+
+        @Override
+        public void visit(int docID, byte[] packedValue) {
+          for(int dim=0;dim<numDims;dim++) {
+            int offset = dim*bytesPerDim;
+            if (StringHelper.compare(bytesPerDim, packedValue, offset, queryMin, offset) < 0 ||
+                StringHelper.compare(bytesPerDim, packedValue, offset, queryMax, offset) > 0) {
+              return;
+            }
+          }
+          docs.add(docID);
+        }
+
+        @Override
+        public Relation compare(byte[] minPacked, byte[] maxPacked) {
+          boolean crosses = false;
+          for(int dim=0;dim<numDims;dim++) {
+            int offset = dim*bytesPerDim;
+            if (StringHelper.compare(bytesPerDim, maxPacked, offset, queryMin, offset) < 0 ||
+                StringHelper.compare(bytesPerDim, minPacked, offset, queryMax, offset) > 0) {
+              return Relation.CELL_OUTSIDE_QUERY;
+            } else if (StringHelper.compare(bytesPerDim, minPacked, offset, queryMin, offset) < 0 ||
+                       StringHelper.compare(bytesPerDim, maxPacked, offset, queryMax, offset) > 0) {
+              crosses = true;
+            }
+          }
+          return crosses ? Relation.CELL_CROSSES_QUERY : Relation.CELL_INSIDE_QUERY;
+        }
+      });
+    return docs;
+  }
+
   private BigInteger randomBigInt(int numBytes) {
     BigInteger x = new BigInteger(numBytes*8-1, random());
     if (random().nextBoolean()) {
@@ -924,6 +1112,45 @@ public class TestBKD extends LuceneTestCase {
     fail("did not see a suppressed CorruptIndexException");
   }
 
+  /** Sorting points offline with an executor must produce the same index. */
+  public void testOfflineSorterExecutor() throws Exception {
+    int numDims = TestUtil.nextInt(random(), 1, 3);
+    int numDocs = TestUtil.nextInt(random(), 100000, 200000);
+    int maxPointsInLeafNode = TestUtil.nextInt(random(), 50, 500);
+    byte[][] values = new byte[numDocs][];
+    for(int docID=0;docID<numDocs;docID++) {
+      values[docID] = new byte[numDims * Integer.BYTES];
+      random().nextBytes(values[docID]);
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(TestUtil.nextInt(random(), 1, 4),
+        new NamedThreadFactory("TestBKD"));
+    try (Directory dir = getDirectory(numDocs)) {
+      byte[][] indexes = new byte[2][];
+      for(int i=0;i<2;i++) {
+        // small heap, so that points are sorted offline
+        BKDWriter w = new BKDWriter(numDocs, dir, "tmp", numDims, Integer.BYTES, maxPointsInLeafNode, 0.1,
+                                    numDocs, true, i == 0 ? null : executor);
+        for(int docID=0;docID<numDocs;docID++) {
+          w.add(values[docID], docID);
+        }
+        try (IndexOutput out = dir.createOutput("bkd" + i, IOContext.DEFAULT)) {
+          w.finish(out);
+        }
+        w.close();
+
+        try (IndexInput in = dir.openInput("bkd" + i, IOContext.DEFAULT)) {
+          indexes[i] = new byte[(int) in.length()];
+          in.readBytes(indexes[i], 0, indexes[i].length);
+        }
+      }
+      assertArrayEquals(indexes[0], indexes[1]);
+    } finally {
+      executor.shutdown();
+      assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+    }
+  }
+
   public void testTieBreakOrder() throws Exception {
     try (Directory dir = newDirectory()) {
       int numDocs = 10000;
@@ -57,6 +57,34 @@ public class TestDocIdsWriter extends LuceneTestCase {
     }
   }
 
+  public void testContinuousIds() throws Exception {
+    try (Directory dir = newDirectory()) {
+      for (int iter = 0; iter < 100; ++iter) {
+        int[] docIDs = new int[1 + random().nextInt(5000)];
+        final int start = random().nextInt(1000000);
+        for (int i = 0; i < docIDs.length; ++i) {
+          docIDs[i] = start + i;
+        }
+        test(dir, docIDs);
+      }
+    }
+  }
+
+  public void testDenseSortedIds() throws Exception {
+    try (Directory dir = newDirectory()) {
+      for (int iter = 0; iter < 100; ++iter) {
+        int[] docIDs = new int[1 + random().nextInt(5000)];
+        int doc = random().nextInt(1000000);
+        final int maxGap = TestUtil.nextInt(random(), 1, 16);
+        for (int i = 0; i < docIDs.length; ++i) {
+          docIDs[i] = doc;
+          doc += TestUtil.nextInt(random(), 1, maxGap);
+        }
+        test(dir, docIDs);
+      }
+    }
+  }
+
   private void test(Directory dir, int[] ints) throws Exception {
     final long len;
     try(IndexOutput out = dir.createOutput("tmp", IOContext.DEFAULT)) {
@@ -74,7 +102,7 @@ public class TestDocIdsWriter extends LuceneTestCase {
     }
     try (IndexInput in = dir.openInput("tmp", IOContext.READONCE)) {
       int[] read = new int[ints.length];
-      DocIdsWriter.readInts(in, ints.length, new IntersectVisitor() {
+      DocIdsWriter.readInts(in, ints.length, new int[ints.length], new IntersectVisitor() {
         int i = 0;
         @Override
         public void visit(int docID) throws IOException {
@@ -981,6 +981,82 @@ public class TestFSTs extends LuceneTestCase {
     dir.close();
   }
 
+  public void testOffHeap() throws Exception {
+    final PositiveIntOutputs outputs = PositiveIntOutputs.getSingleton();
+    final boolean doPack = random().nextBoolean();
+    final Builder<Long> builder = new Builder<>(FST.INPUT_TYPE.BYTE1, 0, 0, true, true, Integer.MAX_VALUE, outputs, doPack, PackedInts.DEFAULT, true, 15);
+    final int numTerms = atLeast(1000);
+    final TreeMap<BytesRef,Long> terms = new TreeMap<>();
+    while (terms.size() < numTerms) {
+      terms.put(new BytesRef(TestUtil.randomSimpleString(random(), 1, 10)), TestUtil.nextLong(random(), 0, 1000));
+    }
+    final IntsRefBuilder scratch = new IntsRefBuilder();
+    for (Map.Entry<BytesRef,Long> entry : terms.entrySet()) {
+      builder.add(Util.toIntsRef(entry.getKey(), scratch), entry.getValue());
+    }
+    final FST<Long> fst = builder.finish();
+
+    Directory dir = newDirectory();
+    IndexOutput out = dir.createOutput("fst", IOContext.DEFAULT);
+    // make sure the FST does not need to start or end at the beginning or end of the file
+    out.writeVInt(42);
+    fst.save(out);
+    out.writeVInt(43);
+    out.close();
+
+    IndexInput in = dir.openInput("fst", IOContext.DEFAULT);
+    assertEquals(42, in.readVInt());
+    final FST<Long> offHeapFst = new FST<>(in, outputs, true);
+    assertEquals(43, in.readVInt());
+    assertTrue(offHeapFst.ramBytesUsed() < fst.ramBytesUsed());
+
+    // exact lookups
+    for (Map.Entry<BytesRef,Long> entry : terms.entrySet()) {
+      assertEquals(entry.getValue(), Util.get(offHeapFst, entry.getKey()));
+    }
+    for (int i = 0; i < 100; ++i) {
+      final BytesRef term = new BytesRef(TestUtil.randomSimpleString(random(), 1, 10));
+      assertEquals(terms.get(term), Util.get(offHeapFst, term));
+    }
+
+    // iteration and seeking
+    BytesRefFSTEnum<Long> fstEnum = new BytesRefFSTEnum<>(offHeapFst);
+    for (Map.Entry<BytesRef,Long> entry : terms.entrySet()) {
+      InputOutput<Long> next = fstEnum.next();
+      assertEquals(entry.getKey(), next.input);
+      assertEquals(entry.getValue(), next.output);
+    }
+    assertNull(fstEnum.next());
+    for (int i = 0; i < 100; ++i) {
+      final BytesRef target = new BytesRef(TestUtil.randomSimpleString(random(), 1, 10));
+      final Map.Entry<BytesRef,Long> expected = terms.ceilingEntry(target);
+      fstEnum = new BytesRefFSTEnum<>(offHeapFst);
+      InputOutput<Long> actual = fstEnum.seekCeil(target);
+      if (expected == null) {
+        assertNull(actual);
+      } else {
+        assertEquals(expected.getKey(), actual.input);
+        assertEquals(expected.getValue(), actual.output);
+      }
+    }
+
+    if (doPack == false) {
+      // an off-heap FST can be saved again
+      IndexOutput out2 = dir.createOutput("fst2", IOContext.DEFAULT);
+      offHeapFst.save(out2);
+      out2.close();
+      IndexInput in2 = dir.openInput("fst2", IOContext.DEFAULT);
+      final FST<Long> fst2 = new FST<>(in2, outputs);
+      for (Map.Entry<BytesRef,Long> entry : terms.entrySet()) {
+        assertEquals(entry.getValue(), Util.get(fst2, entry.getKey()));
+      }
+      in2.close();
+    }
+
+    in.close();
+    dir.close();
+  }
+
   public void testRandomTermLookup() throws Exception {
     Directory dir = newDirectory();
 
@@ -29,8 +29,10 @@ import org.apache.lucene.index.PointValues.Relation;
 import org.apache.lucene.index.PointValues;
 import org.apache.lucene.index.SegmentReadState;
 import org.apache.lucene.index.SegmentWriteState;
+import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.util.Accountable;
 import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.IntsRef;
 import org.apache.lucene.util.StringHelper;
 import org.apache.lucene.util.TestUtil;
 
@@ -100,6 +102,27 @@ public final class AssertingPointsFormat extends PointsFormat {
       in.visit(docID);
     }
 
+    @Override
+    public void visit(DocIdSetIterator iterator) throws IOException {
+      assert iterator.docID() == -1 : "iterator must be unpositioned";
+      docBudget -= iterator.cost();
+      assert docBudget >= 0 : "called add() more times than the last call to grow() reserved";
+
+      // This method, not filtering each hit, should only be invoked when the cell is inside the query shape:
+      assert lastCompareResult == Relation.CELL_INSIDE_QUERY;
+      in.visit(iterator);
+    }
+
+    @Override
+    public void visit(IntsRef ref) throws IOException {
+      docBudget -= ref.length;
+      assert docBudget >= 0 : "called add() more times than the last call to grow() reserved";
+
+      // This method, not filtering each hit, should only be invoked when the cell is inside the query shape:
+      assert lastCompareResult == Relation.CELL_INSIDE_QUERY;
+      in.visit(ref);
+    }
+
     @Override
     public void visit(int docID, byte[] packedValue) throws IOException {
       assert --docBudget >= 0 : "called add() more times than the last call to grow() reserved";
@@ -174,6 +197,14 @@ public final class AssertingPointsFormat extends PointsFormat {
                    new AssertingIntersectVisitor(in.getNumDimensions(fieldName), in.getBytesPerDimension(fieldName), visitor));
     }
 
+    @Override
+    public long estimatePointCount(String fieldName, IntersectVisitor visitor) throws IOException {
+      final long cost = in.estimatePointCount(fieldName,
+          new AssertingIntersectVisitor(in.getNumDimensions(fieldName), in.getBytesPerDimension(fieldName), visitor));
+      assert cost >= 0;
+      return cost;
+    }
+
     @Override
     public long ramBytesUsed() {
       long v = in.ramBytesUsed();
@@ -124,6 +124,14 @@ class CrankyPointsFormat extends PointsFormat {
       }  
     }
 
+    @Override
+    public long estimatePointCount(String fieldName, IntersectVisitor visitor) throws IOException {
+      if (random.nextInt(100) == 0) {
+        throw new IOException("Fake IOException");
+      }
+      return delegate.estimatePointCount(fieldName, visitor);
+    }
+
     @Override
     public byte[] getMinPackedValue(String fieldName) throws IOException {
       if (random.nextInt(100) == 0) {
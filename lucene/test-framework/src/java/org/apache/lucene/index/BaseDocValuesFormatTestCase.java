@@ -49,6 +49,7 @@ import org.apache.lucene.index.CheckIndex.Status.DocValuesStatus;
 import org.apache.lucene.index.TermsEnum.SeekStatus;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
@@ -3311,6 +3312,158 @@ public abstract class BaseDocValuesFormatTestCase extends BaseIndexFileFormatTes
     directory.close();
   }
 
+  public void testIteratorsVsRandomAccess() throws IOException {
+    Directory dir = newDirectory();
+    IndexWriterConfig conf = newIndexWriterConfig(new MockAnalyzer(random()));
+    RandomIndexWriter writer = new RandomIndexWriter(random(), dir, conf);
+    final int numDocs = atLeast(1000);
+    // sometimes make fields sparse enough for codecs to use a sparse encoding
+    final int density = random().nextBoolean() ? 2 : TestUtil.nextInt(random(), 50, 500);
+    for (int i = 0; i < numDocs; ++i) {
+      Document doc = new Document();
+      if (random().nextInt(density) == 0) {
+        final long value = TestUtil.nextLong(random(), -100, 10000);
+        doc.add(new NumericDocValuesField("numeric", value));
+        doc.add(new BinaryDocValuesField("binary", new BytesRef(Long.toString(value))));
+        doc.add(new SortedDocValuesField("sorted", new BytesRef(Long.toString(value))));
+        if (codecSupportsSortedNumeric()) {
+          final int numValues = random().nextBoolean() ? 1 : TestUtil.nextInt(random(), 1, 3);
+          for (int j = 0; j < numValues; ++j) {
+            doc.add(new SortedNumericDocValuesField("sorted_numeric", value + j));
+          }
+        }
+        if (codecSupportsSortedSet()) {
+          final int numValues = random().nextBoolean() ? 1 : TestUtil.nextInt(random(), 1, 3);
+          for (int j = 0; j < numValues; ++j) {
+            doc.add(new SortedSetDocValuesField("sorted_set", new BytesRef(Long.toString(value + j))));
+          }
+        }
+      }
+      writer.addDocument(doc);
+    }
+    if (random().nextBoolean()) {
+      writer.forceMerge(1);
+    }
+    final DirectoryReader reader = writer.getReader();
+    writer.close();
+
+    for (LeafReaderContext context : reader.leaves()) {
+      final LeafReader leaf = context.reader();
+      final int maxDoc = leaf.maxDoc();
+
+      NumericDocValuesIterator numericIt = leaf.getNumericDocValuesIterator("numeric");
+      if (numericIt != null) {
+        final NumericDocValues numeric = leaf.getNumericDocValues("numeric");
+        final Bits docsWithField = leaf.getDocsWithField("numeric");
+        for (int doc = nextTarget(-1, maxDoc); doc < maxDoc; doc = nextTarget(numericIt.docID(), maxDoc)) {
+          if (advance(numericIt, doc, docsWithField)) {
+            assertEquals(numeric.get(numericIt.docID()), numericIt.longValue());
+          }
+        }
+      }
+
+      BinaryDocValuesIterator binaryIt = leaf.getBinaryDocValuesIterator("binary");
+      if (binaryIt != null) {
+        final BinaryDocValues binary = leaf.getBinaryDocValues("binary");
+        final Bits docsWithField = leaf.getDocsWithField("binary");
+        for (int doc = nextTarget(-1, maxDoc); doc < maxDoc; doc = nextTarget(binaryIt.docID(), maxDoc)) {
+          if (advance(binaryIt, doc, docsWithField)) {
+            assertEquals(binary.get(binaryIt.docID()), binaryIt.binaryValue());
+          }
+        }
+      }
+
+      SortedDocValuesIterator sortedIt = leaf.getSortedDocValuesIterator("sorted");
+      if (sortedIt != null) {
+        final SortedDocValues sorted = leaf.getSortedDocValues("sorted");
+        final Bits docsWithField = leaf.getDocsWithField("sorted");
+        assertEquals(sorted.getValueCount(), sortedIt.getValueCount());
+        for (int doc = nextTarget(-1, maxDoc); doc < maxDoc; doc = nextTarget(sortedIt.docID(), maxDoc)) {
+          if (advance(sortedIt, doc, docsWithField)) {
+            assertEquals(sorted.getOrd(sortedIt.docID()), sortedIt.ordValue());
+            assertEquals(sorted.lookupOrd(sorted.getOrd(sortedIt.docID())), sortedIt.binaryValue());
+          }
+        }
+      }
+
+      SortedNumericDocValuesIterator sortedNumericIt = leaf.getSortedNumericDocValuesIterator("sorted_numeric");
+      if (sortedNumericIt != null) {
+        final SortedNumericDocValues sortedNumeric = leaf.getSortedNumericDocValues("sorted_numeric");
+        final Bits docsWithField = leaf.getDocsWithField("sorted_numeric");
+        for (int doc = nextTarget(-1, maxDoc); doc < maxDoc; doc = nextTarget(sortedNumericIt.docID(), maxDoc)) {
+          if (advance(sortedNumericIt, doc, docsWithField)) {
+            sortedNumeric.setDocument(sortedNumericIt.docID());
+            assertEquals(sortedNumeric.count(), sortedNumericIt.docValueCount());
+            for (int i = 0; i < sortedNumeric.count(); ++i) {
+              assertEquals(sortedNumeric.valueAt(i), sortedNumericIt.nextValue());
+            }
+          }
+        }
+      }
+
+      SortedSetDocValuesIterator sortedSetIt = leaf.getSortedSetDocValuesIterator("sorted_set");
+      if (sortedSetIt != null) {
+        final SortedSetDocValues sortedSet = leaf.getSortedSetDocValues("sorted_set");
+        final Bits docsWithField = leaf.getDocsWithField("sorted_set");
+        assertEquals(sortedSet.getValueCount(), sortedSetIt.getValueCount());
+        for (int doc = nextTarget(-1, maxDoc); doc < maxDoc; doc = nextTarget(sortedSetIt.docID(), maxDoc)) {
+          if (advance(sortedSetIt, doc, docsWithField)) {
+            sortedSet.setDocument(sortedSetIt.docID());
+            for (long ord = sortedSet.nextOrd(); ord != NO_MORE_ORDS; ord = sortedSet.nextOrd()) {
+              assertEquals(ord, sortedSetIt.nextOrd());
+            }
+            assertEquals(NO_MORE_ORDS, sortedSetIt.nextOrd());
+          }
+        }
+      }
+    }
+
+    reader.close();
+    dir.close();
+  }
+
+  /** Pick the next target after {@code doc}, which is either the next doc ID or a random doc ID after it,
+   *  or {@code maxDoc} if there are no more documents. */
+  private static int nextTarget(int doc, int maxDoc) {
+    if (doc >= maxDoc - 1) {
+      return maxDoc;
+    }
+    if (random().nextBoolean()) {
+      return doc + 1;
+    }
+    return TestUtil.nextInt(random(), doc + 1, Math.min(maxDoc - 1, doc + 200));
+  }
+
+  /** Move {@code iterator} to {@code target} using a random method, check consistency with
+   *  {@code docsWithField} and return whether the iterator is positioned on a document that has a value. */
+  private static boolean advance(DocValuesIterator iterator, int target, Bits docsWithField) throws IOException {
+    if (random().nextBoolean()) {
+      final boolean exists = iterator.advanceExact(target);
+      assertEquals(target, iterator.docID());
+      assertEquals(docsWithField.get(target), exists);
+      return exists;
+    }
+    final int doc;
+    if (target == iterator.docID() + 1 && random().nextBoolean()) {
+      doc = iterator.nextDoc();
+    } else {
+      doc = iterator.advance(target);
+    }
+    checkNextDocWithValue(docsWithField, target, doc);
+    return doc != DocIdSetIterator.NO_MORE_DOCS;
+  }
+
+  private static void checkNextDocWithValue(Bits docsWithField, int target, int doc) {
+    int expected = target;
+    while (expected < docsWithField.length() && docsWithField.get(expected) == false) {
+      expected++;
+    }
+    if (expected == docsWithField.length()) {
+      expected = DocIdSetIterator.NO_MORE_DOCS;
+    }
+    assertEquals(expected, doc);
+  }
+
   protected boolean codecAcceptsHugeBinaryValues(String field) {
     return true;
   }
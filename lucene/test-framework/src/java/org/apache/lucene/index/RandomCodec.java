@@ -35,6 +35,7 @@ import org.apache.lucene.codecs.asserting.AssertingCodec;
 import org.apache.lucene.codecs.asserting.AssertingDocValuesFormat;
 import org.apache.lucene.codecs.asserting.AssertingPointsFormat;
 import org.apache.lucene.codecs.asserting.AssertingPostingsFormat;
+import org.apache.lucene.codecs.bitset.BitSetPostingsFormat;
 import org.apache.lucene.codecs.blockterms.LuceneFixedGap;
 import org.apache.lucene.codecs.blockterms.LuceneVarGapDocFreqInterval;
 import org.apache.lucene.codecs.blockterms.LuceneVarGapFixedInterval;
@@ -94,6 +95,7 @@ public class RandomCodec extends AssertingCodec {
   private final int maxPointsInLeafNode;
   private final double maxMBSortInHeap;
   private final int bkdSplitRandomSeed;
+  private final boolean offHeapPointsIndex;
 
   @Override
   public PointsFormat pointsFormat() {
@@ -146,7 +148,7 @@ public class RandomCodec extends AssertingCodec {
 
       @Override
       public PointsReader fieldsReader(SegmentReadState readState) throws IOException {
-        return new Lucene60PointsReader(readState);
+        return new Lucene60PointsReader(readState, offHeapPointsIndex);
       }
     });
   }
@@ -187,6 +189,7 @@ public class RandomCodec extends AssertingCodec {
     maxPointsInLeafNode = TestUtil.nextInt(random, 16, 2048);
     maxMBSortInHeap = 5.0 + (3*random.nextDouble());
     bkdSplitRandomSeed = random.nextInt();
+    offHeapPointsIndex = random.nextBoolean();
 
     add(avoidCodecs,
         TestUtil.getDefaultPostingsFormat(minItemsPerBlock, maxItemsPerBlock),
@@ -200,6 +203,7 @@ public class RandomCodec extends AssertingCodec {
         new TestBloomFilteredLucenePostings(),                
         new MockRandomPostingsFormat(random),
         new BlockTreeOrdsPostingsFormat(minItemsPerBlock, maxItemsPerBlock),
+        new BitSetPostingsFormat(random.nextFloat()),
         new LuceneFixedGap(TestUtil.nextInt(random, 1, 1000)),
         new LuceneVarGapFixedInterval(TestUtil.nextInt(random, 1, 1000)),
         new LuceneVarGapDocFreqInterval(TestUtil.nextInt(random, 1, 100), TestUtil.nextInt(random, 1, 1000)),
@@ -254,7 +258,8 @@ public class RandomCodec extends AssertingCodec {
     return super.toString() + ": " + previousMappings.toString() +
            ", docValues:" + previousDVMappings.toString() +
            ", maxPointsInLeafNode=" + maxPointsInLeafNode +
-           ", maxMBSortInHeap=" + maxMBSortInHeap;
+           ", maxMBSortInHeap=" + maxMBSortInHeap +
+           ", offHeapPointsIndex=" + offHeapPointsIndex;
   }
 
   /** Just like {@link BKDWriter} except it evilly picks random ways to split cells on
@@ -72,6 +72,17 @@ public class AssertingIndexSearcher extends IndexSearcher {
     super.search(leaves, weight, AssertingCollector.wrap(random, collector));
   }
 
+  @Override
+  protected void search(LeafSlice slice, Weight weight, Collector collector) throws IOException {
+    assert weight instanceof AssertingWeight;
+    boolean entireLeaves = true;
+    for (LeafReaderContextPartition partition : slice.partitions) {
+      entireLeaves &= partition.coversEntireLeaf();
+    }
+    // slices of entire leaves are delegated to search(List, Weight, Collector), which wraps the collector
+    super.search(slice, weight, entireLeaves ? collector : AssertingCollector.wrap(random, collector));
+  }
+
   @Override
   public String toString() {
     return "AssertingIndexSearcher(" + super.toString() + ")";
@@ -39,6 +39,7 @@ public class AssertingScorer extends Scorer {
 
   IteratorState state = IteratorState.START;
   int doc;
+  int lastShallowTarget = -1;
 
   private AssertingScorer(Random random, Scorer in, boolean needsScores) {
     super(in.weight);
@@ -93,6 +94,32 @@ public class AssertingScorer extends Scorer {
     return in.docID();
   }
 
+  @Override
+  public void setMinCompetitiveScore(float minScore) throws IOException {
+    assert needsScores;
+    assert !Float.isNaN(minScore);
+    in.setMinCompetitiveScore(minScore);
+  }
+
+  @Override
+  public int advanceShallow(int target) throws IOException {
+    assert needsScores;
+    assert target >= lastShallowTarget : "advanceShallow went backwards: " + target + " < " + lastShallowTarget;
+    lastShallowTarget = target;
+    final int upTo = in.advanceShallow(target);
+    assert upTo >= target : "advanceShallow returned " + upTo + " < " + target;
+    return upTo;
+  }
+
+  @Override
+  public float getMaxScore(int upTo) throws IOException {
+    assert needsScores;
+    assert upTo >= lastShallowTarget : "getMaxScore called on " + upTo + " < " + lastShallowTarget;
+    final float maxScore = in.getMaxScore(upTo);
+    assert !Float.isNaN(maxScore);
+    return maxScore;
+  }
+
   @Override
   public String toString() {
     return "AssertingScorer(" + in + ")";
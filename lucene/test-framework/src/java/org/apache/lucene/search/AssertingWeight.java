@@ -38,6 +38,40 @@ class AssertingWeight extends FilterWeight {
     return AssertingScorer.wrap(new Random(random.nextLong()), inScorer, needsScores);
   }
 
+  @Override
+  public int count(LeafReaderContext context) throws IOException {
+    final int count = in.count(context);
+    assert count == -1 || (count >= 0 && count <= context.reader().numDocs()) : count;
+    return count;
+  }
+
+  @Override
+  public ScorerSupplier scorerSupplier(LeafReaderContext context) throws IOException {
+    final ScorerSupplier inScorerSupplier = in.scorerSupplier(context);
+    if (inScorerSupplier == null) {
+      return null;
+    }
+    return new ScorerSupplier() {
+      private boolean getCalled = false;
+      @Override
+      public Scorer get(boolean randomAccess) throws IOException {
+        assert getCalled == false;
+        getCalled = true;
+        final Scorer inScorer = inScorerSupplier.get(randomAccess);
+        assert inScorer != null;
+        assert inScorer.docID() == -1;
+        return AssertingScorer.wrap(new Random(random.nextLong()), inScorer, needsScores);
+      }
+
+      @Override
+      public long cost() {
+        final long cost = inScorerSupplier.cost();
+        assert cost >= 0;
+        return cost;
+      }
+    };
+  }
+
   @Override
   public BulkScorer bulkScorer(LeafReaderContext context) throws IOException {
     BulkScorer inScorer = in.bulkScorer(context);
@@ -467,6 +467,7 @@ public abstract class LuceneTestCase extends Assert {
   static {
     CORE_DIRECTORIES = new ArrayList<>(FS_DIRECTORIES);
     CORE_DIRECTORIES.add("RAMDirectory");
+    CORE_DIRECTORIES.add("ByteBuffersDirectory");
   }
 
   /** A {@link org.apache.lucene.search.QueryCachingPolicy} that randomly caches. */
@@ -249,6 +249,9 @@ public class SolrConfig extends Config implements MapSerializable {
     useRangeVersionsForPeerSync = getBool("peerSync/useRangeVersions", true);
 
     filterCacheConfig = CacheConfig.getConfig(this, "query/filterCache");
+    filterCachePerSegment = getBool("query/filterCache/@perSegment", false);
+    filterCachePerSegmentSize = getInt("query/filterCache/@perSegmentSize", 1024);
+    filterCachePerSegmentMaxRamMB = getInt("query/filterCache/@perSegmentMaxRamMB", 64);
     queryResultCacheConfig = CacheConfig.getConfig(this, "query/queryResultCache");
     documentCacheConfig = CacheConfig.getConfig(this, "query/documentCache");
     CacheConfig conf = CacheConfig.getConfig(this, "query/fieldValueCache");
@@ -284,6 +287,10 @@ public class SolrConfig extends Config implements MapSerializable {
       jmxConfig = new JmxConfiguration(false, null, null, null);
     }
     maxWarmingSearchers = getInt("query/maxWarmingSearchers", Integer.MAX_VALUE);
+    autowarmThreads = Math.max(1, getInt("query/autowarmThreads", 1));
+    maxAutowarmTimeMs = getInt("query/maxAutowarmTimeMs", -1);
+    searchThreads = Math.max(1, getInt("query/searchThreads", 1));
+    minDocsPerSearchSlice = Math.max(1, getInt("query/minDocsPerSearchSlice", 250000));
     slowQueryThresholdMillis = getInt("query/slowQueryThresholdMillis", -1);
     for (SolrPluginInfo plugin : plugins) loadPluginInfo(plugin);
 
@@ -475,6 +482,9 @@ public class SolrConfig extends Config implements MapSerializable {
 //  public final float filtOptThreshold;
   // SolrIndexSearcher - caches configurations
   public final CacheConfig filterCacheConfig;
+  public final boolean filterCachePerSegment;
+  public final int filterCachePerSegmentSize;
+  public final int filterCachePerSegmentMaxRamMB;
   public final CacheConfig queryResultCacheConfig;
   public final CacheConfig documentCacheConfig;
   public final CacheConfig fieldValueCacheConfig;
@@ -498,6 +508,10 @@ public class SolrConfig extends Config implements MapSerializable {
   private Map<String, List<PluginInfo>> pluginStore = new LinkedHashMap<>();
 
   public final int maxWarmingSearchers;
+  public final int autowarmThreads;
+  public final int maxAutowarmTimeMs;  // -1 means no limit
+  public final int searchThreads;
+  public final int minDocsPerSearchSlice;
   public final boolean useColdSearcher;
   public final Version luceneMatchVersion;
   protected String dataDir;
@@ -853,6 +867,10 @@ public class SolrConfig extends Config implements MapSerializable {
     m.put("queryResultMaxDocsCached", queryResultMaxDocsCached);
     m.put("enableLazyFieldLoading", enableLazyFieldLoading);
     m.put("maxBooleanClauses", booleanQueryMaxClauseCount);
+    m.put("autowarmThreads", autowarmThreads);
+    m.put("maxAutowarmTimeMs", maxAutowarmTimeMs);
+    m.put("searchThreads", searchThreads);
+    m.put("minDocsPerSearchSlice", minDocsPerSearchSlice);
     if (jmxConfig != null) result.put("jmx", jmxConfig.toMap());
     for (SolrPluginInfo plugin : plugins) {
       List<PluginInfo> infos = getPluginInfos(plugin.clazz.getName());
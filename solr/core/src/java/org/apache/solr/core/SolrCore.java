@@ -47,6 +47,7 @@ import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantLock;
@@ -58,6 +59,7 @@ import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexDeletionPolicy;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.LRUQueryCache;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.IOContext;
 import org.apache.lucene.store.IndexInput;
@@ -169,6 +171,8 @@ public final class SolrCore implements SolrInfoMBean, Closeable {
   private StatsCache statsCache;
 
   private final SolrConfig solrConfig;
+  private final LRUQueryCache segmentFilterCache;
+  private final ExecutorService searchExecutor;
   private final SolrResourceLoader resourceLoader;
   private volatile IndexSchema schema;
   private final NamedList configSetProperties;
@@ -248,6 +252,25 @@ public final class SolrCore implements SolrInfoMBean, Closeable {
     return solrConfig;
   }
 
+  /**
+   * Gets the per-segment filter cache shared by all searchers of this core, or null if
+   * <code>perSegment</code> is not enabled on the <code>filterCache</code>.  Entries are
+   * keyed by segment core, so they survive commits for the segments that did not change.
+   */
+  public LRUQueryCache getSegmentFilterCache() {
+    return segmentFilterCache;
+  }
+
+  /**
+   * Gets the executor that searchers of this core use to search slices of the index
+   * concurrently, or null if <code>searchThreads</code> is not greater than 1.  Tasks that
+   * cannot be handed to an idle thread run in the submitting thread, so a busy pool, or a
+   * search that is nested in another one, never waits for a thread to become available.
+   */
+  public ExecutorService getSearchExecutor() {
+    return searchExecutor;
+  }
+
   /**
    * Gets the schema resource name used by this core instance.
    * @since solr 1.3
@@ -719,6 +742,13 @@ public final class SolrCore implements SolrInfoMBean, Closeable {
     resourceLoader = config.getResourceLoader();
     this.solrConfig = config;
     this.configSetProperties = configSetProperties;
+    this.segmentFilterCache = config.filterCachePerSegment
+        ? new LRUQueryCache(config.filterCachePerSegmentSize, config.filterCachePerSegmentMaxRamMB * 1024L * 1024L, context -> true)
+        : null;
+    this.searchExecutor = config.searchThreads > 1
+        ? new ExecutorUtil.MDCAwareThreadPoolExecutor(0, config.searchThreads, 60L, TimeUnit.SECONDS,
+            new SynchronousQueue<>(), new DefaultSolrThreadFactory("searchExecutor"), (task, executor) -> task.run())
+        : null;
 
     if (updateHandler == null) {
       directoryFactory = initDirectoryFactory();
@@ -1232,6 +1262,17 @@ public final class SolrCore implements SolrInfoMBean, Closeable {
     }
     assert ObjectReleaseTracker.release(searcherExecutor);
 
+    if (searchExecutor != null) {
+      try {
+        ExecutorUtil.shutdownAndAwaitTermination(searchExecutor);
+      } catch (Throwable e) {
+        SolrException.log(log, e);
+        if (e instanceof Error) {
+          throw (Error) e;
+        }
+      }
+    }
+
     try {
       // Since we waited for the searcherExecutor to shut down,
       // there should be no more searchers warming in the background
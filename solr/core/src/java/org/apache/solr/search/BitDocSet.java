@@ -230,6 +230,8 @@ public class BitDocSet extends DocSetBase {
     FixedBitSet newbits = bits.clone();
     if (other instanceof BitDocSet) {
       newbits.andNot(((BitDocSet) other).bits);
+    } else if (other instanceof RoaringDocSet) {
+      ((RoaringDocSet) other).andNotFrom(newbits.getBits());
     } else {
       DocIterator iter = other.iterator();
       while (iter.hasNext()) {
@@ -249,6 +251,8 @@ public class BitDocSet extends DocSetBase {
       BitDocSet otherDocSet = (BitDocSet) other;
       newbits = FixedBitSet.ensureCapacity(newbits, otherDocSet.bits.length());
       newbits.or(otherDocSet.bits);
+    } else if (other instanceof RoaringDocSet) {
+      newbits = ((RoaringDocSet) other).orInto(newbits);
     } else {
       DocIterator iter = other.iterator();
       while (iter.hasNext()) {
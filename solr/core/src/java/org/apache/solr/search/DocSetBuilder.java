@@ -183,7 +183,7 @@ public final class DocSetBuilder {
       if (filter != null) {
         bitSet.and(filter);
       }
-      return new BitDocSet(bitSet);
+      return DocSetUtil.toCompactSet(new BitDocSet(bitSet));
       // TODO - if this set will be cached, should we make it smaller if it's below DocSetUtil.smallSetSize?
     } else {
       LSBRadixSorter sorter = new LSBRadixSorter();
@@ -200,7 +200,7 @@ public final class DocSetBuilder {
       if (filter != null) {
         bitSet.and(filter);
       }
-      return new BitDocSet(bitSet);
+      return DocSetUtil.toCompactSet(new BitDocSet(bitSet));
     } else {
       // don't need to sort, but still need to remove non accepted docs
       int l = pos;
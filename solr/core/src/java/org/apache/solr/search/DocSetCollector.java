@@ -18,8 +18,11 @@ package org.apache.solr.search;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 
 import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.CollectorManager;
 import org.apache.lucene.search.Scorer;
 import org.apache.lucene.search.SimpleCollector;
 import org.apache.lucene.util.FixedBitSet;
@@ -34,6 +37,10 @@ public class DocSetCollector extends SimpleCollector {
   final int maxDoc;
   final int smallSetSize;
   int base;
+  // the doc ID of the first bit and the number of bits to allocate,
+  // which only differ from 0 and maxDoc for the slices of a concurrent search
+  int bitsOffset;
+  int bitsLength;
 
   // in case there aren't that many hits, we may not want a very sparse
   // bit array.  Optimistically collect the first few docs in an array
@@ -47,6 +54,7 @@ public class DocSetCollector extends SimpleCollector {
   public DocSetCollector(int smallSetSize, int maxDoc) {
     this.smallSetSize = smallSetSize;
     this.maxDoc = maxDoc;
+    this.bitsLength = maxDoc;
     this.scratch = new ExpandingIntArray(smallSetSize);
   }
 
@@ -65,8 +73,8 @@ public class DocSetCollector extends SimpleCollector {
     } else {
       // this conditional could be removed if BitSet was preallocated, but that
       // would take up more memory, and add more GC time...
-      if (bits==null) bits = new FixedBitSet(maxDoc);
-      bits.set(doc);
+      if (bits==null) bits = new FixedBitSet(bitsLength);
+      bits.set(doc - bitsOffset);
     }
 
     pos++;
@@ -79,7 +87,110 @@ public class DocSetCollector extends SimpleCollector {
     } else {
       // set the bits for ids that were collected in the array
       scratch.copyTo(bits);
-      return new BitDocSet(bits,pos);
+      return DocSetUtil.toCompactSet(new BitDocSet(bits,pos));
+    }
+  }
+
+  /**
+   * Returns a {@link CollectorManager} that merges the documents collected for each slice of a
+   * concurrent search into a single {@link DocSet}.
+   */
+  public static CollectorManager<DocSetCollector,DocSet> newCollectorManager(final int maxDoc) {
+    return new CollectorManager<DocSetCollector,DocSet>() {
+      @Override
+      public DocSetCollector newCollector() {
+        return new SliceCollector(maxDoc);
+      }
+
+      @Override
+      public DocSet reduce(Collection<DocSetCollector> collectors) {
+        return getDocSet(collectors);
+      }
+    };
+  }
+
+  /**
+   * Returns the union of the documents collected by the given collectors, which must have
+   * collected consecutive ranges of doc IDs in iteration order, like the collectors of the
+   * slices of a concurrent search.
+   */
+  public static DocSet getDocSet(Collection<? extends DocSetCollector> collectors) {
+    if (collectors.size() == 1 && !(collectors.iterator().next() instanceof SliceCollector)) {
+      return collectors.iterator().next().getDocSet();
+    }
+    int size = 0;
+    int maxDoc = 0;
+    boolean small = true;
+    FixedBitSet bits = null;
+    for (DocSetCollector collector : collectors) {
+      size += collector.pos;
+      maxDoc = collector.maxDoc;
+      small &= collector.pos <= collector.scratch.size();
+      if (bits == null && collector.bits != null && collector.bitsOffset == 0) {
+        bits = collector.bits;
+      }
+    }
+    if (small && size <= DocSetUtil.smallSetSize(maxDoc)) {
+      final int[] docs = new int[size];
+      int upto = 0;
+      for (DocSetCollector collector : collectors) {
+        final int[] collected = collector.scratch.toArray();
+        System.arraycopy(collected, 0, docs, upto, collected.length);
+        upto += collected.length;
+      }
+      return new SortedIntDocSet(docs, size);
+    }
+    // reuse the bits of the first slice if it allocated some, the other slices only cover their own range
+    final FixedBitSet reused = bits;
+    if (bits == null) {
+      bits = new FixedBitSet(maxDoc);
+    } else {
+      bits = new FixedBitSet(FixedBitSet.ensureCapacity(bits, maxDoc).getBits(), maxDoc);
+    }
+    final long[] words = bits.getBits();
+    final int numWords = FixedBitSet.bits2words(maxDoc);
+    for (DocSetCollector collector : collectors) {
+      if (collector.bits != null && collector.bits != reused) {
+        // slices start on a word boundary, see SliceCollector
+        final long[] sliceWords = collector.bits.getBits();
+        final int offsetWords = collector.bitsOffset >> 6;
+        final int sliceNumWords = Math.min(sliceWords.length, numWords - offsetWords);
+        for (int i = 0; i < sliceNumWords; ++i) {
+          words[offsetWords + i] |= sliceWords[i];
+        }
+      }
+      collector.scratch.copyTo(bits);
+    }
+    return DocSetUtil.toCompactSet(new BitDocSet(bits, size));
+  }
+
+  /**
+   * Collects the documents of a slice of a concurrent search. Its bits only cover the doc IDs
+   * of the slice, see {@link #setSlice(int, int)}, so that a request does not hold one bit set of the size of the index per
+   * slice; {@link #getDocSet(Collection)} merges them into a single bit set.
+   */
+  static class SliceCollector extends DocSetCollector {
+
+    SliceCollector(int maxDoc) {
+      super(maxDoc);
+    }
+
+    @Override
+    public DocSet getDocSet() {
+      return getDocSet(Collections.singletonList(this));
+    }
+
+    /**
+     * Restrict the bits to the doc IDs of the slice, from <code>minDoc</code> inclusive to
+     * <code>maxDoc</code> exclusive, which must be called before collecting. Slices may start or
+     * end in the middle of a segment, so the range can not be derived from the segments that they
+     * visit.
+     */
+    void setSlice(int minDoc, int maxDoc) {
+      assert pos == 0 && bits == null;
+      // start on a word boundary, see getDocSet(Collection)
+      bitsOffset = minDoc & ~63;
+      bitsLength = maxDoc - bitsOffset;
     }
   }
 
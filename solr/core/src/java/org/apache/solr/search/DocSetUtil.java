@@ -95,13 +95,11 @@ public class DocSetUtil {
   public static DocSet createDocSetGeneric(SolrIndexSearcher searcher, Query query) throws IOException {
 
     int maxDoc = searcher.getIndexReader().maxDoc();
-    DocSetCollector collector = new DocSetCollector(maxDoc);
 
     // This may throw an ExitableDirectoryReader.ExitingReaderException
     // but we should not catch it here, as we don't know how this DocSet will be used (it could be negated before use) or cached.
-    searcher.search(query, collector);
-
-    return collector.getDocSet();
+    // The slices of the index are searched concurrently if the core has a search executor.
+    return searcher.search(query, DocSetCollector.newCollectorManager(maxDoc));
   }
 
   public static DocSet createDocSet(SolrIndexSearcher searcher, Term term) throws IOException {
@@ -193,7 +191,21 @@ public class DocSetUtil {
       return smallSet;
     }
 
-    return docSet;
+    return toCompactSet(docSet);
+  }
+
+  /**
+   * Returns a {@link RoaringDocSet} with the same documents if it takes less than half the memory
+   * of the given set, or the given set otherwise. Sets that contain more than half of the bits are
+   * always kept as they are since faceting relies on bit sets to count the complement of such sets.
+   */
+  public static DocSet toCompactSet(BitDocSet bitSet) {
+    FixedBitSet bits = bitSet.getBits();
+    if (bitSet.size() <= (bits.length() >>> 1)
+        && RoaringDocSet.estimateRamBytesUsed(bits) < (bitSet.ramBytesUsed() >>> 1)) {
+      return RoaringDocSet.fromBits(bits);
+    }
+    return bitSet;
   }
 
   public static DocSet toSmallSet(BitDocSet bitSet) {
@@ -15,7 +15,6 @@
  * limitations under the License.
  */
 package org.apache.solr.search;
-import org.apache.solr.common.SolrException;
 import org.apache.solr.util.ConcurrentLRUCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -24,6 +23,7 @@ import org.apache.solr.common.util.SimpleOrderedMap;
 
 import java.io.Serializable;
 import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -148,26 +148,12 @@ public class FastLRUCache<K,V> extends SolrCacheBase implements SolrCache<K,V> {
   public void warm(SolrIndexSearcher searcher, SolrCache old) {
     if (regenerator == null) return;
     long warmingStartTime = System.nanoTime();
-    FastLRUCache other = (FastLRUCache) old;
+    FastLRUCache<K,V> other = (FastLRUCache<K,V>) old;
     // warm entries
     if (isAutowarmingOn()) {
       int sz = autowarm.getWarmCount(other.size());
-      Map items = other.cache.getLatestAccessedItems(sz);
-      Map.Entry[] itemsArr = new Map.Entry[items.size()];
-      int counter = 0;
-      for (Object mapEntry : items.entrySet()) {
-        itemsArr[counter++] = (Map.Entry) mapEntry;
-      }
-      for (int i = itemsArr.length - 1; i >= 0; i--) {
-        try {
-          boolean continueRegen = regenerator.regenerateItem(searcher,
-                  this, old, itemsArr[i].getKey(), itemsArr[i].getValue());
-          if (!continueRegen) break;
-        }
-        catch (Exception e) {
-          SolrException.log(log, "Error during auto-warming of key:" + itemsArr[i].getKey(), e);
-        }
-      }
+      List<Map.Entry<K,V>> items = new ArrayList<>(other.cache.getLatestAccessedItems(sz).entrySet());
+      regenerateItems(regenerator, searcher, this, old, items, true);
     }
     warmupTime = TimeUnit.MILLISECONDS.convert(System.nanoTime() - warmingStartTime, TimeUnit.NANOSECONDS);
   }
@@ -221,6 +221,20 @@ class JoinQuery extends Query {
 
     @Override
     public Scorer scorer(LeafReaderContext context) throws IOException {
+      // Although this set only includes live docs, other filters can be pushed down to queries.
+      DocIdSet readerSet = getFilter().getDocIdSet(context, null);
+      if (readerSet == null) {
+        return null;
+      }
+      DocIdSetIterator readerSetIterator = readerSet.iterator();
+      if (readerSetIterator == null) {
+        return null;
+      }
+      return new ConstantScoreScorer(this, score(), readerSetIterator);
+    }
+
+    // synchronized since the segments of a concurrent search may ask for scorers from several threads
+    private synchronized Filter getFilter() throws IOException {
       if (filter == null) {
         boolean debug = rb != null && rb.isDebug();
         RTimer timer = (debug ? new RTimer() : null);
@@ -244,23 +258,15 @@ class JoinQuery extends Query {
           dbg.add("smallSetsDeferred", smallSetsDeferred);
           dbg.add("toSetDocsAdded", resultListDocs);
 
-          // TODO: perhaps synchronize  addDebug in the future...
-          rb.addDebug(dbg, "join", JoinQuery.this.toString());
+          // other joins of the request may add debug info from other search threads
+          synchronized (rb) {
+            rb.addDebug(dbg, "join", JoinQuery.this.toString());
+          }
         }
 
         filter = resultSet.getTopFilter();
       }
-
-      // Although this set only includes live docs, other filters can be pushed down to queries.
-      DocIdSet readerSet = filter.getDocIdSet(context, null);
-      if (readerSet == null) {
-        return null;
-      }
-      DocIdSetIterator readerSetIterator = readerSet.iterator();
-      if (readerSetIterator == null) {
-        return null;
-      }
-      return new ConstantScoreScorer(this, score(), readerSetIterator);
+      return filter;
     }
 
 
@@ -18,13 +18,13 @@ package org.apache.solr.search;
 import java.io.Serializable;
 import java.lang.invoke.MethodHandles;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
 
-import org.apache.solr.common.SolrException;
 import org.apache.solr.common.util.NamedList;
 import org.apache.solr.common.util.SimpleOrderedMap;
 import org.apache.solr.core.SolrCore;
@@ -172,26 +172,13 @@ public class LFUCache<K, V> implements SolrCache<K, V> {
   public void warm(SolrIndexSearcher searcher, SolrCache old) {
     if (regenerator == null) return;
     long warmingStartTime = System.nanoTime();
-    LFUCache other = (LFUCache) old;
+    LFUCache<K,V> other = (LFUCache<K,V>) old;
     // warm entries
     if (autowarmCount != 0) {
       int sz = other.size();
       if (autowarmCount != -1) sz = Math.min(sz, autowarmCount);
-      Map items = other.cache.getMostUsedItems(sz);
-      Map.Entry[] itemsArr = new Map.Entry[items.size()];
-      int counter = 0;
-      for (Object mapEntry : items.entrySet()) {
-        itemsArr[counter++] = (Map.Entry) mapEntry;
-      }
-      for (int i = itemsArr.length - 1; i >= 0; i--) {
-        try {
-          boolean continueRegen = regenerator.regenerateItem(searcher,
-              this, old, itemsArr[i].getKey(), itemsArr[i].getValue());
-          if (!continueRegen) break;
-        } catch (Exception e) {
-          SolrException.log(log, "Error during auto-warming of key:" + itemsArr[i].getKey(), e);
-        }
-      }
+      List<Map.Entry<K,V>> items = new ArrayList<>(other.cache.getMostUsedItems(sz).entrySet());
+      SolrCacheBase.regenerateItems(regenerator, searcher, this, old, items, false);
     }
     warmupTime = TimeUnit.MILLISECONDS.convert(System.nanoTime() - warmingStartTime, TimeUnit.NANOSECONDS);
   }
@@ -0,0 +1,1244 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.BitUtil;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.RamUsageEstimator;
+
+/**
+ * <code>RoaringDocSet</code> represents a sorted set of Lucene Document Ids that is
+ * split into blocks of 2<sup>16</sup> documents. The documents of each block are
+ * stored in the most compact of three containers: a sorted array of their 16
+ * lowest bits, a bitmap, or a list of runs of consecutive documents. Blocks
+ * without documents take no space at all.
+ * <p>
+ * This takes much less memory than a {@link BitDocSet} for sets that are too
+ * large for a {@link SortedIntDocSet} but still sparse or clustered, while set
+ * operations are performed block by block.
+ */
+public class RoaringDocSet extends DocSetBase {
+  private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(RoaringDocSet.class);
+
+  static final int BLOCK_SHIFT = 16;
+  static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+  static final int BLOCK_MASK = BLOCK_SIZE - 1;
+  /** Number of words of a bitmap container */
+  static final int BITMAP_WORDS = BLOCK_SIZE >>> 6;
+  private static final int WORDS_SHIFT = BLOCK_SHIFT - 6;
+  /** Maximum number of documents of an array container, beyond which a bitmap is smaller */
+  static final int MAX_ARRAY_SIZE = BLOCK_SIZE >>> 4;
+
+  private static final int ARRAY = 0;
+  private static final int BITMAP = 1;
+  private static final int RUN = 2;
+
+  final int[] keys;  // doc >>> BLOCK_SHIFT for the docs of each container, increasing
+  final Container[] containers;  // never empty
+  private final int size;
+
+  RoaringDocSet(int[] keys, Container[] containers, int numContainers) {
+    this.keys = keys.length == numContainers ? keys : Arrays.copyOf(keys, numContainers);
+    this.containers = containers.length == numContainers ? containers : Arrays.copyOf(containers, numContainers);
+    int size = 0;
+    for (int i = 0; i < numContainers; i++) {
+      size += containers[i].cardinality();
+    }
+    this.size = size;
+  }
+
+  /** Creates a RoaringDocSet with the bits that are set in the given bit set. */
+  public static RoaringDocSet fromBits(FixedBitSet bits) {
+    final long[] words = bits.getBits();
+    final int numWords = FixedBitSet.bits2words(bits.length());
+    final int numBlocks = (numWords + BITMAP_WORDS - 1) >>> WORDS_SHIFT;
+    final int[] keys = new int[numBlocks];
+    final Container[] containers = new Container[numBlocks];
+    int numContainers = 0;
+    for (int key = 0; key < numBlocks; key++) {
+      final int offset = key << WORDS_SHIFT;
+      final Container container = fromWords(words, offset, Math.min(BITMAP_WORDS, numWords - offset), true);
+      if (container != null) {
+        keys[numContainers] = key;
+        containers[numContainers++] = container;
+      }
+    }
+    return new RoaringDocSet(keys, containers, numContainers);
+  }
+
+  /**
+   * Creates a RoaringDocSet from a sorted list of ids.
+   * @param docs Sorted list of ids
+   * @param len  Number of ids in the list
+   */
+  public static RoaringDocSet fromSortedDocs(int[] docs, int len) {
+    final int numBlocks = len == 0 ? 0 : (docs[len - 1] >>> BLOCK_SHIFT) + 1;
+    final int[] keys = new int[numBlocks];
+    final Container[] containers = new Container[numBlocks];
+    int numContainers = 0;
+    for (int i = 0; i < len; ) {
+      final int key = docs[i] >>> BLOCK_SHIFT;
+      int end = i + 1;
+      while (end < len && (docs[end] >>> BLOCK_SHIFT) == key) {
+        end++;
+      }
+      keys[numContainers] = key;
+      containers[numContainers++] = fromSortedLows(docs, i, end);
+      i = end;
+    }
+    return new RoaringDocSet(keys, containers, numContainers);
+  }
+
+  /**
+   * Returns an estimation of the memory that a RoaringDocSet with the bits of the
+   * given bit set would use, without building it.
+   */
+  public static long estimateRamBytesUsed(FixedBitSet bits) {
+    final long[] words = bits.getBits();
+    final int numWords = FixedBitSet.bits2words(bits.length());
+    long bytes = BASE_RAM_BYTES_USED + 2 * RamUsageEstimator.NUM_BYTES_ARRAY_HEADER;
+    for (int offset = 0; offset < numWords; offset += BITMAP_WORDS) {
+      final int len = Math.min(BITMAP_WORDS, numWords - offset);
+      final int cardinality = (int) BitUtil.pop_array(words, offset, len);
+      if (cardinality > 0) {
+        final int numRuns = countRuns(words, offset, len);
+        bytes += Integer.BYTES + RamUsageEstimator.NUM_BYTES_OBJECT_REF
+            + containerRamBytesUsed(containerType(cardinality, numRuns), cardinality, numRuns);
+      }
+    }
+    return bytes;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public boolean exists(int doc) {
+    final int i = Arrays.binarySearch(keys, doc >>> BLOCK_SHIFT);
+    return i >= 0 && containers[i].contains(doc & BLOCK_MASK);
+  }
+
+  @Override
+  public DocIterator iterator() {
+    return new DocIterator() {
+      private final RoaringIterator iter = new RoaringIterator();
+      private int pos = iter.nextDoc();
+
+      @Override
+      public boolean hasNext() {
+        return pos != DocIdSetIterator.NO_MORE_DOCS;
+      }
+
+      @Override
+      public Integer next() {
+        return nextDoc();
+      }
+
+      /**
+       * The remove  operation is not supported by this Iterator.
+       */
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException("The remove  operation is not supported by this Iterator.");
+      }
+
+      @Override
+      public int nextDoc() {
+        int old = pos;
+        pos = iter.nextDoc();
+        return old;
+      }
+
+      @Override
+      public float score() {
+        return 0.0f;
+      }
+    };
+  }
+
+  /** Returns the largest document of this set, or -1 if it is empty */
+  int lastDoc() {
+    final int n = containers.length;
+    return n == 0 ? -1 : (keys[n - 1] << BLOCK_SHIFT) | containers[n - 1].last();
+  }
+
+  @Override
+  public FixedBitSet getBits() {
+    FixedBitSet bits = new FixedBitSet(lastDoc() + 1);
+    orInto(bits.getBits());
+    return bits;
+  }
+
+  /** Sets the bits of the documents of this set, the array must be large enough to hold them */
+  void orInto(long[] words) {
+    for (int i = 0; i < containers.length; i++) {
+      containers[i].orInto(words, keys[i] << WORDS_SHIFT);
+    }
+  }
+
+  /** Clears the bits of the documents of this set, ignoring documents that are beyond the end of the array */
+  void andNotFrom(long[] words) {
+    for (int i = 0; i < containers.length; i++) {
+      containers[i].andNotFrom(words, keys[i] << WORDS_SHIFT);
+    }
+  }
+
+  /** Returns the block of the given bit set that has the given key as a container, without copying it */
+  private static Container view(FixedBitSet bits, int key) {
+    final long[] words = bits.getBits();
+    final int offset = key << WORDS_SHIFT;
+    return new BitmapContainer(words, offset, Math.max(0, Math.min(BITMAP_WORDS, words.length - offset)), -1);
+  }
+
+  @Override
+  public int intersectionSize(DocSet other) {
+    if (other instanceof RoaringDocSet) {
+      final RoaringDocSet o = (RoaringDocSet) other;
+      int count = 0;
+      for (int i = 0, j = 0; i < keys.length && j < o.keys.length; ) {
+        if (keys[i] < o.keys[j]) {
+          i++;
+        } else if (keys[i] > o.keys[j]) {
+          j++;
+        } else {
+          count += containers[i++].andCardinality(o.containers[j++]);
+        }
+      }
+      return count;
+    } else if (other instanceof BitDocSet) {
+      final FixedBitSet bits = ((BitDocSet) other).getBits();
+      int count = 0;
+      for (int i = 0; i < keys.length; i++) {
+        count += containers[i].andCardinality(view(bits, keys[i]));
+      }
+      return count;
+    }
+    // other implementations are small sets that are better at iterating than we are
+    int count = 0;
+    for (DocIterator iter = other.iterator(); iter.hasNext(); ) {
+      if (exists(iter.nextDoc())) count++;
+    }
+    return count;
+  }
+
+  @Override
+  public boolean intersects(DocSet other) {
+    if (other instanceof RoaringDocSet || other instanceof BitDocSet) {
+      return intersectionSize(other) > 0;
+    }
+    for (DocIterator iter = other.iterator(); iter.hasNext(); ) {
+      if (exists(iter.nextDoc())) return true;
+    }
+    return false;
+  }
+
+  @Override
+  public DocSet intersection(DocSet other) {
+    if (other instanceof RoaringDocSet) {
+      final RoaringDocSet o = (RoaringDocSet) other;
+      final int max = Math.min(keys.length, o.keys.length);
+      final int[] newKeys = new int[max];
+      final Container[] newContainers = new Container[max];
+      int n = 0;
+      for (int i = 0, j = 0; i < keys.length && j < o.keys.length; ) {
+        if (keys[i] < o.keys[j]) {
+          i++;
+        } else if (keys[i] > o.keys[j]) {
+          j++;
+        } else {
+          final Container c = containers[i].and(o.containers[j]);
+          if (c != null) {
+            newKeys[n] = keys[i];
+            newContainers[n++] = c;
+          }
+          i++;
+          j++;
+        }
+      }
+      return new RoaringDocSet(newKeys, newContainers, n);
+    } else if (other instanceof BitDocSet) {
+      final FixedBitSet bits = ((BitDocSet) other).getBits();
+      final int[] newKeys = new int[keys.length];
+      final Container[] newContainers = new Container[keys.length];
+      int n = 0;
+      for (int i = 0; i < keys.length; i++) {
+        final Container c = containers[i].and(view(bits, keys[i]));
+        if (c != null) {
+          newKeys[n] = keys[i];
+          newContainers[n++] = c;
+        }
+      }
+      return new RoaringDocSet(newKeys, newContainers, n);
+    }
+    // other implementations are small sets, iterate them and return a small set as well
+    final int[] docs = new int[other.size()];
+    int n = 0;
+    for (DocIterator iter = other.iterator(); iter.hasNext(); ) {
+      final int doc = iter.nextDoc();
+      if (exists(doc)) docs[n++] = doc;
+    }
+    Arrays.sort(docs, 0, n);
+    return new SortedIntDocSet(docs, n);
+  }
+
+  @Override
+  public DocSet union(DocSet other) {
+    if (other instanceof RoaringDocSet) {
+      final RoaringDocSet o = (RoaringDocSet) other;
+      final int max = keys.length + o.keys.length;
+      final int[] newKeys = new int[max];
+      final Container[] newContainers = new Container[max];
+      int n = 0;
+      int i = 0, j = 0;
+      while (i < keys.length && j < o.keys.length) {
+        // containers are immutable, so they can be shared
+        if (keys[i] < o.keys[j]) {
+          newKeys[n] = keys[i];
+          newContainers[n++] = containers[i++];
+        } else if (keys[i] > o.keys[j]) {
+          newKeys[n] = o.keys[j];
+          newContainers[n++] = o.containers[j++];
+        } else {
+          newKeys[n] = keys[i];
+          newContainers[n++] = containers[i++].or(o.containers[j++]);
+        }
+      }
+      for (; i < keys.length; i++) {
+        newKeys[n] = keys[i];
+        newContainers[n++] = containers[i];
+      }
+      for (; j < o.keys.length; j++) {
+        newKeys[n] = o.keys[j];
+        newContainers[n++] = o.containers[j];
+      }
+      return new RoaringDocSet(newKeys, newContainers, n);
+    } else if (other instanceof BitDocSet) {
+      return new BitDocSet(orInto(((BitDocSet) other).getBits().clone()));
+    } else if (other instanceof SortedIntDocSet) {
+      return union(fromSortedDocs(((SortedIntDocSet) other).getDocs(), other.size()));
+    }
+    return super.union(other);
+  }
+
+  /** Sets the bits of the documents of this set, growing the bit set if needed */
+  FixedBitSet orInto(FixedBitSet bits) {
+    bits = FixedBitSet.ensureCapacity(bits, lastDoc());
+    orInto(bits.getBits());
+    return bits;
+  }
+
+  @Override
+  public DocSet andNot(DocSet other) {
+    if (other instanceof RoaringDocSet) {
+      final RoaringDocSet o = (RoaringDocSet) other;
+      final int[] newKeys = new int[keys.length];
+      final Container[] newContainers = new Container[keys.length];
+      int n = 0;
+      int i = 0, j = 0;
+      while (i < keys.length && j < o.keys.length) {
+        if (keys[i] < o.keys[j]) {
+          newKeys[n] = keys[i];
+          newContainers[n++] = containers[i++];
+        } else if (keys[i] > o.keys[j]) {
+          j++;
+        } else {
+          final Container c = containers[i].andNot(o.containers[j++]);
+          if (c != null) {
+            newKeys[n] = keys[i];
+            newContainers[n++] = c;
+          }
+          i++;
+        }
+      }
+      for (; i < keys.length; i++) {
+        newKeys[n] = keys[i];
+        newContainers[n++] = containers[i];
+      }
+      return new RoaringDocSet(newKeys, newContainers, n);
+    } else if (other instanceof BitDocSet) {
+      final FixedBitSet bits = ((BitDocSet) other).getBits();
+      final int[] newKeys = new int[keys.length];
+      final Container[] newContainers = new Container[keys.length];
+      int n = 0;
+      for (int i = 0; i < keys.length; i++) {
+        final Container c = containers[i].andNot(view(bits, keys[i]));
+        if (c != null) {
+          newKeys[n] = keys[i];
+          newContainers[n++] = c;
+        }
+      }
+      return new RoaringDocSet(newKeys, newContainers, n);
+    } else if (other instanceof SortedIntDocSet) {
+      return andNot(fromSortedDocs(((SortedIntDocSet) other).getDocs(), other.size()));
+    }
+    return super.andNot(other);
+  }
+
+  @Override
+  public void addAllTo(DocSet target) {
+    if (target instanceof BitDocSet) {
+      orInto(((BitDocSet) target).getBits().getBits());
+      ((BitDocSet) target).invalidateSize();
+    } else {
+      super.addAllTo(target);
+    }
+  }
+
+  @Override
+  public Filter getTopFilter() {
+    return new Filter() {
+
+      @Override
+      public DocIdSet getDocIdSet(final LeafReaderContext context, final Bits acceptDocs) {
+        LeafReader reader = context.reader();
+        // all Solr DocSets that are used as filters only include live docs
+        final Bits acceptDocs2 = acceptDocs == null ? null : (reader.getLiveDocs() == acceptDocs ? null : acceptDocs);
+
+        final int base = context.docBase;
+        final int max = base + reader.maxDoc();   // one past the max doc in this segment.
+
+        return BitsFilteredDocIdSet.wrap(new DocIdSet() {
+          @Override
+          public DocIdSetIterator iterator() {
+            return new DocIdSetIterator() {
+              final RoaringIterator iter = new RoaringIterator();
+              int adjustedDoc = -1;
+
+              @Override
+              public int docID() {
+                return adjustedDoc;
+              }
+
+              @Override
+              public int nextDoc() {
+                final int doc = adjustedDoc == -1 ? iter.advance(base) : iter.nextDoc();
+                return adjustedDoc = doc < max ? doc - base : NO_MORE_DOCS;
+              }
+
+              @Override
+              public int advance(int target) {
+                if (target == NO_MORE_DOCS) return adjustedDoc = NO_MORE_DOCS;
+                final int adjusted = target + base;
+                if (adjusted >= max) return adjustedDoc = NO_MORE_DOCS;
+                final int doc = iter.advance(adjusted);
+                return adjustedDoc = doc < max ? doc - base : NO_MORE_DOCS;
+              }
+
+              @Override
+              public long cost() {
+                return size;
+              }
+            };
+          }
+
+          @Override
+          public long ramBytesUsed() {
+            return RoaringDocSet.this.ramBytesUsed();
+          }
+
+          @Override
+          public Bits bits() {
+            // random access is more expensive than for a bit set
+            return null;
+          }
+
+        }, acceptDocs2);
+      }
+
+      @Override
+      public String toString(String field) {
+        return "RoaringDocSetTopFilter";
+      }
+
+      @Override
+      public boolean equals(Object other) {
+        return other == this;
+      }
+
+      @Override
+      public int hashCode() {
+        return System.identityHashCode(this);
+      }
+    };
+  }
+
+  @Override
+  public long ramBytesUsed() {
+    long bytes = BASE_RAM_BYTES_USED + RamUsageEstimator.sizeOf(keys) + RamUsageEstimator.shallowSizeOf(containers);
+    for (Container container : containers) {
+      bytes += container.ramBytesUsed();
+    }
+    return bytes;
+  }
+
+  @Override
+  public Collection<Accountable> getChildResources() {
+    return Collections.emptyList();
+  }
+
+  /** Iterates over the documents of the set in order. */
+  private class RoaringIterator extends DocIdSetIterator {
+    private int block = -1;
+    private int base;
+    private Cursor cursor;
+    private int doc = -1;
+
+    @Override
+    public int docID() {
+      return doc;
+    }
+
+    @Override
+    public int nextDoc() {
+      if (cursor != null) {
+        final int low = cursor.nextDoc();
+        if (low != BLOCK_SIZE) {
+          return doc = base | low;
+        }
+      }
+      return firstDoc(block + 1);
+    }
+
+    @Override
+    public int advance(int target) {
+      if (target == NO_MORE_DOCS) {
+        return firstDoc(containers.length);
+      }
+      final int key = target >>> BLOCK_SHIFT;
+      int i;
+      if (cursor != null && keys[block] == key) {
+        i = block;
+      } else {
+        i = lowerBound(keys, Math.min(keys.length, block + 1), keys.length, key);
+        if (i == keys.length || keys[i] != key) {
+          return firstDoc(i);
+        }
+        setBlock(i);
+      }
+      final int low = cursor.advance(target & BLOCK_MASK);
+      if (low != BLOCK_SIZE) {
+        return doc = base | low;
+      }
+      return firstDoc(i + 1);
+    }
+
+    private void setBlock(int i) {
+      block = i;
+      base = keys[i] << BLOCK_SHIFT;
+      cursor = containers[i].cursor();
+    }
+
+    /** Positions on the first doc of the given container */
+    private int firstDoc(int i) {
+      if (i >= containers.length) {
+        block = containers.length;
+        cursor = null;
+        return doc = NO_MORE_DOCS;
+      }
+      setBlock(i);
+      return doc = base | cursor.nextDoc();  // containers are never empty
+    }
+
+    @Override
+    public long cost() {
+      return size;
+    }
+  }
+
+  /** Returns the index of the first value of the range that is greater than or equal to the target */
+  private static int lowerBound(int[] values, int from, int to, int target) {
+    int low = from, high = to - 1;
+    while (low <= high) {
+      final int mid = (low + high) >>> 1;
+      if (values[mid] < target) {
+        low = mid + 1;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return low;
+  }
+
+  /** Returns the type of the smallest container for a block with the given number of documents and runs */
+  static int containerType(int cardinality, int numRuns) {
+    final long arrayBytes = 2L * cardinality;
+    final long runBytes = 4L * numRuns;
+    final long bitmapBytes = 8L * BITMAP_WORDS;
+    if (runBytes < Math.min(arrayBytes, bitmapBytes)) {
+      return RUN;
+    }
+    return arrayBytes <= bitmapBytes ? ARRAY : BITMAP;
+  }
+
+  private static long containerRamBytesUsed(int type, int cardinality, int numRuns) {
+    switch (type) {
+      case ARRAY:
+        return ArrayContainer.BASE_RAM_BYTES_USED + RamUsageEstimator.alignObjectSize(RamUsageEstimator.NUM_BYTES_ARRAY_HEADER + 2L * cardinality);
+      case RUN:
+        return RunContainer.BASE_RAM_BYTES_USED + RamUsageEstimator.alignObjectSize(RamUsageEstimator.NUM_BYTES_ARRAY_HEADER + 4L * numRuns);
+      default:
+        return BitmapContainer.BASE_RAM_BYTES_USED + RamUsageEstimator.alignObjectSize(RamUsageEstimator.NUM_BYTES_ARRAY_HEADER + 8L * BITMAP_WORDS);
+    }
+  }
+
+  /** Returns the number of runs of consecutive set bits in the given words */
+  static int countRuns(long[] words, int offset, int numWords) {
+    int numRuns = 0;
+    long prev = 0;
+    for (int i = offset, end = offset + numWords; i < end; i++) {
+      final long word = words[i];
+      // bits that are set while the previous bit is not
+      numRuns += Long.bitCount(word & ~((word << 1) | (prev >>> 63)));
+      prev = word;
+    }
+    return numRuns;
+  }
+
+  /**
+   * Returns the smallest container for the bits of the given words, or null if none is set.
+   * Unless {@code copy} is false, the words are copied if a bitmap container is used.
+   */
+  static Container fromWords(long[] words, int offset, int numWords, boolean copy) {
+    final int cardinality = (int) BitUtil.pop_array(words, offset, numWords);
+    if (cardinality == 0) {
+      return null;
+    }
+    final int numRuns = countRuns(words, offset, numWords);
+    switch (containerType(cardinality, numRuns)) {
+      case ARRAY: {
+        final char[] values = new char[cardinality];
+        int n = 0;
+        for (int i = 0; i < numWords; i++) {
+          long word = words[offset + i];
+          while (word != 0) {
+            values[n++] = (char) ((i << 6) | Long.numberOfTrailingZeros(word));
+            word &= word - 1;
+          }
+        }
+        return new ArrayContainer(values);
+      }
+      case RUN: {
+        final char[] runs = new char[numRuns << 1];
+        final BitmapContainer bitmap = new BitmapContainer(words, offset, numWords, cardinality);
+        int n = 0;
+        for (int start = bitmap.nextSetBit(0); start != BLOCK_SIZE; ) {
+          final int end = bitmap.nextClearBit(start);
+          runs[n++] = (char) start;
+          runs[n++] = (char) (end - 1);
+          start = bitmap.nextSetBit(end);
+        }
+        return new RunContainer(runs, cardinality);
+      }
+      default: {
+        final long[] bitmap;
+        if (copy || offset != 0 || words.length != BITMAP_WORDS) {
+          bitmap = new long[BITMAP_WORDS];
+          System.arraycopy(words, offset, bitmap, 0, numWords);
+        } else {
+          bitmap = words;
+        }
+        return new BitmapContainer(bitmap, 0, BITMAP_WORDS, cardinality);
+      }
+    }
+  }
+
+  /** Returns the smallest container for the given range of docs, which must all share the same block */
+  static Container fromSortedLows(int[] docs, int from, int to) {
+    final int cardinality = to - from;
+    int numRuns = 1;
+    for (int i = from + 1; i < to; i++) {
+      if (docs[i] != docs[i - 1] + 1) numRuns++;
+    }
+    switch (containerType(cardinality, numRuns)) {
+      case ARRAY: {
+        final char[] values = new char[cardinality];
+        for (int i = from; i < to; i++) {
+          values[i - from] = (char) docs[i];
+        }
+        return new ArrayContainer(values);
+      }
+      case RUN: {
+        final char[] runs = new char[numRuns << 1];
+        int n = 0;
+        runs[n++] = (char) docs[from];
+        for (int i = from + 1; i < to; i++) {
+          if (docs[i] != docs[i - 1] + 1) {
+            runs[n++] = (char) docs[i - 1];
+            runs[n++] = (char) docs[i];
+          }
+        }
+        runs[n++] = (char) docs[to - 1];
+        return new RunContainer(runs, cardinality);
+      }
+      default: {
+        final long[] bitmap = new long[BITMAP_WORDS];
+        for (int i = from; i < to; i++) {
+          final int low = docs[i] & BLOCK_MASK;
+          bitmap[low >>> 6] |= 1L << low;
+        }
+        return new BitmapContainer(bitmap, 0, BITMAP_WORDS, cardinality);
+      }
+    }
+  }
+
+  /** Sets the bits in [from, to) */
+  static void setRange(long[] words, int from, int to) {
+    if (to <= from) return;
+    final int startWord = from >> 6;
+    final int endWord = (to - 1) >> 6;
+    final long startMask = -1L << from;
+    final long endMask = -1L >>> -to;
+    if (startWord == endWord) {
+      words[startWord] |= (startMask & endMask);
+      return;
+    }
+    words[startWord] |= startMask;
+    Arrays.fill(words, startWord + 1, endWord, -1L);
+    words[endWord] |= endMask;
+  }
+
+  /** Clears the bits in [from, to), ignoring bits that are beyond the end of the array */
+  static void clearRange(long[] words, int from, int to) {
+    to = (int) Math.min(to, (long) words.length << 6);
+    if (to <= from) return;
+    final int startWord = from >> 6;
+    final int endWord = (to - 1) >> 6;
+    final long startMask = ~(-1L << from);
+    final long endMask = ~(-1L >>> -to);
+    if (startWord == endWord) {
+      words[startWord] &= (startMask | endMask);
+      return;
+    }
+    words[startWord] &= startMask;
+    Arrays.fill(words, startWord + 1, endWord, 0L);
+    words[endWord] &= endMask;
+  }
+
+  /** Iterates over the documents of a container, which are identified by their 16 lowest bits. */
+  static abstract class Cursor {
+    /** Returns the next document, or {@link #BLOCK_SIZE} if there are none left */
+    abstract int nextDoc();
+
+    /** Returns the first document that is greater than or equal to the target, or {@link #BLOCK_SIZE} if there is none */
+    abstract int advance(int target);
+  }
+
+  /**
+   * The documents of a single block, identified by their 16 lowest bits. Containers
+   * are immutable, so that they can be shared across sets.
+   */
+  static abstract class Container implements Accountable {
+
+    abstract int cardinality();
+
+    abstract boolean contains(int low);
+
+    /** Returns the number of documents in [from, to) */
+    abstract int rangeCardinality(int from, int to);
+
+    /** Returns the largest document */
+    abstract int last();
+
+    /** Sets the bits of the documents, starting at word {@code offset} of the array */
+    abstract void orInto(long[] words, int offset);
+
+    /** Clears the bits of the documents, starting at word {@code offset} of the array */
+    abstract void andNotFrom(long[] words, int offset);
+
+    /** Clears the bits of a bitmap of {@link #BITMAP_WORDS} words that are not documents of this container */
+    abstract void andInto(long[] words);
+
+    abstract Cursor cursor();
+
+    abstract int andCardinality(Container other);
+
+    /** Returns a bitmap of {@link #BITMAP_WORDS} words with the documents of this container */
+    long[] toWords() {
+      final long[] words = new long[BITMAP_WORDS];
+      orInto(words, 0);
+      return words;
+    }
+
+    /** Returns the intersection with the other container, or null if it is empty */
+    Container and(Container other) {
+      if (other instanceof ArrayContainer) {
+        return other.and(this);
+      }
+      final long[] words = toWords();
+      other.andInto(words);
+      return fromWords(words, 0, BITMAP_WORDS, false);
+    }
+
+    /** Returns the union with the other container */
+    Container or(Container other) {
+      final long[] words = toWords();
+      other.orInto(words, 0);
+      return fromWords(words, 0, BITMAP_WORDS, false);
+    }
+
+    /** Returns the documents that are not in the other container, or null if there are none */
+    Container andNot(Container other) {
+      final long[] words = toWords();
+      other.andNotFrom(words, 0);
+      return fromWords(words, 0, BITMAP_WORDS, false);
+    }
+
+    @Override
+    public Collection<Accountable> getChildResources() {
+      return Collections.emptyList();
+    }
+  }
+
+  /** A sorted array of documents, for blocks with few documents. */
+  static final class ArrayContainer extends Container {
+    static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(ArrayContainer.class);
+
+    final char[] values;
+
+    ArrayContainer(char[] values) {
+      this.values = values;
+    }
+
+    @Override
+    int cardinality() {
+      return values.length;
+    }
+
+    @Override
+    boolean contains(int low) {
+      return Arrays.binarySearch(values, (char) low) >= 0;
+    }
+
+    /** Returns the index of the first value in [from, values.length) that is greater than or equal to the target */
+    int lowerBound(int from, int target) {
+      int low = from, high = values.length - 1;
+      while (low <= high) {
+        final int mid = (low + high) >>> 1;
+        if (values[mid] < target) {
+          low = mid + 1;
+        } else {
+          high = mid - 1;
+        }
+      }
+      return low;
+    }
+
+    @Override
+    int rangeCardinality(int from, int to) {
+      final int start = lowerBound(0, from);
+      return lowerBound(start, to) - start;
+    }
+
+    @Override
+    int last() {
+      return values[values.length - 1];
+    }
+
+    @Override
+    void orInto(long[] words, int offset) {
+      for (char value : values) {
+        words[offset + (value >>> 6)] |= 1L << value;
+      }
+    }
+
+    @Override
+    void andNotFrom(long[] words, int offset) {
+      for (char value : values) {
+        final int i = offset + (value >>> 6);
+        if (i >= words.length) break;
+        words[i] &= ~(1L << value);
+      }
+    }
+
+    @Override
+    void andInto(long[] words) {
+      final long[] mine = toWords();
+      for (int i = 0; i < BITMAP_WORDS; i++) {
+        words[i] &= mine[i];
+      }
+    }
+
+    @Override
+    Cursor cursor() {
+      return new Cursor() {
+        int index = 0;
+
+        @Override
+        int nextDoc() {
+          return index < values.length ? values[index++] : BLOCK_SIZE;
+        }
+
+        @Override
+        int advance(int target) {
+          index = lowerBound(index, target);
+          return nextDoc();
+        }
+      };
+    }
+
+    @Override
+    int andCardinality(Container other) {
+      int count = 0;
+      for (char value : values) {
+        if (other.contains(value)) count++;
+      }
+      return count;
+    }
+
+    @Override
+    Container and(Container other) {
+      final char[] newValues = new char[values.length];
+      int n = 0;
+      for (char value : values) {
+        if (other.contains(value)) newValues[n++] = value;
+      }
+      return n == 0 ? null : new ArrayContainer(n == values.length ? values : Arrays.copyOf(newValues, n));
+    }
+
+    @Override
+    Container or(Container other) {
+      if (other instanceof ArrayContainer && values.length + other.cardinality() <= MAX_ARRAY_SIZE) {
+        // merge both sorted arrays
+        final char[] otherValues = ((ArrayContainer) other).values;
+        final char[] newValues = new char[values.length + otherValues.length];
+        int i = 0, j = 0, n = 0;
+        while (i < values.length && j < otherValues.length) {
+          if (values[i] < otherValues[j]) {
+            newValues[n++] = values[i++];
+          } else if (values[i] > otherValues[j]) {
+            newValues[n++] = otherValues[j++];
+          } else {
+            newValues[n++] = values[i++];
+            j++;
+          }
+        }
+        while (i < values.length) newValues[n++] = values[i++];
+        while (j < otherValues.length) newValues[n++] = otherValues[j++];
+        return new ArrayContainer(n == newValues.length ? newValues : Arrays.copyOf(newValues, n));
+      }
+      return super.or(other);
+    }
+
+    @Override
+    Container andNot(Container other) {
+      final char[] newValues = new char[values.length];
+      int n = 0;
+      for (char value : values) {
+        if (!other.contains(value)) newValues[n++] = value;
+      }
+      return n == 0 ? null : new ArrayContainer(n == values.length ? values : Arrays.copyOf(newValues, n));
+    }
+
+    @Override
+    public long ramBytesUsed() {
+      return BASE_RAM_BYTES_USED + RamUsageEstimator.sizeOf(values);
+    }
+  }
+
+  /**
+   * A bitmap of the documents, for dense blocks. This may also be a read-only
+   * view over a block of a larger bit set, in which case the words past
+   * {@code numWords} are considered to be zero.
+   */
+  static final class BitmapContainer extends Container {
+    static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(BitmapContainer.class);
+
+    final long[] words;
+    final int offset;
+    final int numWords;
+    private int cardinality;  // -1 if not computed yet
+
+    BitmapContainer(long[] words, int offset, int numWords, int cardinality) {
+      this.words = words;
+      this.offset = offset;
+      this.numWords = numWords;
+      this.cardinality = cardinality;
+    }
+
+    long word(int i) {
+      return i < numWords ? words[offset + i] : 0L;
+    }
+
+    @Override
+    int cardinality() {
+      if (cardinality == -1) {
+        cardinality = (int) BitUtil.pop_array(words, offset, numWords);
+      }
+      return cardinality;
+    }
+
+    @Override
+    boolean contains(int low) {
+      return (word(low >>> 6) & (1L << low)) != 0;
+    }
+
+    @Override
+    int rangeCardinality(int from, int to) {
+      if (to <= from) return 0;
+      final int startWord = from >>> 6;
+      final int endWord = (to - 1) >>> 6;
+      final long startMask = -1L << from;
+      final long endMask = -1L >>> -to;
+      if (startWord == endWord) {
+        return Long.bitCount(word(startWord) & startMask & endMask);
+      }
+      int count = Long.bitCount(word(startWord) & startMask);
+      for (int i = startWord + 1; i < endWord; i++) {
+        count += Long.bitCount(word(i));
+      }
+      return count + Long.bitCount(word(endWord) & endMask);
+    }
+
+    /** Returns the first set bit at or after the given index, or {@link #BLOCK_SIZE} if there is none */
+    int nextSetBit(int index) {
+      int i = index >>> 6;
+      if (i >= numWords) return BLOCK_SIZE;
+      long word = words[offset + i] >>> index;
+      if (word != 0) {
+        return index + Long.numberOfTrailingZeros(word);
+      }
+      while (++i < numWords) {
+        word = words[offset + i];
+        if (word != 0) {
+          return (i << 6) + Long.numberOfTrailingZeros(word);
+        }
+      }
+      return BLOCK_SIZE;
+    }
+
+    /** Returns the first clear bit at or after the given index, or {@link #BLOCK_SIZE} if there is none */
+    int nextClearBit(int index) {
+      int i = index >>> 6;
+      if (i >= numWords) return index;
+      long word = ~words[offset + i] >>> index;
+      if (word != 0) {
+        return Math.min(BLOCK_SIZE, index + Long.numberOfTrailingZeros(word));
+      }
+      while (++i < numWords) {
+        word = ~words[offset + i];
+        if (word != 0) {
+          return (i << 6) + Long.numberOfTrailingZeros(word);
+        }
+      }
+      return Math.min(BLOCK_SIZE, numWords << 6);
+    }
+
+    @Override
+    int last() {
+      for (int i = numWords - 1; i >= 0; i--) {
+        final long word = words[offset + i];
+        if (word != 0) {
+          return (i << 6) + 63 - Long.numberOfLeadingZeros(word);
+        }
+      }
+      throw new IllegalStateException("empty container");
+    }
+
+    @Override
+    void orInto(long[] target, int targetOffset) {
+      final int n = Math.min(numWords, target.length - targetOffset);
+      for (int i = 0; i < n; i++) {
+        target[targetOffset + i] |= words[offset + i];
+      }
+    }
+
+    @Override
+    void andNotFrom(long[] target, int targetOffset) {
+      final int n = Math.min(numWords, target.length - targetOffset);
+      for (int i = 0; i < n; i++) {
+        target[targetOffset + i] &= ~words[offset + i];
+      }
+    }
+
+    @Override
+    void andInto(long[] target) {
+      for (int i = 0; i < BITMAP_WORDS; i++) {
+        target[i] &= word(i);
+      }
+    }
+
+    @Override
+    Cursor cursor() {
+      return new Cursor() {
+        int doc = -1;
+
+        @Override
+        int nextDoc() {
+          return advance(doc + 1);
+        }
+
+        @Override
+        int advance(int target) {
+          return doc = target >= BLOCK_SIZE ? BLOCK_SIZE : nextSetBit(target);
+        }
+      };
+    }
+
+    @Override
+    int andCardinality(Container other) {
+      if (other instanceof BitmapContainer) {
+        final BitmapContainer o = (BitmapContainer) other;
+        int count = 0;
+        for (int i = 0, n = Math.min(numWords, o.numWords); i < n; i++) {
+          count += Long.bitCount(words[offset + i] & o.words[o.offset + i]);
+        }
+        return count;
+      }
+      return other.andCardinality(this);
+    }
+
+    @Override
+    public long ramBytesUsed() {
+      return BASE_RAM_BYTES_USED + RamUsageEstimator.sizeOf(words);
+    }
+  }
+
+  /** A list of runs of consecutive documents, for clustered blocks. */
+  static final class RunContainer extends Container {
+    static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(RunContainer.class);
+
+    final char[] runs;  // first and last document of each run
+    private final int cardinality;
+
+    RunContainer(char[] runs, int cardinality) {
+      this.runs = runs;
+      this.cardinality = cardinality;
+    }
+
+    int numRuns() {
+      return runs.length >>> 1;
+    }
+
+    /** Returns the index of the first run that ends at or after the given document */
+    int firstRunEndingAtOrAfter(int low) {
+      int lo = 0, hi = numRuns() - 1;
+      while (lo <= hi) {
+        final int mid = (lo + hi) >>> 1;
+        if (runs[(mid << 1) + 1] < low) {
+          lo = mid + 1;
+        } else {
+          hi = mid - 1;
+        }
+      }
+      return lo;
+    }
+
+    @Override
+    int cardinality() {
+      return cardinality;
+    }
+
+    @Override
+    boolean contains(int low) {
+      final int i = firstRunEndingAtOrAfter(low);
+      return i < numRuns() && runs[i << 1] <= low;
+    }
+
+    @Override
+    int rangeCardinality(int from, int to) {
+      int count = 0;
+      for (int i = firstRunEndingAtOrAfter(from), n = numRuns(); i < n; i++) {
+        final int start = runs[i << 1];
+        if (start >= to) break;
+        count += Math.min(runs[(i << 1) + 1] + 1, to) - Math.max(start, from);
+      }
+      return count;
+    }
+
+    @Override
+    int last() {
+      return runs[runs.length - 1];
+    }
+
+    @Override
+    void orInto(long[] words, int offset) {
+      final int base = offset << 6;
+      for (int i = 0; i < runs.length; i += 2) {
+        setRange(words, base + runs[i], base + runs[i + 1] + 1);
+      }
+    }
+
+    @Override
+    void andNotFrom(long[] words, int offset) {
+      final int base = offset << 6;
+      for (int i = 0; i < runs.length; i += 2) {
+        clearRange(words, base + runs[i], base + runs[i + 1] + 1);
+      }
+    }
+
+    @Override
+    void andInto(long[] words) {
+      int prevEnd = 0;
+      for (int i = 0; i < runs.length; i += 2) {
+        clearRange(words, prevEnd, runs[i]);
+        prevEnd = runs[i + 1] + 1;
+      }
+      clearRange(words, prevEnd, BLOCK_SIZE);
+    }
+
+    @Override
+    Cursor cursor() {
+      return new Cursor() {
+        int run = 0;
+        int doc = -1;
+
+        @Override
+        int nextDoc() {
+          return advance(doc + 1);
+        }
+
+        @Override
+        int advance(int target) {
+          final int n = numRuns();
+          while (run < n && runs[(run << 1) + 1] < target) {
+            run++;
+          }
+          return doc = run == n ? BLOCK_SIZE : Math.max(target, runs[run << 1]);
+        }
+      };
+    }
+
+    @Override
+    int andCardinality(Container other) {
+      if (other instanceof ArrayContainer) {
+        return other.andCardinality(this);
+      }
+      int count = 0;
+      for (int i = 0; i < runs.length; i += 2) {
+        count += other.rangeCardinality(runs[i], runs[i + 1] + 1);
+      }
+      return count;
+    }
+
+    @Override
+    public long ramBytesUsed() {
+      return BASE_RAM_BYTES_USED + RamUsageEstimator.sizeOf(runs);
+    }
+  }
+}
@@ -16,14 +16,25 @@
  */
 package org.apache.solr.search;
 
+import java.lang.invoke.MethodHandles;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.apache.solr.common.SolrException;
 import org.apache.solr.core.SolrCore;
 import org.apache.solr.core.SolrInfoMBean.Category;
 import org.apache.solr.search.SolrCache.State;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import static org.apache.solr.common.params.CommonParams.NAME;
 
@@ -31,6 +42,7 @@ import static org.apache.solr.common.params.CommonParams.NAME;
  * Common base class of reusable functionality for SolrCaches
  */
 public abstract class SolrCacheBase {
+  private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
    
   protected CacheRegenerator regenerator;
   
@@ -126,6 +138,95 @@ public abstract class SolrCacheBase {
     return autowarm.isAutoWarmingOn();
   }
   
+  /**
+   * Regenerates entries of an old cache into a new cache with the given regenerator. Entries must
+   * be ordered from the most valuable (most recently or most frequently used) to the least
+   * valuable one.
+   * <p>
+   * By default, entries are regenerated on the calling thread from the least to the most
+   * valuable one, so that the most valuable entries are also the most recently inserted ones in
+   * the new cache. If the searcher is configured to autowarm with several threads
+   * (<code>autowarmThreads</code>) or within a time budget (<code>maxAutowarmTimeMs</code>), the
+   * most valuable entries are regenerated first instead, and the entries that are left when the
+   * budget is exhausted are skipped. Regenerators must then be thread-safe. Caches that evict
+   * the least recently used entries pass <code>retouch=true</code>, so that the regenerated
+   * entries are then looked up and inserted again from the least to the most valuable one: the
+   * most valuable entries end up being the most recently used ones, at the cost of one more put
+   * per regenerated entry.
+   */
+  public static <K,V> void regenerateItems(CacheRegenerator regenerator, SolrIndexSearcher searcher,
+                                           SolrCache<K,V> newCache, SolrCache<K,V> oldCache,
+                                           List<Map.Entry<K,V>> items, boolean retouch) {
+    if (searcher == null || (searcher.getWarmingExecutor() == null && searcher.hasWarmingDeadline() == false)) {
+      for (int i = items.size() - 1; i >= 0; i--) {
+        if (!regenerateItem(regenerator, searcher, newCache, oldCache, items.get(i))) break;
+      }
+      return;
+    }
+
+    final ExecutorService executor = searcher.getWarmingExecutor();
+    final AtomicBoolean stop = new AtomicBoolean();
+    final AtomicInteger regenerated = new AtomicInteger();
+    final List<Future<?>> futures = new ArrayList<>();
+    for (Map.Entry<K,V> item : items) {
+      final Runnable task = () -> {
+        if (stop.get()) return;
+        if (searcher.isWarmingTimeExceeded()) {
+          stop.set(true);
+          return;
+        }
+        regenerated.incrementAndGet();
+        if (!regenerateItem(regenerator, searcher, newCache, oldCache, item)) stop.set(true);
+      };
+      if (executor == null) {
+        task.run();
+        if (stop.get()) break;
+      } else {
+        futures.add(executor.submit(() -> {
+          if (!stop.get()) searcher.runWithWarmingRequest(task);
+        }));
+      }
+    }
+
+    for (Future<?> future : futures) {
+      try {
+        future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        stop.set(true);
+        break;
+      } catch (ExecutionException e) {
+        SolrException.log(log, "Error during auto-warming of " + newCache.name(), e.getCause());
+      }
+    }
+
+    if (regenerated.get() < items.size() && searcher.isWarmingTimeExceeded()) {
+      log.warn("Autowarming of cache [{}] took more than maxAutowarmTimeMs, only {} out of {} entries were regenerated",
+          newCache.name(), regenerated.get(), items.size());
+    }
+
+    if (retouch) {
+      // the most valuable entries were inserted first, so they would be evicted first
+      for (int i = items.size() - 1; i >= 0; i--) {
+        final K key = items.get(i).getKey();
+        final V value = newCache.get(key);
+        if (value != null) {
+          newCache.put(key, value);
+        }
+      }
+    }
+  }
+
+  private static <K,V> boolean regenerateItem(CacheRegenerator regenerator, SolrIndexSearcher searcher,
+                                              SolrCache<K,V> newCache, SolrCache<K,V> oldCache, Map.Entry<K,V> item) {
+    try {
+      return regenerator.regenerateItem(searcher, newCache, oldCache, item.getKey(), item.getValue());
+    } catch (Exception e) {
+      SolrException.log(log, "Error during auto-warming of key:" + item.getKey(), e);
+      return true;
+    }
+  }
+
   public void setState(State state) {
     this.state = state;
   }
@@ -34,6 +34,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -45,16 +48,19 @@ import org.apache.lucene.document.DocumentStoredFieldVisitor;
 import org.apache.lucene.document.LazyDocument;
 import org.apache.lucene.index.*;
 import org.apache.lucene.index.StoredFieldVisitor.Status;
+import org.apache.lucene.queries.TermsQuery;
 import org.apache.lucene.search.*;
 import org.apache.lucene.search.BooleanClause.Occur;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.util.Bits;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.ThreadInterruptedException;
 import org.apache.solr.common.SolrDocumentBase;
 import org.apache.solr.common.SolrException;
 import org.apache.solr.common.SolrException.ErrorCode;
 import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.common.util.ExecutorUtil;
 import org.apache.solr.common.util.NamedList;
 import org.apache.solr.common.util.SimpleOrderedMap;
 import org.apache.solr.core.DirectoryFactory;
@@ -80,6 +86,7 @@ import org.apache.solr.search.stats.StatsSource;
 import org.apache.solr.uninverting.UninvertingReader;
 import org.apache.solr.update.IndexFingerprint;
 import org.apache.solr.update.SolrIndexConfig;
+import org.apache.solr.util.DefaultSolrThreadFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -117,6 +124,8 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
 
   private final boolean cachingEnabled;
   private final SolrCache<Query,DocSet> filterCache;
+  // per-segment filter results shared with other searchers of the same core, or null
+  private final LRUQueryCache segmentFilterCache;
   private final SolrCache<QueryResultKey,DocList> queryResultCache;
   private final SolrCache<Integer,Document> documentCache;
   private final SolrCache<String,UnInvertedField> fieldValueCache;
@@ -127,6 +136,16 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
   // list of all caches associated with this searcher.
   private final SolrCache[] cacheList;
 
+  // only set while the caches are being autowarmed, see SolrCacheBase#regenerateItems
+  private ExecutorService warmingExecutor;
+  private long warmingDeadline;
+  private boolean hasWarmingDeadline = false;
+
+  // slices of the index that are searched concurrently, null if searches are sequential
+  private final ExecutorService searchExecutor;
+  private final LeafSlice[] searchSlices;
+  private final int[] searchSliceMinDocs; // the first doc ID of each slice
+
   private final FieldInfos fieldInfos;
 
   /** Contains the names/patterns of all docValues=true,stored=false fields in the schema. */
@@ -272,6 +291,12 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
     this.queryResultMaxDocsCached = solrConfig.queryResultMaxDocsCached;
     this.useFilterForSortedQuery = solrConfig.useFilterForSortedQuery;
     this.enableLazyFieldLoading = solrConfig.enableLazyFieldLoading;
+    final ExecutorService searchExecutor = core.getSearchExecutor();
+    final List<Integer> sliceMinDocs = new ArrayList<>();
+    this.searchSlices = searchExecutor == null ? null
+        : searchSlices(leafContexts, maxDoc(), solrConfig.searchThreads, solrConfig.minDocsPerSearchSlice, sliceMinDocs);
+    this.searchSliceMinDocs = sliceMinDocs.stream().mapToInt(Integer::intValue).toArray();
+    this.searchExecutor = searchSlices == null ? null : searchExecutor;
 
     this.cachingEnabled = enableCache;
     if (cachingEnabled) {
@@ -281,6 +306,7 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
       if (fieldValueCache != null) clist.add(fieldValueCache);
       filterCache = solrConfig.filterCacheConfig == null ? null : solrConfig.filterCacheConfig.newInstance();
       if (filterCache != null) clist.add(filterCache);
+      segmentFilterCache = core.getSegmentFilterCache();
       queryResultCache = solrConfig.queryResultCacheConfig == null ? null
           : solrConfig.queryResultCacheConfig.newInstance();
       if (queryResultCache != null) clist.add(queryResultCache);
@@ -303,6 +329,7 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
       cacheList = clist.toArray(new SolrCache[clist.size()]);
     } else {
       this.filterCache = null;
+      this.segmentFilterCache = null;
       this.queryResultCache = null;
       this.documentCache = null;
       this.fieldValueCache = null;
@@ -594,6 +621,169 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
     return qr;
   }
 
+  /**
+   * Splits the index into at most <code>numSlices</code> slices of consecutive doc IDs that hold at
+   * least <code>minDocsPerSlice</code> documents each. Segments that are larger than a slice are
+   * split into several partitions. Returns null if the index is too small to be split, otherwise
+   * the first doc ID of each slice is added to <code>sliceMinDocs</code>.
+   */
+  private static LeafSlice[] searchSlices(List<LeafReaderContext> leaves, int maxDoc, int numSlices,
+      int minDocsPerSlice, List<Integer> sliceMinDocs) {
+    numSlices = Math.min(numSlices, maxDoc / minDocsPerSlice);
+    if (numSlices <= 1) {
+      return null;
+    }
+    final long docsPerSlice = ((long) maxDoc + numSlices - 1) / numSlices;
+    final List<LeafSlice> slices = new ArrayList<>(numSlices);
+    final List<LeafReaderContextPartition> partitions = new ArrayList<>();
+    long sliceDocs = 0;
+    for (LeafReaderContext ctx : leaves) {
+      final int leafMaxDoc = ctx.reader().maxDoc();
+      int minDocId = 0;
+      while (minDocId < leafMaxDoc) {
+        final int maxDocId = (int) Math.min(leafMaxDoc, minDocId + docsPerSlice - sliceDocs);
+        if (partitions.isEmpty()) {
+          sliceMinDocs.add(ctx.docBase + minDocId);
+        }
+        partitions.add(minDocId == 0 && maxDocId == leafMaxDoc
+            ? LeafReaderContextPartition.createForEntireLeaf(ctx)
+            : LeafReaderContextPartition.createFromAndTo(ctx, minDocId, maxDocId));
+        sliceDocs += maxDocId - minDocId;
+        minDocId = maxDocId;
+        if (sliceDocs >= docsPerSlice) {
+          slices.add(new LeafSlice(partitions.toArray(new LeafReaderContextPartition[partitions.size()])));
+          partitions.clear();
+          sliceDocs = 0;
+        }
+      }
+    }
+    if (partitions.isEmpty() == false) {
+      slices.add(new LeafSlice(partitions.toArray(new LeafReaderContextPartition[partitions.size()])));
+    }
+    return slices.toArray(new LeafSlice[slices.size()]);
+  }
+
+  /**
+   * Searches the slices of the index concurrently with the core's search executor if
+   * <code>searchThreads</code> is greater than 1, or all leaves sequentially otherwise. The calling
+   * thread searches the first slice itself. Slices hold consecutive doc IDs, so the collectors that
+   * are passed to {@link CollectorManager#reduce} are in doc ID order.
+   */
+  @Override
+  public <C extends Collector, T> T search(Query query, CollectorManager<C, T> collectorManager) throws IOException {
+    if (searchSlices == null) {
+      return super.search(query, collectorManager);
+    }
+
+    final List<C> collectors = new ArrayList<>(searchSlices.length);
+    boolean needsScores = false;
+    for (int i = 0; i < searchSlices.length; ++i) {
+      final C collector = collectorManager.newCollector();
+      if (collector instanceof DocSetCollector.SliceCollector) {
+        final int sliceMaxDoc = i + 1 < searchSlices.length ? searchSliceMinDocs[i + 1] : maxDoc();
+        ((DocSetCollector.SliceCollector) collector).setSlice(searchSliceMinDocs[i], sliceMaxDoc);
+      }
+      collectors.add(collector);
+      needsScores |= collector.needsScores();
+    }
+    final Weight weight = createNormalizedWeight(query, needsScores);
+
+    final List<Future<?>> futures = new ArrayList<>(searchSlices.length - 1);
+    for (int i = 1; i < searchSlices.length; ++i) {
+      final LeafSlice slice = searchSlices[i];
+      final C collector = collectors.get(i);
+      futures.add(searchExecutor.submit(() -> {
+        search(slice, weight, collector);
+        return null;
+      }));
+    }
+    search(searchSlices[0], weight, collectors.get(0));
+    for (Future<?> future : futures) {
+      try {
+        future.get();
+      } catch (InterruptedException e) {
+        throw new ThreadInterruptedException(e);
+      } catch (ExecutionException e) {
+        final Throwable cause = e.getCause();
+        if (cause instanceof IOException) {
+          throw (IOException) cause;
+        } else if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        } else if (cause instanceof Error) {
+          throw (Error) cause;
+        }
+        throw new SolrException(ErrorCode.SERVER_ERROR, cause);
+      }
+    }
+    return collectorManager.reduce(collectors);
+  }
+
+  /**
+   * Returns true if the main query of the command can be collected with a {@link CollectorManager}
+   * on several slices concurrently. Post filters, time limits, early termination and rank queries
+   * rely on a single collector that sees all documents, so they are always collected sequentially.
+   * So are function queries and function sorts, whose value sources share a mutable context across
+   * segments, see {@link #isSafeForConcurrentSearch(Query)}.
+   */
+  private boolean canSearchConcurrently(QueryCommand cmd, ProcessedFilter pf) {
+    return searchSlices != null && pf.postFilter == null && cmd.getTimeAllowed() <= 0
+        && !cmd.getTerminateEarly() && !cmd.getSegmentTerminateEarly()
+        && !(cmd.getQuery() instanceof RankQuery)
+        && isSafeForConcurrentSearch(cmd.getQuery()) && isSafeForConcurrentSearch(cmd.getSort());
+  }
+
+  /**
+   * Returns true if the weight of the query may be shared by threads that search different slices.
+   * This is only known for core queries, whose weights are immutable once created, and queries that
+   * combine them. Other queries, like function queries that lazily fill a context that is shared
+   * across segments (eg. scale()), are searched sequentially.
+   */
+  private static boolean isSafeForConcurrentSearch(Query query) {
+    if (query instanceof BooleanQuery) {
+      for (BooleanClause clause : (BooleanQuery) query) {
+        if (!isSafeForConcurrentSearch(clause.getQuery())) {
+          return false;
+        }
+      }
+      return true;
+    } else if (query instanceof DisjunctionMaxQuery) {
+      for (Query disjunct : (DisjunctionMaxQuery) query) {
+        if (!isSafeForConcurrentSearch(disjunct)) {
+          return false;
+        }
+      }
+      return true;
+    } else if (query instanceof BoostQuery) {
+      return isSafeForConcurrentSearch(((BoostQuery) query).getQuery());
+    } else if (query instanceof ConstantScoreQuery) {
+      return isSafeForConcurrentSearch(((ConstantScoreQuery) query).getQuery());
+    } else if (query instanceof WrappedQuery) {
+      return isSafeForConcurrentSearch(((WrappedQuery) query).getWrappedQuery());
+    } else if (query instanceof IndexOrDocValuesQuery) {
+      return isSafeForConcurrentSearch(((IndexOrDocValuesQuery) query).getIndexQuery())
+          && isSafeForConcurrentSearch(((IndexOrDocValuesQuery) query).getRandomAccessQuery());
+    }
+    return query instanceof TermQuery || query instanceof PhraseQuery || query instanceof MultiPhraseQuery
+        || query instanceof SynonymQuery || query instanceof MultiTermQuery || query instanceof PointRangeQuery
+        || query instanceof PointInSetQuery || query instanceof TermsQuery || query instanceof FieldValueQuery
+        || query instanceof MatchAllDocsQuery || query instanceof MatchNoDocsQuery;
+  }
+
+  /**
+   * Returns false if the sort has fields that need to be rewritten, like function sorts, whose
+   * comparators share the context of their value source.
+   */
+  private static boolean isSafeForConcurrentSearch(Sort sort) {
+    if (sort != null) {
+      for (SortField sortField : sort.getSort()) {
+        if (sortField.getType() == SortField.Type.REWRITEABLE) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
   // FIXME: This option has been dead/noop since 3.1, should we re-enable or remove it?
   // public Hits search(Query query, Filter filter, Sort sort) throws IOException {
   // // todo - when Solr starts accepting filters, need to
@@ -1350,9 +1540,57 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
 
   // query must be positive
   protected DocSet getDocSetNC(Query query, DocSet filter) throws IOException {
+    if (filter == null && segmentFilterCache != null && isSegmentLocal(query)) {
+      return getDocSetPerSegment(query);
+    }
     return DocSetUtil.createDocSet(this, query, filter);
   }
 
+  /**
+   * Computes the set of documents matching the query one segment at a time, reusing the
+   * matches of segments that are already in the core's per-segment filter cache. Those
+   * entries are keyed by segment core and ignore deletions (live docs are applied while
+   * collecting), so only segments that were added since the previous searcher need to run
+   * the query.
+   */
+  private DocSet getDocSetPerSegment(Query query) throws IOException {
+    final Weight weight = segmentFilterCache.doCache(createNormalizedWeight(query, false), QueryCachingPolicy.ALWAYS_CACHE);
+    final DocSetCollector collector = new DocSetCollector(maxDoc());
+    search(leafContexts, weight, collector);
+    return collector.getDocSet();
+  }
+
+  /**
+   * Returns true if the matches of the query in a segment only depend on that segment, which
+   * is a prerequisite for caching them across searchers. Queries such as joins or function
+   * queries whose results depend on the other segments or on external state always use the
+   * top-level filter cache only.
+   */
+  private static boolean isSegmentLocal(Query query) {
+    if (query instanceof TermQuery
+        || query instanceof MultiTermQuery
+        || query instanceof PointRangeQuery
+        || query instanceof PointInSetQuery
+        || query instanceof TermsQuery
+        || query instanceof MatchAllDocsQuery) {
+      return true;
+    } else if (query instanceof BoostQuery) {
+      return isSegmentLocal(((BoostQuery) query).getQuery());
+    } else if (query instanceof ConstantScoreQuery) {
+      return isSegmentLocal(((ConstantScoreQuery) query).getQuery());
+    } else if (query instanceof WrappedQuery) {
+      return isSegmentLocal(((WrappedQuery) query).getWrappedQuery());
+    } else if (query instanceof BooleanQuery) {
+      for (BooleanClause clause : (BooleanQuery) query) {
+        if (!isSegmentLocal(clause.getQuery())) {
+          return false;
+        }
+      }
+      return true;
+    }
+    return false;
+  }
+
   /**
    * Returns the set of document ids matching both the query and the filter. This method is cache-aware and attempts to
    * retrieve the answer from the cache if possible. If the answer was not cached, it may have been inserted into the
@@ -1700,6 +1938,50 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
     }
   }
 
+  /**
+   * Builds a {@link CollectorManager} that collects the top documents of each slice like
+   * {@link #buildTopDocsCollector(int, QueryCommand)} and merges them with
+   * {@link TopDocs#merge}. Sort values are always filled since merging sorted hits needs them.
+   */
+  private CollectorManager<TopDocsCollector,TopDocs> buildTopDocsCollectorManager(int len, QueryCommand cmd)
+      throws IOException {
+    final int numHits = Math.min(len, maxDoc());
+    final boolean needScores = (cmd.getFlags() & GET_SCORES) != 0;
+    final Sort weightedSort = cmd.getSort() == null ? null : weightSort(cmd.getSort());
+    final CursorMark cursor = cmd.getCursorMark();
+    final FieldDoc searchAfter = (null != cursor ? cursor.getSearchAfterFieldDoc() : null);
+
+    return new CollectorManager<TopDocsCollector,TopDocs>() {
+      @Override
+      public TopDocsCollector newCollector() throws IOException {
+        if (weightedSort == null) {
+          assert null == cursor : "have cursor but no sort";
+          return TopScoreDocCollector.create(numHits);
+        }
+        return TopFieldCollector.create(weightedSort, numHits, searchAfter, true, needScores, needScores);
+      }
+
+      @Override
+      public TopDocs reduce(Collection<TopDocsCollector> collectors) throws IOException {
+        if (weightedSort == null) {
+          final TopDocs[] topDocs = new TopDocs[collectors.size()];
+          int i = 0;
+          for (TopDocsCollector collector : collectors) {
+            topDocs[i++] = collector.topDocs();
+          }
+          return TopDocs.merge(numHits, topDocs);
+        } else {
+          final TopFieldDocs[] topDocs = new TopFieldDocs[collectors.size()];
+          int i = 0;
+          for (TopDocsCollector collector : collectors) {
+            topDocs[i++] = (TopFieldDocs) collector.topDocs();
+          }
+          return TopDocs.merge(weightedSort, numHits, topDocs);
+        }
+      }
+    };
+  }
+
   private void getDocListNC(QueryResult qr, QueryCommand cmd) throws IOException {
     int len = cmd.getSupersetMaxDoc();
     int last = len;
@@ -1721,7 +2003,19 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
     }
 
     // handle zero case...
-    if (lastDocRequested <= 0) {
+    if (lastDocRequested <= 0 && !needScores && pf.postFilter == null && cmd.getTimeAllowed() <= 0
+        && !cmd.getTerminateEarly() && !cmd.getSegmentTerminateEarly()) {
+      // only the number of matches is needed, which some segments can
+      // compute without iterating over matches
+      nDocsReturned = 0;
+      ids = new int[nDocsReturned];
+      scores = new float[nDocsReturned];
+      totalHits = super.count(query);
+      // same as the collector-based path below, which never sees scores
+      maxScore = totalHits > 0 ? Float.NEGATIVE_INFINITY : 0.0f;
+      // no docs on this page, so cursor doesn't change
+      qr.setNextCursorMark(cmd.getCursorMark());
+    } else if (lastDocRequested <= 0) {
       final float[] topscore = new float[] {Float.NEGATIVE_INFINITY};
       final int[] numHits = new int[1];
 
@@ -1772,12 +2066,18 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
       // no docs on this page, so cursor doesn't change
       qr.setNextCursorMark(cmd.getCursorMark());
     } else {
-      final TopDocsCollector topCollector = buildTopDocsCollector(len, cmd);
-      Collector collector = topCollector;
-      buildAndRunCollectorChain(qr, query, collector, cmd, pf.postFilter);
+      final TopDocs topDocs;
+      if (canSearchConcurrently(cmd, pf)) {
+        topDocs = search(query, buildTopDocsCollectorManager(len, cmd));
+        totalHits = topDocs.totalHits;
+      } else {
+        final TopDocsCollector topCollector = buildTopDocsCollector(len, cmd);
+        Collector collector = topCollector;
+        buildAndRunCollectorChain(qr, query, collector, cmd, pf.postFilter);
 
-      totalHits = topCollector.getTotalHits();
-      TopDocs topDocs = topCollector.topDocs(0, len);
+        totalHits = topCollector.getTotalHits();
+        topDocs = topCollector.topDocs(0, len);
+      }
       populateNextCursorMarkFromTopDocs(qr, cmd, topDocs);
 
       maxScore = totalHits > 0 ? topDocs.getMaxScore() : 0.0f;
@@ -1820,7 +2120,17 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
     }
 
     // handle zero case...
-    if (lastDocRequested <= 0) {
+    if (lastDocRequested <= 0 && !needScores && canSearchConcurrently(cmd, pf)) {
+      set = search(query, DocSetCollector.newCollectorManager(maxDoc));
+
+      nDocsReturned = 0;
+      ids = new int[nDocsReturned];
+      scores = new float[nDocsReturned];
+      totalHits = set.size();
+      maxScore = totalHits > 0 ? Float.NEGATIVE_INFINITY : 0.0f;
+      // no docs on this page, so cursor doesn't change
+      qr.setNextCursorMark(cmd.getCursorMark());
+    } else if (lastDocRequested <= 0) {
       final float[] topscore = new float[] {Float.NEGATIVE_INFINITY};
 
       Collector collector;
@@ -1864,6 +2174,44 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
       maxScore = totalHits > 0 ? topscore[0] : 0.0f;
       // no docs on this page, so cursor doesn't change
       qr.setNextCursorMark(cmd.getCursorMark());
+    } else if (canSearchConcurrently(cmd, pf)) {
+
+      final CollectorManager<TopDocsCollector,TopDocs> topManager = buildTopDocsCollectorManager(len, cmd);
+      final TopDocs[] topDocsHolder = new TopDocs[1];
+      set = search(query, new CollectorManager<TopDocsAndSetCollector,DocSet>() {
+        @Override
+        public TopDocsAndSetCollector newCollector() throws IOException {
+          return new TopDocsAndSetCollector(topManager.newCollector(), new DocSetCollector.SliceCollector(maxDoc));
+        }
+
+        @Override
+        public DocSet reduce(Collection<TopDocsAndSetCollector> collectors) throws IOException {
+          final List<TopDocsCollector> topCollectors = new ArrayList<>(collectors.size());
+          final List<DocSetCollector> setCollectors = new ArrayList<>(collectors.size());
+          for (TopDocsAndSetCollector collector : collectors) {
+            topCollectors.add(collector.topCollector);
+            setCollectors.add(collector.setCollector);
+          }
+          topDocsHolder[0] = topManager.reduce(topCollectors);
+          return DocSetCollector.getDocSet(setCollectors);
+        }
+      });
+
+      final TopDocs topDocs = topDocsHolder[0];
+      totalHits = topDocs.totalHits;
+      assert (totalHits == set.size());
+
+      populateNextCursorMarkFromTopDocs(qr, cmd, topDocs);
+      maxScore = totalHits > 0 ? topDocs.getMaxScore() : 0.0f;
+      nDocsReturned = topDocs.scoreDocs.length;
+
+      ids = new int[nDocsReturned];
+      scores = (cmd.getFlags() & GET_SCORES) != 0 ? new float[nDocsReturned] : null;
+      for (int i = 0; i < nDocsReturned; i++) {
+        ScoreDoc scoreDoc = topDocs.scoreDocs[i];
+        ids[i] = scoreDoc.doc;
+        if (scores != null) scores[i] = scoreDoc.score;
+      }
     } else {
 
       final TopDocsCollector topCollector = buildTopDocsCollector(len, cmd);
@@ -2173,7 +2521,7 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
     }
 
     // bit of a hack to tell if a set is sorted - do it better in the future.
-    boolean inOrder = set instanceof BitDocSet || set instanceof SortedIntDocSet;
+    boolean inOrder = set instanceof BitDocSet || set instanceof SortedIntDocSet || set instanceof RoaringDocSet;
 
     TopDocsCollector topCollector = buildTopDocsCollector(nDocs, cmd);
 
@@ -2224,6 +2572,10 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
       Query absQ = QueryUtils.getAbs(a);
       DocSet positiveA = getPositiveDocSet(absQ);
       return a == absQ ? b.intersectionSize(positiveA) : b.andNotSize(positiveA);
+    } else if (b == liveDocs && a == QueryUtils.getAbs(a)) {
+      // b matches all live docs, so this is the number of matches of a,
+      // which some segments can count without iterating over matches
+      return super.count(a);
     } else {
       // If there isn't a cache, then do a single filtered query
       // NOTE: we cannot use FilteredQuery, because BitDocSet assumes it will never
@@ -2300,42 +2652,92 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
   public void warm(SolrIndexSearcher old) {
     // Make sure this is first! filters can help queryResults execute!
     long warmingStartTime = System.nanoTime();
-    // warm the caches in order...
+    final SolrConfig solrConfig = core.getSolrConfig();
+    if (solrConfig.maxAutowarmTimeMs >= 0) {
+      warmingDeadline = warmingStartTime + TimeUnit.MILLISECONDS.toNanos(solrConfig.maxAutowarmTimeMs);
+      hasWarmingDeadline = true;
+    }
+    if (solrConfig.autowarmThreads > 1) {
+      warmingExecutor = ExecutorUtil.newMDCAwareFixedThreadPool(solrConfig.autowarmThreads,
+          new DefaultSolrThreadFactory("autowarm"));
+    }
+    try {
+      // warm the caches in order...
+      for (int i = 0; i < cacheList.length; i++) {
+        if (isWarmingTimeExceeded()) {
+          log.warn("Autowarming of [{}] took more than maxAutowarmTimeMs={}, skipping cache [{}] and the next ones",
+              this, solrConfig.maxAutowarmTimeMs, cacheList[i].name());
+          break;
+        }
+        if (log.isDebugEnabled()) {
+          log.debug("autowarming [{}] from [{}]\n\t{}", this, old, old.cacheList[i]);
+        }
+
+        final SolrCache cache = cacheList[i];
+        final SolrCache oldCache = old.cacheList[i];
+        runWithWarmingRequest(() -> cache.warm(this, oldCache));
+
+        if (log.isDebugEnabled()) {
+          log.debug("autowarming result for [{}]\n\t{}", this, cacheList[i]);
+        }
+      }
+    } finally {
+      if (warmingExecutor != null) {
+        ExecutorUtil.shutdownAndAwaitTermination(warmingExecutor);
+        warmingExecutor = null;
+      }
+      hasWarmingDeadline = false;
+    }
+    warmupTime = TimeUnit.MILLISECONDS.convert(System.nanoTime() - warmingStartTime, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Runs a task with a warming request on this searcher set as the current
+   * {@link SolrRequestInfo}.
+   */
+  void runWithWarmingRequest(Runnable task) {
     ModifiableSolrParams params = new ModifiableSolrParams();
     params.add("warming", "true");
-    for (int i = 0; i < cacheList.length; i++) {
-      if (log.isDebugEnabled()) {
-        log.debug("autowarming [{}] from [{}]\n\t{}", this, old, old.cacheList[i]);
+    final SolrQueryRequest req = new LocalSolrQueryRequest(core, params) {
+      @Override
+      public SolrIndexSearcher getSearcher() {
+        return SolrIndexSearcher.this;
       }
 
-      final SolrQueryRequest req = new LocalSolrQueryRequest(core, params) {
-        @Override
-        public SolrIndexSearcher getSearcher() {
-          return SolrIndexSearcher.this;
-        }
-
-        @Override
-        public void close() {}
-      };
+      @Override
+      public void close() {}
+    };
 
-      final SolrQueryResponse rsp = new SolrQueryResponse();
-      SolrRequestInfo.clearRequestInfo();
-      SolrRequestInfo.setRequestInfo(new SolrRequestInfo(req, rsp));
+    final SolrQueryResponse rsp = new SolrQueryResponse();
+    SolrRequestInfo.clearRequestInfo();
+    SolrRequestInfo.setRequestInfo(new SolrRequestInfo(req, rsp));
+    try {
+      task.run();
+    } finally {
       try {
-        cacheList[i].warm(this, old.cacheList[i]);
+        req.close();
       } finally {
-        try {
-          req.close();
-        } finally {
-          SolrRequestInfo.clearRequestInfo();
-        }
-      }
-
-      if (log.isDebugEnabled()) {
-        log.debug("autowarming result for [{}]\n\t{}", this, cacheList[i]);
+        SolrRequestInfo.clearRequestInfo();
       }
     }
-    warmupTime = TimeUnit.MILLISECONDS.convert(System.nanoTime() - warmingStartTime, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Returns the executor to regenerate cache entries with while autowarming, or null if entries
+   * should be regenerated on the calling thread.
+   */
+  ExecutorService getWarmingExecutor() {
+    return warmingExecutor;
+  }
+
+  /** Returns true if autowarming is bounded by <code>maxAutowarmTimeMs</code>. */
+  boolean hasWarmingDeadline() {
+    return hasWarmingDeadline;
+  }
+
+  /** Returns true if autowarming took more than <code>maxAutowarmTimeMs</code>. */
+  boolean isWarmingTimeExceeded() {
+    return hasWarmingDeadline && System.nanoTime() - warmingDeadline >= 0;
   }
 
   /**
@@ -2442,6 +2844,18 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
     return lst;
   }
 
+  /** Collects both the top documents and all matches of a slice of a concurrent search. */
+  private static class TopDocsAndSetCollector extends FilterCollector {
+    final TopDocsCollector topCollector;
+    final DocSetCollector setCollector;
+
+    TopDocsAndSetCollector(TopDocsCollector topCollector, DocSetCollector setCollector) {
+      super(MultiCollector.wrap(topCollector, setCollector));
+      this.topCollector = topCollector;
+      this.setCollector = setCollector;
+    }
+  }
+
   private static class FilterImpl extends Filter {
     private final Filter topFilter;
     private final List<Weight> weights;
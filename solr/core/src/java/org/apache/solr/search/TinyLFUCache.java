@@ -0,0 +1,263 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search;
+
+import java.io.Serializable;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.SimpleOrderedMap;
+import org.apache.solr.util.ConcurrentTinyLFUCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * SolrCache based on ConcurrentTinyLFUCache implementation.
+ * <p>
+ * Unlike LRUCache and FastLRUCache, this implementation only keeps a new entry if it is used more
+ * frequently than the entry it would replace, so that one-off entries (eg. the filters of a
+ * crawler paging through the index) do not flush out the entries that are used over and over.
+ * Reads never block and evictions are performed in the background, unless <code>async</code>
+ * is set to <code>false</code>.
+ * <p>
+ * In addition to <code>size</code>, the cache can be bounded by the amount of memory it uses
+ * with <code>maxRamMB</code>, in which case its values must implement
+ * {@link org.apache.lucene.util.Accountable}.
+ *
+ * @see org.apache.solr.util.ConcurrentTinyLFUCache
+ * @see org.apache.solr.search.SolrCache
+ */
+public class TinyLFUCache<K,V> extends SolrCacheBase implements SolrCache<K,V>, Accountable {
+  private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(TinyLFUCache.class);
+
+  // contains the statistics objects for all open caches of the same type
+  private List<ConcurrentTinyLFUCache.Stats> statsList;
+
+  private long warmupTime = 0;
+
+  private String description = "TinyLFU Cache";
+  private ConcurrentTinyLFUCache<K,V> cache;
+  private long maxRamBytes = Long.MAX_VALUE;
+  private int showItems = 0;
+
+  @Override
+  public Object init(Map args, Object persistence, CacheRegenerator regenerator) {
+    super.init(args, regenerator);
+    String str = (String) args.get("size");
+    final int limit = str == null ? 1024 : Integer.parseInt(str);
+    str = (String) args.get("initialSize");
+    final int initialSize = Math.min(str == null ? 1024 : Integer.parseInt(str), limit);
+    str = (String) args.get("maxRamMB");
+    maxRamBytes = str == null ? Long.MAX_VALUE : (long) (Double.parseDouble(str) * 1024L * 1024L);
+    str = (String) args.get("async");
+    final boolean async = str == null ? true : Boolean.parseBoolean(str);
+    str = (String) args.get("showItems");
+    showItems = str == null ? 0 : Integer.parseInt(str);
+    description = generateDescription(limit, initialSize, async);
+
+    final Executor executor = async ? ForkJoinPool.commonPool() : Runnable::run;
+    cache = new ConcurrentTinyLFUCache<>(limit, maxRamBytes, initialSize, this::weigh, executor);
+    cache.setAlive(false);
+
+    statsList = (List<ConcurrentTinyLFUCache.Stats>) persistence;
+    if (statsList == null) {
+      // must be the first time a cache of this type is being created
+      // Use a CopyOnWriteArrayList since puts are very rare and iteration may be a frequent operation
+      // because it is used in getStatistics()
+      statsList = new CopyOnWriteArrayList<>();
+
+      // the first entry will be for cumulative stats of caches that have been closed.
+      statsList.add(new ConcurrentTinyLFUCache.Stats());
+    }
+    statsList.add(cache.getStats());
+    return statsList;
+  }
+
+  /**
+   * @return Returns the description of this Cache.
+   */
+  protected String generateDescription(int limit, int initialSize, boolean async) {
+    String description = "TinyLFU Cache(maxSize=" + limit + ", initialSize=" + initialSize + ", async=" + async;
+    if (isAutowarmingOn()) {
+      description += ", " + getAutowarmDescription();
+    }
+    if (maxRamBytes != Long.MAX_VALUE) {
+      description += ", maxRamMB=" + (maxRamBytes / 1024L / 1024L);
+    }
+    description += ')';
+    return description;
+  }
+
+  private long weigh(K key, V value) {
+    long keySize = LRUCache.DEFAULT_RAM_BYTES_USED;
+    if (key instanceof Accountable) {
+      keySize = ((Accountable) key).ramBytesUsed();
+    }
+    long valueSize = 0;
+    if (value instanceof Accountable) {
+      valueSize = ((Accountable) value).ramBytesUsed();
+    } else if (maxRamBytes != Long.MAX_VALUE) {
+      throw new SolrException(SolrException.ErrorCode.SERVER_ERROR, "Cache: "
+          + getName() + " is configured with maxRamBytes=" + RamUsageEstimator.humanReadableUnits(maxRamBytes)
+          + " but its values do not implement org.apache.lucene.util.Accountable");
+    }
+    return keySize + valueSize + ConcurrentTinyLFUCache.RAM_BYTES_PER_ENTRY;
+  }
+
+  @Override
+  public int size() {
+    return cache.size();
+  }
+
+  @Override
+  public V put(K key, V value) {
+    return cache.put(key, value);
+  }
+
+  @Override
+  public V get(K key) {
+    return cache.get(key);
+  }
+
+  @Override
+  public void clear() {
+    cache.clear();
+  }
+
+  @Override
+  public void setState(State state) {
+    super.setState(state);
+    cache.setAlive(state == State.LIVE);
+  }
+
+  @Override
+  public void warm(SolrIndexSearcher searcher, SolrCache old) {
+    if (regenerator == null) return;
+    long warmingStartTime = System.nanoTime();
+    TinyLFUCache<K,V> other = (TinyLFUCache<K,V>) old;
+    // warm entries
+    if (isAutowarmingOn()) {
+      int sz = autowarm.getWarmCount(other.size());
+      List<Map.Entry<K,V>> items = new ArrayList<>(other.cache.getHottestItems(sz).entrySet());
+      regenerateItems(regenerator, searcher, this, old, items, false);
+    }
+    warmupTime = TimeUnit.MILLISECONDS.convert(System.nanoTime() - warmingStartTime, TimeUnit.NANOSECONDS);
+  }
+
+  @Override
+  public void close() {
+    // add the stats to the cumulative stats object (the first in the statsList)
+    statsList.get(0).add(cache.getStats());
+    statsList.remove(cache.getStats());
+  }
+
+  /**
+   * Perform the pending evictions synchronously.
+   * @see ConcurrentTinyLFUCache#cleanUp()
+   */
+  public void cleanUp() {
+    cache.cleanUp();
+  }
+
+  @Override
+  public long ramBytesUsed() {
+    return BASE_RAM_BYTES_USED + cache.ramBytesUsed();
+  }
+
+  //////////////////////// SolrInfoMBeans methods //////////////////////
+  @Override
+  public String getName() {
+    return TinyLFUCache.class.getName();
+  }
+
+  @Override
+  public String getDescription() {
+    return description;
+  }
+
+  @Override
+  public String getSource() {
+    return null;
+  }
+
+  @Override
+  public NamedList getStatistics() {
+    NamedList<Serializable> lst = new SimpleOrderedMap<>();
+    if (cache == null)  return lst;
+    ConcurrentTinyLFUCache.Stats stats = cache.getStats();
+    long lookups = stats.getCumulativeLookups();
+    long hits = stats.getCumulativeHits();
+    long inserts = stats.getCumulativePuts();
+    long evictions = stats.getCumulativeEvictions();
+    long clookups = 0;
+    long chits = 0;
+    long cinserts = 0;
+    long cevictions = 0;
+
+    // NOTE: It is safe to iterate on a CopyOnWriteArrayList
+    for (ConcurrentTinyLFUCache.Stats statistics : statsList) {
+      clookups += statistics.getCumulativeLookups();
+      chits += statistics.getCumulativeHits();
+      cinserts += statistics.getCumulativePuts();
+      cevictions += statistics.getCumulativeEvictions();
+    }
+
+    lst.add("lookups", lookups);
+    lst.add("hits", hits);
+    lst.add("hitratio", calcHitRatio(lookups, hits));
+    lst.add("inserts", inserts);
+    lst.add("evictions", evictions);
+    lst.add("size", cache.size());
+    if (maxRamBytes != Long.MAX_VALUE) {
+      lst.add("maxRamMB", maxRamBytes / 1024L / 1024L);
+    }
+    lst.add("ramBytesUsed", ramBytesUsed());
+
+    lst.add("warmupTime", warmupTime);
+    lst.add("cumulative_lookups", clookups);
+    lst.add("cumulative_hits", chits);
+    lst.add("cumulative_hitratio", calcHitRatio(clookups, chits));
+    lst.add("cumulative_inserts", cinserts);
+    lst.add("cumulative_evictions", cevictions);
+
+    if (showItems != 0) {
+      Map<K,V> items = cache.getHottestItems(showItems == -1 ? Integer.MAX_VALUE : showItems);
+      for (Map.Entry<K,V> e : items.entrySet()) {
+        lst.add("item_" + e.getKey(), e.getValue().toString());
+      }
+    }
+
+    return lst;
+  }
+
+  @Override
+  public String toString() {
+    return name() + getStatistics().toString();
+  }
+}
@@ -297,13 +297,18 @@ public class GraphQuery extends Query {
       }
     }
     
-    @Override
-    public Scorer scorer(LeafReaderContext context) throws IOException {
+    // synchronized since the segments of a concurrent search may ask for scorers from several threads
+    private synchronized Filter getFilter() throws IOException {
       if (filter == null) {
         resultSet = getDocSet();
         filter = resultSet.getTopFilter();
       }
-      DocIdSet readerSet = filter.getDocIdSet(context,context.reader().getLiveDocs());
+      return filter;
+    }
+
+    @Override
+    public Scorer scorer(LeafReaderContext context) throws IOException {
+      DocIdSet readerSet = getFilter().getDocIdSet(context,context.reader().getLiveDocs());
       // create a scrorer on the result set, if results from right query are empty, use empty iterator.
       return new GraphScorer(this, readerSet == null ? DocIdSetIterator.empty() : readerSet.iterator(), 1);
     }
@@ -0,0 +1,636 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToLongBiFunction;
+
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.apache.solr.common.util.Cache;
+
+/**
+ * A cache implementation based upon ConcurrentHashMap that uses the W-TinyLFU policy to decide
+ * which entries to keep.
+ * <p>
+ * New entries are added to a small "window" LRU queue. When they fall out of the window, they
+ * have to compete with the least recently used entry of the main space and only the one that
+ * has been used more frequently, according to a compact frequency sketch, is kept. This makes
+ * the cache resistant to scans of one-off keys, which would otherwise flush out the entries
+ * that are used over and over. The main space is a segmented LRU: entries that are hit while
+ * on probation get promoted to a protected queue.
+ * <p>
+ * Reads never block: the entry is looked up in the map and the access is recorded in a lossy
+ * buffer. Writes are recorded in a queue. Both buffers are replayed against the eviction policy
+ * under a lock by a maintenance task that runs on the configured executor, so that evictions do
+ * not happen on the thread that uses the cache, unless the executor does not keep up. In that
+ * case readers perform the maintenance if the lock is free, and writers wait for it. As a consequence, the cache may temporarily hold more entries than its
+ * maximum size; {@link #cleanUp()} performs the pending maintenance synchronously.
+ * <p>
+ * The cache is bounded both by its number of entries and by the sum of the weights of its
+ * entries, as computed by the given weigher, which is typically the amount of memory they use.
+ */
+public class ConcurrentTinyLFUCache<K,V> implements Cache<K,V>, Accountable {
+
+  private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(ConcurrentTinyLFUCache.class);
+
+  /** Approximate memory usage of the bookkeeping of an entry, not including its key and value. */
+  public static final long RAM_BYTES_PER_ENTRY =
+      RamUsageEstimator.shallowSizeOfInstance(Node.class)
+      + RamUsageEstimator.alignObjectSize(RamUsageEstimator.NUM_BYTES_OBJECT_HEADER
+          + Integer.BYTES + 3 * RamUsageEstimator.NUM_BYTES_OBJECT_REF) // hash table node
+      + 2 * RamUsageEstimator.NUM_BYTES_OBJECT_REF; // hash table slot, assume 2x capacity
+
+  // the queue that a node belongs to, only accessed under the eviction lock
+  private static final int NEW = 0, WINDOW = 1, PROBATION = 2, PROTECTED = 3, DEAD = 4;
+
+  // reads are recorded in several buffers, picked based on the id of the current thread, to
+  // reduce contention
+  private static final int NUM_READ_BUFFERS =
+      Integer.highestOneBit(Math.min(Runtime.getRuntime().availableProcessors(), 64) * 4 - 1) << 1;
+  private static final int READ_BUFFER_SIZE = 64; // must be a power of two
+  private static final int READ_BUFFER_MASK = READ_BUFFER_SIZE - 1;
+  // writers perform the maintenance themselves beyond this number of pending writes
+  private static final int WRITE_BUFFER_MAX = 1024;
+
+  private final ConcurrentHashMap<K, Node<K,V>> map;
+  private final int maxSize;
+  private final long maxWeight;
+  private final ToLongBiFunction<? super K, ? super V> weigher;
+  private final Executor executor;
+  private final Stats stats = new Stats();
+  private volatile boolean islive = true;
+
+  private final ReadBuffer<K,V>[] readBuffers;
+  private final Queue<Runnable> writeBuffer = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger writeBufferSize = new AtomicInteger();
+  private final AtomicBoolean drainScheduled = new AtomicBoolean();
+  private final Runnable drainTask = this::cleanUp;
+
+  // guarded by the eviction lock
+  private final ReentrantLock evictionLock = new ReentrantLock();
+  private final FrequencySketch sketch;
+  private final AccessOrderQueue<K,V> window = new AccessOrderQueue<>();
+  private final AccessOrderQueue<K,V> probation = new AccessOrderQueue<>();
+  private final AccessOrderQueue<K,V> protectedQueue = new AccessOrderQueue<>();
+  private final long windowMaxSize, windowMaxWeight;
+  private final long protectedMaxSize, protectedMaxWeight;
+  private volatile long weightedSize = 0; // only written under the eviction lock
+
+  /**
+   * Create a new cache.
+   * @param maxSize the maximum number of entries
+   * @param maxWeight the maximum sum of the weights of the entries
+   * @param initialSize the initial capacity of the map
+   * @param weigher computes the weight of an entry
+   * @param executor runs the maintenance of the cache, use <code>Runnable::run</code> to evict on
+   *        the calling thread
+   */
+  public ConcurrentTinyLFUCache(int maxSize, long maxWeight, int initialSize,
+                                ToLongBiFunction<? super K, ? super V> weigher, Executor executor) {
+    if (maxSize < 1) throw new IllegalArgumentException("maxSize must be > 0");
+    if (maxWeight < 1) throw new IllegalArgumentException("maxWeight must be > 0");
+    this.maxSize = maxSize;
+    this.maxWeight = maxWeight;
+    this.weigher = weigher;
+    this.executor = executor;
+    map = new ConcurrentHashMap<>(initialSize);
+    readBuffers = new ReadBuffer[NUM_READ_BUFFERS];
+    for (int i = 0; i < readBuffers.length; i++) {
+      readBuffers[i] = new ReadBuffer<>();
+    }
+    sketch = new FrequencySketch(maxSize);
+    // 1% of the cache for the window and 80% of the main space for protected entries
+    windowMaxSize = Math.max(1, maxSize / 100);
+    windowMaxWeight = Math.max(1, maxWeight / 100);
+    protectedMaxSize = (maxSize - windowMaxSize) * 4 / 5;
+    protectedMaxWeight = (maxWeight - windowMaxWeight) / 5 * 4;
+  }
+
+  public void setAlive(boolean live) {
+    islive = live;
+  }
+
+  @Override
+  public V get(K key) {
+    final Node<K,V> node = map.get(key);
+    if (node == null) {
+      if (islive) stats.misses.increment();
+      return null;
+    }
+    if (islive) stats.hits.increment();
+    recordRead(node);
+    return node.value;
+  }
+
+  @Override
+  public V put(K key, V val) {
+    if (val == null) return null;
+    final Node<K,V> node = new Node<>(key, val, weigher.applyAsLong(key, val));
+    final Node<K,V> old = map.put(key, node);
+    if (islive) {
+      stats.puts.increment();
+    } else {
+      stats.nonLivePuts.increment();
+    }
+    recordWrite(() -> {
+      if (old != null) {
+        onRemove(old);
+      }
+      onAdd(node);
+    });
+    return old == null ? null : old.value;
+  }
+
+  @Override
+  public V remove(K key) {
+    final Node<K,V> node = map.remove(key);
+    if (node == null) {
+      return null;
+    }
+    recordWrite(() -> onRemove(node));
+    return node.value;
+  }
+
+  @Override
+  public void clear() {
+    evictionLock.lock();
+    try {
+      maintenance();
+      for (Node<K,V> node : map.values()) {
+        if (map.remove(node.key, node)) {
+          onRemove(node);
+        }
+      }
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  public int size() {
+    return map.size();
+  }
+
+  /** Return the sum of the weights of the entries that the eviction policy knows about. */
+  public long weightedSize() {
+    return weightedSize;
+  }
+
+  @Override
+  public long ramBytesUsed() {
+    return BASE_RAM_BYTES_USED + sketch.ramBytesUsed() + weightedSize;
+  }
+
+  /**
+   * Perform the pending maintenance of the cache: replay the recorded reads and writes against
+   * the eviction policy and evict entries until the cache is within its bounds.
+   */
+  public void cleanUp() {
+    evictionLock.lock();
+    try {
+      drainScheduled.set(false);
+      maintenance();
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  /**
+   * Return up to <code>n</code> entries, the most valuable ones first: entries of the protected
+   * queue, then entries of the window and finally entries on probation, each of them from the
+   * most to the least recently used.
+   */
+  public Map<K,V> getHottestItems(int n) {
+    final Map<K,V> result = new LinkedHashMap<>();
+    if (n <= 0)
+      return result;
+    evictionLock.lock();
+    try {
+      maintenance();
+      addMostRecentlyUsed(protectedQueue, result, n);
+      addMostRecentlyUsed(window, result, n);
+      addMostRecentlyUsed(probation, result, n);
+    } finally {
+      evictionLock.unlock();
+    }
+    return result;
+  }
+
+  private static <K,V> void addMostRecentlyUsed(AccessOrderQueue<K,V> queue, Map<K,V> result, int n) {
+    for (Node<K,V> node = queue.last; node != null && result.size() < n; node = node.prev) {
+      result.put(node.key, node.value);
+    }
+  }
+
+  public Stats getStats() {
+    return stats;
+  }
+
+  private void recordRead(Node<K,V> node) {
+    final ReadBuffer<K,V> buffer = readBuffers[(int) Thread.currentThread().getId() & (NUM_READ_BUFFERS - 1)];
+    final long pending = buffer.offer(node);
+    if (pending >= READ_BUFFER_SIZE) {
+      // the executor does not keep up, help if nobody else is doing the maintenance
+      tryCleanUp();
+    } else if (pending >= READ_BUFFER_SIZE / 2) {
+      scheduleDrain();
+    }
+  }
+
+  private void tryCleanUp() {
+    if (evictionLock.tryLock()) {
+      try {
+        maintenance();
+      } finally {
+        evictionLock.unlock();
+      }
+    }
+  }
+
+  private void recordWrite(Runnable task) {
+    writeBuffer.add(task);
+    if (writeBufferSize.incrementAndGet() > WRITE_BUFFER_MAX) {
+      // the executor does not keep up, make the writer pay for the maintenance
+      cleanUp();
+    } else {
+      scheduleDrain();
+    }
+  }
+
+  private void scheduleDrain() {
+    if (drainScheduled.get() == false && drainScheduled.compareAndSet(false, true)) {
+      try {
+        executor.execute(drainTask);
+      } catch (RejectedExecutionException e) {
+        drainScheduled.set(false);
+        cleanUp();
+      }
+    }
+  }
+
+  // must be called under the eviction lock
+  private void maintenance() {
+    // writes first so that reads of new entries are taken into account
+    Runnable task;
+    while ((task = writeBuffer.poll()) != null) {
+      writeBufferSize.decrementAndGet();
+      task.run();
+    }
+
+    for (ReadBuffer<K,V> buffer : readBuffers) {
+      long head = buffer.readCount;
+      final long tail = buffer.writeCount.get();
+      for (; head < tail; head++) {
+        final int index = (int) head & READ_BUFFER_MASK;
+        final Node<K,V> node = buffer.nodes.get(index);
+        if (node == null) {
+          break; // the read has been counted but not published yet
+        }
+        buffer.nodes.lazySet(index, null);
+        onAccess(node);
+      }
+      buffer.readCount = head;
+    }
+
+    evict();
+  }
+
+  private void onAdd(Node<K,V> node) {
+    sketch.increment(hash(node.key));
+    if (node.queue == DEAD) {
+      return; // removed before we got to know it
+    }
+    node.queue = WINDOW;
+    window.addLast(node);
+    weightedSize += node.weight;
+  }
+
+  private void onRemove(Node<K,V> node) {
+    if (node.queue != NEW && node.queue != DEAD) {
+      queueOf(node).remove(node);
+      weightedSize -= node.weight;
+    }
+    node.queue = DEAD;
+  }
+
+  private void onAccess(Node<K,V> node) {
+    sketch.increment(hash(node.key));
+    switch (node.queue) {
+      case WINDOW:
+        window.moveToLast(node);
+        break;
+      case PROBATION:
+        probation.remove(node);
+        node.queue = PROTECTED;
+        protectedQueue.addLast(node);
+        break;
+      case PROTECTED:
+        protectedQueue.moveToLast(node);
+        break;
+      default:
+        // not added yet or already removed
+    }
+  }
+
+  private void evict() {
+    // entries that overflow the window are candidates for the main space
+    while (window.size > windowMaxSize || window.weight > windowMaxWeight) {
+      final Node<K,V> candidate = window.first;
+      window.remove(candidate);
+      candidate.queue = PROBATION;
+      probation.addLast(candidate);
+      admit(candidate);
+    }
+
+    // the cache may still be too large, eg. if entries have been replaced with heavier ones
+    while (isOverflowing()) {
+      final Node<K,V> victim = probation.first != null ? probation.first
+          : protectedQueue.first != null ? protectedQueue.first : window.first;
+      evictEntry(victim);
+    }
+
+    // entries that overflow the protected queue get another chance on probation
+    while (protectedQueue.size > protectedMaxSize || protectedQueue.weight > protectedMaxWeight) {
+      final Node<K,V> node = protectedQueue.first;
+      protectedQueue.remove(node);
+      node.queue = PROBATION;
+      probation.addLast(node);
+    }
+  }
+
+  /**
+   * Make room for a candidate that just moved to the main space by evicting the least recently
+   * used entries on probation, as long as the candidate has been used more frequently than them.
+   * Otherwise the candidate itself is evicted.
+   */
+  private void admit(Node<K,V> candidate) {
+    if (candidate.weight > maxWeight) {
+      evictEntry(candidate);
+      return;
+    }
+    int candidateFreq = -1;
+    while (isOverflowing()) {
+      Node<K,V> victim = probation.first;
+      if (victim == candidate) {
+        victim = protectedQueue.first;
+      }
+      if (victim == null) {
+        evictEntry(candidate);
+        return;
+      }
+      if (candidateFreq == -1) {
+        candidateFreq = sketch.frequency(hash(candidate.key));
+      }
+      if (candidateFreq > sketch.frequency(hash(victim.key))) {
+        evictEntry(victim);
+      } else {
+        evictEntry(candidate);
+        return;
+      }
+    }
+  }
+
+  private boolean isOverflowing() {
+    return window.size + probation.size + protectedQueue.size > maxSize || weightedSize > maxWeight;
+  }
+
+  private void evictEntry(Node<K,V> node) {
+    queueOf(node).remove(node);
+    weightedSize -= node.weight;
+    node.queue = DEAD;
+    // the entry might have been replaced in the meantime
+    if (map.remove(node.key, node)) {
+      stats.evictions.increment();
+    }
+  }
+
+  private AccessOrderQueue<K,V> queueOf(Node<K,V> node) {
+    switch (node.queue) {
+      case WINDOW:
+        return window;
+      case PROBATION:
+        return probation;
+      case PROTECTED:
+        return protectedQueue;
+      default:
+        throw new AssertionError("Node is not linked: " + node.queue);
+    }
+  }
+
+  private static int hash(Object key) {
+    final int h = key.hashCode();
+    return h ^ (h >>> 16);
+  }
+
+  private static final class Node<K,V> {
+    final K key;
+    final V value;
+    final long weight;
+    // guarded by the eviction lock
+    int queue = NEW;
+    Node<K,V> prev, next;
+
+    Node(K key, V value, long weight) {
+      this.key = key;
+      this.value = value;
+      this.weight = weight;
+    }
+  }
+
+  /** A lossy ring buffer of reads, that are dropped when the buffer is full or contended. */
+  private static final class ReadBuffer<K,V> {
+    final AtomicReferenceArray<Node<K,V>> nodes = new AtomicReferenceArray<>(READ_BUFFER_SIZE);
+    final AtomicLong writeCount = new AtomicLong();
+    volatile long readCount = 0; // only written under the eviction lock
+
+    /** Record a read and return the number of pending reads before it. */
+    long offer(Node<K,V> node) {
+      final long head = readCount;
+      final long tail = writeCount.get();
+      final long pending = tail - head;
+      if (pending < READ_BUFFER_SIZE && writeCount.compareAndSet(tail, tail + 1)) {
+        nodes.lazySet((int) tail & READ_BUFFER_MASK, node);
+      }
+      return pending;
+    }
+  }
+
+  /** A doubly linked list of nodes, from the least to the most recently used. */
+  private static final class AccessOrderQueue<K,V> {
+    Node<K,V> first, last;
+    long size, weight;
+
+    void addLast(Node<K,V> node) {
+      node.prev = last;
+      node.next = null;
+      if (last == null) {
+        first = node;
+      } else {
+        last.next = node;
+      }
+      last = node;
+      size++;
+      weight += node.weight;
+    }
+
+    void remove(Node<K,V> node) {
+      if (node.prev == null) {
+        first = node.next;
+      } else {
+        node.prev.next = node.next;
+      }
+      if (node.next == null) {
+        last = node.prev;
+      } else {
+        node.next.prev = node.prev;
+      }
+      node.prev = node.next = null;
+      size--;
+      weight -= node.weight;
+    }
+
+    void moveToLast(Node<K,V> node) {
+      if (node != last) {
+        remove(node);
+        addLast(node);
+      }
+    }
+  }
+
+  /**
+   * A count-min sketch of the access frequencies of keys, with four 4-bit counters per key. All
+   * counters are halved once the number of increments reaches ten times the maximum size of the
+   * cache so that the sketch favors recent history.
+   */
+  static final class FrequencySketch {
+    private static final long[] SEEDS = {
+        0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L };
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final long ONE_MASK = 0x1111111111111111L;
+
+    private final long[] table; // 16 counters per long
+    private final int tableMask;
+    private final int sampleSize;
+    private int size;
+
+    FrequencySketch(int maxSize) {
+      final int capacity = Math.min(Math.max(maxSize, 2), 1 << 30);
+      table = new long[Integer.highestOneBit(capacity - 1) << 1];
+      tableMask = table.length - 1;
+      sampleSize = (int) Math.min(10L * capacity, Integer.MAX_VALUE);
+    }
+
+    int frequency(int hash) {
+      final int start = (hash & 3) << 2;
+      int frequency = Integer.MAX_VALUE;
+      for (int i = 0; i < 4; i++) {
+        final int count = (int) ((table[indexOf(hash, i)] >>> ((start + i) << 2)) & 0xfL);
+        frequency = Math.min(frequency, count);
+      }
+      return frequency;
+    }
+
+    void increment(int hash) {
+      final int start = (hash & 3) << 2;
+      boolean added = false;
+      for (int i = 0; i < 4; i++) {
+        added |= incrementAt(indexOf(hash, i), start + i);
+      }
+      if (added && ++size == sampleSize) {
+        reset();
+      }
+    }
+
+    private boolean incrementAt(int index, int counter) {
+      final int offset = counter << 2;
+      final long mask = 0xfL << offset;
+      if ((table[index] & mask) != mask) {
+        table[index] += 1L << offset;
+        return true;
+      }
+      return false;
+    }
+
+    private void reset() {
+      int odd = 0;
+      for (int i = 0; i < table.length; i++) {
+        odd += Long.bitCount(table[i] & ONE_MASK);
+        table[i] = (table[i] >>> 1) & RESET_MASK;
+      }
+      // each increment touched 4 counters, account for the truncation of odd counters
+      size = (size >>> 1) - (odd >>> 2);
+    }
+
+    private int indexOf(int hash, int i) {
+      long h = (hash + SEEDS[i]) * SEEDS[i];
+      h += h >>> 32;
+      return ((int) h) & tableMask;
+    }
+
+    long ramBytesUsed() {
+      return RamUsageEstimator.sizeOf(table);
+    }
+  }
+
+  public static class Stats {
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder puts = new LongAdder();
+    private final LongAdder nonLivePuts = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public long getCumulativeLookups() {
+      return hits.sum() + misses.sum();
+    }
+
+    public long getCumulativeHits() {
+      return hits.sum();
+    }
+
+    public long getCumulativePuts() {
+      return puts.sum();
+    }
+
+    public long getCumulativeNonLivePuts() {
+      return nonLivePuts.sum();
+    }
+
+    public long getCumulativeEvictions() {
+      return evictions.sum();
+    }
+
+    public void add(Stats other) {
+      hits.add(other.hits.sum());
+      misses.add(other.misses.sum());
+      puts.add(other.puts.sum());
+      nonLivePuts.add(other.nonLivePuts.sum());
+      evictions.add(other.evictions.sum());
+    }
+  }
+}
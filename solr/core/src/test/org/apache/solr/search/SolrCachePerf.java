@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.solr.util.RTimer;
+
+/**
+ * Concurrent benchmark of the SolrCache implementations: every thread looks up keys that follow
+ * a skewed distribution, mixed with a share of one-off keys (a scan), and inserts the keys that
+ * it did not find. Prints the throughput and the hit ratio of each implementation, as well as
+ * its final size since implementations may temporarily exceed their maximum size.
+ * <p>
+ * Usage: <code>SolrCachePerf [cacheSize] [maxKey] [scanPercent] [getsPerThread]</code>
+ */
+public class SolrCachePerf {
+
+  static final String[] IMPLS = {"LRUCache", "FastLRUCache", "LFUCache", "TinyLFUCache"};
+  static final int[] NUM_THREADS = {1, 2, 4, 8};
+
+  static SolrCache newCache(String impl, int cacheSize) {
+    SolrCache sc;
+    switch (impl) {
+      case "LRUCache": sc = new LRUCache(); break;
+      case "FastLRUCache": sc = new FastLRUCache(); break;
+      case "LFUCache": sc = new LFUCache(); break;
+      case "TinyLFUCache": sc = new TinyLFUCache(); break;
+      default: throw new IllegalArgumentException(impl);
+    }
+    Map<String,String> args = new HashMap<>();
+    args.put("size", "" + cacheSize);
+    args.put("initialSize", "" + cacheSize);
+    sc.init(args, null, null);
+    sc.setState(SolrCache.State.LIVE);
+    return sc;
+  }
+
+  // keys in [0, maxKey) with a skewed distribution: low keys are much more frequent
+  static int nextKey(Random r, int maxKey) {
+    return (int) (maxKey * Math.pow(r.nextDouble(), 4));
+  }
+
+  // returns the number of hits
+  static long useCache(SolrCache sc, int numGets, int maxKey, int scanPercent, int seed) {
+    Random r = new Random(seed);
+    // one-off keys are all above maxKey and distinct across threads
+    int scanKey = maxKey + seed * numGets;
+    long hits = 0;
+    for (int i = 0; i < numGets; i++) {
+      Integer k = r.nextInt(100) < scanPercent ? scanKey++ : nextKey(r, maxKey);
+      Object v = sc.get(k);
+      if (v == null) {
+        sc.put(k, k);
+      } else {
+        hits++;
+      }
+    }
+    return hits;
+  }
+
+  static void cachePerfTest(String impl, int nThreads, int cacheSize, int maxKey, int scanPercent, int numGets)
+      throws InterruptedException {
+    final SolrCache sc = newCache(impl, cacheSize);
+    final AtomicLong hits = new AtomicLong();
+    Thread[] threads = new Thread[nThreads];
+    for (int i = 0; i < threads.length; i++) {
+      final int seed = i;
+      threads[i] = new Thread() {
+        @Override
+        public void run() {
+          hits.addAndGet(useCache(sc, numGets, maxKey, scanPercent, seed));
+        }
+      };
+    }
+
+    final RTimer timer = new RTimer();
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    final double time = timer.getTime();
+    final long totalGets = (long) nThreads * numGets;
+    System.out.println(String.format(Locale.ROOT, "impl=%-13s nThreads=%d size=%d maxKey=%d scan=%d%% time=%.0fms gets/ms=%.0f hitRatio=%.3f finalSize=%d",
+        impl, nThreads, cacheSize, maxKey, scanPercent, time, totalGets / time, (double) hits.get() / totalGets, sc.size()));
+    sc.close();
+  }
+
+  public static void main(String[] args) throws InterruptedException {
+    int cacheSize = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+    int maxKey = args.length > 1 ? Integer.parseInt(args[1]) : 10 * cacheSize;
+    int scanPercent = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+    int numGets = args.length > 3 ? Integer.parseInt(args[3]) : 1000000;
+
+    // warmup
+    for (String impl : IMPLS) {
+      cachePerfTest(impl, 2, cacheSize, maxKey, scanPercent, numGets / 10);
+    }
+    for (int nThreads : NUM_THREADS) {
+      for (String impl : IMPLS) {
+        cachePerfTest(impl, nThreads, cacheSize, maxKey, scanPercent, numGets);
+      }
+    }
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search;
+
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.util.RefCounted;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+
+/** Tests autowarming with several threads and with a time budget */
+public class TestAutowarming extends SolrTestCaseJ4 {
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    System.setProperty("solr.autowarmThreads", "4");
+    initCore("solrconfig.xml", "schema_latest.xml");
+  }
+
+  @AfterClass
+  public static void afterClass() throws Exception {
+    System.clearProperty("solr.autowarmThreads");
+    System.clearProperty("solr.maxAutowarmTimeMs");
+  }
+
+  public void testParallelAutowarming() throws Exception {
+    assertEquals(4, h.getCore().getSolrConfig().autowarmThreads);
+    fillCachesAndCommit();
+
+    // both caches have autowarmCount=2: the two most recently used entries are regenerated
+    RefCounted<SolrIndexSearcher> ref = h.getCore().getSearcher();
+    try {
+      SolrIndexSearcher searcher = ref.get();
+      SolrCache<Query,DocSet> filterCache = searcher.getFilterCache();
+      assertEquals(2, filterCache.size());
+      assertNotNull(filterCache.get(new TermQuery(new Term("val_s", "c"))));
+      assertNotNull(filterCache.get(new TermQuery(new Term("val_s", "d"))));
+      assertEquals(2, searcher.getCache("queryResultCache").size());
+    } finally {
+      ref.decref();
+    }
+  }
+
+  public void testTimeBudget() throws Exception {
+    System.setProperty("solr.maxAutowarmTimeMs", "0");
+    try {
+      h.reload();
+      assertEquals(0, h.getCore().getSolrConfig().maxAutowarmTimeMs);
+      fillCachesAndCommit();
+
+      // the budget is exhausted before the first cache is warmed
+      RefCounted<SolrIndexSearcher> ref = h.getCore().getSearcher();
+      try {
+        SolrIndexSearcher searcher = ref.get();
+        assertEquals(0, searcher.getFilterCache().size());
+        assertEquals(0, searcher.getCache("queryResultCache").size());
+      } finally {
+        ref.decref();
+      }
+    } finally {
+      System.clearProperty("solr.maxAutowarmTimeMs");
+      h.reload();
+    }
+  }
+
+  private void fillCachesAndCommit() throws Exception {
+    clearIndex();
+    final String[] values = {"a", "b", "c", "d"};
+    for (int i = 0; i < 20; ++i) {
+      assertU(adoc("id", Integer.toString(i), "val_s", values[i % values.length]));
+    }
+    assertU(commit());
+    for (String value : values) {
+      assertJQ(req("q", "*:*", "fq", "val_s:" + value), "/response/numFound==5");
+    }
+    assertU(adoc("id", "20", "val_s", "e"));
+    assertU(commit());
+  }
+}
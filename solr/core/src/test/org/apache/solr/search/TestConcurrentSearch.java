@@ -0,0 +1,200 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.TermQuery;
+import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.util.RefCounted;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+
+/** Tests that searching slices of the index concurrently returns the same results as a sequential search */
+public class TestConcurrentSearch extends SolrTestCaseJ4 {
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    System.setProperty("solr.searchThreads", "4");
+    System.setProperty("solr.minDocsPerSearchSlice", "1");
+    initCore("solrconfig.xml", "schema_latest.xml");
+  }
+
+  @AfterClass
+  public static void afterClass() throws Exception {
+    System.clearProperty("solr.searchThreads");
+    System.clearProperty("solr.minDocsPerSearchSlice");
+  }
+
+  public void testSameResults() throws Exception {
+    assertNotNull(h.getCore().getSearchExecutor());
+    final int numDocs = atLeast(200);
+    for (int i = 0; i < numDocs; ++i) {
+      assertU(adoc("id", Integer.toString(i), "val_s", "v" + random().nextInt(10), "num_i", Integer.toString(random().nextInt(50))));
+      if (random().nextInt(50) == 0) {
+        assertU(commit());
+      }
+    }
+    assertU(commit());
+
+    final Sort sort = new Sort(h.getCore().getLatestSchema().getField("num_i").getSortField(random().nextBoolean()));
+    RefCounted<SolrIndexSearcher> ref = h.getCore().getSearcher();
+    try {
+      SolrIndexSearcher searcher = ref.get();
+      for (int iter = 0; iter < 50; ++iter) {
+        final Query query = randomQuery();
+        final List<Query> filters = new ArrayList<>();
+        if (random().nextBoolean()) {
+          filters.add(new TermQuery(new Term("val_s", "v" + random().nextInt(10))));
+        }
+        if (random().nextInt(4) == 0) {
+          // joins lazily compute their matches when the first segment asks for a scorer
+          filters.add(new JoinQuery("val_s", "val_s", null, new TermQuery(new Term("id", Integer.toString(random().nextInt(numDocs))))));
+        }
+
+        // DocSets of filters
+        final List<Query> docSetQueries = new ArrayList<>(filters);
+        docSetQueries.add(query);
+        for (Query q : docSetQueries) {
+          final DocSetCollector collector = new DocSetCollector(searcher.maxDoc());
+          searcher.search(q, collector);
+          assertTrue(DocSetUtil.equals(collector.getDocSet(), DocSetUtil.createDocSetGeneric(searcher, q)));
+        }
+
+        // main query, by score or sorted, with or without the DocSet of all matches
+        final int flags = SolrIndexSearcher.NO_CHECK_QCACHE | SolrIndexSearcher.GET_SCORES
+            | (random().nextBoolean() ? SolrIndexSearcher.GET_DOCSET : 0);
+        final QueryCommand cmd = new QueryCommand()
+            .setQuery(query)
+            .setFilterList(filters)
+            .setSort(random().nextBoolean() ? sort : null)
+            .setLen(random().nextInt(2) == 0 ? 0 : random().nextInt(numDocs + 10))
+            .setFlags(flags);
+        final QueryResult concurrent = searcher.search(new QueryResult(), cmd);
+        // a time limit makes the search sequential
+        final QueryResult sequential = searcher.search(new QueryResult(), cmd.setTimeAllowed(Integer.MAX_VALUE));
+        assertDocListEquals(sequential.getDocList(), concurrent.getDocList());
+        if ((flags & SolrIndexSearcher.GET_DOCSET) != 0) {
+          assertTrue(DocSetUtil.equals(sequential.getDocSet(), concurrent.getDocSet()));
+        }
+      }
+    } finally {
+      ref.decref();
+    }
+  }
+
+  // scale() lazily computes the min and max values of all segments in the context that is shared by the
+  // weight of the function query or the comparators of the function sort
+  public void testScaleFunction() throws Exception {
+    clearIndex();
+    final int numDocs = atLeast(200);
+    for (int i = 0; i < numDocs; ++i) {
+      assertU(adoc("id", Integer.toString(i), "val_s", "v" + random().nextInt(10), "num_i", Integer.toString(i % 50)));
+      if (random().nextInt(50) == 0) {
+        assertU(commit());
+      }
+    }
+    assertU(commit());
+
+    final SolrQueryRequest req = req();
+    RefCounted<SolrIndexSearcher> ref = h.getCore().getSearcher();
+    try {
+      SolrIndexSearcher searcher = ref.get();
+      final Query scaleQuery = QParser.getParser("{!func}scale(num_i,0,1)", req).getQuery();
+      final Sort scaleSort = SortSpecParsing.parseSortSpec("scale(num_i,0,1) desc, id asc", req).getSort();
+      for (int iter = 0; iter < 20; ++iter) {
+        final Query query;
+        if (random().nextBoolean()) {
+          query = scaleQuery;
+        } else {
+          query = new BooleanQuery.Builder()
+              .add(new TermQuery(new Term("val_s", "v" + random().nextInt(10))), Occur.MUST)
+              .add(scaleQuery, Occur.SHOULD)
+              .build();
+        }
+        final int flags = SolrIndexSearcher.NO_CHECK_QCACHE | SolrIndexSearcher.GET_SCORES
+            | (random().nextBoolean() ? SolrIndexSearcher.GET_DOCSET : 0);
+        final QueryCommand cmd = new QueryCommand()
+            .setQuery(random().nextBoolean() ? query : randomQuery())
+            .setSort(random().nextBoolean() ? scaleSort : null)
+            .setLen(random().nextInt(numDocs + 10))
+            .setFlags(flags);
+        final QueryResult concurrent = searcher.search(new QueryResult(), cmd);
+        final QueryResult sequential = searcher.search(new QueryResult(), cmd.setTimeAllowed(Integer.MAX_VALUE));
+        assertDocListEquals(sequential.getDocList(), concurrent.getDocList());
+        if ((flags & SolrIndexSearcher.GET_DOCSET) != 0) {
+          assertTrue(DocSetUtil.equals(sequential.getDocSet(), concurrent.getDocSet()));
+        }
+      }
+
+      // all values are scaled with the min and max of the whole index
+      final QueryResult result = searcher.search(new QueryResult(), new QueryCommand()
+          .setQuery(scaleQuery)
+          .setLen(numDocs)
+          .setFlags(SolrIndexSearcher.NO_CHECK_QCACHE | SolrIndexSearcher.GET_SCORES));
+      assertEquals(numDocs, result.getDocList().matches());
+      assertEquals(1f, result.getDocList().maxScore(), 0f);
+      final DocIterator it = result.getDocList().iterator();
+      while (it.hasNext()) {
+        it.nextDoc();
+        final float score = it.score();
+        assertTrue(Float.toString(score), score >= 0f && score <= 1f);
+      }
+    } finally {
+      ref.decref();
+      req.close();
+      clearIndex();
+      assertU(commit());
+    }
+  }
+
+  private static Query randomQuery() {
+    if (random().nextInt(5) == 0) {
+      return new MatchAllDocsQuery();
+    }
+    final BooleanQuery.Builder builder = new BooleanQuery.Builder();
+    final int numClauses = 1 + random().nextInt(3);
+    for (int i = 0; i < numClauses; ++i) {
+      final Query clause = new TermQuery(new Term("val_s", "v" + random().nextInt(10)));
+      builder.add(new BoostQuery(clause, 1 + random().nextInt(5)), Occur.SHOULD);
+    }
+    return builder.build();
+  }
+
+  private static void assertDocListEquals(DocList expected, DocList actual) {
+    assertEquals(expected.matches(), actual.matches());
+    assertEquals(expected.size(), actual.size());
+    assertEquals(expected.maxScore(), actual.maxScore(), 0f);
+    final DocIterator expectedIt = expected.iterator();
+    final DocIterator actualIt = actual.iterator();
+    while (expectedIt.hasNext()) {
+      assertTrue(actualIt.hasNext());
+      assertEquals(expectedIt.nextDoc(), actualIt.nextDoc());
+      assertEquals(expectedIt.score(), actualIt.score(), 0f);
+    }
+    assertFalse(actualIt.hasNext());
+  }
+}
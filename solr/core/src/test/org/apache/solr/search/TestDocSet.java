@@ -110,6 +110,10 @@ public class TestDocSet extends LuceneTestCase {
     return new BitDocSet(bs);
   }
 
+  public DocSet getRoaringDocSet(FixedBitSet bs) {
+    return rand.nextBoolean() ? RoaringDocSet.fromBits(bs) : RoaringDocSet.fromSortedDocs(((SortedIntDocSet) getIntDocSet(bs)).getDocs(), bs.cardinality());
+  }
+
   public DocSet getDocSlice(FixedBitSet bs) {
     int len = bs.cardinality();
     int[] arr = new int[len+5];
@@ -128,7 +132,7 @@ public class TestDocSet extends LuceneTestCase {
 
 
   public DocSet getDocSet(FixedBitSet bs) {
-    switch(rand.nextInt(10)) {
+    switch(rand.nextInt(11)) {
       case 0: return getHashDocSet(bs);
 
       case 1: return getBitDocSet(bs);
@@ -142,6 +146,8 @@ public class TestDocSet extends LuceneTestCase {
       case 8: return getIntDocSet(bs);
 
       case 9: return getDocSlice(bs);
+
+      case 10: return getRoaringDocSet(bs);
     }
     return null;
   }
@@ -220,6 +226,119 @@ public class TestDocSet extends LuceneTestCase {
     // doMany(130, 1000000);
   }
 
+  /** Returns a set that spans several blocks of a RoaringDocSet, with sparse, dense and clustered blocks */
+  public FixedBitSet getRandomBlocksSet(int sz) {
+    FixedBitSet bs = new FixedBitSet(sz);
+    for (int start = 0; start < sz; start += RoaringDocSet.BLOCK_SIZE) {
+      int end = Math.min(sz, start + RoaringDocSet.BLOCK_SIZE);
+      switch (rand.nextInt(5)) {
+        case 0: // empty
+          break;
+        case 1: // sparse
+          for (int i = rand.nextInt(RoaringDocSet.MAX_ARRAY_SIZE); i >= 0; i--) {
+            bs.set(start + rand.nextInt(end - start));
+          }
+          break;
+        case 2: // dense
+          for (int doc = start; doc < end; doc++) {
+            if (rand.nextBoolean()) bs.set(doc);
+          }
+          break;
+        case 3: // runs
+          for (int doc = start + rand.nextInt(100); doc < end; doc += rand.nextInt(2000) + 1) {
+            int runEnd = Math.min(end, doc + rand.nextInt(1000) + 1);
+            bs.set(doc, runEnd);
+            doc = runEnd;
+          }
+          break;
+        case 4: // full
+          bs.set(start, end);
+          break;
+      }
+    }
+    return bs;
+  }
+
+  public void checkSame(FixedBitSet bs, DocSet set) {
+    assertEquals(bs.cardinality(), set.size());
+    for (DocIterator iter = set.iterator(); iter.hasNext(); ) {
+      assertTrue(bs.get(iter.nextDoc()));
+    }
+    for (int i = 0; i < 100; i++) {
+      int doc = rand.nextInt(bs.length());
+      if (set instanceof BitDocSet && doc >= ((BitDocSet) set).getBits().length()) continue;
+      assertEquals(bs.get(doc), set.exists(doc));
+    }
+  }
+
+  public void testRoaringDocSets() throws IOException {
+    for (int iter = 0; iter < 20; iter++) {
+      int sz = rand.nextInt(RoaringDocSet.BLOCK_SIZE * 5) + 1;
+      FixedBitSet bs1 = getRandomBlocksSet(sz);
+      FixedBitSet bs2 = rand.nextBoolean() ? getRandomBlocksSet(sz) : getRandomSet(sz, rand.nextInt(sz >> 4));
+
+      DocSet a1 = getRoaringDocSet(bs1);
+      checkSame(bs1, a1);
+      iter(new BitDocSet(bs1), a1);
+      FixedBitSet bits = DocSetBase.toBitSet(a1);
+      assertEquals(bs1.cardinality(), bits.cardinality());
+      assertEquals(bs1.cardinality(), FixedBitSet.intersectionCount(bs1, bits));
+
+      int split = rand.nextInt(sz + 1);
+      IndexReader reader = new MultiReader(dummyIndexReader(split), dummyIndexReader(sz - split));
+      for (LeafReaderContext readerContext : reader.leaves()) {
+        doTestIteratorEqual(new BitDocSet(bs1).getTopFilter().getDocIdSet(readerContext, null),
+            a1.getTopFilter().getDocIdSet(readerContext, null));
+      }
+
+      FixedBitSet a_and = bs1.clone(); a_and.and(bs2);
+      FixedBitSet a_or = bs1.clone(); a_or.or(bs2);
+      FixedBitSet a_andn = bs1.clone(); a_andn.andNot(bs2);
+      FixedBitSet b_andn = bs2.clone(); b_andn.andNot(bs1);
+
+      for (DocSet b2 : new DocSet[] {getRoaringDocSet(bs2), new BitDocSet(bs2), getIntDocSet(bs2)}) {
+        checkSame(a_and, a1.intersection(b2));
+        checkSame(a_and, b2.intersection(a1));
+        checkSame(a_or, a1.union(b2));
+        checkSame(a_or, b2.union(a1));
+        checkSame(a_andn, a1.andNot(b2));
+        checkSame(b_andn, b2.andNot(a1));
+
+        assertEquals(a_and.cardinality(), a1.intersectionSize(b2));
+        assertEquals(a_and.cardinality(), b2.intersectionSize(a1));
+        assertEquals(a_and.cardinality() > 0, a1.intersects(b2));
+        assertEquals(a_or.cardinality(), a1.unionSize(b2));
+        assertEquals(a_andn.cardinality(), a1.andNotSize(b2));
+        assertEquals(b_andn.cardinality(), b2.andNotSize(a1));
+      }
+
+      BitDocSet target = new BitDocSet(bs2.clone());
+      a1.addAllTo(target);
+      checkSame(a_or, target);
+    }
+  }
+
+  public void testToCompactSet() {
+    int maxDoc = RoaringDocSet.BLOCK_SIZE * 4;
+    // a few clustered docs take much less memory as a RoaringDocSet
+    FixedBitSet clustered = new FixedBitSet(maxDoc);
+    clustered.set(1000, 20000);
+    clustered.set(3 * RoaringDocSet.BLOCK_SIZE, 3 * RoaringDocSet.BLOCK_SIZE + 10);
+    DocSet set = DocSetUtil.toCompactSet(new BitDocSet(clustered));
+    assertTrue(set instanceof RoaringDocSet);
+    assertTrue(set.ramBytesUsed() < new BitDocSet(clustered).ramBytesUsed() / 2);
+    checkSame(clustered, set);
+
+    // random dense sets don't
+    FixedBitSet dense = getRandomSet(maxDoc, maxDoc / 4);
+    assertTrue(DocSetUtil.toCompactSet(new BitDocSet(dense)) instanceof BitDocSet);
+
+    // and neither do sets with more than half of the docs
+    FixedBitSet full = new FixedBitSet(maxDoc);
+    full.set(0, maxDoc);
+    assertTrue(DocSetUtil.toCompactSet(new BitDocSet(full)) instanceof BitDocSet);
+  }
+
   public DocSet getRandomDocSet(int n, int maxDoc) {
     FixedBitSet obs = new FixedBitSet(maxDoc);
     int[] a = new int[n];
@@ -529,7 +648,7 @@ public class TestDocSet extends LuceneTestCase {
     IndexReaderContext topLevelContext = reader.getContext();
     FixedBitSet bs = getRandomSet(reader.maxDoc(), rand.nextInt(reader.maxDoc()+1));
     DocSet a = new BitDocSet(bs);
-    DocSet b = getIntDocSet(bs);
+    DocSet b = rand.nextBoolean() ? getIntDocSet(bs) : getRoaringDocSet(bs);
 
     Filter fa = a.getTopFilter();
     Filter fb = b.getTopFilter();
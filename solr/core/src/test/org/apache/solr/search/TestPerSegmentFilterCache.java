@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.LRUQueryCache;
+import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.util.RefCounted;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+
+public class TestPerSegmentFilterCache extends SolrTestCaseJ4 {
+
+  @BeforeClass
+  public static void beforeTests() throws Exception {
+    System.setProperty("enable.update.log", "false");
+    System.setProperty("solr.filterCache.perSegment", "true");
+    initCore("solrconfig.xml","schema_latest.xml");
+  }
+
+  @AfterClass
+  public static void afterTests() throws Exception {
+    System.clearProperty("solr.filterCache.perSegment");
+  }
+
+  public void testUnchangedSegmentsAreReused() throws Exception {
+    final LRUQueryCache cache = h.getCore().getSegmentFilterCache();
+    assertNotNull(cache);
+
+    clearIndex();
+    for (int i = 0; i < 10; i++) {
+      assertU(adoc("id", Integer.toString(i), "val_s", i % 2 == 0 ? "a" : "b", "val_i", Integer.toString(i)));
+    }
+    assertU(commit());
+    final Set<Object> coreKeys = getCoreKeys();
+
+    assertJQ(req("q","*:*", "fq","val_s:a"), "/response/numFound==5");
+    assertJQ(req("q","*:*", "fq","val_i:[2 TO 5]"), "/response/numFound==4");
+
+    for (int i = 10; i < 14; i++) {
+      assertU(adoc("id", Integer.toString(i), "val_s", "a", "val_i", Integer.toString(i)));
+    }
+    assertU(delI("0"));
+    assertU(commit());
+
+    // the old segment may have been merged away, in which case there is nothing to reuse
+    final boolean reusable = getCoreKeys().removeAll(coreKeys);
+    final long hitCount = cache.getHitCount();
+    assertJQ(req("q","*:*", "fq","val_s:a"), "/response/numFound==8");
+    assertJQ(req("q","*:*", "fq","val_i:[2 TO 11]"), "/response/numFound==10");
+    assertJQ(req("q","*:*", "fq","val_s:b"), "/response/numFound==5");
+    if (reusable) {
+      assertTrue(cache.getHitCount() > hitCount);
+    }
+  }
+
+  public void testNotSegmentLocalQueries() throws Exception {
+    clearIndex();
+    assertU(adoc("id", "1", "val_s", "a", "val_i", "1"));
+    assertU(adoc("id", "2", "val_s", "b", "val_i", "2"));
+    assertU(commit());
+
+    // function queries depend on more than the segment and go through the top-level cache only
+    final LRUQueryCache cache = h.getCore().getSegmentFilterCache();
+    final long cacheCount = cache.getCacheCount();
+    assertJQ(req("q","*:*", "fq","{!frange l=2 u=2}val_i"), "/response/numFound==1");
+    assertEquals(cacheCount, cache.getCacheCount());
+  }
+
+  private static Set<Object> getCoreKeys() {
+    final Set<Object> coreKeys = new HashSet<>();
+    final RefCounted<SolrIndexSearcher> ref = h.getCore().getSearcher();
+    try {
+      for (LeafReaderContext context : ref.get().getTopReaderContext().leaves()) {
+        coreKeys.add(context.reader().getCoreCacheKey());
+      }
+    } finally {
+      ref.decref();
+    }
+    return coreKeys;
+  }
+}
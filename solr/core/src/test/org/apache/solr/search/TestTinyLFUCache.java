@@ -0,0 +1,261 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.TestUtil;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.util.ExecutorUtil;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.util.ConcurrentLRUCache;
+import org.apache.solr.util.ConcurrentTinyLFUCache;
+import org.apache.solr.util.DefaultSolrThreadFactory;
+
+/**
+ * Test for TinyLFUCache
+ *
+ * @see org.apache.solr.search.TinyLFUCache
+ * @see org.apache.solr.util.ConcurrentTinyLFUCache
+ */
+public class TestTinyLFUCache extends LuceneTestCase {
+
+  public void testSimple() throws IOException {
+    TinyLFUCache<Integer, String> cache = new TinyLFUCache<>();
+    Map<String, String> params = new HashMap<>();
+    params.put("size", "100");
+    params.put("initialSize", "10");
+    params.put("autowarmCount", "25");
+    params.put("async", "false");
+    CacheRegenerator cr = new NoOpRegenerator();
+    Object o = cache.init(params, null, cr);
+    cache.setState(SolrCache.State.LIVE);
+    for (int i = 1; i <= 100; i++) {
+      cache.put(i, "" + i);
+    }
+    assertEquals("25", cache.get(25));
+    assertEquals(null, cache.get(110));
+
+    // the entry that falls out of the window (100) is not admitted since it has not been used
+    // more frequently than the least recently used entry (1)
+    cache.put(101, "101");
+    assertEquals(100, cache.size());
+    assertEquals(null, cache.get(100));
+    assertEquals("1", cache.get(1));
+
+    // but an entry that keeps being inserted is
+    for (int i = 0; i < 3; i++) {
+      cache.put(200, "200");
+    }
+    cache.put(201, "201");
+    assertEquals(100, cache.size());
+    assertEquals("200", cache.get(200));
+
+    NamedList<Serializable> nl = cache.getStatistics();
+    assertEquals(5L, nl.get("lookups"));
+    assertEquals(3L, nl.get("hits"));
+    assertEquals(105L, nl.get("inserts"));
+    assertEquals(3L, nl.get("evictions"));
+    assertEquals(100, nl.get("size"));
+
+    TinyLFUCache<Integer, String> cacheNew = new TinyLFUCache<>();
+    cacheNew.init(params, o, cr);
+    cacheNew.warm(null, cache);
+    cacheNew.setState(SolrCache.State.LIVE);
+    cache.close();
+    assertEquals(25, cacheNew.size());
+    // entries that have been hit are the most valuable ones
+    assertEquals("25", cacheNew.get(25));
+    assertEquals("1", cacheNew.get(1));
+    assertEquals("200", cacheNew.get(200));
+    cacheNew.put(202, "202");
+    nl = cacheNew.getStatistics();
+    assertEquals(3L, nl.get("lookups"));
+    assertEquals(3L, nl.get("hits"));
+    assertEquals(1L, nl.get("inserts"));
+    assertEquals(0L, nl.get("evictions"));
+    assertEquals(8L, nl.get("cumulative_lookups"));
+    assertEquals(6L, nl.get("cumulative_hits"));
+    assertEquals(106L, nl.get("cumulative_inserts"));
+    assertEquals(3L, nl.get("cumulative_evictions"));
+    cacheNew.close();
+  }
+
+  public void testNoAutowarm() throws IOException {
+    TinyLFUCache<Integer, String> cache = new TinyLFUCache<>();
+    Map<String, String> params = new HashMap<>();
+    params.put("size", "100");
+    params.put("async", "false");
+    CacheRegenerator cr = new NoOpRegenerator();
+    Object o = cache.init(params, null, cr);
+    cache.setState(SolrCache.State.LIVE);
+    for (int i = 0; i < 101; i++) {
+      cache.put(i + 1, "" + (i + 1));
+    }
+    TinyLFUCache<Integer, String> cacheNew = new TinyLFUCache<>();
+    cacheNew.init(params, o, cr);
+    cacheNew.warm(null, cache);
+    cache.close();
+    cacheNew.setState(SolrCache.State.LIVE);
+    assertEquals(0, cacheNew.size());
+    cacheNew.close();
+  }
+
+  public void testMaxRamMB() throws IOException {
+    TinyLFUCache<Integer, Object> cache = new TinyLFUCache<>();
+    Map<String, String> params = new HashMap<>();
+    params.put("size", "1000");
+    params.put("maxRamMB", "1");
+    params.put("async", "false");
+    cache.init(params, null, new NoOpRegenerator());
+    cache.setState(SolrCache.State.LIVE);
+    final Accountable value = () -> 100 * 1024;
+    for (int i = 0; i < 100; i++) {
+      cache.put(i, value);
+    }
+    assertTrue(cache.size() <= 10);
+    NamedList<Serializable> nl = cache.getStatistics();
+    assertEquals(1L, nl.get("maxRamMB"));
+    assertEquals(100L - cache.size(), nl.get("evictions"));
+    assertTrue(cache.ramBytesUsed() < 2 * 1024 * 1024);
+
+    SolrException e = expectThrows(SolrException.class, () -> cache.put(1000, "not accountable"));
+    assertTrue(e.getMessage().contains("Accountable"));
+    assertNull(cache.get(1000));
+    cache.close();
+  }
+
+  public void testScanResistance() {
+    final int maxSize = 100;
+    final ConcurrentTinyLFUCache<Integer, Integer> tinyLFU =
+        new ConcurrentTinyLFUCache<>(maxSize, Long.MAX_VALUE, maxSize, (k, v) -> 1L, Runnable::run);
+    final ConcurrentLRUCache<Integer, Integer> lru = new ConcurrentLRUCache<>(maxSize, maxSize - 10);
+    try {
+      // a few hot keys that are used over and over, mixed with a scan of keys that are used once
+      final int hotKeys = 50;
+      int tinyLFUHotMisses = 0, lruHotMisses = 0;
+      int nextScanKey = hotKeys;
+      for (int round = 0; round < 100; round++) {
+        for (int key = 0; key < hotKeys; key++) {
+          if (tinyLFU.get(key) == null) {
+            tinyLFUHotMisses++;
+            tinyLFU.put(key, key);
+          }
+          if (lru.get(key) == null) {
+            lruHotMisses++;
+            lru.put(key, key);
+          }
+        }
+        for (int i = 0; i < 2 * maxSize; i++, nextScanKey++) {
+          tinyLFU.put(nextScanKey, nextScanKey);
+          lru.put(nextScanKey, nextScanKey);
+        }
+      }
+      // only the first round misses
+      assertEquals(hotKeys, tinyLFUHotMisses);
+      assertEquals(100 * hotKeys, lruHotMisses);
+      assertEquals(maxSize, tinyLFU.size());
+    } finally {
+      lru.destroy();
+    }
+  }
+
+  public void testOverwriteAndRemove() {
+    final ConcurrentTinyLFUCache<Integer, String> cache =
+        new ConcurrentTinyLFUCache<>(10, 100, 10, (k, v) -> v.length(), Runnable::run);
+    assertNull(cache.put(1, "a"));
+    assertEquals("a", cache.put(1, "bb"));
+    assertEquals(2, cache.weightedSize());
+    assertEquals("bb", cache.remove(1));
+    assertNull(cache.remove(1));
+    assertEquals(0, cache.weightedSize());
+    assertEquals(0, cache.size());
+
+    // a single entry that is heavier than the cache is evicted right away
+    cache.put(2, new String(new char[101]));
+    assertEquals(0, cache.size());
+    assertEquals(0, cache.weightedSize());
+
+    for (int i = 0; i < 20; i++) {
+      cache.put(i, "0123456789");
+    }
+    assertEquals(10, cache.size());
+    assertEquals(100, cache.weightedSize());
+    cache.clear();
+    assertEquals(0, cache.size());
+    assertEquals(0, cache.weightedSize());
+    assertTrue(cache.getHottestItems(10).isEmpty());
+  }
+
+  public void testConcurrentAccess() throws Exception {
+    final int maxSize = TestUtil.nextInt(random(), 10, 100);
+    final ExecutorService maintenance = ExecutorUtil.newMDCAwareSingleThreadExecutor(
+        new DefaultSolrThreadFactory("testConcurrentAccess"));
+    final ConcurrentTinyLFUCache<Integer, Integer> cache =
+        new ConcurrentTinyLFUCache<>(maxSize, Long.MAX_VALUE, maxSize, (k, v) -> 1L, maintenance);
+    final AtomicReference<Throwable> error = new AtomicReference<>();
+    final Thread[] threads = new Thread[TestUtil.nextInt(random(), 2, 8)];
+    for (int i = 0; i < threads.length; i++) {
+      final long seed = random().nextLong();
+      threads[i] = new Thread() {
+        @Override
+        public void run() {
+          try {
+            Random r = new Random(seed);
+            for (int iter = 0; iter < 100000; iter++) {
+              final Integer key = r.nextInt(maxSize * 4);
+              final Integer value = cache.get(key);
+              if (value == null) {
+                cache.put(key, key);
+              } else if (value.equals(key) == false) {
+                throw new AssertionError("Wrong value for key " + key + ": " + value);
+              } else if (r.nextInt(100) == 0) {
+                cache.remove(key);
+              }
+            }
+          } catch (Throwable t) {
+            error.compareAndSet(null, t);
+          }
+        }
+      };
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    maintenance.shutdown();
+    assertTrue(maintenance.awaitTermination(1, TimeUnit.MINUTES));
+
+    assertNull("Exception during concurrent access: " + error.get(), error.get());
+    cache.cleanUp();
+    assertTrue(cache.size() <= maxSize);
+    // the eviction policy knows about all the entries of the map
+    assertEquals(cache.size(), cache.weightedSize());
+    assertEquals(cache.size(), cache.getHottestItems(Integer.MAX_VALUE).size());
+  }
+}